@@ -57,7 +57,6 @@ public abstract class ConfusionMatrix implements Serializable {
     private final ConcurrentHashMap<String, AtomicInteger> false_positive_counts;
     private final ConcurrentHashMap<String, AtomicInteger> true_negative_counts;
     private final ConcurrentHashMap<String, AtomicInteger> false_negative_counts;
-    private final ConcurrentHashMap<String, String> gold_standard_data_to_code_map;
 
     private Bucket classified_records;
 
@@ -104,7 +103,6 @@ public abstract class ConfusionMatrix implements Serializable {
         true_negative_counts = new ConcurrentHashMap<>();
         false_positive_counts = new ConcurrentHashMap<>();
         false_negative_counts = new ConcurrentHashMap<>();
-        gold_standard_data_to_code_map = new ConcurrentHashMap<>();
 
         checkGoldStandardDataIsClassifiedAndIsConsistent();
         checkClassifiedDataIsInGoldStandard();
@@ -137,7 +135,6 @@ public abstract class ConfusionMatrix implements Serializable {
         true_negative_counts = new ConcurrentHashMap<>();
         false_positive_counts = new ConcurrentHashMap<>();
         false_negative_counts = new ConcurrentHashMap<>();
-        gold_standard_data_to_code_map = new ConcurrentHashMap<>();
     }
 
     protected void initMultipleClassification() {
@@ -309,17 +306,10 @@ public abstract class ConfusionMatrix implements Serializable {
      */
     private void checkClassifiedDataIsInGoldStandard() {
 
-        Set<String> known_data = new HashSet<>();
-
-        for (Record record : gold_standard_records) {
-
-            known_data.add(record.getData());
-        }
-
         for (Record record : classified_records) {
 
             String data = record.getData();
-            if (!known_data.contains(data))
+            if (!gold_standard_records.containsData(data))
                 throw new UnknownDataException("data: " + data + " is not in the gold standard data");
         }
     }
@@ -388,19 +378,11 @@ public abstract class ConfusionMatrix implements Serializable {
         gold_standard_records.parallelStream().forEach(record -> {
 
             final String code = record.getClassification().getCode();
-            updateSearchIndex(record);
             initCounts(code);
         });
         initCounts(Classification.UNCLASSIFIED.getCode());
     }
 
-    private void updateSearchIndex(final Record record) {
-
-        final String code = record.getClassification().getCode();
-        final String data = record.getData();
-        gold_standard_data_to_code_map.putIfAbsent(data, code);
-    }
-
     private void initCounts(String code) {
 
         initCount(code, classification_counts);
@@ -561,8 +543,10 @@ public abstract class ConfusionMatrix implements Serializable {
 
     private String findGoldStandardCode(String data) throws UnknownDataException {
 
-        if (gold_standard_data_to_code_map.containsKey(data)) {
-            return gold_standard_data_to_code_map.get(data);
+        final List<Record> records_with_data = gold_standard_records.findRecordsByData(data);
+
+        if (!records_with_data.isEmpty()) {
+            return records_with_data.get(0).getClassification().getCode();
         }
 
         throw new UnknownDataException("couldn't find gold standard code for data: " + data);
@@ -23,6 +23,8 @@ import uk.ac.standrews.cs.utilities.GenericProgressIndicator;
 import uk.ac.standrews.cs.utilities.ProgressIndicator;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
@@ -40,6 +42,9 @@ public abstract class Classifier implements Serializable {
     private static final Consumer<Double> DEFAULT_PROGRESS_HANDLER = progress -> LOGGER.info(Math.round(progress * 100) + "%");
     private static final int DEFAULT_NUMBER_OF_PROGRESS_UPDATES = 20;
 
+    // Number of classified records added to a given bucket at a time, since each addition to a bucket has a fixed cost.
+    private static final int CLASSIFIED_RECORDS_BATCH_SIZE = 1 << 12;
+
     private transient ProgressIndicator classification_progress_indicator;
     private transient ProgressIndicator training_progress_indicator;
     private transient Consumer<Double> classification_progress_handler = DEFAULT_PROGRESS_HANDLER;
@@ -93,9 +98,46 @@ public abstract class Classifier implements Serializable {
         return classify(bucket, false);
     }
 
+    /**
+     * Classifies a bucket of data items, adding the classified records to the given bucket rather than to a new one.
+     * This allows the classified records to be held in a bucket that does not keep its records on the heap, such as a
+     * {@link uk.ac.standrews.cs.digitising_scotland.record_classification.model.MappedBucket MappedBucket}.
+     *
+     * @param bucket the data to be classified
+     * @param classified the bucket to which to add the classified data
+     * @return the given bucket, containing the classified data
+     */
+    public Bucket classify(final Bucket bucket, final Bucket classified) {
+
+        return classify(bucket, classified, false);
+    }
+
     protected Bucket classify(final Bucket unclassified, boolean set_confidence) {
 
-        final Bucket classified = new Bucket();
+        final Bucket.Builder classified = unclassified.newBuilder(unclassified.size());
+        classifyEach(unclassified, set_confidence, classified::add);
+        return classified.build();
+    }
+
+    protected Bucket classify(final Bucket unclassified, final Bucket classified, boolean set_confidence) {
+
+        final List<Record> batch = new ArrayList<>(CLASSIFIED_RECORDS_BATCH_SIZE);
+
+        classifyEach(unclassified, set_confidence, record -> {
+
+            batch.add(record);
+            if (batch.size() == CLASSIFIED_RECORDS_BATCH_SIZE) {
+                classified.add(batch);
+                batch.clear();
+            }
+        });
+        classified.add(batch);
+
+        return classified;
+    }
+
+    private void classifyEach(final Bucket unclassified, boolean set_confidence, final Consumer<Record> classified) {
+
         final int unclassified_records_size = unclassified.size();
 
         resetClassificationProgressIndicator(unclassified_records_size);
@@ -106,13 +148,11 @@ public abstract class Classifier implements Serializable {
 
             Classification classification = classify(data);
             setConfidence(classification, set_confidence);
-            classified.add(new Record(record.getId(), data, record.getOriginalData(), classification));
+            classified.accept(new Record(record.getId(), data, record.getOriginalData(), classification));
 
             progressClassificationStep();
         }
         LOGGER.info(() -> "done.");
-
-        return classified;
     }
 
     protected void resetClassificationProgressIndicator(int total) {
@@ -133,6 +173,43 @@ public abstract class Classifier implements Serializable {
      */
     public abstract Classification classify(String data);
 
+    /**
+     * Checks whether {@link #classify(String)} may be called concurrently from multiple threads once this classifier has been trained.
+     *
+     * @return {@code true} if this classifier may classify concurrently, {@code false} otherwise
+     */
+    public boolean supportsConcurrentClassification() {
+
+        return false;
+    }
+
+    /**
+     * Checks whether this classifier can be updated with further gold standard records by {@link #update(Bucket)}.
+     *
+     * @return {@code true} if this classifier may be trained incrementally, {@code false} otherwise
+     */
+    public boolean supportsIncrementalTraining() {
+
+        return false;
+    }
+
+    /**
+     * Updates the classifier with the given gold standard records, retaining what it has already been trained on and
+     * without repeating internal evaluation.
+     *
+     * Since internal evaluation is not repeated, any per-class confidences it determined are not refreshed: an exact
+     * match classifier, for example, keeps the confidences of its last training, and has none for classes first seen
+     * in an update.
+     *
+     * @param bucket the training data, which may include records the classifier has already been trained on
+     * @throws UnsupportedOperationException if this classifier does not support incremental training
+     * @see #supportsIncrementalTraining()
+     */
+    public void update(final Bucket bucket) {
+
+        throw new UnsupportedOperationException(getName() + " does not support incremental training");
+    }
+
     protected void setConfidence(Classification classification, boolean set_confidence) {
 
         // do nothing; this is to allow extending classes to customise confidence measure of a classification.
@@ -0,0 +1,474 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier;
+
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.StringInterner;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenList;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The classifications of known data, such as the training data of a classifier, held compactly in memory.
+ *
+ * Known data typically far outnumber the distinct combinations of code, confidence and detail among their
+ * classifications, so each distinct combination is held once, as a shared classification, and each known data is
+ * mapped to the id of its combination in an open-addressing table of interned strings. No classification or token list
+ * is held per known data: each classification returned has the tokens of the data it classifies, looked up when they
+ * are requested.
+ *
+ * A classification whose token list is not that of the data it classifies is instead held itself, and returned for each
+ * data it classifies, as it would be by a map.
+ *
+ * The classifications are persisted as the table of distinct combinations, each with the token list of a held
+ * classification or none for a shared one, followed by the known data with their ids. The token list of each shared
+ * classification read is that of the data it classifies, and each held classification keeps its own.
+ */
+public final class CompactClassifications implements Serializable, BinarySerializable {
+
+    private static final long serialVersionUID = -3620716478541917034L;
+
+    // The state is written by writeObject rather than as fields.
+    private static final ObjectStreamField[] serialPersistentFields = {};
+
+    private static final int MINIMUM_CAPACITY = 16;
+    private static final int NOT_FOUND = -1;
+
+    // Slots of the open-addressing table; a null key marks an empty slot.
+    private String[] keys;
+    private int[] classification_ids;
+    private int size;
+
+    // The shared classifications, which have no token list, and any classifications held themselves.
+    private Classification[] classifications;
+    private int classification_count;
+
+    private transient Map<List<Object>, Integer> classification_index;
+    private transient Map<Classification, Integer> held_classification_index;
+
+    public CompactClassifications() {
+
+        this(0);
+    }
+
+    /**
+     * Instantiates an empty set of classifications.
+     *
+     * @param expected_size the expected number of known data, used to presize the table
+     */
+    public CompactClassifications(final int expected_size) {
+
+        clear(expected_size);
+    }
+
+    /**
+     * Gets the number of known data.
+     *
+     * @return the number of known data
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Gets the classification of the given data.
+     *
+     * @param data the data
+     * @return a new classification of the data, or {@code null} if the data is not known
+     */
+    public Classification get(final String data) {
+
+        final int slot = indexOf(data);
+        return slot == NOT_FOUND ? null : newClassification(classification_ids[slot], keys[slot]);
+    }
+
+    /**
+     * Sets the classification of the given data, replacing any existing classification. The given classification is
+     * only retained if its token list is not that of the data.
+     *
+     * @param data the data
+     * @param classification the classification of the data
+     */
+    public void put(final String data, final Classification classification) {
+
+        final TokenList token_list = classification.getTokenList();
+
+        if (token_list == null || isTokenListOf(token_list, data)) {
+            put(data, getClassificationId(classification.getCode(), classification.getConfidence(), classification.getDetail()));
+        }
+        else {
+            final Integer id = held_classification_index.get(classification);
+            put(data, id != null ? id : addClassification(classification));
+        }
+    }
+
+    /**
+     * Sets the classification of the given data to that with the given id, replacing any existing classification.
+     *
+     * @param data the data
+     * @param classification_id the id of the classification, as returned by {@link #getClassificationId(String, double, String)}
+     */
+    public void put(final String data, final int classification_id) {
+
+        if (classification_id < 0 || classification_id >= classification_count) {
+            throw new IllegalArgumentException("invalid classification id " + classification_id);
+        }
+        putKey(data, classification_id);
+    }
+
+    /**
+     * Gets the id of the shared classification with the given code, confidence and detail, adding it if necessary.
+     *
+     * @param code the code
+     * @param confidence the confidence
+     * @param detail the detail
+     * @return the id of the classification
+     */
+    public int getClassificationId(final String code, final double confidence, final String detail) {
+
+        final Integer id = classification_index.get(Arrays.asList(code, confidence, detail));
+        return id != null ? id : addClassification(code, confidence, detail);
+    }
+
+    /**
+     * Gets the number of distinct combinations of code, confidence and detail among the classifications.
+     *
+     * @return the number of shared classifications
+     */
+    public int getClassificationCount() {
+
+        return classification_count;
+    }
+
+    /**
+     * Adds a classification to be held itself, as is one put with a token list that is not that of its data.
+     *
+     * @param classification the classification, which must have a token list
+     * @return the id of the classification
+     */
+    public int holdClassification(final Classification classification) {
+
+        if (classification.getTokenList() == null) {
+            throw new IllegalArgumentException("a held classification must have a token list");
+        }
+        return addClassification(classification);
+    }
+
+    /**
+     * Gets the classification with the given id. A shared classification has no token list, and a held classification
+     * has its own.
+     *
+     * @param classification_id the id of the classification
+     * @return a new classification with the code, confidence, detail and any token list of the classification
+     */
+    public Classification getClassification(final int classification_id) {
+
+        final Classification classification = classifications[classification_id];
+        return new Classification(classification.getCode(), classification.getTokenList(), classification.getConfidence(), classification.getDetail());
+    }
+
+    /**
+     * Performs the given action for each known data and the id of its classification, in no particular order.
+     *
+     * @param action the action to perform
+     */
+    public void forEach(final ObjIntConsumer<String> action) {
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                action.accept(keys[slot], classification_ids[slot]);
+            }
+        }
+    }
+
+    /**
+     * Reads all the classifications into a map.
+     *
+     * @return a map from each known data to a new classification of it
+     */
+    public HashMap<String, Classification> toMap() {
+
+        final HashMap<String, Classification> map = new HashMap<>((int) (size / 0.75f) + 1);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                map.put(keys[slot], newClassification(classification_ids[slot], keys[slot]));
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        out.writeInt(classification_count);
+        for (int id = 0; id < classification_count; id++) {
+            BinaryCodec.writeString(out, classifications[id].getCode());
+            out.writeDouble(classifications[id].getConfidence());
+            BinaryCodec.writeString(out, classifications[id].getDetail());
+            BinaryCodec.writeTokenList(out, classifications[id].getTokenList());
+        }
+
+        out.writeInt(size);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                BinaryCodec.writeString(out, keys[slot]);
+                out.writeInt(classification_ids[slot]);
+            }
+        }
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        final int count = in.readInt();
+        clearClassifications(count);
+
+        for (int id = 0; id < count; id++) {
+
+            final String code = BinaryCodec.readString(in);
+            final double confidence = in.readDouble();
+            final String detail = BinaryCodec.readString(in);
+            final TokenList token_list = BinaryCodec.readTokenList(in);
+
+            if (token_list == null) {
+                addClassification(code, confidence, detail);
+            }
+            else {
+                addClassification(new Classification(StringInterner.intern(code), token_list, confidence, detail));
+            }
+        }
+
+        final int known_data_count = in.readInt();
+        clear(known_data_count);
+
+        for (int i = 0; i < known_data_count; i++) {
+            putKey(BinaryCodec.readString(in), readClassificationId(in));
+        }
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CompactClassifications)) {
+            return false;
+        }
+
+        final CompactClassifications that = (CompactClassifications) other;
+        if (size != that.size) {
+            return false;
+        }
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+
+                final int other_slot = that.indexOf(keys[slot]);
+                if (other_slot == NOT_FOUND || !sameClassification(classifications[classification_ids[slot]], that.classifications[that.classification_ids[other_slot]])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+
+        int hash_code = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                final Classification classification = classifications[classification_ids[slot]];
+                hash_code += keys[slot].hashCode() ^ Objects.hash(classification.getCode(), classification.getConfidence(), classification.getDetail());
+            }
+        }
+        return hash_code;
+    }
+
+    private void putKey(final String data, final int classification_id) {
+
+        if ((size + 1) * 3 > keys.length * 2) {
+            resize(keys.length * 2);
+        }
+
+        final String key = StringInterner.intern(data);
+        final int mask = keys.length - 1;
+
+        int slot = hash(key) & mask;
+        while (keys[slot] != null) {
+
+            if (keys[slot].equals(key)) {
+                classification_ids[slot] = classification_id;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        classification_ids[slot] = classification_id;
+        size++;
+    }
+
+    private int indexOf(final String data) {
+
+        final int mask = keys.length - 1;
+
+        int slot = hash(data) & mask;
+        while (keys[slot] != null) {
+
+            // Keys and record data are interned, so an identity check usually suffices.
+            if (keys[slot] == data || keys[slot].equals(data)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private static int hash(final String data) {
+
+        // Spreads the bits of the string's hash, since the table size is a power of two.
+        final int hash = data.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize(final int capacity) {
+
+        final String[] old_keys = keys;
+        final int[] old_classification_ids = classification_ids;
+
+        keys = new String[capacity];
+        classification_ids = new int[capacity];
+        size = 0;
+
+        for (int slot = 0; slot < old_keys.length; slot++) {
+            if (old_keys[slot] != null) {
+                putKey(old_keys[slot], old_classification_ids[slot]);
+            }
+        }
+    }
+
+    private void clear(final int expected_size) {
+
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity * 2 < expected_size * 3) {
+            capacity *= 2;
+        }
+
+        keys = new String[capacity];
+        classification_ids = new int[capacity];
+        size = 0;
+
+        if (classifications == null) {
+            clearClassifications(0);
+        }
+    }
+
+    private void clearClassifications(final int expected_count) {
+
+        classifications = new Classification[Math.max(expected_count, 1)];
+        classification_count = 0;
+        classification_index = new HashMap<>();
+        held_classification_index = new IdentityHashMap<>();
+    }
+
+    private int addClassification(final String code, final double confidence, final String detail) {
+
+        // Shared classifications are never returned, so are not modified by callers.
+        final Classification classification = new Classification(StringInterner.intern(code), null, confidence, detail);
+
+        classification_index.put(toKey(classification), classification_count);
+        return appendClassification(classification);
+    }
+
+    private int addClassification(final Classification held_classification) {
+
+        held_classification_index.put(held_classification, classification_count);
+        return appendClassification(held_classification);
+    }
+
+    private int appendClassification(final Classification classification) {
+
+        if (classification_count == classifications.length) {
+            classifications = Arrays.copyOf(classifications, classification_count * 2);
+        }
+
+        classifications[classification_count] = classification;
+        return classification_count++;
+    }
+
+    private static boolean isTokenListOf(final TokenList token_list, final String data) {
+
+        // Data are usually cleaned, so their tokens are the data split at single spaces; this avoids tokenizing them again.
+        int position = 0;
+        for (String token : token_list) {
+
+            if (position > 0 && (position >= data.length() || data.charAt(position++) != ' ') || !data.startsWith(token, position)) {
+                return token_list.equals(TokenList.of(data));
+            }
+            position += token.length();
+        }
+        return position == data.length() || token_list.equals(TokenList.of(data));
+    }
+
+    private int readClassificationId(final DataInputStream in) throws IOException {
+
+        final int id = in.readInt();
+        if (id < 0 || id >= classification_count) {
+            throw new IOException("invalid classification id " + id);
+        }
+        return id;
+    }
+
+    private Classification newClassification(final int classification_id, final String data) {
+
+        final Classification classification = classifications[classification_id];
+        if (classification.getTokenList() != null) {
+            return classification;
+        }
+        return Classification.withTokensOf(classification.getCode(), data, classification.getConfidence(), classification.getDetail());
+    }
+
+    private static List<Object> toKey(final Classification classification) {
+
+        return Arrays.asList(classification.getCode(), classification.getConfidence(), classification.getDetail());
+    }
+
+    private static boolean sameClassification(final Classification classification, final Classification other) {
+
+        // Held classifications differ from shared ones, and from each other, by their token lists.
+        return toKey(classification).equals(toKey(other)) && Objects.equals(classification.getTokenList(), other.getTokenList());
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+
+        out.defaultWriteObject();
+        writeBinary(new DataOutputStream(out));
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        readBinary(new DataInputStream(in));
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier;
+
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenList;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.MappedStringTable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.SectionedFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * The classifications of known data, such as the training data of a classifier, read on demand from memory-mapped
+ * sections of a {@link SectionedFile}.
+ *
+ * The known data are held in a {@link MappedStringTable}, which maps each to one of the distinct combinations of code,
+ * confidence and detail among the classifications. Since there are typically few such combinations, they are read
+ * when the classifications are opened. The token list of each classification is that of the data it classifies, looked
+ * up when it is requested, unless the classification was held with its own token list by {@link CompactClassifications}.
+ */
+public final class MappedClassifications {
+
+    private static final String DATA_SECTION_SUFFIX = ".data";
+    private static final String CLASSIFICATIONS_SECTION_SUFFIX = ".classifications";
+    private static final int NULL_TOKEN_LIST = -1;
+
+    private final MappedStringTable data;
+    private final String[] codes;
+    private final double[] confidences;
+    private final String[] details;
+
+    // The token lists of held classifications, and null for shared ones.
+    private final TokenList[] token_lists;
+
+    private MappedClassifications(final MappedStringTable data, final String[] codes, final double[] confidences, final String[] details, final TokenList[] token_lists) {
+
+        this.data = data;
+        this.codes = codes;
+        this.confidences = confidences;
+        this.details = details;
+        this.token_lists = token_lists;
+    }
+
+    /**
+     * Writes the given classifications as sections of a file.
+     *
+     * @param out the file to which to write
+     * @param name the name that prefixes the names of the sections
+     * @param classifications the classifications of known data
+     * @throws IOException if the classifications cannot be written
+     */
+    public static void write(final SectionedFile.Writer out, final String name, final Map<String, Classification> classifications) throws IOException {
+
+        final CompactClassifications compact_classifications = new CompactClassifications(classifications.size());
+        for (Map.Entry<String, Classification> entry : classifications.entrySet()) {
+            compact_classifications.put(entry.getKey(), entry.getValue());
+        }
+
+        write(out, name, compact_classifications);
+    }
+
+    /**
+     * Writes the given classifications as sections of a file.
+     *
+     * @param out the file to which to write
+     * @param name the name that prefixes the names of the sections
+     * @param classifications the classifications of known data
+     * @throws IOException if the classifications cannot be written
+     */
+    public static void write(final SectionedFile.Writer out, final String name, final CompactClassifications classifications) throws IOException {
+
+        out.addMappedSection(name + CLASSIFICATIONS_SECTION_SUFFIX, section -> {
+
+            section.writeInt(classifications.getClassificationCount());
+            for (int id = 0; id < classifications.getClassificationCount(); id++) {
+
+                final Classification classification = classifications.getClassification(id);
+                SectionedFile.writeString(section, classification.getCode());
+                section.writeDouble(classification.getConfidence());
+                SectionedFile.writeString(section, classification.getDetail());
+
+                final TokenList token_list = classification.getTokenList();
+                section.writeInt(token_list == null ? NULL_TOKEN_LIST : token_list.size());
+                if (token_list != null) {
+                    for (String token : token_list) {
+                        SectionedFile.writeString(section, token);
+                    }
+                }
+            }
+        });
+
+        final Map<String, Integer> data = new HashMap<>();
+        classifications.forEach(data::put);
+
+        out.addMappedSection(name + DATA_SECTION_SUFFIX, section -> MappedStringTable.write(section, data));
+    }
+
+    /**
+     * Reads classifications written by {@link #write(SectionedFile.Writer, String, Map)}.
+     *
+     * @param in the file from which to read
+     * @param name the name that prefixes the names of the sections
+     * @return the classifications
+     * @throws IOException if the classifications cannot be read
+     */
+    public static MappedClassifications read(final SectionedFile in, final String name) throws IOException {
+
+        final ByteBuffer section = in.getSection(name + CLASSIFICATIONS_SECTION_SUFFIX);
+        final int count = section.getInt();
+
+        final String[] codes = new String[count];
+        final double[] confidences = new double[count];
+        final String[] details = new String[count];
+        final TokenList[] token_lists = new TokenList[count];
+
+        for (int i = 0; i < count; i++) {
+            codes[i] = SectionedFile.readString(section);
+            confidences[i] = section.getDouble();
+            details[i] = SectionedFile.readString(section);
+
+            final int token_count = section.getInt();
+            if (token_count != NULL_TOKEN_LIST) {
+
+                final String[] tokens = new String[token_count];
+                for (int j = 0; j < token_count; j++) {
+                    tokens[j] = SectionedFile.readString(section);
+                }
+                token_lists[i] = TokenList.fromTokens(Arrays.asList(tokens));
+            }
+        }
+
+        return new MappedClassifications(new MappedStringTable(in.getSection(name + DATA_SECTION_SUFFIX)), codes, confidences, details, token_lists);
+    }
+
+    /**
+     * Gets the number of known data.
+     *
+     * @return the number of known data
+     */
+    public int size() {
+
+        return data.size();
+    }
+
+    /**
+     * Gets the known data at the given index.
+     *
+     * @param index the index of the data
+     * @return the data
+     */
+    public String getData(final int index) {
+
+        return data.getString(index);
+    }
+
+    /**
+     * Gets the classification of the known data at the given index.
+     *
+     * @param index the index of the data
+     * @return a new classification of the data
+     */
+    public Classification getClassification(final int index) {
+
+        return newClassification(data.getValue(index), getData(index));
+    }
+
+    /**
+     * Gets the classification of the given data.
+     *
+     * @param data the data
+     * @return a new classification of the data, or {@code null} if the data is not known
+     */
+    public Classification get(final String data) {
+
+        final int index = this.data.indexOf(data);
+        return index == MappedStringTable.NOT_FOUND ? null : newClassification(this.data.getValue(index), data);
+    }
+
+    /**
+     * Reads all the classifications into a map.
+     *
+     * @return a map from each known data to its classification
+     */
+    public HashMap<String, Classification> toMap() {
+
+        final HashMap<String, Classification> map = new HashMap<>();
+        for (int i = 0; i < size(); i++) {
+            map.put(getData(i), getClassification(i));
+        }
+        return map;
+    }
+
+    /**
+     * Reads all the classifications into a compact table.
+     *
+     * @return the classifications of the known data
+     */
+    public CompactClassifications toCompactClassifications() {
+
+        final CompactClassifications classifications = new CompactClassifications(size());
+
+        final int[] classification_ids = new int[codes.length];
+        for (int index = 0; index < codes.length; index++) {
+            classification_ids[index] = token_lists[index] != null ? classifications.holdClassification(new Classification(codes[index], token_lists[index], confidences[index], details[index])) : classifications.getClassificationId(codes[index], confidences[index], details[index]);
+        }
+        for (int i = 0; i < size(); i++) {
+            classifications.put(getData(i), classification_ids[data.getValue(i)]);
+        }
+        return classifications;
+    }
+
+    private Classification newClassification(final int classification_index, final String data) {
+
+        if (token_lists[classification_index] != null) {
+            return new Classification(codes[classification_index], token_lists[classification_index], confidences[classification_index], details[classification_index]);
+        }
+        return Classification.withTokensOf(codes[classification_index], data, confidences[classification_index], details[classification_index]);
+    }
+}
@@ -21,9 +21,15 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.analysis.Str
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util.Validators;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.SectionedFile;
 import uk.ac.standrews.cs.utilities.tables.ConfidenceIntervals;
 import uk.ac.standrews.cs.utilities.tables.Means;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -33,6 +39,8 @@ public abstract class SingleClassifier extends Classifier {
     private static final Logger LOGGER = Logger.getLogger(SingleClassifier.class.getName());
 
     private static final int INTERNAL_EVALUATION_REPETITIONS = 3;
+    private static final String CONFIDENCES_SECTION = "confidences";
+
     private Map<String, Double> confidence_map = new HashMap<>();
 
     public final void trainAndEvaluate(final Bucket bucket, final double internal_training_ratio, final Random random) {
@@ -70,6 +78,11 @@ public abstract class SingleClassifier extends Classifier {
         return classify(bucket, true);
     }
 
+    public Bucket classify(final Bucket bucket, final Bucket classified) {
+
+        return classify(bucket, classified, true);
+    }
+
     protected void setConfidence(Classification classification, boolean set_confidence) {
 
         if (set_confidence)
@@ -150,6 +163,66 @@ public abstract class SingleClassifier extends Classifier {
         return new Metrics(confusion_matrix);
     }
 
+    /**
+     * Writes the per-class confidences of this classifier, for use by subclasses that are
+     * {@link uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.Mappable mappable}.
+     *
+     * @param out the file to which to write
+     * @throws IOException if the confidences cannot be written
+     */
+    protected void writeConfidences(final SectionedFile.Writer out) throws IOException {
+
+        out.addMappedSection(CONFIDENCES_SECTION, section -> {
+
+            section.writeInt(confidence_map.size());
+            for (Map.Entry<String, Double> entry : confidence_map.entrySet()) {
+                SectionedFile.writeString(section, entry.getKey());
+                section.writeDouble(entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * Reads the per-class confidences written by {@link #writeConfidences(SectionedFile.Writer)}.
+     *
+     * @param in the file from which to read
+     * @throws IOException if the confidences cannot be read
+     */
+    protected void readConfidences(final SectionedFile in) throws IOException {
+
+        final ByteBuffer section = in.getSection(CONFIDENCES_SECTION);
+        final int size = section.getInt();
+
+        confidence_map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            final String code = SectionedFile.readString(section);
+            confidence_map.put(code, section.getDouble());
+        }
+    }
+
+    /**
+     * Writes the per-class confidences of this classifier, for use by subclasses that are
+     * {@link uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable binary serializable}.
+     *
+     * @param out the stream to which to write
+     * @throws IOException if the confidences cannot be written
+     */
+    protected void writeConfidences(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeStringToDoubleMap(out, confidence_map);
+    }
+
+    /**
+     * Reads the per-class confidences written by {@link #writeConfidences(DataOutputStream)}.
+     *
+     * @param in the stream from which to read
+     * @throws IOException if the confidences cannot be read
+     */
+    protected void readConfidences(final DataInputStream in) throws IOException {
+
+        confidence_map = BinaryCodec.readStringToDoubleMap(in);
+    }
+
     public abstract void trainModel(final Bucket bucket);
 
     protected abstract void clearModel();
@@ -20,7 +20,12 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.C
 import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.SingleClassifier;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 import java.util.logging.*;
@@ -32,10 +37,11 @@ import java.util.stream.Collectors;
  * @author Masih Hajiarab Derkani
  * @author Graham Kirby
  */
-public class EnsembleClassifier extends Classifier {
+public class EnsembleClassifier extends Classifier implements BinarySerializable {
 
     private static final long serialVersionUID = 6432371860423757296L;
     private static final Logger LOGGER = Logger.getLogger(EnsembleClassifier.class.getName());
+    private static final int BINARY_VERSION = 1;
 
     private List<SingleClassifier> classifiers;
     private StringSimilarityGroupWithSharedState group;
@@ -156,6 +162,33 @@ public class EnsembleClassifier extends Classifier {
         return Objects.hash(classifiers, resolution_strategy);
     }
 
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+
+        out.writeInt(classifiers.size());
+        for (SingleClassifier classifier : classifiers) {
+            BinaryCodec.writeObject(out, classifier);
+        }
+        BinaryCodec.writeObject(out, group);
+        BinaryCodec.writeObject(out, resolution_strategy);
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, EnsembleClassifier.class, BINARY_VERSION);
+
+        final int size = in.readInt();
+        classifiers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            classifiers.add(BinaryCodec.readObject(in, SingleClassifier.class));
+        }
+        group = BinaryCodec.readObject(in, StringSimilarityGroupWithSharedState.class);
+        resolution_strategy = BinaryCodec.readObject(in, ResolutionStrategy.class);
+    }
+
     /**
      * Captures the strategy by which to resolve a single classification from multiple classifications.
      */
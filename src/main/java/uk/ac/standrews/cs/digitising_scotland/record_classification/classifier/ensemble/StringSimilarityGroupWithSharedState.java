@@ -19,14 +19,22 @@ package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.
 import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.string_similarity.StringSimilarityClassifier;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-public class StringSimilarityGroupWithSharedState implements Serializable {
+public class StringSimilarityGroupWithSharedState implements Serializable, BinarySerializable {
 
     private static final long serialVersionUID = 2905598266409106509L;
+    private static final int BINARY_VERSION = 1;
+
     private List<StringSimilarityClassifier> classifiers;
 
     /**
@@ -64,6 +72,38 @@ public class StringSimilarityGroupWithSharedState implements Serializable {
         deleteOtherClassifierStates();
     }
 
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+
+        // The shared state is written once, with the first classifier.
+        prepareForSerialization();
+        try {
+            out.writeInt(classifiers.size());
+            for (StringSimilarityClassifier classifier : classifiers) {
+                BinaryCodec.writeObject(out, classifier);
+            }
+        }
+        finally {
+            recoverFromSerialization();
+        }
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, StringSimilarityGroupWithSharedState.class, BINARY_VERSION);
+
+        final int size = in.readInt();
+        classifiers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            classifiers.add(BinaryCodec.readObject(in, StringSimilarityClassifier.class));
+        }
+
+        recoverFromSerialization();
+    }
+
     private void setOtherClassifierStatesToFirst() {
 
         Map<String, Classification> state_of_first_classifier = classifiers.get(0).readState();
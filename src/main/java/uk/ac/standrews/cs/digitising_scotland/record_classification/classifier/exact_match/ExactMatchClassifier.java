@@ -16,24 +16,38 @@
  */
 package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.exact_match;
 
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.CompactClassifications;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.MappedClassifications;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.SingleClassifier;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Record;
-
-import java.util.HashMap;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.Mappable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.SectionedFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.Objects;
 import java.util.logging.*;
 
-public class ExactMatchClassifier extends SingleClassifier {
+public class ExactMatchClassifier extends SingleClassifier implements Mappable, BinarySerializable {
 
     /** The description of this classifier **/
     public static final String DESCRIPTION = "Classifies based on exact match with training data";
     
-    private static final long serialVersionUID = 7439350806549465200L;
+    private static final long serialVersionUID = -5180613958241640523L;
     private static final Logger LOGGER = Logger.getLogger(ExactMatchClassifier.class.getName());
+    private static final String KNOWN_CLASSIFICATIONS_SECTION = "known_classifications";
+    private static final int BINARY_VERSION = 1;
+
+    private CompactClassifications known_classifications;
 
-    private HashMap<String, Classification> known_classifications;
+    // Set instead of the known classifications when this classifier is loaded from a mapped file.
+    private transient MappedClassifications mapped_known_classifications;
 
     public ExactMatchClassifier() {
 
@@ -43,7 +57,8 @@ public class ExactMatchClassifier extends SingleClassifier {
     @Override
     public void clearModel() {
 
-        known_classifications = new HashMap<>();
+        known_classifications = new CompactClassifications();
+        mapped_known_classifications = null;
     }
 
     @Override
@@ -52,19 +67,53 @@ public class ExactMatchClassifier extends SingleClassifier {
         final int training_records_size = training_records.size();
         resetTrainingProgressIndicator(training_records_size);
 
+        if (getKnownClassifications().size() == 0) {
+            known_classifications = new CompactClassifications(training_records_size);
+        }
+
         for (Record record : training_records) {
             loadRecord(record);
             progressTrainingStep();
         }
     }
 
+    @Override
+    public boolean supportsIncrementalTraining() {
+
+        return true;
+    }
+
+    /**
+     * Merges the given records into the known classifications. The per-class confidences are left as they are, since
+     * the confidence of an exact match classification is constant: {@code 1.0} for any known data and {@code 0.0}
+     * otherwise.
+     *
+     * @param bucket the training data, which may include records this classifier has already been trained on
+     */
+    @Override
+    public void update(final Bucket bucket) {
+
+        final int known_count = getKnownClassifications().size();
+
+        LOGGER.info(() -> String.format("merging %d records...", bucket.size()));
+        trainModel(bucket);
+        LOGGER.info(() -> String.format("done; %d known classifications, of which %d are new.", getKnownClassifications().size(), getKnownClassifications().size() - known_count));
+    }
+
     @Override
     public Classification doClassify(final String data) {
 
-        final Classification exact_classification = known_classifications.get(data);
+        final Classification exact_classification = mapped_known_classifications != null ? mapped_known_classifications.get(data) : known_classifications.get(data);
         return exact_classification != null ? exact_classification : Classification.UNCLASSIFIED;
     }
 
+    @Override
+    public boolean supportsConcurrentClassification() {
+
+        // Classification only reads the known classifications.
+        return true;
+    }
+
     @Override
     public String getName() {
 
@@ -85,13 +134,13 @@ public class ExactMatchClassifier extends SingleClassifier {
         if (o == null || getClass() != o.getClass())
             return false;
         final ExactMatchClassifier that = (ExactMatchClassifier) o;
-        return Objects.equals(known_classifications, that.known_classifications);
+        return Objects.equals(getKnownClassifications(), that.getKnownClassifications());
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(known_classifications);
+        return Objects.hash(getKnownClassifications());
     }
 
     @Override
@@ -106,8 +155,56 @@ public class ExactMatchClassifier extends SingleClassifier {
         return code.equals(Classification.UNCLASSIFIED.getCode()) ? 0.0 : 1.0;
     }
 
+    @Override
+    public void writeSections(final SectionedFile.Writer out) throws IOException {
+
+        writeConfidences(out);
+        MappedClassifications.write(out, KNOWN_CLASSIFICATIONS_SECTION, getKnownClassifications());
+    }
+
+    @Override
+    public void readSections(final SectionedFile in) throws IOException {
+
+        readConfidences(in);
+        known_classifications = null;
+        mapped_known_classifications = MappedClassifications.read(in, KNOWN_CLASSIFICATIONS_SECTION);
+    }
+
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        writeConfidences(out);
+        getKnownClassifications().writeBinary(out);
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, ExactMatchClassifier.class, BINARY_VERSION);
+        readConfidences(in);
+        known_classifications = new CompactClassifications();
+        known_classifications.readBinary(in);
+        mapped_known_classifications = null;
+    }
+
     private void loadRecord(final Record record) {
 
-        known_classifications.put(record.getData(), record.getClassification());
+        getKnownClassifications().put(record.getData(), record.getClassification());
+    }
+
+    private CompactClassifications getKnownClassifications() {
+
+        if (mapped_known_classifications != null) {
+            known_classifications = mapped_known_classifications.toCompactClassifications();
+            mapped_known_classifications = null;
+        }
+        return known_classifications;
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+
+        getKnownClassifications();
+        out.defaultWriteObject();
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.logistic_regression;
+
+import org.apache.mahout.classifier.AbstractVectorClassifier;
+import org.apache.mahout.classifier.sgd.*;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.function.Functions;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.SectionedFile;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.List;
+
+/**
+ * The coefficients of a trained {@link CrossFoldLearner}, read on demand from memory-mapped sections of a
+ * {@link SectionedFile} rather than deserialized into a matrix per fold.
+ *
+ * The coefficients of each fold are held in their own section, in column-major order: the coefficients of the
+ * categories other than the first for the first feature, then those for the second feature, and so on. Feature vectors
+ * are sparse, so this lets a classification read the coefficients of each of its features from one contiguous run.
+ * Probabilities are computed as by the learner, so that a mapped model classifies exactly as the learner it was written
+ * from. Only the state needed for classification is kept, so a mapped model cannot be trained further.
+ */
+final class MappedCrossFoldModel extends AbstractVectorClassifier {
+
+    private static final String COEFFICIENTS_SECTION_PREFIX = "olr_coefficients.";
+
+    private final DoubleBuffer[] coefficients;
+    private final int category_count;
+    private final int feature_count;
+
+    private MappedCrossFoldModel(final DoubleBuffer[] coefficients, final int category_count, final int feature_count) {
+
+        this.coefficients = coefficients;
+        this.category_count = category_count;
+        this.feature_count = feature_count;
+    }
+
+    /**
+     * Writes the coefficients of each fold of the given learner as sections of a file. Any regularization that the
+     * learner would apply lazily to the coefficients of a feature when classifying is applied first.
+     *
+     * @param out the file to which to write
+     * @param learner the learner
+     * @throws IOException if the coefficients cannot be written
+     */
+    static void write(final SectionedFile.Writer out, final CrossFoldLearner learner) throws IOException {
+
+        final List<OnlineLogisticRegression> folds = learner.getModels();
+        final int unknown_category_count = learner.numCategories() - 1;
+        final int feature_count = learner.getNumFeatures();
+
+        final Vector all_features = new DenseVector(feature_count).assign(1);
+
+        for (int fold = 0; fold < folds.size(); fold++) {
+
+            final OnlineLogisticRegression model = folds.get(fold);
+            model.regularize(all_features);
+
+            out.addMappedSection(COEFFICIENTS_SECTION_PREFIX + fold, section -> {
+
+                for (int feature = 0; feature < feature_count; feature++) {
+                    for (int category = 0; category < unknown_category_count; category++) {
+                        section.writeDouble(model.getBeta().getQuick(category, feature));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads coefficients written by {@link #write(SectionedFile.Writer, CrossFoldLearner)}.
+     *
+     * @param in the file from which to read
+     * @param fold_count the number of folds of the learner
+     * @param category_count the number of categories of the learner
+     * @param feature_count the number of features of the learner
+     * @return the model
+     * @throws IOException if the coefficients cannot be read, or are not of the given dimensions
+     */
+    static MappedCrossFoldModel read(final SectionedFile in, final int fold_count, final int category_count, final int feature_count) throws IOException {
+
+        final DoubleBuffer[] coefficients = new DoubleBuffer[fold_count];
+
+        for (int fold = 0; fold < fold_count; fold++) {
+
+            // Sections are aligned to eight bytes, so their coefficients can be read in place.
+            coefficients[fold] = in.getSection(COEFFICIENTS_SECTION_PREFIX + fold).asDoubleBuffer();
+
+            if (coefficients[fold].remaining() != (long) (category_count - 1) * feature_count) {
+                throw new IOException("coefficients of fold " + fold + " do not match the dimensions of the model");
+            }
+        }
+        return new MappedCrossFoldModel(coefficients, category_count, feature_count);
+    }
+
+    /**
+     * Reads the coefficients of this model into a learner, so that the model can be persisted in other formats.
+     *
+     * @param prior the prior function of the learner
+     * @return the learner
+     */
+    CrossFoldLearner toCrossFoldLearner(final PriorFunction prior) {
+
+        final CrossFoldLearner learner = new CrossFoldLearner(coefficients.length, category_count, feature_count, prior);
+        final int unknown_category_count = category_count - 1;
+
+        for (int fold = 0; fold < coefficients.length; fold++) {
+
+            final OnlineLogisticRegression model = learner.getModels().get(fold);
+            for (int feature = 0; feature < feature_count; feature++) {
+                for (int category = 0; category < unknown_category_count; category++) {
+                    model.setBeta(category, feature, coefficients[fold].get(feature * unknown_category_count + category));
+                }
+            }
+        }
+        return learner;
+    }
+
+    @Override
+    public int numCategories() {
+
+        return category_count;
+    }
+
+    /**
+     * Computes the probabilities of the categories other than the first, averaged over the folds as
+     * {@link CrossFoldLearner#classify(Vector)} does.
+     *
+     * @param instance the feature vector to classify
+     * @return the probabilities of the categories other than the first
+     */
+    @Override
+    public Vector classify(final Vector instance) {
+
+        final Vector probabilities = new DenseVector(category_count - 1);
+        for (DoubleBuffer fold_coefficients : coefficients) {
+            probabilities.assign(classify(fold_coefficients, instance), Functions.plusMult(1.0 / coefficients.length));
+        }
+        return probabilities;
+    }
+
+    @Override
+    public double classifyScalar(final Vector instance) {
+
+        if (category_count != 2) {
+            throw new IllegalArgumentException("can only call classifyScalar with two categories");
+        }
+        return classify(instance).get(0);
+    }
+
+    private Vector classify(final DoubleBuffer fold_coefficients, final Vector instance) {
+
+        final int unknown_category_count = category_count - 1;
+        final double[] scores = new double[unknown_category_count];
+
+        // Features are summed in the order the instance yields them, as when the coefficient matrix is multiplied by it.
+        for (Vector.Element element : instance.nonZeroes()) {
+
+            final int start = element.index() * unknown_category_count;
+            final double value = element.get();
+
+            for (int category = 0; category < unknown_category_count; category++) {
+                scores[category] += fold_coefficients.get(start + category) * value;
+            }
+        }
+        return AbstractOnlineLogisticRegression.link(new DenseVector(scores, true));
+    }
+}
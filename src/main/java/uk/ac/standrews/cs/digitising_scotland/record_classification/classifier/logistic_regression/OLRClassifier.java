@@ -22,6 +22,11 @@ import org.apache.mahout.math.*;
 import org.apache.mahout.math.Vector;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.Mappable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.MappedStringTable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.SectionedFile;
 
 import java.io.*;
 import java.util.*;
@@ -33,7 +38,7 @@ import java.util.stream.*;
 /**
  * @author Masih Hajararab Derkani
  */
-public class OLRClassifier extends SingleClassifier implements Externalizable {
+public class OLRClassifier extends SingleClassifier implements Externalizable, BinarySerializable, Mappable {
 
     /** The default number of folds in cross-fold learner. **/
     public static final int DEFAULT_FOLDS = 4;
@@ -49,6 +54,10 @@ public class OLRClassifier extends SingleClassifier implements Externalizable {
     private static final int INTERCEPT_OFFSET = 1;
     private static final int INTERCEPT_VECTOR_INDEX = 0;
     private static final int INTERCEPT_INITIAL_VALUE = 1;
+    private static final int BINARY_VERSION = 1;
+
+    private static final String STATE_SECTION = "olr_state";
+    private static final String TOKENS_SECTION = "olr_tokens";
 
     private static final Logger LOGGER = Logger.getLogger(OLRClassifier.class.getName());
 
@@ -58,12 +67,16 @@ public class OLRClassifier extends SingleClassifier implements Externalizable {
     private final ConcurrentHashMap<String, Integer> classification_to_index;
     private final ConcurrentHashMap<Integer, String> index_to_classification;
     private final ConcurrentHashMap<String, Integer> token_to_index;
-    private final int folds;
-    private final int training_iteration;
+    private int folds;
+    private int training_iteration;
 
     private transient Optional<Random> random;
     private transient CrossFoldLearner model;
 
+    // The token indices and model of a classifier read from a mapped file, until they are needed in full.
+    private transient MappedStringTable mapped_token_to_index;
+    private transient MappedCrossFoldModel mapped_model;
+
     public OLRClassifier() {
 
         this(DEFAULT_FOLDS, DEFAULT_ITERATIONS_OVER_TRAINING_DATA);
@@ -95,8 +108,9 @@ public class OLRClassifier extends SingleClassifier implements Externalizable {
         }
         else {
 
-            final TokenList tokens = new TokenList(unclassified);
+            final TokenList tokens = TokenList.of(unclassified);
             final Vector vector = toFeatureVector(tokens);
+            final AbstractVectorClassifier model = mapped_model != null ? mapped_model : this.model;
             final Vector classification_probability_vector = model.classifyFull(vector);
             final int most_probable_classification_index = classification_probability_vector.maxValueIndex();
 
@@ -112,7 +126,7 @@ public class OLRClassifier extends SingleClassifier implements Externalizable {
         return classification;
     }
 
-    protected boolean isTrained() { return model != null; }
+    protected boolean isTrained() { return model != null || mapped_model != null; }
 
     @Override
     public void trainModel(final Bucket training_records) {
@@ -244,6 +258,8 @@ public class OLRClassifier extends SingleClassifier implements Externalizable {
     protected void clearModel() {
 
         model = null;
+        mapped_model = null;
+        mapped_token_to_index = null;
         token_to_index.clear();
         classification_to_index.clear();
         index_to_classification.clear();
@@ -267,18 +283,20 @@ public class OLRClassifier extends SingleClassifier implements Externalizable {
 
     int countFeatures() {return countUniqueTokens() + INTERCEPT_OFFSET;}
 
-    protected int countUniqueTokens() {return token_to_index.size();}
+    protected int countUniqueTokens() {return mapped_token_to_index != null ? mapped_token_to_index.size() : token_to_index.size();}
 
     private void setIntercept(final Vector vector) {vector.setQuick(INTERCEPT_VECTOR_INDEX, INTERCEPT_INITIAL_VALUE);}
 
     private boolean isTokenIndexed(final String token) {
 
-        return token_to_index.containsKey(token);
+        final MappedStringTable mapped_token_to_index = this.mapped_token_to_index;
+        return mapped_token_to_index != null ? mapped_token_to_index.indexOf(token) != MappedStringTable.NOT_FOUND : token_to_index.containsKey(token);
     }
 
     private Integer getIndexToken(String token) {
 
-        return token_to_index.get(token);
+        final MappedStringTable mapped_token_to_index = this.mapped_token_to_index;
+        return mapped_token_to_index != null ? mapped_token_to_index.getValue(mapped_token_to_index.indexOf(token)) : token_to_index.get(token);
     }
 
     protected int countCategories() {return classification_to_index.size();}
@@ -308,6 +326,7 @@ public class OLRClassifier extends SingleClassifier implements Externalizable {
     @Override
     public void writeExternal(final ObjectOutput out) throws IOException {
 
+        readMappedState();
         out.writeObject(classification_to_index);
         out.writeObject(index_to_classification);
         out.writeObject(token_to_index);
@@ -346,6 +365,170 @@ public class OLRClassifier extends SingleClassifier implements Externalizable {
         random = random_set ? Optional.of((Random) in.readObject()) : Optional.empty();
     }
 
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        readMappedState();
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        out.writeInt(folds);
+        out.writeInt(training_iteration);
+        writeConfidences(out);
+
+        // Indices are dense, so each map is written in index order and its indices are implied.
+        final int classification_count = index_to_classification.size();
+        out.writeInt(classification_count);
+        for (int index = 0; index < classification_count; index++) {
+            BinaryCodec.writeString(out, index_to_classification.get(index));
+        }
+
+        final String[] tokens = new String[token_to_index.size()];
+        token_to_index.forEach((token, index) -> tokens[index - INTERCEPT_OFFSET] = token);
+        out.writeInt(tokens.length);
+        for (String token : tokens) {
+            BinaryCodec.writeString(out, token);
+        }
+
+        final boolean trained = model != null;
+        out.writeBoolean(trained);
+        if (trained) {
+            model.write(out);
+        }
+        BinaryCodec.writeObject(out, random.orElse(null));
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, OLRClassifier.class, BINARY_VERSION);
+        folds = in.readInt();
+        training_iteration = in.readInt();
+        readConfidences(in);
+
+        clearModel();
+
+        final int classification_count = in.readInt();
+        for (int index = 0; index < classification_count; index++) {
+            final String code = StringInterner.intern(BinaryCodec.readString(in));
+            index_to_classification.put(index, code);
+            classification_to_index.put(code, index);
+        }
+        next_classification_index.set(classification_count);
+
+        final int token_count = in.readInt();
+        for (int index = 0; index < token_count; index++) {
+            token_to_index.put(BinaryCodec.readString(in), index + INTERCEPT_OFFSET);
+        }
+        next_token_index.set(token_count + INTERCEPT_OFFSET);
+
+        if (in.readBoolean()) {
+            model = new CrossFoldLearner();
+            model.readFields(in);
+        }
+        random = Optional.ofNullable(BinaryCodec.readObject(in, Random.class));
+    }
+
+    /**
+     * Writes the token indices of this classifier as a {@link MappedStringTable}, and the coefficients of its model as
+     * {@link MappedCrossFoldModel mapped coefficients}, so that neither is read into the heap when the classifier is
+     * loaded. The classification codes, of which there are few, are written with the rest of the state.
+     *
+     * @param out the file to which to write
+     * @throws IOException if the state cannot be written
+     */
+    @Override
+    public void writeSections(final SectionedFile.Writer out) throws IOException {
+
+        readMappedState();
+        writeConfidences(out);
+
+        final boolean trained = model != null;
+        out.addSection(STATE_SECTION, section -> {
+
+            BinaryCodec.writeVersion(section, BINARY_VERSION);
+            section.writeInt(folds);
+            section.writeInt(training_iteration);
+
+            final int classification_count = index_to_classification.size();
+            section.writeInt(classification_count);
+            for (int index = 0; index < classification_count; index++) {
+                BinaryCodec.writeString(section, index_to_classification.get(index));
+            }
+
+            section.writeBoolean(trained);
+            if (trained) {
+                section.writeInt(model.getModels().size());
+                section.writeInt(model.numCategories());
+            }
+            BinaryCodec.writeObject(section, random.orElse(null));
+        });
+
+        out.addMappedSection(TOKENS_SECTION, section -> MappedStringTable.write(section, token_to_index));
+
+        if (trained) {
+            MappedCrossFoldModel.write(out, model);
+        }
+    }
+
+    @Override
+    public void readSections(final SectionedFile in) throws IOException {
+
+        readConfidences(in);
+        clearModel();
+
+        int fold_count = 0;
+        int category_count = 0;
+
+        try (final DataInputStream section = new DataInputStream(new BufferedInputStream(in.openSection(STATE_SECTION)))) {
+
+            BinaryCodec.readVersion(section, OLRClassifier.class, BINARY_VERSION);
+            folds = section.readInt();
+            training_iteration = section.readInt();
+
+            final int classification_count = section.readInt();
+            for (int index = 0; index < classification_count; index++) {
+                final String code = StringInterner.intern(BinaryCodec.readString(section));
+                index_to_classification.put(index, code);
+                classification_to_index.put(code, index);
+            }
+            next_classification_index.set(classification_count);
+
+            if (section.readBoolean()) {
+                fold_count = section.readInt();
+                category_count = section.readInt();
+            }
+            random = Optional.ofNullable(BinaryCodec.readObject(section, Random.class));
+        }
+
+        mapped_token_to_index = new MappedStringTable(in.getSection(TOKENS_SECTION));
+        next_token_index.set(mapped_token_to_index.size() + INTERCEPT_OFFSET);
+
+        if (fold_count > 0) {
+            mapped_model = MappedCrossFoldModel.read(in, fold_count, category_count, countFeatures());
+        }
+    }
+
+    /**
+     * Reads the token indices and model of a classifier read from a mapped file into the heap, so that they can be
+     * persisted in other formats.
+     */
+    private void readMappedState() {
+
+        final MappedStringTable mapped_token_to_index = this.mapped_token_to_index;
+        if (mapped_token_to_index != null) {
+
+            for (int index = 0; index < mapped_token_to_index.size(); index++) {
+                token_to_index.put(StringInterner.intern(mapped_token_to_index.getString(index)), mapped_token_to_index.getValue(index));
+            }
+            this.mapped_token_to_index = null;
+        }
+
+        final MappedCrossFoldModel mapped_model = this.mapped_model;
+        if (mapped_model != null) {
+            model = mapped_model.toCrossFoldLearner(new L2());
+            this.mapped_model = null;
+        }
+    }
+
     private class OnlineTrainingRecord {
 
         protected final long id;
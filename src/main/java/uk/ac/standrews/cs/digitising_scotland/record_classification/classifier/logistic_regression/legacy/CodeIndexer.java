@@ -17,7 +17,12 @@
 package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.logistic_regression.legacy;
 
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Record;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
@@ -30,9 +35,10 @@ import java.util.Map;
  *
  * @author jkc25, frjd2
  */
-final class CodeIndexer implements Serializable {
+final class CodeIndexer implements Serializable, BinarySerializable {
 
     private static final long serialVersionUID = 3073583599428985116L;
+    private static final int BINARY_VERSION = 1;
 
     /**
      * Maps UID's to codes.
@@ -133,6 +139,35 @@ final class CodeIndexer implements Serializable {
         currentMaxID++;
     }
 
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        out.writeInt(currentMaxID);
+        out.writeInt(idToCodeMap.size());
+        for (Map.Entry<Integer, String> entry : idToCodeMap.entrySet()) {
+            out.writeInt(entry.getKey());
+            BinaryCodec.writeString(out, entry.getValue());
+        }
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, CodeIndexer.class, BINARY_VERSION);
+        currentMaxID = in.readInt();
+
+        final int size = in.readInt();
+        idToCodeMap = new HashMap<>();
+        codeToIDMap = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            final int id = in.readInt();
+            final String code = BinaryCodec.readString(in);
+            idToCodeMap.put(id, code);
+            codeToIDMap.put(code, id);
+        }
+    }
+
     @Override
     public String toString() {
 
@@ -24,7 +24,12 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Record;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenList;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -34,10 +39,11 @@ import java.util.List;
  * @author Jamie Carson
  * @author Graham Kirby
  */
-public class LegacyOLRClassifier extends SingleClassifier {
+public class LegacyOLRClassifier extends SingleClassifier implements BinarySerializable {
 
     private static final long serialVersionUID = -2561454096763303789L;
     private static final double STATIC_CONFIDENCE = 0.89;
+    private static final int BINARY_VERSION = 1;
 
     private OLRCrossFold model;
     private String single_code;
@@ -101,7 +107,7 @@ public class LegacyOLRClassifier extends SingleClassifier {
             return Classification.UNCLASSIFIED;
         }
 
-        TokenList token_list = new TokenList(data);
+        TokenList token_list = TokenList.of(data);
 
         if (single_code != null) {
             return new Classification(single_code, token_list, STATIC_CONFIDENCE, null);
@@ -120,6 +126,26 @@ public class LegacyOLRClassifier extends SingleClassifier {
         return "Classifies using online logistic regression";
     }
 
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        writeConfidences(out);
+        BinaryCodec.writeString(out, single_code);
+        BinaryCodec.writeObject(out, vector_factory);
+        BinaryCodec.writeObject(out, model);
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, LegacyOLRClassifier.class, BINARY_VERSION);
+        readConfidences(in);
+        single_code = BinaryCodec.readString(in);
+        vector_factory = BinaryCodec.readObject(in, VectorFactory.class);
+        model = BinaryCodec.readObject(in, OLRCrossFold.class);
+    }
+
     private ArrayList<NamedVector> getTrainingVectors(final Bucket bucket) {
 
         ArrayList<NamedVector> trainingVectorList = new ArrayList<>();
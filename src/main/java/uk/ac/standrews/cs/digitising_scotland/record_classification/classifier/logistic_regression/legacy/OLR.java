@@ -16,13 +16,19 @@
  */
 package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.logistic_regression.legacy;
 
+import org.apache.mahout.math.DenseMatrix;
 import org.apache.mahout.math.DenseVector;
 import org.apache.mahout.math.Matrix;
 import org.apache.mahout.math.NamedVector;
 import org.apache.mahout.math.Vector;
 import org.apache.mahout.math.Vector.Element;
 import org.apache.mahout.math.function.Functions;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -30,9 +36,10 @@ import java.util.concurrent.atomic.AtomicLong;
 /**
  * An online logistic regression model.
  */
-class OLR implements Serializable {
+class OLR implements Serializable, BinarySerializable {
 
     private static final long serialVersionUID = 4157757308558382483L;
+    private static final int BINARY_VERSION = 1;
 
     /**
      * The minimum permitted value for the log likelihood.
@@ -110,6 +117,61 @@ class OLR implements Serializable {
         updateCounts(instance);
     }
 
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        out.writeInt(number_of_categories);
+
+        final DenseMatrix matrix = beta.getMatrix();
+        final int rows = matrix.numRows();
+        final int columns = matrix.numCols();
+        final double[] values = new double[rows * columns];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                values[row * columns + column] = matrix.getQuick(row, column);
+            }
+        }
+        out.writeInt(rows);
+        out.writeInt(columns);
+        BinaryCodec.writeDoubles(out, values);
+
+        out.writeInt(updateCounts.length);
+        for (int count : updateCounts) {
+            out.writeInt(count);
+        }
+        out.writeDouble(runningLogLikelihood);
+        out.writeInt(numLogLikelihoodSumUpdates.get());
+        out.writeLong(numTrained.get());
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, OLR.class, BINARY_VERSION);
+        number_of_categories = in.readInt();
+
+        final int rows = in.readInt();
+        final int columns = in.readInt();
+        final double[] values = BinaryCodec.readDoubles(in);
+        final DenseMatrix matrix = new DenseMatrix(rows, columns);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                matrix.setQuick(row, column, values[row * columns + column]);
+            }
+        }
+        beta = new SerializableDenseMatrix();
+        beta.setMatrix(matrix);
+
+        updateCounts = new int[in.readInt()];
+        for (int i = 0; i < updateCounts.length; i++) {
+            updateCounts[i] = in.readInt();
+        }
+        runningLogLikelihood = in.readDouble();
+        numLogLikelihoodSumUpdates = new AtomicInteger(in.readInt());
+        numTrained = new AtomicLong(in.readLong());
+    }
+
     private void init(SerializableDenseMatrix beta, int number_of_features, int number_of_categories) {
 
         this.beta = beta;
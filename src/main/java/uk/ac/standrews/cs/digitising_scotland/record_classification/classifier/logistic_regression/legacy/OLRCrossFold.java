@@ -21,7 +21,12 @@ import org.apache.mahout.math.NamedVector;
 import org.apache.mahout.math.Vector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.*;
@@ -33,9 +38,10 @@ import java.util.concurrent.*;
  * @author Fraser Dunlop
  * @author Jamie Carson
  */
-class OLRCrossFold implements Serializable {
+class OLRCrossFold implements Serializable, BinarySerializable {
 
     private static final long serialVersionUID = -749333540672669562L;
+    private static final int BINARY_VERSION = 1;
 
     /**
      * The Logger.
@@ -137,6 +143,25 @@ class OLRCrossFold implements Serializable {
         return classifier.classifyFull(instance);
     }
 
+    /**
+     * Writes the averaged classifier. The models from which it was averaged are only needed during training, so they
+     * are not written; further training starts from the {@link #averageBetaMatrix() averaged beta matrix}.
+     */
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        BinaryCodec.writeObject(out, classifier);
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, OLRCrossFold.class, BINARY_VERSION);
+        models = new ArrayList<>();
+        classifier = BinaryCodec.readObject(in, OLR.class);
+    }
+
     /**
      * Prepares the averaged OLR classifier for use by finding the top performing models and averaging their beta matrices.
      */
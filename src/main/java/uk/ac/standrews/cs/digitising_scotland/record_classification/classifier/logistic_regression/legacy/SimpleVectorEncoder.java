@@ -19,8 +19,11 @@ package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.
 import org.apache.mahout.math.Vector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
 
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
@@ -36,9 +39,10 @@ import java.util.Map;
  * to a unique index.
  * Created by fraserdunlop on 23/04/2014 at 19:37.
  */
-class SimpleVectorEncoder implements Serializable {
+class SimpleVectorEncoder implements Serializable, BinarySerializable {
 
     private static final long serialVersionUID = 6907477522599743250L;
+    private static final int BINARY_VERSION = 1;
 
     private static final transient Logger LOGGER = LoggerFactory.getLogger(SimpleVectorEncoder.class);
 
@@ -136,4 +140,29 @@ class SimpleVectorEncoder implements Serializable {
         }
 
     }
+
+    /**
+     * Writes the dictionary as its tokens in order of their indices.
+     */
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        out.writeInt(dictionary.size());
+        for (String token : dictionary.keySet()) {
+            BinaryCodec.writeString(out, token);
+        }
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, SimpleVectorEncoder.class, BINARY_VERSION);
+        initialize();
+
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            updateDictionary(BinaryCodec.readString(in));
+        }
+    }
 }
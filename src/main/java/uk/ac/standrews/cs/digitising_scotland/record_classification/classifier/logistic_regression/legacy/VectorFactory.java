@@ -23,7 +23,12 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Record;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenList;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -32,9 +37,10 @@ import java.util.List;
 /**
  * @author Fraser Dunlop
  */
-class VectorFactory implements Serializable {
+class VectorFactory implements Serializable, BinarySerializable {
 
     private static final long serialVersionUID = 5369887941319861994L;
+    private static final int BINARY_VERSION = 1;
 
     private CodeIndexer index;
 
@@ -92,7 +98,7 @@ class VectorFactory implements Serializable {
         if (record.getClassification() != Classification.UNCLASSIFIED) {
             vectors.addAll(createNamedVectorsWithGoldStandardCodes(record));
         } else {
-            vectors.addAll(createUnNamedVectorsFromDescription(new TokenList(record.getData())));
+            vectors.addAll(createUnNamedVectorsFromDescription(TokenList.of(record.getData())));
         }
         return vectors;
     }
@@ -108,6 +114,22 @@ class VectorFactory implements Serializable {
         return index;
     }
 
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        BinaryCodec.writeObject(out, index);
+        BinaryCodec.writeObject(out, vectorEncoder);
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, VectorFactory.class, BINARY_VERSION);
+        index = BinaryCodec.readObject(in, CodeIndexer.class);
+        vectorEncoder = BinaryCodec.readObject(in, SimpleVectorEncoder.class);
+    }
+
     private Collection<? extends NamedVector> createUnNamedVectorsFromDescription(final TokenList description) {
 
         List<NamedVector> vectorList = new ArrayList<>();
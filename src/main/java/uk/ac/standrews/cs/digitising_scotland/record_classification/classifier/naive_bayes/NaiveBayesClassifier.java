@@ -22,6 +22,8 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Record;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenList;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
 import uk.ac.standrews.cs.utilities.FileManipulation;
 import weka.classifiers.bayes.NaiveBayesMultinomialText;
 import weka.core.DenseInstance;
@@ -29,6 +31,8 @@ import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.converters.ArffLoader;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
@@ -36,10 +40,11 @@ import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.Set;
 
-public class NaiveBayesClassifier extends SingleClassifier {
+public class NaiveBayesClassifier extends SingleClassifier implements BinarySerializable {
 
     private static final long serialVersionUID = 5651409456204017931L;
     private static final int NUMBER_OF_ITERATIONS_OVER_DATA_DURING_TRAINING = 3;
+    private static final int BINARY_VERSION = 1;
 
     // With JSON serialisation, don't serialise NB object itself; its state is reconstructed from the instances.
     @JsonIgnore
@@ -95,7 +100,7 @@ public class NaiveBayesClassifier extends SingleClassifier {
             return Classification.UNCLASSIFIED;
 
         if (onlyOneClass())
-            return new Classification(single_class, new TokenList(data), 1.0, null);
+            return new Classification(single_class, TokenList.of(data), 1.0, null);
 
         try {
 
@@ -118,7 +123,7 @@ public class NaiveBayesClassifier extends SingleClassifier {
             instance.setClassValue(class_index);
             String class_name = instance.stringValue(1);
 
-            return new Classification(class_name, new TokenList(data), 0.0, null);
+            return new Classification(class_name, TokenList.of(data), 0.0, null);
 
         }
         catch (Exception e) {
@@ -132,6 +137,34 @@ public class NaiveBayesClassifier extends SingleClassifier {
         return "Classifies using Naive Bayes";
     }
 
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        writeConfidences(out);
+        BinaryCodec.writeString(out, single_class);
+
+        out.writeBoolean(instances != null);
+        if (instances != null) {
+            NaiveBayesModelCodec.writeHeader(out, instances);
+        }
+
+        out.writeBoolean(naive_bayes != null);
+        if (naive_bayes != null) {
+            NaiveBayesModelCodec.writeModel(out, naive_bayes);
+        }
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, NaiveBayesClassifier.class, BINARY_VERSION);
+        readConfidences(in);
+        single_class = BinaryCodec.readString(in);
+        instances = in.readBoolean() ? NaiveBayesModelCodec.readHeader(in) : null;
+        naive_bayes = in.readBoolean() ? NaiveBayesModelCodec.readModel(in, instances) : null;
+    }
+
     private void constructClassifierIfNecessary() throws Exception {
 
         instances.setClassIndex(instances.numAttributes() - 1);
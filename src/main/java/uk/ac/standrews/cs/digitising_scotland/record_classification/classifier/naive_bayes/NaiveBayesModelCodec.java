@@ -0,0 +1,238 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.naive_bayes;
+
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import weka.classifiers.bayes.NaiveBayesMultinomialText;
+import weka.core.Attribute;
+import weka.core.Instances;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Writes and reads the state of a Weka naive Bayes model and the instances header that describes its attributes.
+ *
+ * Weka exposes the word counts of the model only as protected fields, whose values are of a package-private type, so
+ * these are accessed reflectively.
+ */
+final class NaiveBayesModelCodec {
+
+    private static final byte STRING_ATTRIBUTE = 0;
+    private static final byte NOMINAL_ATTRIBUTE = 1;
+    private static final byte NUMERIC_ATTRIBUTE = 2;
+
+    private static final Field PROBABILITY_OF_CLASS = getField("m_probOfClass");
+    private static final Field WORDS_PER_CLASS = getField("m_wordsPerClass");
+    private static final Field PROBABILITY_OF_WORD_GIVEN_CLASS = getField("m_probOfWordGivenClass");
+    private static final Field UPDATE_COUNT = getField("m_t");
+    private static final Field NUMBER_OF_MODELS = getField("m_numModels");
+
+    private static final Constructor<?> COUNT_CONSTRUCTOR;
+    private static final Field COUNT_VALUE;
+
+    static {
+        try {
+            final Class<?> count_type = Class.forName(NaiveBayesMultinomialText.class.getName() + "$Count");
+            COUNT_CONSTRUCTOR = count_type.getDeclaredConstructor(double.class);
+            COUNT_CONSTRUCTOR.setAccessible(true);
+            COUNT_VALUE = count_type.getDeclaredField("m_count");
+            COUNT_VALUE.setAccessible(true);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private NaiveBayesModelCodec() { throw new UnsupportedOperationException(); }
+
+    /**
+     * Writes the name and attributes of the given instances, but not the instances themselves.
+     */
+    static void writeHeader(final DataOutputStream out, final Instances instances) throws IOException {
+
+        BinaryCodec.writeString(out, instances.relationName());
+        out.writeInt(instances.numAttributes());
+
+        for (int i = 0; i < instances.numAttributes(); i++) {
+
+            final Attribute attribute = instances.attribute(i);
+            BinaryCodec.writeString(out, attribute.name());
+
+            // The values of string attributes are only those seen so far, so they are not needed to classify.
+            if (attribute.isString()) {
+                out.writeByte(STRING_ATTRIBUTE);
+            }
+            else if (attribute.isNominal()) {
+                out.writeByte(NOMINAL_ATTRIBUTE);
+                out.writeInt(attribute.numValues());
+                for (int j = 0; j < attribute.numValues(); j++) {
+                    BinaryCodec.writeString(out, attribute.value(j));
+                }
+            }
+            else if (attribute.isNumeric()) {
+                out.writeByte(NUMERIC_ATTRIBUTE);
+            }
+            else {
+                throw new IOException("unsupported attribute type of " + attribute.name());
+            }
+        }
+    }
+
+    static Instances readHeader(final DataInputStream in) throws IOException {
+
+        final String relation_name = BinaryCodec.readString(in);
+        final int attribute_count = in.readInt();
+        final ArrayList<Attribute> attributes = new ArrayList<>(attribute_count);
+
+        for (int i = 0; i < attribute_count; i++) {
+
+            final String name = BinaryCodec.readString(in);
+            final byte type = in.readByte();
+
+            switch (type) {
+
+                case STRING_ATTRIBUTE:
+                    attributes.add(new Attribute(name, (List<String>) null));
+                    break;
+
+                case NOMINAL_ATTRIBUTE:
+                    final int value_count = in.readInt();
+                    final List<String> values = new ArrayList<>(value_count);
+                    for (int j = 0; j < value_count; j++) {
+                        values.add(BinaryCodec.readString(in));
+                    }
+                    attributes.add(new Attribute(name, values));
+                    break;
+
+                case NUMERIC_ATTRIBUTE:
+                    attributes.add(new Attribute(name));
+                    break;
+
+                default:
+                    throw new IOException("unknown attribute type: " + type);
+            }
+        }
+
+        final Instances instances = new Instances(relation_name, attributes, 0);
+        instances.setClassIndex(attribute_count - 1);
+        return instances;
+    }
+
+    /**
+     * Writes the options and word counts of the given model.
+     */
+    static void writeModel(final DataOutputStream out, final NaiveBayesMultinomialText model) throws IOException {
+
+        final String[] options = model.getOptions();
+        out.writeInt(options.length);
+        for (String option : options) {
+            BinaryCodec.writeString(out, option);
+        }
+
+        try {
+            BinaryCodec.writeDoubles(out, (double[]) PROBABILITY_OF_CLASS.get(model));
+            BinaryCodec.writeDoubles(out, (double[]) WORDS_PER_CLASS.get(model));
+            out.writeDouble(UPDATE_COUNT.getDouble(model));
+            out.writeInt(NUMBER_OF_MODELS.getInt(model));
+
+            @SuppressWarnings("unchecked")
+            final Map<Integer, Map<String, ?>> word_counts = (Map<Integer, Map<String, ?>>) PROBABILITY_OF_WORD_GIVEN_CLASS.get(model);
+
+            out.writeInt(word_counts.size());
+            for (Map.Entry<Integer, Map<String, ?>> class_word_counts : word_counts.entrySet()) {
+
+                out.writeInt(class_word_counts.getKey());
+                out.writeInt(class_word_counts.getValue().size());
+
+                for (Map.Entry<String, ?> word_count : class_word_counts.getValue().entrySet()) {
+                    BinaryCodec.writeString(out, word_count.getKey());
+                    out.writeDouble(COUNT_VALUE.getDouble(word_count.getValue()));
+                }
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new IOException("cannot access naive Bayes model state", e);
+        }
+    }
+
+    /**
+     * Reads a model written by {@link #writeModel(DataOutputStream, NaiveBayesMultinomialText)}, whose attributes are
+     * described by the given instances header.
+     */
+    static NaiveBayesMultinomialText readModel(final DataInputStream in, final Instances header) throws IOException {
+
+        final String[] options = new String[in.readInt()];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = BinaryCodec.readString(in);
+        }
+
+        try {
+            final NaiveBayesMultinomialText model = new NaiveBayesMultinomialText();
+            model.setOptions(options);
+
+            // Building on the empty header initialises the state that is not written, such as the tokenizer.
+            model.buildClassifier(header);
+
+            PROBABILITY_OF_CLASS.set(model, BinaryCodec.readDoubles(in));
+            WORDS_PER_CLASS.set(model, BinaryCodec.readDoubles(in));
+            UPDATE_COUNT.setDouble(model, in.readDouble());
+            NUMBER_OF_MODELS.setInt(model, in.readInt());
+
+            final int class_count = in.readInt();
+            final Map<Integer, LinkedHashMap<String, Object>> word_counts = new HashMap<>();
+
+            for (int i = 0; i < class_count; i++) {
+
+                final int class_index = in.readInt();
+                final int word_count = in.readInt();
+                final LinkedHashMap<String, Object> class_word_counts = new LinkedHashMap<>();
+
+                for (int j = 0; j < word_count; j++) {
+                    final String word = BinaryCodec.readString(in);
+                    class_word_counts.put(word, COUNT_CONSTRUCTOR.newInstance(in.readDouble()));
+                }
+                word_counts.put(class_index, class_word_counts);
+            }
+            PROBABILITY_OF_WORD_GIVEN_CLASS.set(model, word_counts);
+
+            return model;
+        }
+        catch (IOException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException("cannot restore naive Bayes model", e);
+        }
+    }
+
+    private static Field getField(final String name) {
+
+        try {
+            final Field field = NaiveBayesMultinomialText.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        }
+        catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
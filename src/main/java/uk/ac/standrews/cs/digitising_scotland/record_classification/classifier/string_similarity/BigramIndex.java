@@ -0,0 +1,611 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.string_similarity;
+
+import org.simmetrics.metrics.DiceSimilarity;
+import org.simmetrics.metrics.JaccardSimilarity;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.MappedStringTable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.SectionedFile;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * An inverted index from the bigrams of known data, as given by {@link SetMetricAdapter#getBigrams(String)}, to the
+ * known data that contain them. It finds the known data most similar to given data by Jaccard or Dice similarity of
+ * their bigrams, without comparing the data with every known data.
+ *
+ * Candidates are generated from the posting lists of the bigrams of the data, rarest first. Once the bigrams remaining
+ * could not give a new candidate a similarity as high as the best found so far, no further candidates are generated
+ * (prefix filtering), and known data whose number of bigrams rules out such a similarity are skipped (size filtering).
+ * The remaining candidates are compared with the data by the similarity metric itself, in decreasing order of their
+ * similarity bounds, so the result is the same as comparing the data with every known data in order.
+ *
+ * An index can be written as sections of a {@link SectionedFile} alongside its known data, and read from them without
+ * being rebuilt. The bigrams are then held in a {@link MappedStringTable}, and the number of bigrams of each known data
+ * and the posting lists are read in place from a mapped section.
+ *
+ * This class is thread-safe once built.
+ */
+final class BigramIndex {
+
+    private static final int NOT_FOUND = -1;
+
+    private static final String BIGRAMS_SECTION_SUFFIX = ".bigrams";
+    private static final String POSTINGS_SECTION_SUFFIX = ".postings";
+    private static final int POSTINGS_HEADER_SIZE = 3;
+
+    // Allows for bounds that are computed exactly but compared with similarities rounded to floats.
+    private static final double EPSILON = 1e-5;
+
+    // The number of candidates compared before prefix filtering starts, so that it starts with a useful bound.
+    private static final int SEED_CANDIDATES = 16;
+
+    /** The set similarities for which an index gives the same results as exhaustive comparison. */
+    enum SetSimilarity {
+
+        JACCARD(JaccardSimilarity.class) {
+            @Override
+            double getUpperBound(final int intersection, final int size, final int other_size) {
+
+                return (double) intersection / (size + other_size - intersection);
+            }
+        },
+
+        DICE(DiceSimilarity.class) {
+            @Override
+            double getUpperBound(final int intersection, final int size, final int other_size) {
+
+                return 2.0 * intersection / (size + other_size);
+            }
+        };
+
+        private final String metric_name;
+
+        SetSimilarity(final Class<?> metric_type) {
+
+            metric_name = metric_type.getName();
+        }
+
+        /**
+         * Gets the similarity of sets with the given sizes, if they share at most the given number of elements.
+         * Both of the sizes must be at least the intersection, and at least one must be positive.
+         */
+        abstract double getUpperBound(int intersection, int size, int other_size);
+
+        /**
+         * Gets the set similarity measured by the given metric.
+         *
+         * @param metric the metric
+         * @return the set similarity, or {@code null} if the metric does not measure a supported set similarity
+         */
+        static SetSimilarity of(final SimilarityMetric metric) {
+
+            if (metric instanceof StringSimilarityMetricWrapper) {
+                for (SetSimilarity similarity : values()) {
+                    if (similarity.metric_name.equals(metric.getName())) {
+                        return similarity;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private final SimilarityMetric metric;
+    private final SetSimilarity similarity;
+    private final IntFunction<String> known_data;
+    private final Object source;
+
+    // The number of distinct bigrams of each known data.
+    private final IntBuffer bigram_counts;
+
+    // The number of each bigram, and the known data containing each numbered bigram in increasing order, starting at its offset.
+    private final ToIntFunction<String> bigram_numbers;
+    private final IntBuffer posting_offsets;
+    private final IntBuffer postings;
+
+    // The first known data without bigrams, which is as similar as possible to any data without bigrams.
+    private final int first_without_bigrams;
+
+    // Shared by all threads, so that there are only as many as there are concurrent classifications.
+    private final Queue<Candidates> candidates = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Builds an index of the given known data.
+     *
+     * @param metric the metric that gives the similarity of a pair of strings
+     * @param similarity the set similarity measured by the metric
+     * @param size the number of known data
+     * @param known_data the known data at each index, in the order in which they would otherwise be compared
+     * @param source the known classifications from which the known data are taken
+     */
+    BigramIndex(final SimilarityMetric metric, final SetSimilarity similarity, final int size, final IntFunction<String> known_data, final Object source) {
+
+        this(metric, similarity, known_data, source, new Postings(size, known_data));
+    }
+
+    private BigramIndex(final SimilarityMetric metric, final SetSimilarity similarity, final IntFunction<String> known_data, final Object source, final Postings postings) {
+
+        this(metric, similarity, known_data, source, IntBuffer.wrap(postings.bigram_counts), bigram -> postings.bigram_numbers.getOrDefault(bigram, NOT_FOUND), IntBuffer.wrap(postings.posting_offsets), IntBuffer.wrap(postings.postings), postings.first_without_bigrams);
+    }
+
+    private BigramIndex(final SimilarityMetric metric, final SetSimilarity similarity, final IntFunction<String> known_data, final Object source, final IntBuffer bigram_counts, final ToIntFunction<String> bigram_numbers, final IntBuffer posting_offsets, final IntBuffer postings, final int first_without_bigrams) {
+
+        this.metric = metric;
+        this.similarity = similarity;
+        this.known_data = known_data;
+        this.source = source;
+        this.bigram_counts = bigram_counts;
+        this.bigram_numbers = bigram_numbers;
+        this.posting_offsets = posting_offsets;
+        this.postings = postings;
+        this.first_without_bigrams = first_without_bigrams;
+    }
+
+    /**
+     * Writes an index of the given known data as sections of a file.
+     *
+     * @param out the file to which to write
+     * @param name the name that prefixes the names of the sections
+     * @param size the number of known data
+     * @param known_data the known data at each index, in the order in which they are held in the file
+     * @throws IOException if the index cannot be written
+     */
+    static void write(final SectionedFile.Writer out, final String name, final int size, final IntFunction<String> known_data) throws IOException {
+
+        final Postings postings = new Postings(size, known_data);
+
+        out.addMappedSection(name + BIGRAMS_SECTION_SUFFIX, section -> MappedStringTable.write(section, postings.bigram_numbers));
+        out.addMappedSection(name + POSTINGS_SECTION_SUFFIX, section -> {
+
+            section.writeInt(size);
+            section.writeInt(postings.first_without_bigrams);
+            section.writeInt(postings.bigram_numbers.size());
+
+            for (int bigram_count : postings.bigram_counts) {
+                section.writeInt(bigram_count);
+            }
+            for (int offset : postings.posting_offsets) {
+                section.writeInt(offset);
+            }
+            for (int index : postings.postings) {
+                section.writeInt(index);
+            }
+        });
+    }
+
+    /**
+     * Checks whether an index was written with the given name by {@link #write(SectionedFile.Writer, String, int, IntFunction)}.
+     *
+     * @param in the file
+     * @param name the name that prefixes the names of the sections
+     * @return {@code true} if the file holds an index of the given name
+     */
+    static boolean isWritten(final SectionedFile in, final String name) {
+
+        return in.hasSection(name + POSTINGS_SECTION_SUFFIX);
+    }
+
+    /**
+     * Reads an index written by {@link #write(SectionedFile.Writer, String, int, IntFunction)}.
+     *
+     * @param in the file from which to read
+     * @param name the name that prefixes the names of the sections
+     * @param metric the metric that gives the similarity of a pair of strings
+     * @param similarity the set similarity measured by the metric
+     * @param size the number of known data
+     * @param known_data the known data at each index, in the order in which they were written
+     * @param source the known classifications from which the known data are taken
+     * @return the index
+     * @throws IOException if the index cannot be read, or is not of the given number of known data
+     */
+    static BigramIndex read(final SectionedFile in, final String name, final SimilarityMetric metric, final SetSimilarity similarity, final int size, final IntFunction<String> known_data, final Object source) throws IOException {
+
+        final MappedStringTable bigrams = new MappedStringTable(in.getSection(name + BIGRAMS_SECTION_SUFFIX));
+
+        // Sections are aligned to eight bytes, so their integers can be read in place.
+        final IntBuffer section = in.getSection(name + POSTINGS_SECTION_SUFFIX).asIntBuffer();
+
+        final int bigram_type_count = section.get(2);
+        if (section.get(0) != size || bigram_type_count != bigrams.size()) {
+            throw new IOException("bigram index does not match the known data");
+        }
+
+        final IntBuffer bigram_counts = slice(section, POSTINGS_HEADER_SIZE, size);
+        final IntBuffer posting_offsets = slice(section, POSTINGS_HEADER_SIZE + size, bigram_type_count + 1);
+        final IntBuffer postings = slice(section, POSTINGS_HEADER_SIZE + size + bigram_type_count + 1, posting_offsets.get(bigram_type_count));
+
+        final ToIntFunction<String> bigram_numbers = bigram -> {
+            final int index = bigrams.indexOf(bigram);
+            return index == MappedStringTable.NOT_FOUND ? NOT_FOUND : bigrams.getValue(index);
+        };
+
+        return new BigramIndex(metric, similarity, known_data, source, bigram_counts, bigram_numbers, posting_offsets, postings, section.get(1));
+    }
+
+    private static IntBuffer slice(final IntBuffer buffer, final int start, final int length) throws IOException {
+
+        if (length < 0 || start + (long) length > buffer.limit()) {
+            throw new IOException("bigram index is truncated");
+        }
+
+        final IntBuffer view = buffer.duplicate();
+        view.position(start);
+        view.limit(start + length);
+        return view.slice();
+    }
+
+    /**
+     * Gets the number of known data.
+     *
+     * @return the number of known data
+     */
+    int size() {
+
+        return bigram_counts.limit();
+    }
+
+    /**
+     * Gets the known data at the given index.
+     *
+     * @param index the index of the known data
+     * @return the known data
+     */
+    String getKnownData(final int index) {
+
+        return known_data.apply(index);
+    }
+
+    /**
+     * Checks whether this index was built from the given known classifications, of the given size.
+     *
+     * @param source the known classifications
+     * @param size the number of known classifications
+     * @return {@code true} if this index is of the given known classifications
+     */
+    boolean isIndexOf(final Object source, final int size) {
+
+        return this.source == source && size() == size;
+    }
+
+    /**
+     * Finds the known data most similar to the given data. Of equally similar known data, the first is found.
+     *
+     * @param data the data
+     * @return the index of the most similar known data, or {@code -1} if there are no known data
+     */
+    int findMostSimilar(final String data) {
+
+        if (size() == 0) {
+            return NOT_FOUND;
+        }
+
+        final Set<String> bigrams = SetMetricAdapter.getBigrams(data);
+        if (bigrams.isEmpty()) {
+
+            // Any known data without bigrams is completely similar, and all others are not similar at all.
+            return first_without_bigrams != NOT_FOUND ? first_without_bigrams : 0;
+        }
+
+        final int[] posting_lists = getPostingLists(bigrams);
+        final int size = bigrams.size();
+
+        final Candidates candidates = acquireCandidates();
+        try {
+            findMostSimilar(data, size, posting_lists, candidates);
+            return candidates.best;
+        }
+        finally {
+            this.candidates.offer(candidates);
+        }
+    }
+
+    private Candidates acquireCandidates() {
+
+        final Candidates candidates = this.candidates.poll();
+        return candidates != null ? candidates : new Candidates(size());
+    }
+
+    private void findMostSimilar(final String data, final int size, final int[] posting_lists, final Candidates candidates) {
+
+        // Known data that share no bigram with the data are not similar, so the first known data is as similar as those.
+        candidates.reset();
+        candidates.best = 0;
+        candidates.best_similarity = 0.0f;
+
+        int list_index = 0;
+        for (; list_index < posting_lists.length; list_index++) {
+
+            final int remaining = posting_lists.length - list_index;
+            if (candidates.count >= SEED_CANDIDATES && similarity.getUpperBound(remaining, size, remaining) < candidates.best_similarity - EPSILON) {
+                break;
+            }
+
+            final int minimum_bigram_count = getMinimumBigramCount(size, candidates.best_similarity);
+            final int maximum_bigram_count = getMaximumBigramCount(size, candidates.best_similarity);
+
+            final int end = posting_offsets.get(posting_lists[list_index] + 1);
+            for (int position = posting_offsets.get(posting_lists[list_index]); position < end; position++) {
+
+                final int index = postings.get(position);
+                final int bigram_count = bigram_counts.get(index);
+                if (candidates.contains(index)) {
+                    candidates.increment(index);
+                }
+                else if (bigram_count >= minimum_bigram_count && bigram_count <= maximum_bigram_count) {
+                    candidates.add(index);
+                    if (candidates.count <= SEED_CANDIDATES) {
+                        compare(index, data, candidates);
+                    }
+                }
+            }
+        }
+
+        verifyCandidates(data, size, posting_lists.length - list_index, candidates);
+    }
+
+    /** Gets the numbers of the given bigrams that are bigrams of known data, in increasing order of the lengths of their posting lists. */
+    private int[] getPostingLists(final Set<String> bigrams) {
+
+        final long[] posting_lists = new long[bigrams.size()];
+        int count = 0;
+
+        for (String bigram : bigrams) {
+
+            // Bigrams of no known data do not contribute to any similarity, though they count towards the size of the data.
+            final int bigram_number = bigram_numbers.applyAsInt(bigram);
+            if (bigram_number != NOT_FOUND) {
+                final long length = posting_offsets.get(bigram_number + 1) - posting_offsets.get(bigram_number);
+                posting_lists[count++] = length << 32 | bigram_number;
+            }
+        }
+
+        Arrays.sort(posting_lists, 0, count);
+
+        final int[] sorted_bigram_numbers = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted_bigram_numbers[i] = (int) posting_lists[i];
+        }
+        return sorted_bigram_numbers;
+    }
+
+    private int getMinimumBigramCount(final int size, final float best_similarity) {
+
+        int minimum = 1;
+        while (minimum < size && similarity.getUpperBound(minimum, size, minimum) < best_similarity - EPSILON) {
+            minimum++;
+        }
+        return minimum;
+    }
+
+    private int getMaximumBigramCount(final int size, final float best_similarity) {
+
+        if (best_similarity <= EPSILON) {
+            return Integer.MAX_VALUE;
+        }
+
+        // The bound decreases as the other size increases beyond the size of the data, so the first failing size is found by doubling and bisection.
+        long low = size;
+        long high = size * 2L;
+        while (high < Integer.MAX_VALUE && similarity.getUpperBound(size, size, (int) high) >= best_similarity - EPSILON) {
+            low = high;
+            high *= 2;
+        }
+        if (high >= Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        while (high - low > 1) {
+            final long middle = (low + high) / 2;
+            if (similarity.getUpperBound(size, size, (int) middle) >= best_similarity - EPSILON) {
+                low = middle;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return (int) low;
+    }
+
+    private void verifyCandidates(final String data, final int size, final int unread_lists, final Candidates candidates) {
+
+        final int count = candidates.count;
+        final long[] bounded_candidates = new long[count];
+
+        int bounded_count = 0;
+        for (int i = 0; i < count; i++) {
+
+            final int index = candidates.indices[i];
+            if (!candidates.compared(index)) {
+
+                final double bound = getUpperBound(candidates.getSharedBigramCount(index) + unread_lists, size, bigram_counts.get(index));
+                if (bound >= candidates.best_similarity - EPSILON) {
+
+                    // Orders by decreasing bound, then by increasing index; the bits of non-negative floats increase with their values.
+                    bounded_candidates[bounded_count++] = (long) (Integer.MAX_VALUE - Float.floatToIntBits((float) bound)) << 32 | index;
+                }
+            }
+        }
+
+        Arrays.sort(bounded_candidates, 0, bounded_count);
+
+        for (int i = 0; i < bounded_count; i++) {
+
+            final int index = (int) bounded_candidates[i];
+            final double bound = getUpperBound(candidates.getSharedBigramCount(index) + unread_lists, size, bigram_counts.get(index));
+
+            if (bound < candidates.best_similarity - EPSILON) {
+                break;
+            }
+            compare(index, data, candidates);
+        }
+    }
+
+    private double getUpperBound(final int shared_bigram_count, final int size, final int other_size) {
+
+        final int intersection = Math.min(shared_bigram_count, Math.min(size, other_size));
+        return similarity.getUpperBound(intersection, size, other_size);
+    }
+
+    private void compare(final int index, final String data, final Candidates candidates) {
+
+        final float known_to_data_similarity = metric.getSimilarity(known_data.apply(index), data);
+        candidates.markCompared(index);
+
+        if (known_to_data_similarity > candidates.best_similarity || known_to_data_similarity == candidates.best_similarity && index < candidates.best) {
+            candidates.best = index;
+            candidates.best_similarity = known_to_data_similarity;
+        }
+    }
+
+    /** The known data that share bigrams with data being classified, reused by later classifications to avoid allocation. */
+    private static final class Candidates {
+
+        // The generation in which each known data was last a candidate, so that the counts need not be cleared for each data.
+        private final int[] generations;
+        private final int[] shared_bigram_counts;
+        private final boolean[] compared;
+        private int[] indices = new int[64];
+        private int count;
+        private int generation;
+
+        private int best;
+        private float best_similarity;
+
+        Candidates(final int size) {
+
+            generations = new int[size];
+            shared_bigram_counts = new int[size];
+            compared = new boolean[size];
+        }
+
+        void reset() {
+
+            for (int i = 0; i < count; i++) {
+                compared[indices[i]] = false;
+            }
+            count = 0;
+
+            if (++generation == 0) {
+                Arrays.fill(generations, 0);
+                generation = 1;
+            }
+        }
+
+        boolean contains(final int index) {
+
+            return generations[index] == generation;
+        }
+
+        void add(final int index) {
+
+            if (count == indices.length) {
+                indices = Arrays.copyOf(indices, count * 2);
+            }
+            indices[count++] = index;
+            generations[index] = generation;
+            shared_bigram_counts[index] = 1;
+        }
+
+        void increment(final int index) {
+
+            shared_bigram_counts[index]++;
+        }
+
+        int getSharedBigramCount(final int index) {
+
+            return shared_bigram_counts[index];
+        }
+
+        boolean compared(final int index) {
+
+            return compared[index];
+        }
+
+        void markCompared(final int index) {
+
+            compared[index] = true;
+        }
+    }
+
+    /** The bigrams of known data and the posting lists of the bigrams, as built from the known data. */
+    private static final class Postings {
+
+        private final int[] bigram_counts;
+        private final Map<String, Integer> bigram_numbers = new HashMap<>();
+        private final int[] posting_offsets;
+        private final int[] postings;
+        private final int first_without_bigrams;
+
+        Postings(final int size, final IntFunction<String> known_data) {
+
+            bigram_counts = new int[size];
+
+            final List<PostingList> posting_lists = new ArrayList<>();
+            int first_without_bigrams = NOT_FOUND;
+
+            for (int index = 0; index < size; index++) {
+
+                final Set<String> bigrams = SetMetricAdapter.getBigrams(known_data.apply(index));
+                bigram_counts[index] = bigrams.size();
+
+                if (bigrams.isEmpty() && first_without_bigrams == NOT_FOUND) {
+                    first_without_bigrams = index;
+                }
+                for (String bigram : bigrams) {
+                    final int bigram_number = bigram_numbers.computeIfAbsent(bigram, b -> {
+                        posting_lists.add(new PostingList());
+                        return posting_lists.size() - 1;
+                    });
+                    posting_lists.get(bigram_number).add(index);
+                }
+            }
+
+            posting_offsets = new int[posting_lists.size() + 1];
+            for (int bigram_number = 0; bigram_number < posting_lists.size(); bigram_number++) {
+                posting_offsets[bigram_number + 1] = posting_offsets[bigram_number] + posting_lists.get(bigram_number).size;
+            }
+
+            postings = new int[posting_offsets[posting_lists.size()]];
+            for (int bigram_number = 0; bigram_number < posting_lists.size(); bigram_number++) {
+                final PostingList posting_list = posting_lists.get(bigram_number);
+                System.arraycopy(posting_list.indices, 0, postings, posting_offsets[bigram_number], posting_list.size);
+            }
+
+            this.first_without_bigrams = first_without_bigrams;
+        }
+    }
+
+    /** A growable list of the indices of the known data containing a bigram. */
+    private static final class PostingList {
+
+        private int[] indices = new int[4];
+        private int size;
+
+        void add(final int index) {
+
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+            }
+            indices[size++] = index;
+        }
+    }
+}
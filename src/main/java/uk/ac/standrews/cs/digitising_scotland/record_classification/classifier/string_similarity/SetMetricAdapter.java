@@ -49,7 +49,7 @@ public class SetMetricAdapter implements StringMetric {
 
     public static Set<String> getBigrams(String s) {
 
-        return getBigrams(new TokenList(s));
+        return getBigrams(TokenList.of(s));
     }
 
     private static Set<String> getBigrams(List<String> strings) {
@@ -16,29 +16,57 @@
  */
 package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.string_similarity;
 
+import org.apache.commons.lang3.SerializationUtils;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.MappedClassifications;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.SingleClassifier;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Record;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.StringInterner;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenList;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinaryCodec;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.BinarySerializable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.Mappable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.MappedStringTable;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.SectionedFile;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Classifies records based on the string similarity of the training data to unseen data.
- * This class is not thread-safe.
+ * With Jaccard or Dice similarity, the most similar training data are found through a {@link BigramIndex}.
+ * Training, clearing and state changes are not thread-safe, but once trained the classifier is only read, so
+ * {@link #doClassify(String)} may be called concurrently. The {@link BigramIndex} is built lazily under a lock on
+ * this classifier, published through a volatile field and is itself immutable once built. When the classifier is
+ * written to a mapped file the index is written with it, so that a classifier loaded from the file need not rebuild it.
  *
  * @author Masih Hajiarab Derkani
  * @author Graham Kirby
  */
-public class StringSimilarityClassifier extends SingleClassifier {
+public class StringSimilarityClassifier extends SingleClassifier implements Mappable, BinarySerializable {
 
     private static final long serialVersionUID = -6159276459112698341L;
+    private static final String SIMILARITY_METRIC_SECTION = "similarity_metric";
+    private static final String KNOWN_CLASSIFICATIONS_SECTION = "known_classifications";
+    private static final String BIGRAM_INDEX_SECTION = "bigram_index";
+    private static final int BINARY_VERSION = 1;
 
     private SimilarityMetric similarity_metric;
     private Map<String, Classification> known_classifications;
 
+    // Set instead of the known classifications when this classifier is loaded from a mapped file.
+    private transient MappedClassifications mapped_known_classifications;
+
+    // Built when first needed, if the similarity metric is a supported set similarity, and rebuilt if the known classifications change.
+    private transient volatile BigramIndex bigram_index;
+
     /**
      * @param similarity_metric the metric by which to calculate similarity between training and unseen data
      */
@@ -59,6 +87,8 @@ public class StringSimilarityClassifier extends SingleClassifier {
     public void clearModel() {
 
         known_classifications = new HashMap<>();
+        mapped_known_classifications = null;
+        bigram_index = null;
     }
 
     @Override
@@ -67,16 +97,27 @@ public class StringSimilarityClassifier extends SingleClassifier {
         final int training_records_size = training_records.size();
         resetTrainingProgressIndicator(training_records_size);
 
+        final Map<String, Classification> known_classifications = getKnownClassifications();
         for (Record record : training_records) {
             Classification classification = record.getClassification();
             known_classifications.put(record.getData(), new Classification(classification.getCode(), classification.getTokenList(), 0.0, classification.getDetail()));
             progressTrainingStep();
         }
+        bigram_index = null;
     }
 
     @Override
     public Classification doClassify(final String data) {
 
+        final BigramIndex index = getBigramIndex();
+        if (index != null) {
+            return doClassifyIndexed(data, index);
+        }
+
+        if (mapped_known_classifications != null) {
+            return doClassifyMapped(data);
+        }
+
         float highest_similarity_found = -1;
         Classification classification = null;
 
@@ -88,7 +129,89 @@ public class StringSimilarityClassifier extends SingleClassifier {
                 highest_similarity_found = known_to_data_similarity;
             }
         }
-        return classification == null ? Classification.UNCLASSIFIED : new Classification(classification.getCode(), new TokenList(data), classification.getConfidence(), classification.getDetail());
+        return classification == null ? Classification.UNCLASSIFIED : new Classification(classification.getCode(), TokenList.of(data), classification.getConfidence(), classification.getDetail());
+    }
+
+    private Classification doClassifyIndexed(final String data, final BigramIndex index) {
+
+        final int most_similar_index = index.findMostSimilar(data);
+        if (most_similar_index < 0) {
+            return Classification.UNCLASSIFIED;
+        }
+
+        final Classification classification = mapped_known_classifications != null ? mapped_known_classifications.getClassification(most_similar_index) : known_classifications.get(index.getKnownData(most_similar_index));
+        return new Classification(classification.getCode(), TokenList.of(data), classification.getConfidence(), classification.getDetail());
+    }
+
+    private BigramIndex getBigramIndex() {
+
+        final BigramIndex.SetSimilarity similarity = BigramIndex.SetSimilarity.of(similarity_metric);
+        if (similarity == null) {
+            return null;
+        }
+
+        final MappedClassifications mapped_known_classifications = this.mapped_known_classifications;
+        final Map<String, Classification> known_classifications = this.known_classifications;
+
+        final Object source = mapped_known_classifications != null ? mapped_known_classifications : known_classifications;
+        if (source == null) {
+            return null;
+        }
+
+        final int size = mapped_known_classifications != null ? mapped_known_classifications.size() : known_classifications.size();
+
+        BigramIndex index = bigram_index;
+        if (index == null || !index.isIndexOf(source, size)) {
+            synchronized (this) {
+                index = bigram_index;
+                if (index == null || !index.isIndexOf(source, size)) {
+                    index = newBigramIndex(similarity, source);
+                    bigram_index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private BigramIndex newBigramIndex(final BigramIndex.SetSimilarity similarity, final Object source) {
+
+        if (source instanceof MappedClassifications) {
+            final MappedClassifications mapped_known_classifications = (MappedClassifications) source;
+            return new BigramIndex(similarity_metric, similarity, mapped_known_classifications.size(), mapped_known_classifications::getData, source);
+        }
+
+        // The known data are indexed in the order in which they would otherwise be compared.
+        final String[] known_data = ((Map<?, ?>) source).keySet().toArray(new String[0]);
+        return new BigramIndex(similarity_metric, similarity, known_data.length, index -> known_data[index], source);
+    }
+
+    private Classification doClassifyMapped(final String data) {
+
+        float highest_similarity_found = -1;
+        int most_similar_index = -1;
+
+        for (int index = 0; index < mapped_known_classifications.size(); index++) {
+
+            final float known_to_data_similarity = similarity_metric.getSimilarity(mapped_known_classifications.getData(index), data);
+            if (known_to_data_similarity > highest_similarity_found) {
+                most_similar_index = index;
+                highest_similarity_found = known_to_data_similarity;
+            }
+        }
+
+        if (most_similar_index < 0) {
+            return Classification.UNCLASSIFIED;
+        }
+
+        final Classification classification = mapped_known_classifications.getClassification(most_similar_index);
+        return new Classification(classification.getCode(), TokenList.of(data), classification.getConfidence(), classification.getDetail());
+    }
+
+    @Override
+    public boolean supportsConcurrentClassification() {
+
+        // Classification only reads the known classifications.
+        return true;
     }
 
     @Override
@@ -110,11 +233,98 @@ public class StringSimilarityClassifier extends SingleClassifier {
 
     public Map<String, Classification> readState() {
 
-        return known_classifications;
+        return getKnownClassifications();
     }
 
     public void writeState(Map<String, Classification> known_classifications) {
 
         this.known_classifications = known_classifications;
+        mapped_known_classifications = null;
+        bigram_index = null;
+    }
+
+    @Override
+    public void writeSections(final SectionedFile.Writer out) throws IOException {
+
+        writeConfidences(out);
+        out.addSection(SIMILARITY_METRIC_SECTION, section -> SerializationUtils.serialize(similarity_metric, section));
+
+        final Map<String, Classification> known_classifications = getKnownClassifications();
+        MappedClassifications.write(out, KNOWN_CLASSIFICATIONS_SECTION, known_classifications);
+
+        if (BigramIndex.SetSimilarity.of(similarity_metric) != null) {
+
+            // The index refers to the known data by their positions in the mapped known classifications.
+            final String[] known_data = MappedStringTable.sort(known_classifications.keySet());
+            BigramIndex.write(out, BIGRAM_INDEX_SECTION, known_data.length, index -> known_data[index]);
+        }
+    }
+
+    @Override
+    public void readSections(final SectionedFile in) throws IOException {
+
+        readConfidences(in);
+        try (final InputStream section = in.openSection(SIMILARITY_METRIC_SECTION)) {
+            similarity_metric = SerializationUtils.deserialize(section);
+        }
+        known_classifications = null;
+        mapped_known_classifications = MappedClassifications.read(in, KNOWN_CLASSIFICATIONS_SECTION);
+
+        final BigramIndex.SetSimilarity similarity = BigramIndex.SetSimilarity.of(similarity_metric);
+        final MappedClassifications known_classifications = mapped_known_classifications;
+
+        // Files written before the index was persisted leave it to be built when first needed.
+        bigram_index = similarity != null && BigramIndex.isWritten(in, BIGRAM_INDEX_SECTION) ? BigramIndex.read(in, BIGRAM_INDEX_SECTION, similarity_metric, similarity, known_classifications.size(), known_classifications::getData, known_classifications) : null;
+    }
+
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        writeConfidences(out);
+        BinaryCodec.writeObject(out, similarity_metric);
+
+        // The known classifications of a classifier in a group with shared state are held by the group.
+        final Map<String, Classification> known_classifications = getKnownClassifications();
+        out.writeBoolean(known_classifications != null);
+        if (known_classifications != null) {
+            BinaryCodec.writeClassifications(out, known_classifications);
+        }
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        BinaryCodec.readVersion(in, StringSimilarityClassifier.class, BINARY_VERSION);
+        readConfidences(in);
+        similarity_metric = BinaryCodec.readObject(in, SimilarityMetric.class);
+        known_classifications = in.readBoolean() ? BinaryCodec.readClassifications(in) : null;
+        mapped_known_classifications = null;
+        bigram_index = null;
+    }
+
+    private Map<String, Classification> getKnownClassifications() {
+
+        if (mapped_known_classifications != null) {
+            known_classifications = mapped_known_classifications.toMap();
+            mapped_known_classifications = null;
+        }
+        return known_classifications;
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+
+        getKnownClassifications();
+        out.defaultWriteObject();
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+
+        // Deserialized keys are new instances, so replace them with the canonical ones shared with records.
+        if (known_classifications != null) {
+            StringInterner.internKeys(known_classifications);
+        }
     }
 }
@@ -43,7 +43,7 @@ public enum ConsistentClassificationCleaner implements Cleaner {
 
             for (Bucket bucket : buckets) {
 
-                final Bucket cleaned_bucket = new Bucket();
+                final Bucket.Builder cleaned_bucket = bucket.newBuilder(bucket.size());
                 for (Record record : bucket) {
 
                     final String data = record.getData();
@@ -52,7 +52,7 @@ public enum ConsistentClassificationCleaner implements Cleaner {
                         cleaned_bucket.add(record);
                     }
                 }
-                cleaned_buckets.add(cleaned_bucket);
+                cleaned_buckets.add(cleaned_bucket.build());
             }
 
             return cleaned_buckets;
@@ -74,7 +74,7 @@ public enum ConsistentClassificationCleaner implements Cleaner {
 
             List<Bucket> cleaned_buckets = new ArrayList<>();
             for (Bucket bucket : buckets) {
-                Bucket cleaned_bucket = new Bucket();
+                Bucket.Builder cleaned_bucket = bucket.newBuilder(bucket.size());
 
                 for (Record record : bucket) {
 
@@ -88,7 +88,7 @@ public enum ConsistentClassificationCleaner implements Cleaner {
                         cleaned_bucket.add(makeCorrectedRecord(record, most_popular_classification));
                     }
                 }
-                cleaned_buckets.add(cleaned_bucket);
+                cleaned_buckets.add(cleaned_bucket.build());
             }
 
             return cleaned_buckets;
@@ -172,6 +172,6 @@ public enum ConsistentClassificationCleaner implements Cleaner {
         final String data = record.getData();
         final Classification classification = record.getClassification();
 
-        return new Record(record.getId(), data, record.getOriginalData(), new Classification(most_popular_code, new TokenList(data), classification.getConfidence(), classification.getDetail()));
+        return new Record(record.getId(), data, record.getOriginalData(), new Classification(most_popular_code, TokenList.of(data), classification.getConfidence(), classification.getDetail()));
     }
 }
@@ -89,7 +89,7 @@ public class SpellCheckerCleaner implements TextCleaner, Closeable {
     @Override
     public String cleanData(final String data) {
 
-        return new TokenList(data).stream().map(this::suggest).reduce(this::joinWithSpace).orElseGet(() -> data);
+        return TokenList.of(data).stream().map(this::suggest).reduce(this::joinWithSpace).orElseGet(() -> data);
     }
 
     private String joinWithSpace(final String one, final String other) {return one + SPACE + other;}
@@ -38,12 +38,12 @@ public interface TextCleaner extends Cleaner {
 
         for (Bucket bucket : buckets) {
 
-            final Bucket cleaned_bucket = new Bucket();
+            final Bucket.Builder cleaned_bucket = bucket.newBuilder(bucket.size());
             for (Record record : bucket) {
 
                 cleaned_bucket.add(cleanRecord(record));
             }
-            cleaned_buckets.add(cleaned_bucket);
+            cleaned_buckets.add(cleaned_bucket.build());
         }
         return cleaned_buckets;
     }
@@ -70,7 +70,7 @@ public interface TextCleaner extends Cleaner {
         }
         else {
             final String code = old_classification.getCode();
-            final TokenList tokens = new TokenList(cleaned_data);
+            final TokenList tokens = TokenList.of(cleaned_data);
             final double confidence = old_classification.getConfidence();
             final String detail = old_classification.getDetail();
 
@@ -19,6 +19,7 @@ package uk.ac.standrews.cs.digitising_scotland.record_classification.cleaning;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenList;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenizerPipeline;
 
 /**
  * An abstract cleaner that uses {@link TokenFilter} to clean records.
@@ -31,11 +32,25 @@ public abstract class TokenFilterCleaner implements TextCleaner {
     private static final long serialVersionUID = -7341612194148263930L;
     private static final CharSequence SPACE = " ";
 
+    private transient volatile ThreadLocal<TokenizerPipeline> pipelines;
+
     public String cleanData(final String data) {
 
-        final TokenList cleaned_data_tokens = new TokenList(data, this::getTokenFilter);
+        final TokenList cleaned_data_tokens = new TokenList(data, getPipeline());
         return String.join(SPACE, cleaned_data_tokens);
     }
 
+    private TokenizerPipeline getPipeline() {
+
+        if (pipelines == null) {
+            synchronized (this) {
+                if (pipelines == null) {
+                    pipelines = TokenizerPipeline.perThread(this::getTokenFilter);
+                }
+            }
+        }
+        return pipelines.get();
+    }
+
     protected abstract TokenFilter getTokenFilter(final TokenStream stream);
 }
@@ -38,9 +38,9 @@ public class TrimClassificationCodesCleaner implements Cleaner {
 
     public Bucket apply(Bucket bucket) {
 
-        final Bucket cleaned = new Bucket();
-        StreamSupport.stream(bucket.spliterator(), false).map(this::apply).forEach(cleaned::add);
-        return cleaned;
+        final Bucket.Builder cleaned = bucket.newBuilder(bucket.size());
+        bucket.stream().map(this::apply).forEach(cleaned::add);
+        return cleaned.build();
     }
 
     public Record apply(Record record) {
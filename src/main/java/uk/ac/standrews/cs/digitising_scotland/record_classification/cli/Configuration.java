@@ -25,6 +25,7 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.*
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.command.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.serialization.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.supplier.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.process.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
@@ -56,6 +57,33 @@ public class Configuration extends ClassificationContext {
     /** The name of the resource bundle containing the command line interface messages. */
     public static final String RESOURCE_BUNDLE_NAME = "uk.ac.standrews.cs.digitising_scotland.record_classification.cli.CLIMessages";
 
+    /** The name under which the classifier is persisted within the home folder. */
+    public static final String CLASSIFIER_NAME = "classifier";
+
+    /** The name under which the training records are persisted within the home folder. */
+    public static final String TRAINING_RECORDS_NAME = "training";
+
+    /** The name under which the evaluation records are persisted within the home folder. */
+    public static final String EVALUATION_RECORDS_NAME = "evaluation";
+
+    /** The name under which the unseen records are persisted within the home folder. */
+    public static final String UNSEEN_RECORDS_NAME = "unseen";
+
+    /** The name under which the classified evaluation records are persisted within the home folder. */
+    public static final String CLASSIFIED_EVALUATION_RECORDS_NAME = "classified_evaluation";
+
+    /** The name under which the classified unseen records are persisted within the home folder. */
+    public static final String CLASSIFIED_UNSEEN_RECORDS_NAME = "classified_unseen";
+
+    /** The name under which the confusion matrix is persisted within the home folder. */
+    public static final String CONFUSION_MATRIX_NAME = "confusion_matrix";
+
+    /** The name under which the classification metrics are persisted within the home folder. */
+    public static final String CLASSIFICATION_METRICS_NAME = "classification_metrics";
+
+    /** The name of the folder within the home folder that contains off-heap record stores. */
+    public static final String RECORD_STORES_NAME = "record_stores";
+
     /** Format of the {@link Record records} stored in a CSV file by the command line interface. */
     public static final CSVFormat RECORD_CSV_FORMAT = CSVFormat.RFC4180.withHeader("ID", "DATA", "ORIGINAL_DATA", "CODE", "CONFIDENCE", "DETAIL");
 
@@ -65,6 +93,7 @@ public class Configuration extends ClassificationContext {
     /** */
     public static final CharsetSupplier DEFAULT_CHARSET_SUPPLIER = CharsetSupplier.SYSTEM_DEFAULT;
     public static final SerializationFormat DEFAULT_CLASSIFIER_SERIALIZATION_FORMAT = SerializationFormat.JAVA_SERIALIZATION;
+    public static final BucketSerializationFormat DEFAULT_BUCKET_SERIALIZATION_FORMAT = BucketSerializationFormat.CSV;
 
     /** The default working directory of the command line interface. */
     public static final Path DEFAULT_WORKING_DIRECTORY = Paths.get(System.getProperty("user.dir"));
@@ -95,8 +124,10 @@ public class Configuration extends ClassificationContext {
     private double default_internal_training_ratio = DEFAULT_INTERNAL_TRAINING_RATIO;
     private CsvFormatSupplier default_csv_format_supplier = DEFAULT_CSV_FORMAT_SUPPLIER;
     private Long seed;
+    private Integer compression_thread_count;
     private ClassifierSupplier classifier_supplier;
     private SerializationFormat classifier_serialization_format = DEFAULT_CLASSIFIER_SERIALIZATION_FORMAT;
+    private BucketSerializationFormat bucket_serialization_format = DEFAULT_BUCKET_SERIALIZATION_FORMAT;
     private LogLevelSupplier log_level = DEFAULT_LOG_LEVEL_SUPPLIER;
     private LogLevelSupplier internal_log_level = DEFAULT_LOG_LEVEL_SUPPLIER;
 
@@ -113,6 +144,9 @@ public class Configuration extends ClassificationContext {
     private transient Supplier<ConfusionMatrix> confusion_matrix_loader;
     private transient Supplier<Metrics> classification_metrics_loader;
 
+    // The state of each artifact when it was last loaded or persisted, by name.
+    private final transient Map<String, PersistedArtifact> persisted_artifacts = new HashMap<>();
+
     public Configuration() {
 
         this(DEFAULT_WORKING_DIRECTORY);
@@ -152,6 +186,7 @@ public class Configuration extends ClassificationContext {
         classified_unseen_records_loader = null;
         confusion_matrix_loader = null;
         classification_metrics_loader = null;
+        persisted_artifacts.clear();
     }
 
     public Path getInternalLogsHome() {
@@ -192,23 +227,130 @@ public class Configuration extends ClassificationContext {
     public static void persistBucketAsCSV(final Bucket bucket, final Path destination, final CSVFormat format, final Charset charset) throws IOException {
 
         if (bucket != null) {
+            AsyncRecordWriter.write(bucket, destination, format, charset);
+        }
+    }
+
+    /**
+     * Prints a classified record as a row of {@link #RECORD_CSV_FORMAT}.
+     *
+     * @param record the record to print
+     * @param printer the printer to which to print the record
+     * @throws IOException if the record cannot be printed
+     */
+    public static void printRecord(final Record record, final CSVPrinter printer) throws IOException {
+
+        final Classification classification = record.getClassification();
+
+        printer.print(record.getId());
+        printer.print(record.getData());
+        printer.print(record.getOriginalData());
+        printer.print(classification.getCode());
+        printer.print(classification.getConfidence());
+        printer.print(classification.getDetail());
+        printer.println();
+    }
+
+    /**
+     * Persists the given bucket in the given format.
+     *
+     * @param bucket the bucket to persist
+     * @param destination the file to which to persist the bucket
+     * @param format the format in which to persist the bucket
+     * @throws IOException if the bucket cannot be persisted
+     */
+    public static void persistBucket(final Bucket bucket, final Path destination, final BucketSerializationFormat format) throws IOException {
+
+        if (format == BucketSerializationFormat.MAPPED) {
+            persistRecordStore(bucket, destination);
+            return;
+        }
 
-            try (final BufferedWriter out = Files.newBufferedWriter(destination, charset);
-                final CSVPrinter printer = format.print(out)) {
+        Serialization.persistAtomically(destination, temporary -> {
+
+            switch (format) {
+                case CSV:
+                    persistBucketAsCSV(bucket, temporary, RECORD_CSV_FORMAT, RESOURCE_CHARSET);
+                    break;
+                case BINARY:
+                    try (final OutputStream out = Files.newOutputStream(temporary)) {
+                        BinaryBucketCodec.write(bucket, out, true);
+                    }
+                    break;
+                default:
+                    throw new RuntimeException("unknown bucket serialization format " + format);
+            }
+        });
+    }
+
+    /**
+     * Persists the given bucket as a record store in the given directory. A mapped bucket whose records are all those of the store
+     * already in the directory only needs its buffered records written. Otherwise the records are written to a new store, which
+     * then replaces any existing one.
+     *
+     * @param bucket the bucket to persist
+     * @param destination the directory in which to persist the bucket
+     * @throws IOException if the bucket cannot be persisted
+     */
+    private static void persistRecordStore(final Bucket bucket, final Path destination) throws IOException {
+
+        if (bucket instanceof MappedBucket) {
+
+            final MappedBucket mapped_bucket = (MappedBucket) bucket;
+            if (mapped_bucket.getDirectory().equals(destination.toAbsolutePath()) && mapped_bucket.isWholeStore()) {
+                mapped_bucket.flush();
+                return;
+            }
+        }
 
-                for (final Record record : bucket) {
+        final Path temporary = destination.resolveSibling(destination.getFileName() + ".tmp");
+        deleteRecords(temporary);
 
-                    final Classification classification = record.getClassification();
+        try (final MappedBucket store = new MappedBucket(temporary)) {
+            store.add(bucket);
+        }
+
+        deleteRecords(destination);
+        Files.move(temporary, destination);
+    }
 
-                    printer.print(record.getId());
-                    printer.print(record.getData());
-                    printer.print(record.getOriginalData());
-                    printer.print(classification.getCode());
-                    printer.print(classification.getConfidence());
-                    printer.print(classification.getDetail());
-                    printer.println();
+    /**
+     * Deletes records persisted in any format, which may be a file or, for a record store, a directory.
+     *
+     * @param path the path of the persisted records
+     * @throws IOException if the records cannot be deleted
+     */
+    public static void deleteRecords(final Path path) throws IOException {
+
+        if (Files.isDirectory(path)) {
+            FileUtils.deleteDirectory(path.toFile());
+        }
+        else {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Loads a bucket persisted in the given format.
+     *
+     * @param source the file from which to load the bucket
+     * @param format the format in which the bucket is persisted
+     * @return the loaded bucket
+     * @throws IOException if the bucket cannot be loaded
+     */
+    public static Bucket loadBucket(final Path source, final BucketSerializationFormat format) throws IOException {
+
+        switch (format) {
+            case CSV:
+                return loadBucket(source);
+            case BINARY:
+                try (final InputStream in = Files.newInputStream(source)) {
+                    return BinaryBucketCodec.read(in);
                 }
-            }
+            case MAPPED:
+                return new MappedBucket(source);
+            default:
+                throw new RuntimeException("unknown bucket serialization format " + format);
         }
     }
 
@@ -232,7 +374,7 @@ public class Configuration extends ClassificationContext {
         final double confidence = Double.parseDouble(csv_record.get(4));
         final String details = csv_record.get(5);
 
-        final Classification classification = new Classification(code, new TokenList(label), confidence, details);
+        final Classification classification = new Classification(code, TokenList.of(label), confidence, details);
 
         return new Record(id, label, label_original, classification);
     }
@@ -245,90 +387,190 @@ public class Configuration extends ClassificationContext {
     public void setClassificationMetricsLazyLoader(final Supplier<Metrics> classification_metrics_loader) {
 
         this.classification_metrics_loader = classification_metrics_loader;
+        markPersisted(CLASSIFICATION_METRICS_NAME, null);
     }
 
     public void setClassifiedEvaluationRecordsLazyLoader(final Supplier<Bucket> classified_evaluation_records_loader) {
 
         this.classified_evaluation_records_loader = classified_evaluation_records_loader;
+        markPersisted(CLASSIFIED_EVALUATION_RECORDS_NAME, null);
     }
 
     public void setClassifiedUnseenRecordsLazyLoader(final Supplier<Bucket> classified_unseen_records_loader) {
 
         this.classified_unseen_records_loader = classified_unseen_records_loader;
+        markPersisted(CLASSIFIED_UNSEEN_RECORDS_NAME, null);
     }
 
     public void setClassifierLazyLoader(final Supplier<Classifier> classifier_loader) {
 
         this.classifier_loader = classifier_loader;
+        markPersisted(CLASSIFIER_NAME, null);
     }
 
     public void setTrainingRecordsLazyLoader(final Supplier<Bucket> training_records_loader) {
 
         this.training_records_loader = training_records_loader;
+        markPersisted(TRAINING_RECORDS_NAME, null);
     }
 
     public void setUnseenRecordsLazyLoader(final Supplier<Bucket> unseen_records_loader) {
 
         this.unseen_records_loader = unseen_records_loader;
+        markPersisted(UNSEEN_RECORDS_NAME, null);
     }
 
     public void setEvaluationRecordsLazyLoader(final Supplier<Bucket> evaluation_records_loader) {
 
         this.evaluation_records_loader = evaluation_records_loader;
+        markPersisted(EVALUATION_RECORDS_NAME, null);
     }
 
     public void setConfusionMatrixLazyLoader(final Supplier<ConfusionMatrix> confusion_matrix_loader) {
 
         this.confusion_matrix_loader = confusion_matrix_loader;
+        markPersisted(CONFUSION_MATRIX_NAME, null);
     }
 
     @Override
     public Bucket getUnseenRecords() {
 
-        loadLazily(unseen_records_loader, this::setUnseenRecords, isUnseenRecordsSet(), "unseen records");
+        loadPersistedLazily(UNSEEN_RECORDS_NAME, unseen_records_loader, records -> setAndRelease(records, this::setUnseenRecords), isUnseenRecordsSet(), "unseen records");
         return super.getUnseenRecords();
     }
 
     @Override
     public Bucket getEvaluationRecords() {
 
-        loadLazily(evaluation_records_loader, this::setEvaluationRecords, isEvaluationRecordsSet(), "evaluation records");
+        loadPersistedLazily(EVALUATION_RECORDS_NAME, evaluation_records_loader, records -> setAndRelease(records, this::setEvaluationRecords), isEvaluationRecordsSet(), "evaluation records");
         return super.getEvaluationRecords();
     }
 
     @Override
     public Bucket getClassifiedEvaluationRecords() {
 
-        loadLazily(classified_evaluation_records_loader, this::setClassifiedEvaluationRecords, isClassifiedEvaluationRecordsSet(), "classified evaluation records");
+        loadPersistedLazily(CLASSIFIED_EVALUATION_RECORDS_NAME, classified_evaluation_records_loader, records -> setAndRelease(records, this::setClassifiedEvaluationRecords), isClassifiedEvaluationRecordsSet(), "classified evaluation records");
         return super.getClassifiedEvaluationRecords();
     }
 
     @Override
     public Bucket getClassifiedUnseenRecords() {
 
-        loadLazily(classified_unseen_records_loader, this::setClassifiedUnseenRecords, isClassifiedUnseenRecordsSet(), "classified unseen records");
+        loadPersistedLazily(CLASSIFIED_UNSEEN_RECORDS_NAME, classified_unseen_records_loader, records -> setAndRelease(records, this::setClassifiedUnseenRecords), isClassifiedUnseenRecordsSet(), "classified unseen records");
         return super.getClassifiedUnseenRecords();
     }
 
     @Override
     public Bucket getTrainingRecords() {
 
-        loadLazily(training_records_loader, this::setTrainingRecords, isTrainingRecordsSet(), "training records");
+        loadPersistedLazily(TRAINING_RECORDS_NAME, training_records_loader, records -> setAndRelease(records, this::setTrainingRecords), isTrainingRecordsSet(), "training records");
         return super.getTrainingRecords();
     }
 
     @Override
     public Classifier getClassifier() {
 
-        loadLazily(classifier_loader != null ? classifier_loader : classifier_supplier, this::setClassifier, isClassifierSet(), "classifier");
+        if (classifier_loader != null) {
+            loadPersistedLazily(CLASSIFIER_NAME, classifier_loader, this::setClassifier, isClassifierSet(), "classifier");
+        }
+        else {
+            loadLazily(classifier_supplier, this::setClassifier, isClassifierSet(), "classifier");
+        }
         return super.getClassifier();
     }
 
-    private static <Value> void loadLazily(final Supplier<Value> loader, final Consumer<Value> setter, final boolean already_set, final String parameter_name) {
+    /**
+     * Sets records with the given setter, which takes a copy of them. Records held in a record store are then closed, since
+     * the copy shares the store and keeps it open.
+     */
+    private static void setAndRelease(final Bucket records, final Consumer<Bucket> setter) {
+
+        setter.accept(records);
+
+        if (records instanceof MappedBucket) {
+            try {
+                ((MappedBucket) records).close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private <Value> void loadPersistedLazily(final String artifact, final Supplier<Value> loader, final Consumer<Value> setter, final boolean already_set, final String parameter_name) {
+
+        if (loadLazily(loader, setter, already_set, parameter_name)) {
+            markPersisted(artifact, getLoadedArtifact(artifact));
+        }
+    }
+
+    private static <Value> boolean loadLazily(final Supplier<Value> loader, final Consumer<Value> setter, final boolean already_set, final String parameter_name) {
 
         if (!already_set && loader != null) {
             LOGGER.info(() -> String.format("loading %s...", parameter_name));
             setter.accept(loader.get());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the named artifact may differ from its persisted copy, and so needs to be persisted.
+     * An artifact that has not been loaded since it was last persisted, or has been loaded but neither replaced nor
+     * added to since, is not modified.
+     *
+     * @param artifact the name of the artifact
+     * @return whether the artifact may differ from its persisted copy
+     */
+    public boolean isModified(final String artifact) {
+
+        final PersistedArtifact persisted = persisted_artifacts.get(artifact);
+        return persisted == null || !persisted.isCurrent(getLoadedArtifact(artifact));
+    }
+
+    /**
+     * Marks the named artifact as modified, for modifications that cannot otherwise be detected, such as training a
+     * classifier in place.
+     *
+     * @param artifact the name of the artifact
+     */
+    public void markModified(final String artifact) {
+
+        persisted_artifacts.remove(artifact);
+    }
+
+    /**
+     * Marks the named artifact as having been persisted with the given value.
+     *
+     * @param artifact the name of the artifact
+     * @param value the persisted value, or {@code null} if the value has not been loaded
+     */
+    public void markPersisted(final String artifact, final Object value) {
+
+        persisted_artifacts.put(artifact, new PersistedArtifact(value));
+    }
+
+    private Object getLoadedArtifact(final String artifact) {
+
+        switch (artifact) {
+            case CLASSIFIER_NAME:
+                return isClassifierSet() ? super.getClassifier() : null;
+            case TRAINING_RECORDS_NAME:
+                return isTrainingRecordsSet() ? super.getTrainingRecords() : null;
+            case EVALUATION_RECORDS_NAME:
+                return isEvaluationRecordsSet() ? super.getEvaluationRecords() : null;
+            case UNSEEN_RECORDS_NAME:
+                return isUnseenRecordsSet() ? super.getUnseenRecords() : null;
+            case CLASSIFIED_EVALUATION_RECORDS_NAME:
+                return isClassifiedEvaluationRecordsSet() ? super.getClassifiedEvaluationRecords() : null;
+            case CLASSIFIED_UNSEEN_RECORDS_NAME:
+                return isClassifiedUnseenRecordsSet() ? super.getClassifiedUnseenRecords() : null;
+            case CONFUSION_MATRIX_NAME:
+                return isConfusionMatrixSet() ? super.getConfusionMatrix() : null;
+            case CLASSIFICATION_METRICS_NAME:
+                return isClassificationMetricsSet() ? super.getClassificationMetrics() : null;
+            default:
+                throw new IllegalArgumentException("unknown artifact: " + artifact);
         }
     }
 
@@ -341,7 +583,7 @@ public class Configuration extends ClassificationContext {
     @Override
     public Metrics getClassificationMetrics() {
 
-        loadLazily(classification_metrics_loader, this::setClassificationMetrics, isClassificationMetricsSet(), "classification metrics");
+        loadPersistedLazily(CLASSIFICATION_METRICS_NAME, classification_metrics_loader, this::setClassificationMetrics, isClassificationMetricsSet(), "classification metrics");
 
         return super.getClassificationMetrics();
     }
@@ -349,7 +591,7 @@ public class Configuration extends ClassificationContext {
     @Override
     public ConfusionMatrix getConfusionMatrix() {
 
-        loadLazily(confusion_matrix_loader, this::setConfusionMatrix, isConfusionMatrixSet(), "confusion matrix");
+        loadPersistedLazily(CONFUSION_MATRIX_NAME, confusion_matrix_loader, this::setConfusionMatrix, isConfusionMatrixSet(), "confusion matrix");
         return super.getConfusionMatrix();
     }
 
@@ -382,7 +624,39 @@ public class Configuration extends ClassificationContext {
 
     public Path getEvaluationRecordsPath() {
 
-        return getHome().resolve("evaluation.csv");
+        return getRecordsPath(EVALUATION_RECORDS_NAME);
+    }
+
+    /**
+     * Gets the path of the file in which the named records are persisted in the current {@link #getBucketSerializationFormat() format}.
+     *
+     * @param name the name of the records
+     * @return the path of the file in which the records are persisted
+     */
+    public Path getRecordsPath(final String name) {
+
+        return getRecordsPath(name, bucket_serialization_format);
+    }
+
+    /**
+     * Gets the path of the file in which the named records are persisted in the given format.
+     *
+     * @param name the name of the records
+     * @param format the format in which the records are persisted
+     * @return the path of the file in which the records are persisted
+     */
+    public Path getRecordsPath(final String name, final BucketSerializationFormat format) {
+
+        switch (format) {
+            case CSV:
+                return getHome().resolve(name + ".csv");
+            case BINARY:
+                return getHome().resolve(name + ".bin");
+            case MAPPED:
+                return getHome().resolve(RECORD_STORES_NAME).resolve(name);
+            default:
+                throw new RuntimeException("unknown bucket serialization format " + format);
+        }
     }
 
     public Path getHome() {
@@ -390,6 +664,85 @@ public class Configuration extends ClassificationContext {
         return getHome(working_directory);
     }
 
+    /**
+     * Opens the named off-heap record store within the home folder, creating it if it does not exist.
+     *
+     * @param name the name of the store
+     * @return a bucket backed by the store
+     * @throws IOException if the store cannot be opened
+     */
+    public MappedBucket openRecordStore(final String name) throws IOException {
+
+        return new MappedBucket(getRecordsPath(name, BucketSerializationFormat.MAPPED));
+    }
+
+    /**
+     * Opens the named off-heap record store within the home folder, replacing any existing store of that name with an empty one.
+     *
+     * @param name the name of the store
+     * @return a bucket backed by the new store
+     * @throws IOException if the store cannot be created
+     */
+    public MappedBucket newRecordStore(final String name) throws IOException {
+
+        deleteRecords(getRecordsPath(name, BucketSerializationFormat.MAPPED));
+        return openRecordStore(name);
+    }
+
+    /**
+     * Checks whether records are held in off-heap record stores, which is so if the {@link BucketSerializationFormat#MAPPED mapped}
+     * format is selected.
+     *
+     * @return whether records are held in record stores
+     */
+    public boolean isRecordStoreSelected() {
+
+        return bucket_serialization_format == BucketSerializationFormat.MAPPED;
+    }
+
+    @Override
+    public void resetTrainingRecords() {
+
+        if (isRecordStoreSelected()) {
+            setNewRecordStore(TRAINING_RECORDS_NAME, this::setTrainingRecords);
+        }
+        else {
+            super.resetTrainingRecords();
+        }
+    }
+
+    @Override
+    public void resetEvaluationRecords() {
+
+        if (isRecordStoreSelected()) {
+            setNewRecordStore(EVALUATION_RECORDS_NAME, this::setEvaluationRecords);
+        }
+        else {
+            super.resetEvaluationRecords();
+        }
+    }
+
+    @Override
+    public void resetUnseenRecords() {
+
+        if (isRecordStoreSelected()) {
+            setNewRecordStore(UNSEEN_RECORDS_NAME, this::setUnseenRecords);
+        }
+        else {
+            super.resetUnseenRecords();
+        }
+    }
+
+    private void setNewRecordStore(final String name, final Consumer<Bucket> setter) {
+
+        try {
+            setAndRelease(newRecordStore(name), setter);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public SerializationFormat getClassifierSerializationFormat() {
 
         return classifier_serialization_format;
@@ -397,9 +750,29 @@ public class Configuration extends ClassificationContext {
 
     public void setClassifierSerializationFormat(final SerializationFormat serialization_format) {
 
+        if (serialization_format != classifier_serialization_format) {
+            markModified(CLASSIFIER_NAME);
+        }
         this.classifier_serialization_format = serialization_format;
     }
 
+    public BucketSerializationFormat getBucketSerializationFormat() {
+
+        return bucket_serialization_format;
+    }
+
+    public void setBucketSerializationFormat(final BucketSerializationFormat serialization_format) {
+
+        if (serialization_format != bucket_serialization_format) {
+            markModified(TRAINING_RECORDS_NAME);
+            markModified(EVALUATION_RECORDS_NAME);
+            markModified(UNSEEN_RECORDS_NAME);
+            markModified(CLASSIFIED_EVALUATION_RECORDS_NAME);
+            markModified(CLASSIFIED_UNSEEN_RECORDS_NAME);
+        }
+        this.bucket_serialization_format = serialization_format;
+    }
+
     public CsvFormatSupplier getDefaultCsvFormatSupplier() {
 
         return default_csv_format_supplier;
@@ -472,11 +845,14 @@ public class Configuration extends ClassificationContext {
 
     public void persist() throws IOException {
 
-        try (final OutputStream out = Files.newOutputStream(getConfigurationFile(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        Serialization.persistAtomically(getConfigurationFile(), destination -> {
 
-            MAPPER.writerWithDefaultPrettyPrinter().writeValue(out, this);
-            out.flush();
-        }
+            try (final OutputStream out = Files.newOutputStream(destination, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+                MAPPER.writerWithDefaultPrettyPrinter().writeValue(out, this);
+                out.flush();
+            }
+        });
     }
 
     public Path getConfigurationFile() {
@@ -515,6 +891,22 @@ public class Configuration extends ClassificationContext {
         resetRandom();
     }
 
+    public Integer getCompressionThreadCount() {
+
+        return compression_thread_count;
+    }
+
+    /**
+     * Sets the number of threads with which to compress and decompress persisted state in compressed formats.
+     *
+     * @param compression_thread_count the number of threads, or {@code null} to use one per available processor
+     */
+    public void setCompressionThreadCount(final Integer compression_thread_count) {
+
+        this.compression_thread_count = compression_thread_count;
+        Serialization.setCompressionThreadCount(compression_thread_count != null ? compression_thread_count : Serialization.DEFAULT_COMPRESSION_THREAD_COUNT);
+    }
+
     private void resetRandom() {
 
         if (isSeeded()) {
@@ -560,4 +952,27 @@ public class Configuration extends ClassificationContext {
 
         return internal_log_level;
     }
+
+    private static final class PersistedArtifact {
+
+        private final Object value;
+        private final long version;
+
+        private PersistedArtifact(final Object value) {
+
+            this.value = value;
+            version = getVersion(value);
+        }
+
+        private boolean isCurrent(final Object current_value) {
+
+            // An artifact that is not loaded cannot have been modified.
+            return current_value == null || current_value == value && getVersion(current_value) == version;
+        }
+
+        private static long getVersion(final Object value) {
+
+            return value instanceof Bucket ? ((Bucket) value).getVersion() : 0;
+        }
+    }
 }
@@ -19,23 +19,45 @@ package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.command
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.beust.jcommander.converters.PathConverter;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.Classifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cleaning.Cleaner;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cleaning.CleanerSupplier;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Launcher;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util.AsyncRecordWriter;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util.Validators;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.exceptions.InputFileFormatException;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Record;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.ClassificationPipeline;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.Serialization;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.logging.Level;
 
-import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.persistBucketAsCSV;
-
 /**
  * Classifies unseen records.
  *
+ * If an input file is specified, unseen records are streamed from it through a {@link ClassificationPipeline} and
+ * written to the output as they are classified, rather than being taken from the loaded unseen records. This allows
+ * files larger than the available memory to be classified. Streamed records are read from the ID and label columns of
+ * the input file, as by {@link LoadUnseenRecordsCommand}, using the default CSV format, delimiter and charset, and are
+ * cleaned by any specified cleaners before being classified, as by {@link CleanCommand}.
+ *
  * @author Masih Hajiarab Derkani
  * @author Graham Kirby
  */
@@ -51,9 +73,45 @@ public class ClassifyCommand extends Command {
     /** The long name of the option that specifies the path in which to store the classified records. **/
     public static final String OPTION_OUTPUT_RECORDS_PATH_LONG = "--output";
 
+    /** The short name of the option that specifies the path from which to stream the unseen records. **/
+    public static final String OPTION_INPUT_RECORDS_PATH_SHORT = "-i";
+
+    /** The long name of the option that specifies the path from which to stream the unseen records. **/
+    public static final String OPTION_INPUT_RECORDS_PATH_LONG = "--input";
+
+    /** The short name of the option that specifies whether to skip the header record of the input file. **/
+    public static final String OPTION_SKIP_HEADER_SHORT = "-h";
+
+    /** The long name of the option that specifies whether to skip the header record of the input file. **/
+    public static final String OPTION_SKIP_HEADER_LONG = "--skip_header";
+
+    /** The short name of the option that specifies the number of threads with which to classify streamed records. **/
+    public static final String OPTION_THREADS_SHORT = "-t";
+
+    /** The long name of the option that specifies the number of threads with which to classify streamed records. **/
+    public static final String OPTION_THREADS_LONG = "--threads";
+
     @Parameter(required = true, names = {OPTION_OUTPUT_RECORDS_PATH_SHORT, OPTION_OUTPUT_RECORDS_PATH_LONG}, descriptionKey = "command.classify.output.description", converter = PathConverter.class)
     private Path output_path;
 
+    @Parameter(names = {OPTION_INPUT_RECORDS_PATH_SHORT, OPTION_INPUT_RECORDS_PATH_LONG}, descriptionKey = "command.classify.input.description", converter = PathConverter.class)
+    private Path input_path;
+
+    @Parameter(names = {OPTION_SKIP_HEADER_SHORT, OPTION_SKIP_HEADER_LONG}, descriptionKey = "command.classify.skip_header.description")
+    private boolean skip_header_record;
+
+    @Parameter(names = {OPTION_THREADS_SHORT, OPTION_THREADS_LONG}, descriptionKey = "command.classify.threads.description", validateValueWith = Validators.AtLeastOne.class)
+    private int thread_count = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = {LoadRecordsCommand.OPTION_ID_COLUMN_INDEX_SHORT, LoadRecordsCommand.OPTION_ID_COLUMN_INDEX_LONG}, descriptionKey = "command.load_records.id_column_index.description", validateValueWith = Validators.AtLeastZero.class)
+    private Integer id_column_index = LoadRecordsCommand.DEFAULT_ID_COLUMN_INDEX;
+
+    @Parameter(names = {LoadRecordsCommand.OPTION_LABEL_COLUMN_INDEX_SHORT, LoadRecordsCommand.OPTION_LABEL_COLUMN_INDEX_LONG}, descriptionKey = "command.load_records.label_column_index.description", validateValueWith = Validators.AtLeastZero.class)
+    private Integer label_column_index = LoadRecordsCommand.DEFAULT_LABEL_COLUMN_INDEX;
+
+    @Parameter(names = {CleanCommand.OPTION_CLEANER_SHORT, CleanCommand.OPTION_CLEANER_LONG}, descriptionKey = "command.classify.cleaner.description", variableArity = true)
+    private List<CleanerSupplier> cleaner_suppliers;
+
     /**
      * Instantiates this command for the given launcher.
      *
@@ -66,35 +124,106 @@ public class ClassifyCommand extends Command {
 
         final Classifier classifier = configuration.requireClassifier();
 
+        if (input_path != null) {
+            streamClassifiedRecords(classifier);
+            return;
+        }
+
         final Bucket unseen_records = configuration.requireUnseenRecords();
+        final Path destination = resolveRelativeToWorkingDirectory(output_path);
+
+        logger.info(() -> String.format("Persisting total of %d classified unseen records into path: %s", unseen_records.size(), destination));
+
         final Instant start = Instant.now();
-        final Bucket classified_unseen_records = classifier.classify(unseen_records);
+        final Bucket classified_unseen_records;
+        try {
+            classified_unseen_records = classifyAndPersist(classifier, unseen_records, destination, Configuration.CLASSIFIED_UNSEEN_RECORDS_NAME);
+        }
+        catch (IOException e) {
+            logger.log(Level.SEVERE, "failed to persist classified unseen records: " + e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
         final Duration classification_time = Duration.between(start, Instant.now());
 
         configuration.setClassifiedUnseenRecords(classified_unseen_records);
         logger.info(() -> String.format("classified %d records in %s", classified_unseen_records.size(), formatDuration(classification_time)));
-
-        persistClassifiedUnseenRecords(classified_unseen_records);
     }
 
-    private void persistClassifiedUnseenRecords(final Bucket classified_unseen_records) {
+    private void streamClassifiedRecords(final Classifier classifier) {
 
+        final Path source = resolveRelativeToWorkingDirectory(input_path);
         final Path destination = resolveRelativeToWorkingDirectory(output_path);
+        final Charset charset = configuration.getDefaultCharsetSupplier().get();
+        final CSVFormat format = configuration.getDefaultCsvFormatSupplier().get().withDelimiter(configuration.getDefaultDelimiter());
+        final Cleaner cleaner = cleaner_suppliers != null ? CleanCommand.getCombinedCleaner(cleaner_suppliers) : null;
 
-        logger.info(() -> String.format("Persisting total of %d classified unseen records into path: %s", classified_unseen_records.size(), destination));
-        try {
-            persistBucketAsCSV(classified_unseen_records, destination, Configuration.RECORD_CSV_FORMAT, Configuration.RESOURCE_CHARSET);
+        logger.info(() -> String.format("streaming unseen records from %s into path: %s", source, destination));
+
+        final Instant start = Instant.now();
+        final long[] count = new long[1];
+
+        try (final BufferedReader in = Files.newBufferedReader(source, charset);
+             final CSVParser parser = (skip_header_record ? format.withHeader() : format).parse(in)) {
+
+            final Iterator<CSVRecord> rows = parser.iterator();
+            final Iterator<Record> unseen_records = new Iterator<Record>() {
+
+                @Override
+                public boolean hasNext() {
+
+                    return rows.hasNext();
+                }
+
+                @Override
+                public Record next() {
+
+                    return toRecord(rows.next());
+                }
+            };
+
+            Serialization.persistAtomically(destination, temporary -> {
+
+                try (final AsyncRecordWriter writer = new AsyncRecordWriter(temporary)) {
+                    count[0] = new ClassificationPipeline(classifier, thread_count, ClassificationPipeline.DEFAULT_BATCH_SIZE, cleaner).classify(unseen_records, writer);
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            logger.log(Level.SEVERE, String.format("Failure while reading a record from file %s: check CSV format at specified line.", source), e);
+            throw e;
         }
         catch (IOException e) {
-            logger.log(Level.SEVERE, "failed to persist classified unseen records: " + e.getMessage(), e);
+            logger.log(Level.SEVERE, "failed to stream classified unseen records: " + e.getMessage(), e);
             throw new RuntimeException(e);
         }
+
+        final Duration classification_time = Duration.between(start, Instant.now());
+        logger.info(() -> String.format("classified %d records in %s", count[0], formatDuration(classification_time)));
+    }
+
+    private Record toRecord(final CSVRecord row) {
+
+        final List<String> values = new ArrayList<>(row.size());
+        row.forEach(values::add);
+
+        try {
+            return new Record(LoadRecordsCommand.getId(values, id_column_index), LoadRecordsCommand.getLabel(values, label_column_index));
+        }
+        catch (RuntimeException e) {
+            throw new InputFileFormatException(String.format("invalid record at line %d: %s", row.getRecordNumber(), e.getMessage()));
+        }
     }
 
     /** Builds command line arguments of this command. */
     public static class Builder extends Command.Builder {
 
         private Path output_path;
+        private Path input_path;
+        private boolean skip_header_record;
+        private Integer thread_count;
+        private Integer id_column_index;
+        private Integer label_column_index;
+        private final List<CleanerSupplier> cleaners = new ArrayList<>();
 
         /**
          * Sets the path at which to store the classified unseen records.
@@ -107,12 +236,82 @@ public class ClassifyCommand extends Command {
             this.output_path = output_path;
         }
 
+        /**
+         * Sets the path from which to stream the unseen records.
+         *
+         * @param input_path the path from which to stream the unseen records
+         */
+        public void setInputPath(Path input_path) {
+
+            Objects.requireNonNull(input_path);
+            this.input_path = input_path;
+        }
+
+        public void setSkipHeader() {
+
+            setSkipHeader(true);
+        }
+
+        public void setSkipHeader(boolean skip_header) {
+
+            skip_header_record = skip_header;
+        }
+
+        public void setThreadCount(Integer thread_count) {
+
+            this.thread_count = thread_count;
+        }
+
+        public void setIdColumnIndex(Integer id_column_index) {
+
+            this.id_column_index = id_column_index;
+        }
+
+        public void setLabelColumnIndex(Integer label_column_index) {
+
+            this.label_column_index = label_column_index;
+        }
+
+        /**
+         * Adds cleaners with which to clean the streamed unseen records.
+         *
+         * @param cleaners the cleaners to add
+         */
+        public void addCleaners(CleanerSupplier... cleaners) {
+
+            Collections.addAll(this.cleaners, cleaners);
+        }
+
         @Override
         protected void populateArguments() {
 
             addArgument(NAME);
             addArgument(OPTION_OUTPUT_RECORDS_PATH_SHORT);
             addArgument(output_path);
+
+            if (input_path != null) {
+                addArgument(OPTION_INPUT_RECORDS_PATH_SHORT);
+                addArgument(input_path);
+            }
+            if (skip_header_record) {
+                addArgument(OPTION_SKIP_HEADER_SHORT);
+            }
+            if (thread_count != null) {
+                addArgument(OPTION_THREADS_SHORT);
+                addArgument(String.valueOf(thread_count));
+            }
+            if (id_column_index != null) {
+                addArgument(LoadRecordsCommand.OPTION_ID_COLUMN_INDEX_SHORT);
+                addArgument(String.valueOf(id_column_index));
+            }
+            if (label_column_index != null) {
+                addArgument(LoadRecordsCommand.OPTION_LABEL_COLUMN_INDEX_SHORT);
+                addArgument(String.valueOf(label_column_index));
+            }
+            if (!cleaners.isEmpty()) {
+                addArgument(CleanCommand.OPTION_CLEANER_SHORT);
+                cleaners.forEach(cleaner -> addArgument(cleaner.name()));
+            }
         }
     }
 }
@@ -159,22 +159,18 @@ public class CleanCommand extends Command {
 
     private Cleaner getCombinedCleaner() {
 
-        Cleaner combined = null;
-
-        for (CleanerSupplier supplier : cleaner_suppliers) {
-
-            final Cleaner cleaner = supplier.get();
-
-            if (combined == null) {
-                combined = cleaner;
-            }
-            combined = combined.andThen(cleaner);
-        }
-
-        if (combined == null) throw new ParameterException("no cleaner specified");
+        return getCombinedCleaner(cleaner_suppliers);
+    }
 
-        return combined;
+    /**
+     * Combines the cleaners supplied by the given suppliers into a single cleaner that applies them in order.
+     *
+     * @param cleaner_suppliers the suppliers of the cleaners to combine
+     * @return the combined cleaner
+     * @throws ParameterException if no cleaner is specified
+     */
+    static Cleaner getCombinedCleaner(final List<CleanerSupplier> cleaner_suppliers) {
 
-        //return this.cleaner_suppliers.stream().map(Supplier::get).reduce(Cleaner::andThen).orElseThrow(() -> new ParameterException("no cleaner is specified"));
+        return cleaner_suppliers.stream().map(Supplier::get).reduce(Cleaner::andThen).orElseThrow(() -> new ParameterException("no cleaner specified"));
     }
 }
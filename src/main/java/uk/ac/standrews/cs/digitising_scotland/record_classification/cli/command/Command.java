@@ -17,14 +17,19 @@
 package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.command;
 
 import com.beust.jcommander.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
 
 import java.io.*;
 import java.nio.charset.*;
 import java.nio.file.*;
 import java.time.*;
 import java.util.*;
+import java.util.function.*;
 import java.util.logging.*;
 import java.util.stream.*;
 
@@ -217,6 +222,73 @@ public abstract class Command implements Runnable {
         }
     }
 
+    /**
+     * Classifies the given records, writing each classified record to the given file as soon as it is classified.
+     * If {@link Configuration#isRecordStoreSelected() record stores are selected}, the classified records are held in the
+     * record store of the given name rather than on the heap.
+     *
+     * @param classifier the classifier with which to classify the records
+     * @param unclassified_records the records to classify
+     * @param destination the file to which to write the classified records
+     * @param name the name of the classified records
+     * @return the classified records
+     * @throws IOException if the classified records cannot be written
+     */
+    Bucket classifyAndPersist(final Classifier classifier, final Bucket unclassified_records, final Path destination, final String name) throws IOException {
+
+        if (configuration.isRecordStoreSelected()) {
+
+            // The returned copy shares the store, and keeps it open once this bucket is closed.
+            try (final MappedBucket classified_records = configuration.newRecordStore(name)) {
+                classifyAndPersist(classifier, unclassified_records, destination, classified_records::add);
+                return classified_records.copy();
+            }
+        }
+
+        final Bucket.Builder classified_records = unclassified_records.newBuilder(unclassified_records.size());
+        classifyAndPersist(classifier, unclassified_records, destination, classified_records::add);
+        return classified_records.build();
+    }
+
+    private static void classifyAndPersist(final Classifier classifier, final Bucket unclassified_records, final Path destination, final Consumer<Record> classified_records) throws IOException {
+
+        final ClassificationPipeline pipeline = new ClassificationPipeline(classifier, Runtime.getRuntime().availableProcessors());
+
+        Serialization.persistAtomically(destination, temporary -> {
+
+            try (final AsyncRecordWriter writer = new AsyncRecordWriter(temporary)) {
+
+                pipeline.classify(unclassified_records.iterator(), record -> {
+                    classified_records.accept(record);
+                    writer.write(record);
+                });
+            }
+        });
+    }
+
+    /**
+     * Classifies the given records. If {@link Configuration#isRecordStoreSelected() record stores are selected}, the
+     * classified records are held in the record store of the given name rather than on the heap.
+     *
+     * @param classifier the classifier with which to classify the records
+     * @param unclassified_records the records to classify
+     * @param name the name of the classified records
+     * @return the classified records
+     * @throws IOException if the record store cannot be written
+     */
+    Bucket classify(final Classifier classifier, final Bucket unclassified_records, final String name) throws IOException {
+
+        if (configuration.isRecordStoreSelected()) {
+
+            try (final MappedBucket classified_records = configuration.newRecordStore(name)) {
+                classifier.classify(unclassified_records, classified_records);
+                return classified_records.copy();
+            }
+        }
+
+        return classifier.classify(unclassified_records);
+    }
+
     static String formatDuration(final Duration duration) {
 
         long s = duration.getSeconds();
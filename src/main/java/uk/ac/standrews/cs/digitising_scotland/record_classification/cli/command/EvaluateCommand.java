@@ -40,8 +40,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
-import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.*;
-
 /**
  * @author Masih Hajiarab Derkani
  */
@@ -117,7 +115,7 @@ public class EvaluateCommand extends Command {
         final Classifier classifier = configuration.requireClassifier();
 
         final Instant start = Instant.now();
-        final Bucket classified_evaluation_records = classifier.classify(evaluation_records_stripped);
+        final Bucket classified_evaluation_records = classify(classifier, evaluation_records_stripped);
         final Duration evaluation_classification_time = Duration.between(start, Instant.now());
 
         logger.info(() -> String.format("classified %d evaluation records in %s", evaluation_records_stripped.size(), evaluation_classification_time));
@@ -133,10 +131,6 @@ public class EvaluateCommand extends Command {
         logConfusionMatrix(logger, Collections.singletonList(confusion_matrix));
         logClassificationMetrics(logger, Collections.singletonList(classification_metrics));
 
-        if (isOutputClassifiedRecordsPathSet()) {
-            persistClassifiedEvaluationRecords(classified_evaluation_records);
-        }
-
         //TODO export matrix as json?
         //TODO export metrics as json?
     }
@@ -146,11 +140,16 @@ public class EvaluateCommand extends Command {
         return classified_evaluation_records != null;
     }
 
-    private void persistClassifiedEvaluationRecords(final Bucket classified_records) {
+    private Bucket classify(final Classifier classifier, final Bucket evaluation_records) {
 
-        final Path destination = resolveRelativeToWorkingDirectory(classified_evaluation_records);
         try {
-            persistBucketAsCSV(classified_records, destination, RECORD_CSV_FORMAT, RESOURCE_CHARSET);
+            if (!isOutputClassifiedRecordsPathSet()) {
+                return classify(classifier, evaluation_records, Configuration.CLASSIFIED_EVALUATION_RECORDS_NAME);
+            }
+
+            // Classified records are exported as they are classified.
+            final Path destination = resolveRelativeToWorkingDirectory(classified_evaluation_records);
+            return classifyAndPersist(classifier, evaluation_records, destination, Configuration.CLASSIFIED_EVALUATION_RECORDS_NAME);
         }
         catch (IOException e) {
             logger.log(Level.SEVERE, "Failure while exporting classified evaluation records: " + e.getMessage(), e);
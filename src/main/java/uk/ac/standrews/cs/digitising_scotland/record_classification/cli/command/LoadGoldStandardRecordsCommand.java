@@ -18,7 +18,6 @@ package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.command
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
-import org.apache.commons.csv.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
@@ -78,18 +77,26 @@ public class LoadGoldStandardRecordsCommand extends LoadUnseenRecordsCommand {
     }
 
     @Override
-    protected Record toRecord(final CSVRecord record) {
+    protected Set<Integer> getColumnIndices() {
 
-        logger.finest(() -> String.format("loading record number %d, at character position %d", record.getRecordNumber(), record.getCharacterPosition()));
+        final Set<Integer> column_indices = super.getColumnIndices();
+        column_indices.add(class_column_index);
+        return column_indices;
+    }
+
+    @Override
+    protected Record toRecord(final List<String> record) {
+
+        logger.finest(() -> String.format("loading record %s", record));
 
         final Integer id = getId(record);
         final String label = getLabel(record);
         final String code = getClass(record);
 
-        return new Record(id, label, new Classification(code, new TokenList(label), 0.0, null));
+        return new Record(id, label, new Classification(code, TokenList.of(label), 0.0, null));
     }
 
-    private String getClass(final CSVRecord record) {
+    private String getClass(final List<String> record) {
 
         return record.get(class_column_index);
     }
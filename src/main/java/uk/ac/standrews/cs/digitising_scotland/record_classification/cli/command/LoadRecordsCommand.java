@@ -192,10 +192,8 @@ abstract class LoadRecordsCommand extends Command {
 
         logger.finest(() -> String.format("loading records from %s, with charset %s, with format %s", source, charset, format));
 
-        try (final BufferedReader in = Files.newBufferedReader(source, charset)) {
-
-            final CSVParser parser = format.parse(in);
-            return StreamSupport.stream(parser.spliterator(), true).map(this::toRecord).collect(Collectors.toList());
+        try {
+            return new MappedCsvReader(format, charset).read(source, getColumnIndices(), this::toRecord);
         }
         catch (RuntimeException e) {
             logger.log(Level.SEVERE, String.format("Failure while reading a record from file %s: check CSV format at specified line.", source), e);
@@ -220,35 +218,70 @@ abstract class LoadRecordsCommand extends Command {
     }
 
     /**
-     * Converts a {@link CSVRecord tabular data record} into a {@link Record}.
+     * Gets the indices of the columns used to convert tabular data records into {@link Record records}.
+     * Values in other columns are not read.
+     *
+     * @return the indices of the columns used to convert tabular data records
+     */
+    protected Set<Integer> getColumnIndices() {
+
+        return new HashSet<>(Arrays.asList(id_column_index, label_column_index));
+    }
+
+    /**
+     * Converts a tabular data record into a {@link Record}.
      *
-     * @param record the tabular data record to be converted
+     * @param record the values of the tabular data record to be converted, in which only values in the columns specified by {@link #getColumnIndices()} are present
      * @return the converted record
      */
-    protected abstract Record toRecord(final CSVRecord record);
+    protected abstract Record toRecord(final List<String> record);
 
     /**
-     * Gets the label value from a {@link CSVRecord tabular data record} based on its column index.
+     * Gets the label value from a tabular data record based on its column index.
      * The label column index may be specified via {@value #OPTION_LABEL_COLUMN_INDEX_SHORT} or {@value #OPTION_LABEL_COLUMN_INDEX_LONG} options.
      * If unspecified, the default index of {@value #DEFAULT_LABEL_COLUMN_INDEX} is used.
      *
      * @param record the record from which to extract label
      * @return the record label
      */
-    protected String getLabel(final CSVRecord record) {
+    protected String getLabel(final List<String> record) {
+
+        return getLabel(record, label_column_index);
+    }
+
+    /**
+     * Gets the label value from a tabular data record at the given column index.
+     *
+     * @param record the record from which to extract label
+     * @param label_column_index the index of the column that contains the label
+     * @return the record label
+     */
+    static String getLabel(final List<String> record, final int label_column_index) {
 
         return record.get(label_column_index);
     }
 
     /**
-     * Gets the ID value from a {@link CSVRecord tabular data record} based on its column index.
+     * Gets the ID value from a tabular data record based on its column index.
      * The ID column index may be specified via {@value #OPTION_ID_COLUMN_INDEX_SHORT} or {@value #OPTION_ID_COLUMN_INDEX_LONG} options.
      * If unspecified, the default index of {@value #DEFAULT_ID_COLUMN_INDEX} is used.
      *
      * @param record the record from which to extract ID
      * @return the record ID
      */
-    protected Integer getId(final CSVRecord record) {
+    protected Integer getId(final List<String> record) {
+
+        return getId(record, id_column_index);
+    }
+
+    /**
+     * Gets the ID value from a tabular data record at the given column index.
+     *
+     * @param record the record from which to extract ID
+     * @param id_column_index the index of the column that contains the ID
+     * @return the record ID
+     */
+    static Integer getId(final List<String> record, final int id_column_index) {
 
         return Integer.parseInt(record.get(id_column_index));
     }
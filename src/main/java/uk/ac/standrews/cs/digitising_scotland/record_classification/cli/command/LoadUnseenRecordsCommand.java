@@ -17,7 +17,6 @@
 package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.command;
 
 import com.beust.jcommander.Parameters;
-import org.apache.commons.csv.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
 
@@ -54,9 +53,9 @@ public class LoadUnseenRecordsCommand extends LoadRecordsCommand {
     }
 
     @Override
-    protected Record toRecord(final CSVRecord record) {
+    protected Record toRecord(final List<String> record) {
 
-        logger.finest(() -> String.format("Loading record number %d, at character position %d", record.getRecordNumber(), record.getCharacterPosition()));
+        logger.finest(() -> String.format("Loading record %s", record));
 
         final Integer id = getId(record);
         final String label = getLabel(record);
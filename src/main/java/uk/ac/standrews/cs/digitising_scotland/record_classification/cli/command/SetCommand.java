@@ -69,6 +69,18 @@ public class SetCommand extends Command {
     /** The long name of the option that specifies the {@link SerializationFormat format} in which to persist the state of this program. **/
     public static final String OPTION_SERIALIZATION_FORMAT_LONG = "--serializationFormat";
 
+    /** The short name of the option that specifies the {@link BucketSerializationFormat format} in which to persist records between commands. **/
+    public static final String OPTION_BUCKET_SERIALIZATION_FORMAT_SHORT = "-bs";
+
+    /** The long name of the option that specifies the {@link BucketSerializationFormat format} in which to persist records between commands. **/
+    public static final String OPTION_BUCKET_SERIALIZATION_FORMAT_LONG = "--bucketSerializationFormat";
+
+    /** The short name of the option that specifies the number of threads with which to compress and decompress persisted state. **/
+    public static final String OPTION_COMPRESSION_THREADS_SHORT = "-ct";
+
+    /** The long name of the option that specifies the number of threads with which to compress and decompress persisted state. **/
+    public static final String OPTION_COMPRESSION_THREADS_LONG = "--compressionThreads";
+
     /** The short name of the option that specifies the ratio of the gold standard records to be used for training the classifier. **/
     public static final String OPTION_TRAINING_RATIO_SHORT = "-t";
 
@@ -120,6 +132,12 @@ public class SetCommand extends Command {
     @Parameter(names = {OPTION_SERIALIZATION_FORMAT_SHORT, OPTION_SERIALIZATION_FORMAT_LONG}, descriptionKey = "command.set.serialization_format.description")
     private SerializationFormat serialization_format;
 
+    @Parameter(names = {OPTION_BUCKET_SERIALIZATION_FORMAT_SHORT, OPTION_BUCKET_SERIALIZATION_FORMAT_LONG}, descriptionKey = "command.set.bucket_serialization_format.description")
+    private BucketSerializationFormat bucket_serialization_format;
+
+    @Parameter(names = {OPTION_COMPRESSION_THREADS_SHORT, OPTION_COMPRESSION_THREADS_LONG}, descriptionKey = "command.set.compression_threads.description", validateValueWith = Validators.AtLeastOne.class)
+    private Integer compression_thread_count;
+
     @Parameter(names = {OPTION_TRAINING_RATIO_SHORT, OPTION_TRAINING_RATIO_LONG}, descriptionKey = "command.set.default_training_ratio.description")
     private Double training_ratio;
 
@@ -156,6 +174,8 @@ public class SetCommand extends Command {
         set_at_least_once |= set("default internal training ratio", internal_training_ratio, configuration::setDefaultInternalTrainingRatio);
         set_at_least_once |= set("default csv format", csv_format, configuration::setDefaultCsvFormatSupplier);
         set_at_least_once |= set("classifier serialization format", serialization_format, configuration::setClassifierSerializationFormat);
+        set_at_least_once |= set("bucket serialization format", bucket_serialization_format, configuration::setBucketSerializationFormat);
+        set_at_least_once |= set("compression thread count", compression_thread_count, configuration::setCompressionThreadCount);
         set_at_least_once |= set("verbosity level", verbosity, configuration::setVerbosity);
         set_at_least_once |= set("internal verbosity level", internal_verbosity, configuration::setInternalVerbosity);
         set_at_least_once |= set("working directory", working_directory, configuration::setWorkingDirectory);
@@ -182,6 +202,8 @@ public class SetCommand extends Command {
         private CharsetSupplier charset_supplier;
         private Character delimiter;
         private SerializationFormat serialization_format;
+        private BucketSerializationFormat bucket_serialization_format;
+        private Integer compression_thread_count;
         private Double training_ratio;
         private Double internal_training_ratio;
         private CsvFormatSupplier csv_format;
@@ -214,6 +236,16 @@ public class SetCommand extends Command {
             this.serialization_format = serialization_format;
         }
 
+        public void setBucketSerializationFormat(final BucketSerializationFormat bucket_serialization_format) {
+
+            this.bucket_serialization_format = bucket_serialization_format;
+        }
+
+        public void setCompressionThreadCount(final Integer compression_thread_count) {
+
+            this.compression_thread_count = compression_thread_count;
+        }
+
         public void setDefaultTrainingRatio(final Double training_ratio) {
 
             this.training_ratio = training_ratio;
@@ -267,6 +299,14 @@ public class SetCommand extends Command {
                 addArgument(OPTION_SERIALIZATION_FORMAT_SHORT);
                 addArgument(serialization_format);
             }
+            if (bucket_serialization_format != null) {
+                addArgument(OPTION_BUCKET_SERIALIZATION_FORMAT_SHORT);
+                addArgument(bucket_serialization_format);
+            }
+            if (compression_thread_count != null) {
+                addArgument(OPTION_COMPRESSION_THREADS_SHORT);
+                addArgument(compression_thread_count);
+            }
             if (training_ratio != null) {
                 addArgument(OPTION_TRAINING_RATIO_SHORT);
                 addArgument(training_ratio);
@@ -38,11 +38,20 @@ public class TrainCommand extends Command {
     /** The name of this command. */
     public static final String NAME = "train";
 
+    /** The short option name which updates the trained classifier with the training records rather than retraining it. **/
+    public static final String OPTION_INCREMENTAL_SHORT = "-inc";
+
+    /** The long option name which updates the trained classifier with the training records rather than retraining it. **/
+    public static final String OPTION_INCREMENTAL_LONG = "--incremental";
+
     @Parameter(names = {OPTION_INTERNAL_TRAINING_RATIO_SHORT, OPTION_INTERNAL_TRAINING_RATIO_LONG},
                descriptionKey = "command.train.internal_training_ratio.description",
                validateValueWith = Validators.BetweenZeroToOneInclusive.class)
     private Double internal_training_ratio = configuration.getDefaultInternalTrainingRatio();
 
+    @Parameter(names = {OPTION_INCREMENTAL_SHORT, OPTION_INCREMENTAL_LONG}, descriptionKey = "command.train.incremental.description")
+    private boolean incremental;
+
     /**
      * Instantiates this command for the given launcher.
      *
@@ -57,26 +66,44 @@ public class TrainCommand extends Command {
         final Classifier classifier = configuration.requireClassifier();
         final Bucket training_records = configuration.requireTrainingRecords();
 
-        logger.info(() -> String.format("training classifier %s...", configuration.getClassifierSupplier()));
+        if (incremental && !classifier.supportsIncrementalTraining()) {
+            throw new ParameterException(String.format("classifier %s does not support incremental training", configuration.getClassifierSupplier()));
+        }
+
+        logger.info(() -> String.format("%s classifier %s...", incremental ? "updating" : "training", configuration.getClassifierSupplier()));
 
         final Instant start = Instant.now();
-        classifier.trainAndEvaluate(training_records, internal_training_ratio, configuration.getRandom());
+        if (incremental) {
+            classifier.update(training_records);
+        }
+        else {
+            classifier.trainAndEvaluate(training_records, internal_training_ratio, configuration.getRandom());
+        }
         final Duration training_time = Duration.between(start, Instant.now());
 
         configuration.setTrainingTime(training_time);
 
+        // The classifier is trained in place, so would otherwise appear unchanged since it was loaded.
+        configuration.markModified(Configuration.CLASSIFIER_NAME);
+
         logger.info(() -> String.format("trained the classifier on %d records in %s", training_records.size(), formatDuration(training_time)));
     }
 
     public static class Builder extends Command.Builder {
 
         private Double internal_training_ratio;
+        private boolean incremental;
 
         public void setInternalTrainingRatio(double ratio) {
 
             this.internal_training_ratio = ratio;
         }
 
+        public void setIncremental(boolean incremental) {
+
+            this.incremental = incremental;
+        }
+
         @Override
         protected void populateArguments() {
 
@@ -85,6 +112,9 @@ public class TrainCommand extends Command {
                 addArgument(OPTION_INTERNAL_TRAINING_RATIO_SHORT);
                 addArgument(String.valueOf(internal_training_ratio));
             }
+            if (incremental) {
+                addArgument(OPTION_INCREMENTAL_SHORT);
+            }
         }
     }
 }
@@ -29,7 +29,13 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.process.seri
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.function.*;
 
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.CLASSIFIED_EVALUATION_RECORDS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.CLASSIFIED_UNSEEN_RECORDS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.EVALUATION_RECORDS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.TRAINING_RECORDS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.UNSEEN_RECORDS_NAME;
 import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.serialization.ConfigurationSerializer.*;
 
 /**
@@ -72,6 +78,10 @@ public class ConfigurationDeserializer extends JsonDeserializer<Configuration> {
                     expectNext(in, JsonToken.VALUE_NULL, JsonToken.VALUE_NUMBER_INT);
                     configuration.setSeed(in.readValueAs(Long.class));
                     break;
+                case COMPRESSION_THREAD_COUNT:
+                    expectNext(in, JsonToken.VALUE_NULL, JsonToken.VALUE_NUMBER_INT);
+                    configuration.setCompressionThreadCount(in.readValueAs(Integer.class));
+                    break;
                 case CLASSIFIER_SUPPLIER:
                     expectNext(in, JsonToken.VALUE_NULL, JsonToken.VALUE_STRING);
                     configuration.setClassifierSupplier(in.readValueAs(ClassifierSupplier.class));
@@ -80,6 +90,10 @@ public class ConfigurationDeserializer extends JsonDeserializer<Configuration> {
                     expectNext(in, JsonToken.VALUE_STRING);
                     configuration.setClassifierSerializationFormat(in.readValueAs(SerializationFormat.class));
                     break;
+                case BUCKET_SERIALIZATION_FORMAT:
+                    expectNext(in, JsonToken.VALUE_STRING);
+                    configuration.setBucketSerializationFormat(in.readValueAs(BucketSerializationFormat.class));
+                    break;
                 case VERBOSITY:
                     expectNext(in, JsonToken.VALUE_STRING);
                     configuration.setVerbosity(in.readValueAs(LogLevelSupplier.class));
@@ -127,13 +141,22 @@ public class ConfigurationDeserializer extends JsonDeserializer<Configuration> {
 
     private void readUnseenRecordsLazily(Configuration configuration) throws IOException {
 
-        configuration.setUnseenRecordsLazyLoader(() -> loadBucketIfPresent(getUnseenRecordsPath(configuration)));
+        configuration.setUnseenRecordsLazyLoader(getBucketLoader(configuration, UNSEEN_RECORDS_NAME));
+    }
+
+    private Supplier<Bucket> getBucketLoader(final Configuration configuration, final String name) {
+
+        // The records were persisted in the format selected when the configuration was persisted, which may since be changed.
+        final BucketSerializationFormat format = configuration.getBucketSerializationFormat();
+
+        return () -> loadBucketIfPresent(configuration.getRecordsPath(name, format), format);
     }
 
-    private Bucket loadBucketIfPresent(Path source) {
+    private Bucket loadBucketIfPresent(Path source, BucketSerializationFormat format) {
 
         try {
-            return Files.isRegularFile(source) ? Configuration.loadBucket(source) : null;
+            // Records persisted in a record store are held in a directory rather than a file.
+            return Files.exists(source) ? Configuration.loadBucket(source, format) : null;
         }
         catch (IOException e) {
             throw new RuntimeException(e);
@@ -148,22 +171,22 @@ public class ConfigurationDeserializer extends JsonDeserializer<Configuration> {
 
     private void readTrainingRecordsLazily(Configuration configuration) throws IOException {
 
-        configuration.setTrainingRecordsLazyLoader(() -> loadBucketIfPresent(getTrainingRecordsPath(configuration)));
+        configuration.setTrainingRecordsLazyLoader(getBucketLoader(configuration, TRAINING_RECORDS_NAME));
     }
 
     private void readEvaluationRecordsLazily(Configuration configuration) throws IOException {
 
-        configuration.setEvaluationRecordsLazyLoader(() -> loadBucketIfPresent(configuration.getEvaluationRecordsPath()));
+        configuration.setEvaluationRecordsLazyLoader(getBucketLoader(configuration, EVALUATION_RECORDS_NAME));
     }
 
     private void readClassifiedUnseenRecordsLazily(Configuration configuration) throws IOException {
 
-        configuration.setClassifiedUnseenRecordsLazyLoader(() -> loadBucketIfPresent(getClassifiedUnseenRecordsPath(configuration)));
+        configuration.setClassifiedUnseenRecordsLazyLoader(getBucketLoader(configuration, CLASSIFIED_UNSEEN_RECORDS_NAME));
     }
 
     private void readClassifiedEvaluationRecordsLazily(Configuration configuration) throws IOException {
 
-        configuration.setClassifiedEvaluationRecordsLazyLoader(() -> loadBucketIfPresent(getClassifiedEvaluationRecordsPath(configuration)));
+        configuration.setClassifiedEvaluationRecordsLazyLoader(getBucketLoader(configuration, CLASSIFIED_EVALUATION_RECORDS_NAME));
     }
 
     private void readClassifierLazily(final Configuration configuration) throws IOException {
@@ -27,10 +27,17 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.process.seri
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
-
-import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.RECORD_CSV_FORMAT;
-import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.RESOURCE_CHARSET;
-import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.persistBucketAsCSV;
+import java.util.function.*;
+
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.CLASSIFICATION_METRICS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.CLASSIFIED_EVALUATION_RECORDS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.CLASSIFIED_UNSEEN_RECORDS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.CLASSIFIER_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.CONFUSION_MATRIX_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.EVALUATION_RECORDS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.TRAINING_RECORDS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.UNSEEN_RECORDS_NAME;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.Configuration.persistBucket;
 import static uk.ac.standrews.cs.digitising_scotland.record_classification.cli.command.InitCommand.assureDirectoryExists;
 
 /**
@@ -41,14 +48,15 @@ class ConfigurationSerializer extends JsonSerializer<Configuration> {
     protected static final String DEFAULT_CHARSET_SUPPLIER = "default_charset_supplier";
     protected static final String DEFAULT_DELIMITER = "default_delimiter";
     protected static final String SEED = "seed";
+    protected static final String COMPRESSION_THREAD_COUNT = "compression_thread_count";
     protected static final String CLASSIFIER_SUPPLIER = "classifier_supplier";
     protected static final String CLASSIFIER_SERIALIZATION_FORMAT = "classifier_serialization_format";
+    protected static final String BUCKET_SERIALIZATION_FORMAT = "bucket_serialization_format";
     protected static final String DEFAULT_CSV_FORMAT_SUPPLIER = "default_csv_format_supplier";
     protected static final String DEFAULT_TRAINING_RATIO = "default_training_ratio";
     protected static final String DEFAULT_INTERNAL_TRAINING_RATIO = "default_internal_training_ratio";
     protected static final String VERBOSITY = "verbosity";
     protected static final String INTERNAL_VERBOSITY = "internal_verbosity";
-    protected static final String SERIALIZED_CLASSIFIER_FILE_NAME_PREFIX = "classifier";
 
     @Override
     public void serialize(final Configuration configuration, final JsonGenerator out, final SerializerProvider serializers) throws IOException {
@@ -61,8 +69,10 @@ class ConfigurationSerializer extends JsonSerializer<Configuration> {
         out.writeNumberField(DEFAULT_INTERNAL_TRAINING_RATIO, configuration.getDefaultInternalTrainingRatio());
         out.writeObjectField(DEFAULT_CSV_FORMAT_SUPPLIER, configuration.getDefaultCsvFormatSupplier());
         out.writeObjectField(SEED, configuration.getSeed());
+        out.writeObjectField(COMPRESSION_THREAD_COUNT, configuration.getCompressionThreadCount());
         out.writeObjectField(CLASSIFIER_SUPPLIER, configuration.getClassifierSupplier());
         out.writeObjectField(CLASSIFIER_SERIALIZATION_FORMAT, configuration.getClassifierSerializationFormat());
+        out.writeObjectField(BUCKET_SERIALIZATION_FORMAT, configuration.getBucketSerializationFormat());
         out.writeObjectField(VERBOSITY, configuration.getLogLevel());
         out.writeObjectField(INTERNAL_VERBOSITY, configuration.getInternalLogLevel());
 
@@ -79,7 +89,7 @@ class ConfigurationSerializer extends JsonSerializer<Configuration> {
 
     private void writeUnseenRecords(Configuration configuration) throws IOException {
 
-        persistBucketIfPresent(configuration.getUnseenRecordsOptional(), getUnseenRecordsPath(configuration));
+        persistBucketIfModified(configuration, configuration::getUnseenRecordsOptional, UNSEEN_RECORDS_NAME);
     }
 
     private void writeGoldStandardRecords(final Configuration configuration) throws IOException {
@@ -90,101 +100,113 @@ class ConfigurationSerializer extends JsonSerializer<Configuration> {
 
     private void writeClassifiedUnseenRecords(Configuration configuration) throws IOException {
 
-        persistBucketIfPresent(configuration.getClassifiedUnseenRecordsOptional(), getClassifiedUnseenRecordsPath(configuration));
+        persistBucketIfModified(configuration, configuration::getClassifiedUnseenRecordsOptional, CLASSIFIED_UNSEEN_RECORDS_NAME);
     }
 
     private void writeClassifiedEvaluationRecords(final Configuration configuration) throws IOException {
 
-        persistBucketIfPresent(configuration.getClassifiedEvaluationRecordsOptional(), getClassifiedEvaluationRecordsPath(configuration));
+        persistBucketIfModified(configuration, configuration::getClassifiedEvaluationRecordsOptional, CLASSIFIED_EVALUATION_RECORDS_NAME);
     }
 
     private void writeClassifier(final Configuration configuration) throws IOException {
 
-        final Optional<Classifier> classifier = configuration.getClassifierOptional();
-        if (classifier.isPresent()) {
+        if (configuration.isModified(CLASSIFIER_NAME)) {
+
+            final Optional<Classifier> classifier = configuration.getClassifierOptional();
+            if (classifier.isPresent()) {
 
-            final SerializationFormat format = configuration.getClassifierSerializationFormat();
-            final Path destination = getSerializedClassifierPath(configuration, format);
-            Serialization.persist(destination, classifier.get(), format);
+                final SerializationFormat format = configuration.getClassifierSerializationFormat();
+                final Path destination = getSerializedClassifierPath(configuration, format);
+                Serialization.persist(destination, classifier.get(), format);
+                configuration.markPersisted(CLASSIFIER_NAME, classifier.get());
+            }
         }
     }
 
     private void writeConfusionMatrix(final Configuration configuration) throws IOException {
 
-        persistObjectIfPresent(configuration.getConfusionMatrixOptional(), getConfusionMatrixPath(configuration));
+        persistObjectIfModified(configuration, configuration::getConfusionMatrixOptional, CONFUSION_MATRIX_NAME, getConfusionMatrixPath(configuration));
     }
 
     private void writeClassificationMetrics(final Configuration configuration) throws IOException {
 
-        persistObjectIfPresent(configuration.getClassificationMetricsOptional(), getClassificationMetricsPath(configuration));
+        persistObjectIfModified(configuration, configuration::getClassificationMetricsOptional, CLASSIFICATION_METRICS_NAME, getClassificationMetricsPath(configuration));
     }
 
-    private void persistBucketIfPresent(final Optional<Bucket> bucket, final Path destination) throws IOException {
+    private void persistBucketIfModified(final Configuration configuration, final Supplier<Optional<Bucket>> getter, final String name) throws IOException {
 
+        if (!configuration.isModified(name)) {
+            return;
+        }
+
+        final Optional<Bucket> bucket = getter.get();
         if (bucket.isPresent()) {
+
+            final BucketSerializationFormat format = configuration.getBucketSerializationFormat();
+            final Path destination = configuration.getRecordsPath(name, format);
+
             assureDirectoryExists(destination.getParent());
-            persistBucketAsCSV(bucket.get(), destination, RECORD_CSV_FORMAT, RESOURCE_CHARSET);
+            persistBucket(bucket.get(), destination, format);
+
+            // Remove any copy persisted in another format, which would be stale if that format were selected again.
+            for (final BucketSerializationFormat other_format : BucketSerializationFormat.values()) {
+                if (other_format != format) {
+                    Configuration.deleteRecords(configuration.getRecordsPath(name, other_format));
+                }
+            }
+
+            configuration.markPersisted(name, bucket.get());
         }
     }
 
     private void writeTrainingRecords(final Configuration configuration) throws IOException {
 
-        persistBucketIfPresent(configuration.getTrainingRecordsOptional(), getTrainingRecordsPath(configuration));
+        persistBucketIfModified(configuration, configuration::getTrainingRecordsOptional, TRAINING_RECORDS_NAME);
     }
 
     private void writeEvaluationRecords(final Configuration configuration) throws IOException {
 
-        persistBucketIfPresent(configuration.getEvaluationRecordsOptional(), configuration.getEvaluationRecordsPath());
+        persistBucketIfModified(configuration, configuration::getEvaluationRecordsOptional, EVALUATION_RECORDS_NAME);
     }
 
     static Path getSerializedClassifierPath(Configuration configuration, SerializationFormat format) {
 
         switch (format) {
             case JAVA_SERIALIZATION:
-                return configuration.getHome().resolve(SERIALIZED_CLASSIFIER_FILE_NAME_PREFIX + ".object");
+                return configuration.getHome().resolve(CLASSIFIER_NAME + ".object");
             case JSON:
-                return configuration.getHome().resolve(SERIALIZED_CLASSIFIER_FILE_NAME_PREFIX + ".json");
+                return configuration.getHome().resolve(CLASSIFIER_NAME + ".json");
             case JSON_COMPRESSED:
-                return configuration.getHome().resolve(SERIALIZED_CLASSIFIER_FILE_NAME_PREFIX + ".object");
+                return configuration.getHome().resolve(CLASSIFIER_NAME + ".object");
+            case MAPPED:
+                return configuration.getHome().resolve(CLASSIFIER_NAME + ".mapped");
+            case BINARY:
+                return configuration.getHome().resolve(CLASSIFIER_NAME + ".bin");
             default:
                 throw new RuntimeException("unsupported classifier serialization format: " + format);
         }
     }
 
-    static Path getTrainingRecordsPath(Configuration configuration) {
-
-        return configuration.getHome().resolve("training.csv");
-    }
-
-    static Path getUnseenRecordsPath(Configuration configuration) {
-
-        return configuration.getHome().resolve("unseen.csv");
-    }
-
-    static Path getClassifiedUnseenRecordsPath(Configuration configuration) {
-
-        return configuration.getHome().resolve("classified_unseen.csv");
-    }
-
-    static Path getClassifiedEvaluationRecordsPath(Configuration configuration) {
-
-        return configuration.getHome().resolve("classified_evaluation.csv");
-    }
 
     static Path getConfusionMatrixPath(Configuration configuration) {
 
-        return configuration.getHome().resolve("confusion_matrix.object");
+        return configuration.getHome().resolve(CONFUSION_MATRIX_NAME + ".object");
     }
 
     static Path getClassificationMetricsPath(Configuration configuration) {
 
-        return configuration.getHome().resolve("classification_metrics.object");
+        return configuration.getHome().resolve(CLASSIFICATION_METRICS_NAME + ".object");
     }
 
-    private void persistObjectIfPresent(final Optional<?> object, Path destination) throws IOException {
+    private void persistObjectIfModified(final Configuration configuration, final Supplier<Optional<?>> getter, final String name, final Path destination) throws IOException {
+
+        if (configuration.isModified(name)) {
 
-        if (object.isPresent()) {
-            Serialization.persist(destination, object.get(), SerializationFormat.JAVA_SERIALIZATION);
+            final Optional<?> object = getter.get();
+            if (object.isPresent()) {
+                Serialization.persist(destination, object.get(), SerializationFormat.JAVA_SERIALIZATION);
+                configuration.markPersisted(name, object.get());
+            }
         }
     }
 }
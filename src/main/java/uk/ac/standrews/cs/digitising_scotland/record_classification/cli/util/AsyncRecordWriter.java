@@ -0,0 +1,358 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Writes classified records as CSV on a dedicated encoder thread.
+ *
+ * Records passed to {@link #write(Record)} are collected into batches and handed to the encoder thread through a
+ * bounded queue, so that formatting and encoding overlap with whatever produces the records. The encoder formats
+ * records with {@link Configuration#printRecord(Record, CSVPrinter)} and encodes them into a large direct buffer that is
+ * written to the destination file whenever it fills. A failure on the encoder thread is reported by the next call to
+ * {@link #write(Record)} or {@link #close()}.
+ */
+public class AsyncRecordWriter implements ClassificationPipeline.RecordSink, Closeable {
+
+    /** The default size of the buffer into which encoded records are written, in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 22;
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final List<Record> END_OF_RECORDS = Collections.emptyList();
+
+    private final BlockingQueue<List<Record>> pending_batches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread encoder;
+    private final CSVPrinter printer;
+
+    private List<Record> batch = new ArrayList<>(BATCH_SIZE);
+    private volatile Throwable failure;
+    private boolean closed;
+
+    /**
+     * Opens a new writer in the {@link Configuration#RECORD_CSV_FORMAT record format}.
+     *
+     * @param destination the file to which to write records, which is created or truncated
+     * @throws IOException if the file cannot be opened
+     */
+    public AsyncRecordWriter(final Path destination) throws IOException {
+
+        this(destination, Configuration.RECORD_CSV_FORMAT, Configuration.RESOURCE_CHARSET, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a new writer.
+     *
+     * @param destination the file to which to write records, which is created or truncated
+     * @param format the format in which to write records
+     * @param charset the charset in which to encode records
+     * @param buffer_size the size of the buffer into which encoded records are written, in bytes
+     * @throws IOException if the file cannot be opened
+     */
+    public AsyncRecordWriter(final Path destination, final CSVFormat format, final Charset charset, final int buffer_size) throws IOException {
+
+        final FileChannel channel = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            printer = format.print(new ChannelWriter(channel, charset.newEncoder(), buffer_size));
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        encoder = new Thread(this::encode, AsyncRecordWriter.class.getSimpleName());
+        encoder.setDaemon(true);
+        encoder.start();
+    }
+
+    /**
+     * Writes all the records in the given bucket and closes this writer.
+     *
+     * @param bucket the records to write
+     * @param destination the file to which to write records
+     * @param format the format in which to write records
+     * @param charset the charset in which to encode records
+     * @throws IOException if the records cannot be written
+     */
+    public static void write(final Bucket bucket, final Path destination, final CSVFormat format, final Charset charset) throws IOException {
+
+        try (final AsyncRecordWriter writer = new AsyncRecordWriter(destination, format, charset, DEFAULT_BUFFER_SIZE)) {
+            for (Record record : bucket) {
+                writer.write(record);
+            }
+        }
+    }
+
+    @Override
+    public void accept(final Record record) throws IOException {
+
+        write(record);
+    }
+
+    /**
+     * Queues a record to be written.
+     *
+     * @param record the record to write
+     * @throws IOException if this writer is closed, or if the encoder thread has failed
+     */
+    public void write(final Record record) throws IOException {
+
+        if (closed) {
+            throw new IOException("writer is closed");
+        }
+
+        batch.add(record);
+        if (batch.size() == BATCH_SIZE) {
+            submit(batch);
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Writes any queued records, waits for the encoder thread to finish and closes the destination file.
+     *
+     * @throws IOException if the encoder thread has failed
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            // The encoder keeps draining the queue after a failure, so the end marker is always accepted.
+            if (!batch.isEmpty()) {
+                pending_batches.put(batch);
+            }
+            pending_batches.put(END_OF_RECORDS);
+            encoder.join();
+        }
+        catch (InterruptedException e) {
+            throw interrupted();
+        }
+        finally {
+            batch = null;
+        }
+
+        checkFailure();
+    }
+
+    private void submit(final List<Record> records) throws IOException {
+
+        checkFailure();
+
+        try {
+            pending_batches.put(records);
+        }
+        catch (InterruptedException e) {
+            throw interrupted();
+        }
+    }
+
+    private InterruptedIOException interrupted() {
+
+        Thread.currentThread().interrupt();
+        encoder.interrupt();
+        return new InterruptedIOException("interrupted while writing records");
+    }
+
+    private void checkFailure() throws IOException {
+
+        final Throwable cause = failure;
+
+        if (cause != null) {
+            throw new IOException("failed to write records", cause);
+        }
+    }
+
+    private void encode() {
+
+        try {
+            List<Record> records;
+
+            while ((records = pending_batches.take()) != END_OF_RECORDS) {
+
+                if (failure == null) {
+                    try {
+                        for (Record record : records) {
+                            Configuration.printRecord(record, printer);
+                        }
+                    }
+                    catch (IOException | RuntimeException e) {
+                        // Keep draining the queue so that writers do not block; the failure is reported to them.
+                        failure = e;
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        finally {
+            try {
+                printer.close();
+            }
+            catch (IOException | RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes characters into a direct buffer that is written to a channel whenever it fills.
+     */
+    private static final class ChannelWriter extends Writer {
+
+        private final WritableByteChannel channel;
+        private final CharsetEncoder encoder;
+        private final CharBuffer chars;
+        private final ByteBuffer bytes;
+
+        private ChannelWriter(final WritableByteChannel channel, final CharsetEncoder encoder, final int buffer_size) {
+
+            this.channel = channel;
+            this.encoder = encoder;
+
+            bytes = ByteBuffer.allocateDirect(Math.max(buffer_size, 1 << 10));
+            chars = CharBuffer.allocate(Math.max((int) (bytes.capacity() / encoder.maxBytesPerChar()), 1 << 8));
+        }
+
+        @Override
+        public void write(final char[] source, int offset, int length) throws IOException {
+
+            while (length > 0) {
+
+                final int count = Math.min(length, chars.remaining());
+                chars.put(source, offset, count);
+                offset += count;
+                length -= count;
+
+                if (!chars.hasRemaining()) {
+                    encode(false);
+                }
+            }
+        }
+
+        @Override
+        public void write(final String source, int offset, int length) throws IOException {
+
+            while (length > 0) {
+
+                final int count = Math.min(length, chars.remaining());
+                chars.put(source, offset, offset + count);
+                offset += count;
+                length -= count;
+
+                if (!chars.hasRemaining()) {
+                    encode(false);
+                }
+            }
+        }
+
+        @Override
+        public void write(final int character) throws IOException {
+
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            chars.put((char) character);
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+            encode(false);
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            if (!channel.isOpen()) {
+                return;
+            }
+
+            try {
+                encode(true);
+
+                CoderResult result;
+                while ((result = encoder.flush(bytes)).isOverflow()) {
+                    drain();
+                }
+                if (result.isError()) {
+                    result.throwException();
+                }
+                drain();
+            }
+            finally {
+                channel.close();
+            }
+        }
+
+        private void encode(final boolean end_of_input) throws IOException {
+
+            chars.flip();
+
+            while (true) {
+
+                final CoderResult result = encoder.encode(chars, bytes, end_of_input);
+
+                if (result.isOverflow()) {
+                    drain();
+                }
+                else if (result.isError()) {
+                    result.throwException();
+                }
+                else {
+                    break;
+                }
+            }
+
+            // Any unencoded characters are the first half of a surrogate pair split across writes.
+            chars.compact();
+        }
+
+        private void drain() throws IOException {
+
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+}
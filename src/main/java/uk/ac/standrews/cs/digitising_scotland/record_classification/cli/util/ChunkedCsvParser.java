@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util;
+
+import org.apache.commons.csv.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Parses a CSV file in chunks on multiple cores.
+ *
+ * The file is first scanned for record boundaries, taking account of quoted values that span lines, so that it can be
+ * split into chunks each of which starts at the beginning of a record. The chunks are then parsed in parallel, and the
+ * results are concatenated in the order in which they appear in the file.
+ *
+ * Files are parsed sequentially if their format or charset is such that record boundaries can't be found by scanning
+ * bytes: that is, if the format uses an escape character or comments, or if the charset is not ASCII-compatible.
+ */
+public class ChunkedCsvParser {
+
+    /** The default approximate size of chunks, in bytes. */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 23;
+
+    private static final Set<Charset> ASCII_COMPATIBLE_CHARSETS = new HashSet<>(Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1));
+
+    // Chunks must fit in an array; larger ones only arise from unbalanced quotes, in which case the file is parsed sequentially.
+    private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+    private static final byte LINE_FEED = '\n';
+    private static final byte SPACE = ' ';
+
+    // States of the scan for record boundaries.
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED_FIELD = 1;
+    private static final int QUOTED_FIELD = 2;
+    private static final int QUOTE_IN_QUOTED_FIELD = 3;
+
+    private final CSVFormat format;
+    private final Charset charset;
+    private final int chunk_size;
+
+    public ChunkedCsvParser(final CSVFormat format, final Charset charset) {
+
+        this(format, charset, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Instantiates a new parser.
+     *
+     * @param format the format of the files to be parsed
+     * @param charset the charset of the files to be parsed
+     * @param chunk_size the approximate size of chunks, in bytes
+     */
+    public ChunkedCsvParser(final CSVFormat format, final Charset charset, final int chunk_size) {
+
+        if (chunk_size < 1) {
+            throw new IllegalArgumentException("the chunk size must be at least 1");
+        }
+
+        this.format = format;
+        this.charset = charset;
+        this.chunk_size = chunk_size;
+    }
+
+    /**
+     * Parses the given file and converts each of its records.
+     *
+     * @param source the file to parse
+     * @param converter the function to convert each record, which may be called concurrently
+     * @param <T> the type of the converted records
+     * @return the converted records, in the order in which they appear in the file
+     * @throws IOException if the file cannot be read
+     */
+    public <T> List<T> parse(final Path source, final Function<CSVRecord, T> converter) throws IOException {
+
+        if (!isChunkable()) {
+            return parseSequentially(source, converter);
+        }
+
+        final List<long[]> chunks = findChunks(source);
+
+        if (hasOversizeChunk(chunks)) {
+            return parseSequentially(source, converter);
+        }
+
+        try (final FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+
+            final List<List<T>> converted_chunks = IntStream.range(0, chunks.size()).parallel().mapToObj(chunk_index -> {
+
+                try {
+                    return parseChunk(channel, chunks.get(chunk_index), chunk_index == 0, converter);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+
+            final List<T> converted_records = new ArrayList<>(converted_chunks.stream().mapToInt(List::size).sum());
+            converted_chunks.forEach(converted_records::addAll);
+            return converted_records;
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Checks whether files can be split into chunks given the format and charset of this parser.
+     *
+     * @return whether files can be split into chunks
+     */
+    public boolean isChunkable() {
+
+        final boolean quote_is_single_byte = !format.isQuoteCharacterSet() || format.getQuoteCharacter() < 0x80;
+
+        return ASCII_COMPATIBLE_CHARSETS.contains(charset) && format.getDelimiter() < 0x80 && quote_is_single_byte && !format.isEscapeCharacterSet() && !format.isCommentMarkerSet();
+    }
+
+    /**
+     * Finds the chunks of the given file, each of which starts at the beginning of a record.
+     *
+     * @param source the file
+     * @return the start and end positions of each chunk, in order
+     * @throws IOException if the file cannot be read
+     */
+    List<long[]> findChunks(final Path source) throws IOException {
+
+        final List<long[]> chunks = new ArrayList<>();
+
+        final byte delimiter = (byte) format.getDelimiter();
+        // A flag rather than an out-of-range quote value, since signed bytes such as 0xFF would otherwise match it.
+        final boolean has_quote = format.isQuoteCharacterSet();
+        final byte quote = has_quote ? (byte) format.getQuoteCharacter().charValue() : 0;
+        final boolean ignore_leading_spaces = format.getIgnoreSurroundingSpaces();
+
+        try (final InputStream in = Files.newInputStream(source)) {
+
+            final byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+
+            long chunk_start = 0;
+            long position = 0;
+            int state = FIELD_START;
+            int bytes_read;
+
+            while ((bytes_read = in.read(buffer)) > 0) {
+
+                for (int i = 0; i < bytes_read; i++, position++) {
+
+                    final byte b = buffer[i];
+                    final boolean is_quote = has_quote && b == quote;
+
+                    switch (state) {
+
+                        case QUOTED_FIELD:
+                            if (is_quote) {
+                                state = QUOTE_IN_QUOTED_FIELD;
+                            }
+                            break;
+
+                        case FIELD_START:
+                            if (is_quote) {
+                                state = QUOTED_FIELD;
+                                break;
+                            }
+                            if (b == SPACE && ignore_leading_spaces) {
+                                break;
+                            }
+                            // Otherwise treat as any other character outside quotes.
+
+                        default:
+                            if (is_quote && state == QUOTE_IN_QUOTED_FIELD) {
+                                // Escaped quote.
+                                state = QUOTED_FIELD;
+                            }
+                            else if (b == delimiter) {
+                                state = FIELD_START;
+                            }
+                            else if (b == LINE_FEED) {
+                                state = FIELD_START;
+
+                                if (position + 1 - chunk_start >= chunk_size) {
+                                    chunks.add(new long[]{chunk_start, position + 1});
+                                    chunk_start = position + 1;
+                                }
+                            }
+                            else {
+                                state = UNQUOTED_FIELD;
+                            }
+                    }
+                }
+            }
+
+            if (position > chunk_start || chunks.isEmpty()) {
+                chunks.add(new long[]{chunk_start, position});
+            }
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Checks whether any of the given chunks is too large to be held in an array or mapped as a single buffer, which
+     * only happens if the file has unbalanced quotes or a very large quoted value.
+     *
+     * @param chunks the start and end positions of chunks, as found by {@link #findChunks(Path)}
+     * @return whether any of the chunks is too large
+     */
+    static boolean hasOversizeChunk(final List<long[]> chunks) {
+
+        return chunks.stream().anyMatch(chunk -> chunk[1] - chunk[0] > MAX_CHUNK_SIZE);
+    }
+
+    private <T> List<T> parseChunk(final FileChannel channel, final long[] chunk, final boolean first_chunk, final Function<CSVRecord, T> converter) throws IOException {
+
+        final ByteBuffer bytes = ByteBuffer.allocate((int) (chunk[1] - chunk[0]));
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, chunk[0] + bytes.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        bytes.flip();
+
+        // Only the first chunk contains the header, if any.
+        final CSVFormat chunk_format = first_chunk ? format : format.withHeader((String[]) null).withSkipHeaderRecord(false);
+
+        try (final Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes.array(), 0, bytes.limit()), charset)) {
+            return convert(chunk_format.parse(reader), converter);
+        }
+    }
+
+    <T> List<T> parseSequentially(final Path source, final Function<CSVRecord, T> converter) throws IOException {
+
+        try (final BufferedReader reader = Files.newBufferedReader(source, charset)) {
+            return convert(format.parse(reader), converter);
+        }
+    }
+
+    private static <T> List<T> convert(final CSVParser parser, final Function<CSVRecord, T> converter) {
+
+        final List<T> converted_records = new ArrayList<>();
+        for (final CSVRecord record : parser) {
+            converted_records.add(converter.apply(record));
+        }
+        return converted_records;
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util;
+
+import org.apache.commons.csv.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Reads selected columns of a CSV file by scanning memory-mapped bytes.
+ *
+ * Delimiters, quotes and line breaks are found directly in the mapped bytes, and strings are decoded only for the values
+ * in the selected columns; values in other columns are skipped without being copied. The file is split into chunks as by
+ * {@link ChunkedCsvParser}, which are read in parallel.
+ *
+ * Formats that use an escape character, comments or a null string, and charsets that are not ASCII-compatible, are not
+ * supported by scanning bytes; files in those formats are parsed by {@link ChunkedCsvParser} instead. Files with a chunk too large to be mapped, which only arises from unbalanced quotes
+ * or very large quoted values, are parsed sequentially.
+ */
+public class MappedCsvReader {
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final CSVFormat format;
+    private final Charset charset;
+    private final ChunkedCsvParser chunked_parser;
+
+    public MappedCsvReader(final CSVFormat format, final Charset charset) {
+
+        this(format, charset, ChunkedCsvParser.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Instantiates a new reader.
+     *
+     * @param format the format of the files to be read
+     * @param charset the charset of the files to be read
+     * @param chunk_size the approximate size of chunks, in bytes
+     */
+    public MappedCsvReader(final CSVFormat format, final Charset charset, final int chunk_size) {
+
+        this.format = format;
+        this.charset = charset;
+        chunked_parser = new ChunkedCsvParser(format, charset, chunk_size);
+    }
+
+    /**
+     * Reads the given file and converts each of its records. Each record is presented to the converter as a list of its
+     * values, in which the values of columns that are not selected are {@code null}.
+     *
+     * @param source the file to read
+     * @param selected_columns the indices of the columns whose values are needed, starting from {@code 0}
+     * @param converter the function to convert each record, which may be called concurrently
+     * @param <T> the type of the converted records
+     * @return the converted records, in the order in which they appear in the file
+     * @throws IOException if the file cannot be read or is not in the expected format
+     */
+    public <T> List<T> read(final Path source, final Set<Integer> selected_columns, final Function<List<String>, T> converter) throws IOException {
+
+        final boolean[] selected = toSelectedFlags(selected_columns);
+
+        final Function<CSVRecord, T> record_converter = record -> converter.apply(new CSVRecordValues(record, selected));
+
+        if (!isMappable()) {
+            return chunked_parser.parse(source, record_converter);
+        }
+
+        final List<long[]> chunks = chunked_parser.findChunks(source);
+
+        if (ChunkedCsvParser.hasOversizeChunk(chunks)) {
+            return chunked_parser.parseSequentially(source, record_converter);
+        }
+
+        try (final FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+
+            final List<List<T>> converted_chunks = IntStream.range(0, chunks.size()).parallel().mapToObj(chunk_index -> {
+
+                final long[] chunk = chunks.get(chunk_index);
+
+                try {
+                    final MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                    return new ChunkReader(bytes, selected, chunk[0]).read(chunk_index == 0 && hasHeaderRecord(), converter);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+
+            final List<T> converted_records = new ArrayList<>(converted_chunks.stream().mapToInt(List::size).sum());
+            converted_chunks.forEach(converted_records::addAll);
+            return converted_records;
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Checks whether files can be read by scanning bytes given the format and charset of this reader.
+     *
+     * @return whether files can be read by scanning bytes
+     */
+    public boolean isMappable() {
+
+        return chunked_parser.isChunkable() && !format.isNullStringSet();
+    }
+
+    private boolean hasHeaderRecord() {
+
+        final String[] header = format.getHeader();
+        return header != null && (header.length == 0 || format.getSkipHeaderRecord());
+    }
+
+    private static boolean[] toSelectedFlags(final Set<Integer> selected_columns) {
+
+        final boolean[] selected = new boolean[selected_columns.stream().mapToInt(Integer::intValue).max().orElse(-1) + 1];
+        selected_columns.forEach(column -> selected[column] = true);
+        return selected;
+    }
+
+    /**
+     * Reads the records in a chunk of a file.
+     */
+    private class ChunkReader {
+
+        private final ByteBuffer bytes;
+        private final boolean[] selected;
+        private final long chunk_start;
+        private final int end;
+        private final int delimiter;
+        private final boolean has_quote;
+        private final byte quote;
+        private final boolean ignore_surrounding_spaces;
+
+        private byte[] value_bytes = new byte[64];
+        private int position;
+
+        ChunkReader(final ByteBuffer bytes, final boolean[] selected, final long chunk_start) {
+
+            this.bytes = bytes;
+            this.selected = selected;
+            this.chunk_start = chunk_start;
+
+            end = bytes.limit();
+            delimiter = format.getDelimiter();
+            has_quote = format.isQuoteCharacterSet();
+            quote = has_quote ? (byte) format.getQuoteCharacter().charValue() : 0;
+            ignore_surrounding_spaces = format.getIgnoreSurroundingSpaces();
+        }
+
+        <T> List<T> read(final boolean skip_header_record, final Function<List<String>, T> converter) throws IOException {
+
+            final List<T> converted_records = new ArrayList<>();
+            boolean skip_record = skip_header_record;
+
+            while (position < end) {
+
+                if (format.getIgnoreEmptyLines() && isLineBreak(bytes.get(position))) {
+                    skipLineBreak();
+                    continue;
+                }
+
+                final List<String> values = readRecord();
+
+                if (skip_record) {
+                    skip_record = false;
+                }
+                else {
+                    converted_records.add(converter.apply(values));
+                }
+            }
+            return converted_records;
+        }
+
+        private List<String> readRecord() throws IOException {
+
+            final String[] values = new String[selected.length];
+            int column = 0;
+
+            while (true) {
+
+                final boolean column_selected = column < selected.length && selected[column];
+                final String value = readValue(column_selected);
+
+                if (column_selected) {
+                    values[column] = format.getTrim() ? value.trim() : value;
+                }
+                column++;
+
+                if (position < end && bytes.get(position) == delimiter) {
+                    position++;
+                }
+                else {
+                    skipLineBreak();
+                    return new SparseValues(values, column);
+                }
+            }
+        }
+
+        /**
+         * Reads the value starting at the current position, leaving the position at the following delimiter, line break or end of chunk.
+         */
+        private String readValue(final boolean materialise) throws IOException {
+
+            if (ignore_surrounding_spaces) {
+                skipSpaces();
+            }
+
+            if (position < end && isQuote(bytes.get(position))) {
+                return readQuotedValue(materialise);
+            }
+
+            final int start = position;
+            while (position < end && !isEndOfValue(bytes.get(position))) {
+                position++;
+            }
+
+            int value_end = position;
+            if (ignore_surrounding_spaces) {
+                while (value_end > start && isSpace(bytes.get(value_end - 1))) {
+                    value_end--;
+                }
+            }
+
+            return materialise ? decode(start, value_end) : null;
+        }
+
+        private String readQuotedValue(final boolean materialise) throws IOException {
+
+            final long quote_position = chunk_start + position;
+            int length = 0;
+            position++;
+
+            while (true) {
+
+                if (position >= end) {
+                    throw new IOException("EOF reached before encapsulated token finished, starting at byte position " + quote_position);
+                }
+
+                final byte b = bytes.get(position++);
+
+                if (isQuote(b)) {
+                    if (position < end && isQuote(bytes.get(position))) {
+
+                        // Escaped quote.
+                        position++;
+                    }
+                    else {
+                        break;
+                    }
+                }
+
+                if (materialise) {
+                    if (length == value_bytes.length) {
+                        value_bytes = Arrays.copyOf(value_bytes, length * 2);
+                    }
+                    value_bytes[length++] = b;
+                }
+            }
+
+            skipSpaces();
+            if (position < end && !isEndOfValue(bytes.get(position))) {
+                throw new IOException("invalid char between encapsulated token and delimiter at byte position " + (chunk_start + position));
+            }
+
+            return materialise ? new String(value_bytes, 0, length, charset) : null;
+        }
+
+        private String decode(final int start, final int value_end) {
+
+            final int length = value_end - start;
+            if (length > value_bytes.length) {
+                value_bytes = new byte[Math.max(length, value_bytes.length * 2)];
+            }
+
+            final ByteBuffer value = bytes.duplicate();
+            value.position(start);
+            value.get(value_bytes, 0, length);
+
+            return new String(value_bytes, 0, length, charset);
+        }
+
+        private boolean isQuote(final byte b) {
+
+            // Compared as bytes only if a quote is set, since signed bytes such as 0xFF would otherwise match a missing quote.
+            return has_quote && b == quote;
+        }
+
+        private boolean isEndOfValue(final byte b) {
+
+            return b == delimiter || isLineBreak(b);
+        }
+
+        private void skipSpaces() {
+
+            while (position < end && isSpace(bytes.get(position))) {
+                position++;
+            }
+        }
+
+        private boolean isSpace(final byte b) {
+
+            return b != delimiter && !isLineBreak(b) && Character.isWhitespace((char) b);
+        }
+
+        private void skipLineBreak() {
+
+            if (position < end && bytes.get(position) == CARRIAGE_RETURN) {
+                position++;
+            }
+            if (position < end && bytes.get(position) == LINE_FEED) {
+                position++;
+            }
+        }
+    }
+
+    private static boolean isLineBreak(final byte b) {
+
+        return b == LINE_FEED || b == CARRIAGE_RETURN;
+    }
+
+    /**
+     * Values of a record, in which the values of columns that were not read are {@code null}.
+     */
+    private static class SparseValues extends AbstractList<String> {
+
+        private final String[] values;
+        private final int size;
+
+        SparseValues(final String[] values, final int size) {
+
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        public String get(final int index) {
+
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("column " + index + " does not exist in record with " + size + " values");
+            }
+            return index < values.length ? values[index] : null;
+        }
+
+        @Override
+        public int size() {
+
+            return size;
+        }
+    }
+
+    /**
+     * Values of a parsed record, in which the values of columns that are not selected are {@code null}.
+     */
+    private static class CSVRecordValues extends AbstractList<String> {
+
+        private final CSVRecord record;
+        private final boolean[] selected;
+
+        CSVRecordValues(final CSVRecord record, final boolean[] selected) {
+
+            this.record = record;
+            this.selected = selected;
+        }
+
+        @Override
+        public String get(final int index) {
+
+            final String value = record.get(index);
+            return index < selected.length && selected[index] ? value : null;
+        }
+
+        @Override
+        public int size() {
+
+            return record.size();
+        }
+    }
+}
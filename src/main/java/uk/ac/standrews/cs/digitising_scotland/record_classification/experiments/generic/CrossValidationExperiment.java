@@ -86,9 +86,16 @@ public class CrossValidationExperiment extends Experiment {
 
         for (Path gold_standard_file : gold_standard_files) {
 
-            try (final InputStream stream = Files.newInputStream(gold_standard_file)) {
-                final Bucket records = new Bucket(stream, LoadStep.DEFAULT_DELIMITER.charAt(0));
-                gold_standard.add(records);
+            try (final BufferedReader reader = Files.newBufferedReader(gold_standard_file, LoadStep.DEFAULT_CHARSET_SUPPLIER.get())) {
+                final Bucket records = new Bucket(reader, LoadStep.DEFAULT_DELIMITER.charAt(0));
+
+                // Avoid copying the records when there is only one gold standard file.
+                if (gold_standard.isEmpty()) {
+                    gold_standard = records;
+                }
+                else {
+                    gold_standard.add(records);
+                }
             }
         }
     }
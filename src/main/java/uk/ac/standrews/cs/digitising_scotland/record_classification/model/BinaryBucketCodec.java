@@ -0,0 +1,325 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes buckets in a compact binary columnar format, which can be read much faster than CSV since no text is parsed
+ * and, optionally, no data is re-tokenized.
+ *
+ * The format consists of a header, a dictionary of the distinct strings in the bucket, each written as its length in
+ * bytes followed by its UTF-8 encoding, and then a column for each field of the records: ids, data, original data,
+ * codes, confidences and details. String fields are written as indices into the dictionary. If token ids are included,
+ * the tokens of each record's classification follow, as dictionary indices with per-record offsets. Otherwise,
+ * classifications are given the tokens of their record's data when read.
+ *
+ * Records are written in the order of the bucket, so they are read back in linear time.
+ */
+public final class BinaryBucketCodec {
+
+    private static final int MAGIC_NUMBER = 0x434C4242;
+    private static final int VERSION = 1;
+
+    private static final int FLAG_TOKENS_INCLUDED = 1;
+
+    private static final int UNCLASSIFIED = -1;
+    private static final int NO_CLASSIFICATION = -2;
+    private static final int NULL_STRING = -1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private BinaryBucketCodec() { throw new UnsupportedOperationException(); }
+
+    /**
+     * Writes the given bucket.
+     *
+     * @param bucket the bucket to write
+     * @param out the stream to which to write the bucket; not closed
+     * @param include_tokens whether to write the tokens of each record's classification
+     * @throws IOException if the bucket cannot be written
+     */
+    public static void write(final Bucket bucket, final OutputStream out, final boolean include_tokens) throws IOException {
+
+        final int size = bucket.size();
+        final StringDictionary strings = new StringDictionary();
+
+        final int[] ids = new int[size];
+        final int[] data = new int[size];
+        final int[] original_data = new int[size];
+        final int[] codes = new int[size];
+        final double[] confidences = new double[size];
+        final int[] details = new int[size];
+        final int[] token_offsets = new int[include_tokens ? size + 1 : 0];
+        int[] tokens = new int[include_tokens ? size : 0];
+        int token_count = 0;
+
+        int row = 0;
+        for (final Record record : bucket) {
+
+            final Classification classification = record.getClassification();
+
+            ids[row] = record.getId();
+            data[row] = encode(strings, record.getData());
+            original_data[row] = encode(strings, record.getOriginalData());
+            details[row] = NULL_STRING;
+
+            if (classification == null) {
+                codes[row] = NO_CLASSIFICATION;
+            }
+            else if (classification.isUnclassified()) {
+                codes[row] = UNCLASSIFIED;
+            }
+            else {
+                codes[row] = encode(strings, classification.getCode());
+                confidences[row] = classification.getConfidence();
+                details[row] = encode(strings, classification.getDetail());
+
+                if (include_tokens && classification.getTokenList() != null) {
+                    for (final String token : classification.getTokenList()) {
+                        if (token_count == tokens.length) {
+                            tokens = Arrays.copyOf(tokens, Math.max(tokens.length * 2, 1));
+                        }
+                        tokens[token_count++] = strings.encode(token);
+                    }
+                }
+            }
+
+            if (include_tokens) {
+                token_offsets[row + 1] = token_count;
+            }
+            row++;
+        }
+
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+
+        output.writeInt(MAGIC_NUMBER);
+        output.writeInt(VERSION);
+        output.writeInt(include_tokens ? FLAG_TOKENS_INCLUDED : 0);
+        output.writeInt(size);
+
+        output.writeInt(strings.size());
+        for (int i = 0; i < strings.size(); i++) {
+
+            final byte[] bytes = strings.decode(i).getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        writeInts(output, ids, size);
+        writeInts(output, data, size);
+        writeInts(output, original_data, size);
+        writeInts(output, codes, size);
+        writeDoubles(output, confidences);
+        writeInts(output, details, size);
+
+        if (include_tokens) {
+            writeInts(output, token_offsets, size + 1);
+            writeInts(output, tokens, token_count);
+        }
+
+        output.flush();
+    }
+
+    /**
+     * Reads a bucket. The stream is buffered, so it may be read beyond the end of the bucket.
+     *
+     * @param in the stream from which to read the bucket; not closed
+     * @return the bucket
+     * @throws IOException if the bucket cannot be read or is not in the expected format
+     * @see #readExactly(DataInput)
+     */
+    public static Bucket read(final InputStream in) throws IOException {
+
+        return readExactly(new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE)));
+    }
+
+    /**
+     * Reads a bucket, reading no further than the end of its encoding. Since the lengths of all parts of the encoding
+     * are known once its header and dictionary are read, other data may follow a bucket in a stream without the bucket
+     * being buffered whole or written with its length. The input is not buffered here, so should be buffered by the caller.
+     *
+     * @param input the input from which to read the bucket
+     * @return the bucket
+     * @throws IOException if the bucket cannot be read or is not in the expected format
+     */
+    public static Bucket readExactly(final DataInput input) throws IOException {
+
+        if (input.readInt() != MAGIC_NUMBER) {
+            throw new IOException("not a binary bucket");
+        }
+
+        final int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported binary bucket version: " + version);
+        }
+
+        final boolean tokens_included = (input.readInt() & FLAG_TOKENS_INCLUDED) != 0;
+        final int size = input.readInt();
+
+        final String[] strings = new String[input.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+
+            final byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            strings[i] = StringInterner.intern(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        final int[] ids = readInts(input, size);
+        final int[] data = readInts(input, size);
+        final int[] original_data = readInts(input, size);
+        final int[] codes = readInts(input, size);
+        final double[] confidences = readDoubles(input, size);
+        final int[] details = readInts(input, size);
+
+        final int[] token_offsets = tokens_included ? readInts(input, size + 1) : null;
+        final int[] tokens = tokens_included ? readInts(input, token_offsets[size]) : null;
+
+        final TokenListReader token_lists = tokens_included ? new TokenListReader(strings, data, token_offsets, tokens) : null;
+        final Bucket.Builder builder = new Bucket.Builder(size);
+
+        for (int row = 0; row < size; row++) {
+
+            final String record_data = decode(strings, data[row]);
+            final Classification classification;
+
+            switch (codes[row]) {
+
+                case NO_CLASSIFICATION:
+                    classification = null;
+                    break;
+
+                case UNCLASSIFIED:
+                    classification = Classification.UNCLASSIFIED;
+                    break;
+
+                default:
+                    final TokenList token_list = tokens_included ? token_lists.get(row) : TokenList.of(record_data);
+                    classification = new Classification(strings[codes[row]], token_list, confidences[row], decode(strings, details[row]));
+            }
+
+            builder.add(new Record(ids[row], record_data, decode(strings, original_data[row]), classification));
+        }
+
+        return builder.build();
+    }
+
+    private static int encode(final StringDictionary strings, final String string) {
+
+        return string == null ? NULL_STRING : strings.encode(string);
+    }
+
+    private static String decode(final String[] strings, final int string_id) {
+
+        return string_id == NULL_STRING ? null : strings[string_id];
+    }
+
+    private static void writeInts(final DataOutputStream output, final int[] values, final int count) throws IOException {
+
+        final ByteBuffer bytes = ByteBuffer.allocate(count * Integer.BYTES);
+        bytes.asIntBuffer().put(values, 0, count);
+        output.write(bytes.array());
+    }
+
+    private static void writeDoubles(final DataOutputStream output, final double[] values) throws IOException {
+
+        final ByteBuffer bytes = ByteBuffer.allocate(values.length * Double.BYTES);
+        bytes.asDoubleBuffer().put(values);
+        output.write(bytes.array());
+    }
+
+    private static int[] readInts(final DataInput input, final int count) throws IOException {
+
+        final byte[] bytes = new byte[count * Integer.BYTES];
+        input.readFully(bytes);
+
+        final int[] values = new int[count];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(values);
+        return values;
+    }
+
+    private static double[] readDoubles(final DataInput input, final int count) throws IOException {
+
+        final byte[] bytes = new byte[count * Double.BYTES];
+        input.readFully(bytes);
+
+        final double[] values = new double[count];
+        ByteBuffer.wrap(bytes).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Makes the token lists of records, sharing a single unmodifiable token list among records with the same data and tokens.
+     */
+    private static class TokenListReader {
+
+        private final String[] strings;
+        private final int[] data;
+        private final int[] token_offsets;
+        private final int[] tokens;
+
+        // The first row read with each data, and its token list.
+        private final Map<Integer, Integer> rows_by_data = new HashMap<>();
+        private final Map<Integer, TokenList> token_lists_by_data = new HashMap<>();
+
+        TokenListReader(final String[] strings, final int[] data, final int[] token_offsets, final int[] tokens) {
+
+            this.strings = strings;
+            this.data = data;
+            this.token_offsets = token_offsets;
+            this.tokens = tokens;
+        }
+
+        TokenList get(final int row) {
+
+            final Integer previous_row = rows_by_data.putIfAbsent(data[row], row);
+
+            if (previous_row != null && hasSameTokens(row, previous_row)) {
+                return token_lists_by_data.get(data[row]);
+            }
+
+            final TokenList token_list = new TokenList();
+            for (int i = token_offsets[row]; i < token_offsets[row + 1]; i++) {
+                token_list.add(strings[tokens[i]]);
+            }
+
+            token_list.markShared();
+            token_lists_by_data.putIfAbsent(data[row], token_list);
+            return token_list;
+        }
+
+        private boolean hasSameTokens(final int row, final int other_row) {
+
+            final int length = token_offsets[row + 1] - token_offsets[row];
+            if (length != token_offsets[other_row + 1] - token_offsets[other_row]) {
+                return false;
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (tokens[token_offsets[row] + i] != tokens[token_offsets[other_row] + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
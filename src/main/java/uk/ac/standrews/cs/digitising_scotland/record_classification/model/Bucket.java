@@ -17,6 +17,8 @@
 package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
 
 import com.google.common.collect.Iterables;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util.Validators;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.exceptions.DuplicateRecordIdException;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.exceptions.InputFileFormatException;
@@ -24,9 +26,13 @@ import uk.ac.standrews.cs.utilities.dataset.DataSet;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.Reader;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -37,10 +43,29 @@ public class Bucket implements Iterable<Record>, Serializable {
 
     private static final String FORMAT_ERROR_MESSAGE = "record should contain id, data and optional code and confidence";
 
-    private final TreeSet<Record> records;
+    // Number of records selected from by each task of a random split, each with its own random number generator.
+    private static final int RANDOM_SPLIT_CHUNK_SIZE = 1 << 14;
+
+    // Spreads the seeds of the random number generators used by successive chunks.
+    private static final long RANDOM_SPLIT_SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+    private TreeSet<Record> records;
     private final boolean auto_allocate_ids;
     private int next_id = 1;
 
+    // Whether the records may be shared with another bucket, in which case they are copied before being modified.
+    private transient boolean records_shared;
+
+    // Incremented whenever records are added, so that values derived from this bucket can be cached.
+    private transient volatile long version;
+
+    // Secondary indexes, built on first lookup and then maintained as records are added.
+    private transient volatile Map<Integer, Record> id_index;
+    private transient volatile Map<String, List<Record>> data_index;
+
+    // Indexed snapshot of the records, built when first needed and then shared until records are next added.
+    private transient volatile List<Record> snapshot;
+
     /** Instantiates a new empty bucket. */
     public Bucket() {
 
@@ -55,35 +80,56 @@ public class Bucket implements Iterable<Record>, Serializable {
 
     public Bucket(final InputStream stream, final char delimiter) throws IOException {
 
-        this(new DataSet(stream, delimiter));
+        this(new InputStreamReader(stream, StandardCharsets.UTF_8), delimiter);
     }
 
-    public Bucket(final DataSet data_set) {
+    /**
+     * Instantiates a new bucket containing the records read from the given CSV source. Rows are converted to records as
+     * they are parsed, so the rows are never all held in memory at once. As when reading a {@link DataSet}, the first row
+     * is taken to contain column labels. The reader is not closed.
+     *
+     * @param reader the CSV source
+     * @param delimiter the CSV delimiter
+     * @throws IOException if the source cannot be read
+     * @throws InputFileFormatException if a row is not a valid record
+     */
+    public Bucket(final Reader reader, final char delimiter) throws IOException {
 
         this();
 
+        final Builder builder = new Builder();
+        final Iterator<CSVRecord> rows = CSVFormat.RFC4180.withDelimiter(delimiter).parse(reader).iterator();
+
+        if (rows.hasNext()) {
+
+            // Skip column labels.
+            rows.next();
+        }
+
         boolean first = true;
-        for (final List<String> record : data_set.getRecords()) {
+        while (rows.hasNext()) {
 
-            try {
-                final int id = extractId(record);
-                final String data = extractData(record);
-                final Classification classification = extractClassification(record, data);
+            addRecord(builder, new CSVRow(rows.next()), first);
+            first = false;
+        }
 
-                add(new Record(id, data, classification));
+        store(builder.sortedRecords());
+    }
 
-            }
-            catch (final InputFileFormatException e) {
+    public Bucket(final DataSet data_set) {
 
-                // If this is the first row, assume it's a header row and ignore exception.
-                if (!first) {
-                    throw e;
-                }
-            }
-            finally {
-                first = false;
-            }
+        this();
+
+        final Builder builder = new Builder(data_set.getRecords().size());
+
+        boolean first = true;
+        for (final List<String> record : data_set.getRecords()) {
+
+            addRecord(builder, record, first);
+            first = false;
         }
+
+        store(builder.sortedRecords());
     }
 
     public Bucket(final Collection<Record> records) {
@@ -99,7 +145,7 @@ public class Bucket implements Iterable<Record>, Serializable {
 
     public boolean isEmpty() {
 
-        return records.isEmpty();
+        return size() == 0;
     }
 
     public List<Bucket> split(final int ways, final Random random) {
@@ -108,19 +154,28 @@ public class Bucket implements Iterable<Record>, Serializable {
             throw new IllegalArgumentException("the number of splits must be at least 1");
         }
 
-        final List<Bucket> splits = new ArrayList<>(ways);
+        final List<Builder> builders = new ArrayList<>(ways);
         for (int i = 0; i < ways; i++) {
-            splits.add(new Bucket());
+            builders.add(newBuilder(size() / ways + 1));
         }
 
-        final List<Record> source_records = getRecordsList();
-        Collections.shuffle(source_records, random);
-        final Iterator<Bucket> splits_iterator = Iterables.cycle(splits).iterator();
-        for (final Record record : source_records) {
-            splits_iterator.next().add(record);
+        // Shuffle indices into the shared snapshot rather than a copy of the records. This selects the same
+        // order as Collections#shuffle, so a given random number generator produces the same splits.
+        final List<Record> source_records = asList();
+        final int[] shuffled_indices = new int[source_records.size()];
+        for (int i = 0; i < shuffled_indices.length; i++) {
+            shuffled_indices[i] = i;
+        }
+        for (int i = shuffled_indices.length; i > 1; i--) {
+            swap(shuffled_indices, i - 1, random.nextInt(i));
         }
 
-        return splits;
+        final Iterator<Builder> builders_iterator = Iterables.cycle(builders).iterator();
+        for (final int index : shuffled_indices) {
+            builders_iterator.next().add(source_records.get(index));
+        }
+
+        return builders.stream().map(Builder::build).collect(Collectors.toList());
     }
 
     /**
@@ -135,25 +190,136 @@ public class Bucket implements Iterable<Record>, Serializable {
 
     public final void add(final Bucket bucket) {
 
-        add(bucket.records);
+        add(bucket.getRecords());
     }
 
     public final void add(final Collection<Record> records) {
 
-        final int original_size = this.records.size();
+        final int original_size = size();
+        final Collection<Record> records_to_store = auto_allocate_ids ? reallocateIds(records) : records;
 
-        if (auto_allocate_ids) {
-            this.records.addAll(reallocateIds(records));
-        }
-        else {
-            this.records.addAll(records);
-        }
+        store(records_to_store);
+        snapshot = null;
+        version++;
 
-        final int final_size = this.records.size();
+        final int final_size = size();
 
         if (final_size != original_size + records.size()) {
+
+            // Indexes may now be inconsistent, so rebuild them when next needed.
+            discardIndexes();
             throw new DuplicateRecordIdException();
         }
+
+        updateIndexes(records_to_store);
+    }
+
+    /**
+     * Gets the records in this bucket, ordered by id.
+     * The returned collection is backed by this bucket's storage and must not be modified by the caller.
+     *
+     * @return the records in this bucket
+     */
+    protected Collection<Record> getRecords() {
+
+        return records;
+    }
+
+    /**
+     * Stores the given records in this bucket. Any record whose id is already present is ignored.
+     *
+     * @param records the records to store
+     */
+    protected void store(final Collection<Record> records) {
+
+        if (records_shared) {
+            this.records = new TreeSet<>(this.records);
+            records_shared = false;
+        }
+        this.records.addAll(records);
+    }
+
+    /**
+     * Checks whether this bucket allocates ids to the records added to it.
+     *
+     * @return whether this bucket allocates ids to the records added to it
+     */
+    public boolean isAutoAllocatingIds() {
+
+        return auto_allocate_ids;
+    }
+
+    /**
+     * Constructs a new bucket containing the records of this bucket. This takes constant time: the two buckets share
+     * their records until either is next modified, at which point the modified bucket takes its own copy.
+     *
+     * @return a new bucket containing the records of this bucket
+     */
+    public Bucket copy() {
+
+        return copy(auto_allocate_ids);
+    }
+
+    /**
+     * Constructs a new bucket containing the records of this bucket, with their existing ids. If the new bucket allocates
+     * ids, those allocated to records subsequently added are greater than the ids of all the records of this bucket.
+     *
+     * <p>Subclasses with their own storage should override this to return a bucket of the same kind that shares that
+     * storage until either bucket is next modified, as this class does for its own records.
+     *
+     * @param auto_allocate_ids whether the new bucket allocates ids to records added to it
+     * @return a new bucket containing the records of this bucket
+     * @see #copy()
+     */
+    public Bucket copy(final boolean auto_allocate_ids) {
+
+        final Bucket copy = new Bucket(auto_allocate_ids);
+
+        if (getRecords() == records) {
+
+            records_shared = true;
+            copy.records = records;
+            copy.records_shared = true;
+            copy.snapshot = snapshot;
+        }
+        else {
+            // A subclass that doesn't share its storage is copied into the heap.
+            copy.store(getRecords());
+        }
+
+        copy.next_id = copy.records.isEmpty() ? next_id : Math.max(next_id, copy.records.last().getId() + 1);
+        return copy;
+    }
+
+    /**
+     * Returns a builder of buckets of the same kind as this bucket. The buckets derived from this bucket, such as by
+     * {@link #randomSplit(Random, double, boolean)}, {@link #union(Bucket)} or cleaning, are built with it, so that they
+     * keep the representation of this bucket.
+     *
+     * <p>Subclasses whose representation suits derived buckets should override this to build buckets of their own kind.
+     *
+     * @param expected_size the expected number of records, used to presize the builder
+     * @return a builder of buckets of the same kind as this bucket
+     */
+    public Builder newBuilder(final int expected_size) {
+
+        return new Builder(expected_size);
+    }
+
+    /**
+     * Returns a number that changes whenever records are added to this bucket.
+     *
+     * @return the version of this bucket
+     */
+    public long getVersion() {
+
+        return version;
+    }
+
+    @Override
+    public Spliterator<Record> spliterator() {
+
+        return getRecords().spliterator();
     }
 
     public Stream<Record> stream() {
@@ -170,7 +336,7 @@ public class Bucket implements Iterable<Record>, Serializable {
 
         final DataSet dataset = new DataSet(column_labels);
 
-        for (final Record record : records) {
+        for (final Record record : this) {
 
             final String column_0 = String.valueOf(record.getId());
             final String column_1 = record.getOriginalData();
@@ -187,7 +353,7 @@ public class Bucket implements Iterable<Record>, Serializable {
 
         final DataSet dataset = new DataSet(column_labels);
 
-        for (final Record record : records) {
+        for (final Record record : this) {
 
             final String column_0 = String.valueOf(record.getId());
             final String column_1 = record.getOriginalData();
@@ -200,41 +366,125 @@ public class Bucket implements Iterable<Record>, Serializable {
 
     public Record getFirstRecord() {
 
-        return records.isEmpty() ? null : records.first();
+        final Iterator<Record> iterator = iterator();
+        return iterator.hasNext() ? iterator.next() : null;
     }
 
+    /**
+     * Returns an unmodifiable list of the records in this bucket, ordered by id.
+     *
+     * @return the records in this bucket
+     * @see #asList()
+     */
     public List<Record> getRecordsList() {
 
-        return new CopyOnWriteArrayList<>(records);
+        return asList();
+    }
+
+    /**
+     * Returns an unmodifiable, random-access list of the records in this bucket, ordered by id.
+     * The list is a snapshot, unaffected by records subsequently added to this bucket, except where a subclass's storage
+     * is already indexed, in which case it is a read-only view of that storage. Snapshots are shared, so repeated
+     * calls without intervening additions do not copy the records.
+     *
+     * @return the records in this bucket
+     */
+    public List<Record> asList() {
+
+        final Collection<Record> records = getRecords();
+
+        if (records instanceof List && records instanceof RandomAccess) {
+
+            // Subclass storage is already indexed.
+            return Collections.unmodifiableList((List<Record>) records);
+        }
+
+        List<Record> current_snapshot = snapshot;
+
+        if (current_snapshot == null) {
+            synchronized (this) {
+                current_snapshot = snapshot;
+                if (current_snapshot == null) {
+                    current_snapshot = Collections.unmodifiableList(Arrays.asList(records.toArray(new Record[0])));
+                    snapshot = current_snapshot;
+                }
+            }
+        }
+        return current_snapshot;
+    }
+
+    /**
+     * Returns an unmodifiable view of a range of the records in this bucket, ordered by id, without copying the records.
+     *
+     * @param from_index the index of the first record in the range, inclusive
+     * @param to_index the index of the last record in the range, exclusive
+     * @return the records in the range
+     * @throws IndexOutOfBoundsException if the range is not within the bounds of this bucket
+     * @see #asList()
+     */
+    public List<Record> subList(final int from_index, final int to_index) {
+
+        return asList().subList(from_index, to_index);
     }
 
     public Optional<Record> findRecordById(final int id) {
 
-        return records.stream().filter(record -> record.getId() == id).findFirst();
+        return Optional.ofNullable(getIdIndex().get(id));
+    }
+
+    /**
+     * Finds the records in this bucket with the given data.
+     *
+     * @param data the data
+     * @return the records with the given data, in id order, or an empty list if there are none
+     */
+    public List<Record> findRecordsByData(final String data) {
+
+        final List<Record> records = getDataIndex().get(data);
+        return records != null ? Collections.unmodifiableList(records) : Collections.emptyList();
     }
 
     @Override
     public Iterator<Record> iterator() {
 
-        return records.iterator();
+        return getRecords().iterator();
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(records);
+        // Consistent with Set#hashCode, so that buckets with different storage but the same records are equal.
+        int hash_code = 0;
+        for (final Record record : this) {
+            hash_code += record.hashCode();
+        }
+        return hash_code;
     }
 
     @Override
     public boolean equals(final Object other) {
 
-        return this == other || other instanceof Bucket && Objects.equals(records, ((Bucket) other).records);
+        return this == other || other instanceof Bucket && containsSameRecords((Bucket) other);
+    }
+
+    private boolean containsSameRecords(final Bucket other) {
+
+        if (size() != other.size()) {
+            return false;
+        }
+
+        for (final Record record : other) {
+            if (!contains(record)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public String toString() {
 
-        return "Bucket [records=" + records + ", size=" + size() + "]";
+        return "Bucket [records=" + getRecords() + ", size=" + size() + "]";
     }
 
     /**
@@ -244,15 +494,24 @@ public class Bucket implements Iterable<Record>, Serializable {
      */
     public int size() {
 
-        return records.size();
+        return getRecords().size();
     }
 
     public Bucket union(final Bucket other) {
 
-        final Bucket combined = new Bucket(true);
+        // Ids are allocated in ascending order, so the records can be stored in linear time.
+        final Builder combined_records = newBuilder(size() + other.size());
+        int id = 1;
 
-        combined.add(this);
-        combined.add(other);
+        for (final Record record : this) {
+            combined_records.add(new Record(id++, record.getData(), record.getOriginalData(), record.getClassification()));
+        }
+        for (final Record record : other) {
+            combined_records.add(new Record(id++, record.getData(), record.getOriginalData(), record.getClassification()));
+        }
+
+        final Bucket combined = combined_records.build(true);
+        combined.allocateIdsFrom(id);
 
         return combined;
     }
@@ -265,7 +524,7 @@ public class Bucket implements Iterable<Record>, Serializable {
      */
     public Bucket difference(final Bucket other) {
 
-        final Bucket difference = new Bucket();
+        final Builder difference = newBuilder(size());
 
         for (final Record record : this) {
             if (!other.contains(record)) {
@@ -273,7 +532,7 @@ public class Bucket implements Iterable<Record>, Serializable {
             }
         }
 
-        return difference;
+        return difference.build();
     }
 
     /**
@@ -284,17 +543,12 @@ public class Bucket implements Iterable<Record>, Serializable {
      */
     public boolean contains(final Record record) {
 
-        return records.contains(record);
+        return getIdIndex().containsKey(record.getId());
     }
 
     public boolean containsData(final String data) {
 
-        for (final Record record : this) {
-            if (record.getData().equals(data))
-                return true;
-        }
-
-        return false;
+        return getDataIndex().containsKey(data);
     }
 
     /**
@@ -305,13 +559,13 @@ public class Bucket implements Iterable<Record>, Serializable {
      */
     public Bucket stripRecordClassifications() {
 
-        final Bucket unclassified_bucket = new Bucket();
+        final Builder unclassified_bucket = newBuilder(size());
 
         for (final Record record : this) {
             unclassified_bucket.add(new Record(record.getId(), record.getData(), record.getOriginalData()));
         }
 
-        return unclassified_bucket;
+        return unclassified_bucket.build();
     }
 
     /**
@@ -327,10 +581,7 @@ public class Bucket implements Iterable<Record>, Serializable {
             unique_data_records.put(record.getOriginalData(), record);
         }
 
-        final Bucket unique_bucket = new Bucket();
-        unique_bucket.add(unique_data_records.values());
-
-        return unique_bucket;
+        return newBuilder(unique_data_records.size()).add(unique_data_records.values()).build();
     }
 
     /**
@@ -342,16 +593,16 @@ public class Bucket implements Iterable<Record>, Serializable {
      */
     public Bucket randomSubset(final Random random, final double selection_probability) {
 
-        final Bucket subset = new Bucket();
+        final int expected_subset_size = (int) (size() * selection_probability);
+        final Builder subset = newBuilder(expected_subset_size);
 
         if (selection_probability > 1.0 - Validators.DELTA) {
 
-            subset.add(records);
+            subset.add(getRecords());
         }
         else if (selection_probability > Validators.DELTA) {
 
-            final Bucket not_selected = new Bucket();
-            final int expected_subset_size = (int) (size() * selection_probability);
+            final Builder not_selected = new Builder(size() - expected_subset_size);
 
             for (final Record record : this) {
                 if (subset.size() < expected_subset_size && random.nextDouble() < selection_probability) {
@@ -363,14 +614,129 @@ public class Bucket implements Iterable<Record>, Serializable {
             }
 
             // Add further records as necessary to make up to required size.
-            for (final Record record : not_selected) {
+            for (final Record record : not_selected.records()) {
                 if (subset.size() < expected_subset_size) {
                     subset.add(record);
                 }
             }
         }
 
-        return subset;
+        return subset.build();
+    }
+
+    /**
+     * Splits this bucket into two new buckets, the first containing a randomly selected subset of this bucket's records
+     * and the second containing the remaining records. Unlike {@link #randomSubset(Random, double)} followed by
+     * {@link #difference(Bucket)}, the records are selected in a single pass, split into chunks that are processed in
+     * parallel. Each chunk has its own random number generator, seeded from the given one, so that the selection depends
+     * only on the given random number generator and not on the number of threads.
+     *
+     * <p>If stratified, records are grouped by classification code and each group is split in the given proportion,
+     * so that the two buckets have approximately the same distribution of codes as this bucket.
+     *
+     * @param random the random number generator
+     * @param selection_probability the proportion of records to be selected, within inclusive range of {@code 0.0} to {@code 1.0}
+     * @param stratified whether to preserve the proportion of records with each classification code
+     * @return a list containing the bucket of selected records followed by the bucket of remaining records
+     */
+    public List<Bucket> randomSplit(final Random random, final double selection_probability, final boolean stratified) {
+
+        final double proportion = selection_probability > 1.0 - Validators.DELTA ? 1.0 : selection_probability > Validators.DELTA ? selection_probability : 0.0;
+        final long seed = random.nextLong();
+
+        final List<Record> source_records = asList();
+        final int size = source_records.size();
+
+        // Positions of records in the order they are considered, grouped into strata, or null to consider them in id order.
+        final int[] positions;
+        final int[] strata_boundaries;
+
+        if (stratified) {
+
+            final Map<String, Integer> stratum_sizes = new TreeMap<>();
+            for (final Record record : source_records) {
+                stratum_sizes.merge(record.getClassification().getCode(), 1, Integer::sum);
+            }
+
+            final Map<String, Integer> stratum_offsets = new HashMap<>();
+            strata_boundaries = new int[stratum_sizes.size() + 1];
+
+            int stratum_index = 0;
+            for (final Map.Entry<String, Integer> stratum : stratum_sizes.entrySet()) {
+                stratum_offsets.put(stratum.getKey(), strata_boundaries[stratum_index]);
+                strata_boundaries[stratum_index + 1] = strata_boundaries[stratum_index] + stratum.getValue();
+                stratum_index++;
+            }
+
+            positions = new int[size];
+            for (int i = 0; i < size; i++) {
+
+                final String code = source_records.get(i).getClassification().getCode();
+                final int position = stratum_offsets.get(code);
+
+                positions[position] = i;
+                stratum_offsets.put(code, position + 1);
+            }
+        }
+        else {
+            positions = null;
+            strata_boundaries = new int[]{0, size};
+        }
+
+        final List<int[]> chunks = new ArrayList<>();
+        for (int stratum_index = 0; stratum_index < strata_boundaries.length - 1; stratum_index++) {
+            for (int start = strata_boundaries[stratum_index]; start < strata_boundaries[stratum_index + 1]; start += RANDOM_SPLIT_CHUNK_SIZE) {
+                chunks.add(new int[]{start, Math.min(start + RANDOM_SPLIT_CHUNK_SIZE, strata_boundaries[stratum_index + 1])});
+            }
+        }
+
+        final boolean[] selected = new boolean[size];
+
+        chunks.parallelStream().forEach(chunk -> {
+
+            final int start = chunk[0];
+            final int end = chunk[1];
+            final SplittableRandom chunk_random = new SplittableRandom(seed + start * RANDOM_SPLIT_SEED_INCREMENT);
+
+            // Select exactly the chunk's share of the records, so that the overall number selected is independent of the chunking.
+            int remaining_to_select = (int) (end * proportion) - (int) (start * proportion);
+
+            for (int position = start; position < end && remaining_to_select > 0; position++) {
+                if (chunk_random.nextInt(end - position) < remaining_to_select) {
+                    selected[positions != null ? positions[position] : position] = true;
+                    remaining_to_select--;
+                }
+            }
+        });
+
+        final int expected_selected_size = (int) (size * proportion);
+        final Builder selected_records = newBuilder(expected_selected_size);
+        final Builder remaining_records = newBuilder(size - expected_selected_size);
+
+        for (int i = 0; i < size; i++) {
+            (selected[i] ? selected_records : remaining_records).add(source_records.get(i));
+        }
+
+        return Arrays.asList(selected_records.build(), remaining_records.build());
+    }
+
+    private void addRecord(final Builder builder, final List<String> record, final boolean first) {
+
+        try {
+            final int id = extractId(record);
+            final String data = extractData(record);
+            final Classification classification = extractClassification(record, data);
+
+            builder.add(new Record(id, data, classification));
+
+        }
+        catch (final InputFileFormatException e) {
+
+            // If this is the first row, assume it's a header row and ignore exception.
+            if (!first) {
+                throw e;
+            }
+        }
     }
 
     private int extractId(final List<String> record) {
@@ -408,7 +774,7 @@ public class Bucket implements Iterable<Record>, Serializable {
         final double confidence = extractConfidence(record);
         final String detail = extractDetail(record);
 
-        return code.isEmpty() ? Classification.UNCLASSIFIED : new Classification(code, new TokenList(data), confidence, detail);
+        return code.isEmpty() ? Classification.UNCLASSIFIED : new Classification(code, TokenList.of(data), confidence, detail);
     }
 
     private double extractConfidence(final List<String> record) {
@@ -432,6 +798,337 @@ public class Bucket implements Iterable<Record>, Serializable {
         return record.size() < 5 ? null : record.get(4);
     }
 
+    /**
+     * Builds a bucket from records added in any order. This is much cheaper than adding records to a bucket one at a time,
+     * since records are appended to an array and sorted once when the bucket is built.
+     *
+     * @see Bucket#newBuilder(int)
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+        private final Function<Boolean, ? extends Bucket> bucket_factory;
+
+        private Record[] records;
+        private int size = 0;
+        private boolean sorted = true;
+
+        public Builder() {
+
+            this(DEFAULT_INITIAL_CAPACITY);
+        }
+
+        /**
+         * Instantiates a new builder.
+         *
+         * @param expected_size the expected number of records, used to presize the builder
+         */
+        public Builder(final int expected_size) {
+
+            this(expected_size, Bucket::new);
+        }
+
+        /**
+         * Instantiates a new builder of buckets of a particular kind.
+         *
+         * @param expected_size the expected number of records, used to presize the builder
+         * @param bucket_factory constructs an empty bucket of the kind built, given whether it allocates ids
+         */
+        public Builder(final int expected_size, final Function<Boolean, ? extends Bucket> bucket_factory) {
+
+            this.bucket_factory = bucket_factory;
+            records = new Record[Math.max(expected_size, 1)];
+        }
+
+        public Builder add(final Record record) {
+
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+            }
+
+            if (size > 0 && record.compareTo(records[size - 1]) <= 0) {
+                sorted = false;
+            }
+
+            records[size++] = record;
+            return this;
+        }
+
+        public Builder add(final Collection<Record> records) {
+
+            if (size + records.size() > this.records.length) {
+                this.records = Arrays.copyOf(this.records, Math.max(this.records.length * 2, size + records.size()));
+            }
+
+            records.forEach(this::add);
+            return this;
+        }
+
+        /**
+         * Returns the number of records added so far.
+         *
+         * @return the number of records
+         */
+        public int size() {
+
+            return size;
+        }
+
+        /**
+         * Builds a new bucket containing the added records.
+         *
+         * @return the new bucket
+         * @throws DuplicateRecordIdException if more than one added record has the same id
+         */
+        public Bucket build() {
+
+            return build(false);
+        }
+
+        private Bucket build(final boolean auto_allocate_ids) {
+
+            final Bucket bucket = bucket_factory.apply(auto_allocate_ids);
+            bucket.store(sortedRecords());
+            return bucket;
+        }
+
+        private List<Record> records() {
+
+            return Arrays.asList(records).subList(0, size);
+        }
+
+        private SortedSet<Record> sortedRecords() {
+
+            if (!sorted) {
+
+                Arrays.sort(records, 0, size);
+
+                for (int i = 1; i < size; i++) {
+                    if (records[i].compareTo(records[i - 1]) == 0) {
+                        throw new DuplicateRecordIdException();
+                    }
+                }
+                sorted = true;
+            }
+
+            return new SortedRecords(records, size);
+        }
+    }
+
+    /**
+     * Read-only list view of the values in a parsed CSV row.
+     */
+    private static class CSVRow extends AbstractList<String> {
+
+        private final CSVRecord row;
+
+        CSVRow(final CSVRecord row) {
+
+            this.row = row;
+        }
+
+        @Override
+        public String get(final int index) {
+
+            return row.get(index);
+        }
+
+        @Override
+        public int size() {
+
+            return row.size();
+        }
+    }
+
+    /**
+     * Minimal sorted set view of an array of records already sorted by id, which allows a {@link TreeSet} to be populated in linear time.
+     */
+    private static class SortedRecords extends AbstractSet<Record> implements SortedSet<Record> {
+
+        private final Record[] records;
+        private final int size;
+
+        SortedRecords(final Record[] records, final int size) {
+
+            this.records = records;
+            this.size = size;
+        }
+
+        @Override
+        public Iterator<Record> iterator() {
+
+            return Arrays.asList(records).subList(0, size).iterator();
+        }
+
+        @Override
+        public int size() {
+
+            return size;
+        }
+
+        @Override
+        public Comparator<? super Record> comparator() {
+
+            // Natural ordering, the same as the bucket's own.
+            return null;
+        }
+
+        @Override
+        public Record first() {
+
+            if (size == 0) {
+                throw new NoSuchElementException();
+            }
+            return records[0];
+        }
+
+        @Override
+        public Record last() {
+
+            if (size == 0) {
+                throw new NoSuchElementException();
+            }
+            return records[size - 1];
+        }
+
+        @Override
+        public SortedSet<Record> subSet(final Record from, final Record to) {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<Record> headSet(final Record to) {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<Record> tailSet(final Record from) {
+
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private Map<Integer, Record> getIdIndex() {
+
+        Map<Integer, Record> index = id_index;
+
+        if (index == null) {
+            synchronized (this) {
+                index = id_index;
+                if (index == null) {
+                    index = new HashMap<>();
+                    addToIdIndex(index, getRecords());
+                    id_index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private Map<String, List<Record>> getDataIndex() {
+
+        Map<String, List<Record>> index = data_index;
+
+        if (index == null) {
+            synchronized (this) {
+                index = data_index;
+                if (index == null) {
+                    index = new HashMap<>();
+                    addToDataIndex(index, getRecords());
+                    data_index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private synchronized void updateIndexes(final Collection<Record> added_records) {
+
+        if (id_index != null) {
+            addToIdIndex(id_index, added_records);
+        }
+
+        if (data_index != null) {
+
+            // Keep the per-data lists in id order if the new records aren't all after the existing ones.
+            if (addToDataIndex(data_index, added_records)) {
+                data_index = null;
+            }
+        }
+    }
+
+    private synchronized void discardIndexes() {
+
+        id_index = null;
+        data_index = null;
+    }
+
+    private static void addToIdIndex(final Map<Integer, Record> index, final Collection<Record> records) {
+
+        for (final Record record : records) {
+            index.put(record.getId(), record);
+        }
+    }
+
+    /**
+     * Adds records to a data index.
+     *
+     * @return true if any record was added out of id order
+     */
+    private static boolean addToDataIndex(final Map<String, List<Record>> index, final Collection<Record> records) {
+
+        boolean out_of_order = false;
+
+        for (final Record record : records) {
+
+            final List<Record> records_with_data = index.computeIfAbsent(record.getData(), data -> new ArrayList<>(1));
+
+            if (!records_with_data.isEmpty() && records_with_data.get(records_with_data.size() - 1).getId() > record.getId()) {
+                out_of_order = true;
+            }
+            records_with_data.add(record);
+        }
+        return out_of_order;
+    }
+
+    /**
+     * Ensures that any ids subsequently allocated by this bucket are at least the given id.
+     *
+     * @param next_id the lowest id that may be allocated
+     */
+    void allocateIdsFrom(final int next_id) {
+
+        this.next_id = Math.max(this.next_id, next_id);
+    }
+
+    /**
+     * Gets the lowest id that this bucket may allocate to a record subsequently added.
+     *
+     * @return the lowest id that may be allocated
+     */
+    int getNextId() {
+
+        return next_id;
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+
+        // Buckets that shared records when written also share them when read.
+        records_shared = true;
+    }
+
+    private static void swap(final int[] array, final int i, final int j) {
+
+        final int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+
     private Collection<Record> reallocateIds(final Collection<Record> records) {
 
         return records.stream().map(record -> new Record(next_id++, record.getData(), record.getOriginalData(), record.getClassification())).collect(Collectors.toList());
@@ -16,6 +16,8 @@
  */
 package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 public class Classification implements Serializable {
@@ -30,16 +32,45 @@ public class Classification implements Serializable {
     private double confidence;
     private String detail;
 
+    // Set instead of the token list where the tokens are those of some data, so that they are only looked up when needed.
+    private String tokenized_data;
+
     public Classification() {
 
     }
 
     public Classification(final String code, final TokenList token_list, final double confidence, final String detail) {
 
-        this.code = code;
+        this.code = StringInterner.intern(code);
         this.token_list = token_list;
         this.confidence = confidence;
-        this.detail = detail;
+        this.detail = StringInterner.intern(detail);
+    }
+
+    /**
+     * Instantiates a classification whose token list is that of the given data. The tokens are looked up from the
+     * {@link TokenList#of(String) shared token lists} whenever they are requested, rather than being held by the
+     * classification.
+     *
+     * @param code the code
+     * @param data the data whose tokens the classification has
+     * @param confidence the confidence
+     * @param detail the detail, may be {@code null}
+     * @return the classification
+     */
+    public static Classification withTokensOf(final String code, final String data, final double confidence, final String detail) {
+
+        final Classification classification = new Classification(code, null, confidence, detail);
+        classification.tokenized_data = data;
+        return classification;
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+
+        code = StringInterner.intern(code);
+        detail = StringInterner.intern(detail);
     }
 
     public String getCode() {
@@ -49,7 +80,7 @@ public class Classification implements Serializable {
 
     public TokenList getTokenList() {
 
-        return token_list;
+        return token_list == null && tokenized_data != null ? TokenList.of(tokenized_data) : token_list;
     }
 
     public double getConfidence() {
@@ -70,7 +101,7 @@ public class Classification implements Serializable {
     @Override
     public String toString() {
 
-        return "Classification [code=" + code + ", token_list=" + token_list + ", confidence=" + confidence + (detail != null ? ", detail=" + detail : "") + "]";
+        return "Classification [code=" + code + ", token_list=" + getTokenList() + ", confidence=" + confidence + (detail != null ? ", detail=" + detail : "") + "]";
     }
 
     public Classification makeClone() {
@@ -85,7 +116,16 @@ public class Classification implements Serializable {
 
     public Classification makeClone(double confidence, String detail) {
 
-        return isUnclassified() ? UNCLASSIFIED : new Classification(code, new TokenList(token_list.toString()), confidence, detail);
+        if (isUnclassified()) {
+            return UNCLASSIFIED;
+        }
+        if (tokenized_data != null) {
+            return withTokensOf(code, tokenized_data, confidence, detail);
+        }
+
+        // Shared token lists cannot be modified, so the clone can hold the same list; others are copied without tokenizing again.
+        final TokenList cloned_token_list = token_list == null || token_list.isShared() ? token_list : TokenList.fromTokens(token_list);
+        return new Classification(code, cloned_token_list, confidence, detail);
     }
 
     public boolean isUnclassified() {
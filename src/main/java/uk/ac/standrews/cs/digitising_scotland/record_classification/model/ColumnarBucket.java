@@ -0,0 +1,542 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+
+/**
+ * Bucket that stores its records column-wise in primitive arrays rather than as individual {@link Record} objects.
+ * Record ids, confidences and dictionary-encoded data, codes, details and tokens are each held in a single array,
+ * and each distinct string is held once. {@link Record} instances are created on demand when the bucket is iterated
+ * or streamed, so a large bucket occupies a small fraction of the memory and garbage collection overhead of a
+ * {@link Bucket}, at the cost of allocating records as they are read.
+ *
+ * Since records are created on demand, changes to the {@link Classification} of a record obtained from this bucket,
+ * such as {@link Classification#setConfidence(double)}, are not reflected in the bucket.
+ *
+ * A copy of this bucket is also columnar, and shares the columns with this bucket until either is next modified.
+ * Buckets derived from this bucket, such as by splitting or cleaning it, are also columnar.
+ */
+public class ColumnarBucket extends Bucket {
+
+    private static final long serialVersionUID = -2406283741823016385L;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int UNCLASSIFIED = -1;
+    private static final int NO_CLASSIFICATION = -2;
+    private static final int NULL_STRING = -1;
+
+    private StringDictionary strings = new StringDictionary();
+
+    private int row_count = 0;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] data = new int[INITIAL_CAPACITY];
+    private int[] original_data = new int[INITIAL_CAPACITY];
+    private int[] codes = new int[INITIAL_CAPACITY];
+    private double[] confidences = new double[INITIAL_CAPACITY];
+    private int[] details = new int[INITIAL_CAPACITY];
+
+    // The tokens of row i are tokens[token_offsets[i]] to tokens[token_offsets[i + 1] - 1].
+    private int token_count = 0;
+    private int[] token_offsets = new int[INITIAL_CAPACITY + 1];
+    private int[] tokens = new int[INITIAL_CAPACITY];
+
+    // The rows whose classifications have a null token list, as distinct from an empty one.
+    private BitSet null_token_lists = new BitSet();
+
+    // Rows are kept in order of insertion until the bucket is next read, then sorted by id.
+    private boolean sorted = true;
+    private int max_id = Integer.MIN_VALUE;
+
+    // Whether the columns may be shared with another bucket, in which case they are copied before being modified.
+    private transient boolean columns_shared;
+
+    // Only needed to detect duplicate ids when records are added out of id order.
+    private transient IdSet id_set;
+
+    private transient List<Record> records_view;
+
+    public ColumnarBucket() {
+
+        this(false);
+    }
+
+    public ColumnarBucket(final boolean auto_allocate_ids) {
+
+        super(auto_allocate_ids);
+    }
+
+    public ColumnarBucket(final Iterable<Record> records) {
+
+        this();
+
+        final List<Record> list = new ArrayList<>();
+        records.forEach(list::add);
+        add(list);
+    }
+
+    public ColumnarBucket(final Record... records) {
+
+        this(Arrays.asList(records));
+    }
+
+    @Override
+    protected synchronized Collection<Record> getRecords() {
+
+        ensureSorted();
+
+        if (records_view == null) {
+            records_view = new RecordsView();
+        }
+        return records_view;
+    }
+
+    @Override
+    protected synchronized void store(final Collection<Record> records) {
+
+        if (columns_shared) {
+            unshareColumns();
+        }
+
+        ensureCapacity(row_count + records.size());
+
+        for (final Record record : records) {
+
+            final int id = record.getId();
+
+            if (row_count > 0 && id <= max_id) {
+
+                if (getIdSet().contains(id)) {
+                    continue;
+                }
+                sorted = false;
+            }
+            else {
+                max_id = id;
+            }
+
+            if (id_set != null) {
+                id_set.add(id);
+            }
+
+            append(record);
+        }
+    }
+
+    /**
+     * Returns a builder of columnar buckets, so that buckets derived from this bucket are also columnar.
+     *
+     * @param expected_size the expected number of records, used to presize the builder
+     * @return a builder of columnar buckets
+     */
+    @Override
+    public Builder newBuilder(final int expected_size) {
+
+        return new Builder(expected_size, ColumnarBucket::new);
+    }
+
+    @Override
+    public ColumnarBucket copy() {
+
+        return copy(isAutoAllocatingIds());
+    }
+
+    /**
+     * Constructs a new columnar bucket containing the records of this bucket. This takes constant time: the two buckets
+     * share their columns until either is next modified, at which point the modified bucket takes its own copy.
+     *
+     * @param auto_allocate_ids whether the new bucket allocates ids to records added to it
+     * @return a new columnar bucket containing the records of this bucket
+     */
+    @Override
+    public synchronized ColumnarBucket copy(final boolean auto_allocate_ids) {
+
+        // Sorting replaces the columns rather than reordering them in place, but sort first so that it's done only once.
+        ensureSorted();
+
+        final ColumnarBucket copy = new ColumnarBucket(auto_allocate_ids);
+
+        copy.strings = strings;
+        copy.row_count = row_count;
+        copy.ids = ids;
+        copy.data = data;
+        copy.original_data = original_data;
+        copy.codes = codes;
+        copy.confidences = confidences;
+        copy.details = details;
+        copy.token_count = token_count;
+        copy.token_offsets = token_offsets;
+        copy.tokens = tokens;
+        copy.null_token_lists = null_token_lists;
+        copy.max_id = max_id;
+
+        columns_shared = true;
+        copy.columns_shared = true;
+
+        copy.allocateIdsFrom(row_count > 0 ? Math.max(getNextId(), max_id + 1) : getNextId());
+        return copy;
+    }
+
+    @Override
+    public synchronized int size() {
+
+        return row_count;
+    }
+
+    @Override
+    public synchronized boolean contains(final Record record) {
+
+        ensureSorted();
+        return indexOf(record.getId()) >= 0;
+    }
+
+    @Override
+    public synchronized Optional<Record> findRecordById(final int id) {
+
+        ensureSorted();
+
+        final int row = indexOf(id);
+        return row >= 0 ? Optional.of(makeRecord(row)) : Optional.empty();
+    }
+
+    private int indexOf(final int id) {
+
+        return Arrays.binarySearch(ids, 0, row_count, id);
+    }
+
+    private void append(final Record record) {
+
+        final int row = row_count++;
+        final Classification classification = record.getClassification();
+
+        ids[row] = record.getId();
+        data[row] = encode(record.getData());
+        original_data[row] = encode(record.getOriginalData());
+
+        if (classification == null) {
+            codes[row] = NO_CLASSIFICATION;
+            details[row] = NULL_STRING;
+        }
+        else if (classification.isUnclassified()) {
+            codes[row] = UNCLASSIFIED;
+            details[row] = NULL_STRING;
+        }
+        else {
+            codes[row] = encode(classification.getCode());
+            confidences[row] = classification.getConfidence();
+            details[row] = encode(classification.getDetail());
+            appendTokens(row, classification.getTokenList());
+        }
+
+        token_offsets[row + 1] = token_count;
+    }
+
+    private void appendTokens(final int row, final TokenList token_list) {
+
+        if (token_list == null) {
+            null_token_lists.set(row);
+        }
+        else {
+
+            if (token_count + token_list.size() > tokens.length) {
+                tokens = Arrays.copyOf(tokens, Math.max(tokens.length * 2, token_count + token_list.size()));
+            }
+
+            for (final String token : token_list) {
+                tokens[token_count++] = strings.encode(token);
+            }
+        }
+    }
+
+    private int encode(final String string) {
+
+        return string == null ? NULL_STRING : strings.encode(string);
+    }
+
+    private String decode(final int string_id) {
+
+        return string_id == NULL_STRING ? null : strings.decode(string_id);
+    }
+
+    private Record makeRecord(final int row) {
+
+        return new Record(ids[row], decode(data[row]), decode(original_data[row]), makeClassification(row));
+    }
+
+    private Classification makeClassification(final int row) {
+
+        switch (codes[row]) {
+
+            case NO_CLASSIFICATION:
+                return null;
+
+            case UNCLASSIFIED:
+                return Classification.UNCLASSIFIED;
+
+            default:
+                return new Classification(strings.decode(codes[row]), makeTokenList(row), confidences[row], decode(details[row]));
+        }
+    }
+
+    private TokenList makeTokenList(final int row) {
+
+        if (null_token_lists.get(row)) {
+            return null;
+        }
+
+        final TokenList token_list = new TokenList();
+        for (int i = token_offsets[row]; i < token_offsets[row + 1]; i++) {
+            token_list.add(strings.decode(tokens[i]));
+        }
+        return token_list;
+    }
+
+    private void unshareColumns() {
+
+        ids = ids.clone();
+        data = data.clone();
+        original_data = original_data.clone();
+        codes = codes.clone();
+        confidences = confidences.clone();
+        details = details.clone();
+        token_offsets = token_offsets.clone();
+        tokens = tokens.clone();
+        null_token_lists = (BitSet) null_token_lists.clone();
+        strings = strings.copy();
+
+        columns_shared = false;
+    }
+
+    private void ensureCapacity(final int required_rows) {
+
+        if (required_rows > ids.length) {
+
+            final int capacity = Math.max(ids.length * 2, required_rows);
+
+            ids = Arrays.copyOf(ids, capacity);
+            data = Arrays.copyOf(data, capacity);
+            original_data = Arrays.copyOf(original_data, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+            confidences = Arrays.copyOf(confidences, capacity);
+            details = Arrays.copyOf(details, capacity);
+            token_offsets = Arrays.copyOf(token_offsets, capacity + 1);
+        }
+    }
+
+    private void ensureSorted() {
+
+        if (!sorted) {
+
+            // Sort row numbers by id, packing each id with its row number so that a primitive sort can be used.
+            final long[] keys = new long[row_count];
+            for (int row = 0; row < row_count; row++) {
+                keys[row] = ((long) ids[row] << 32) | row;
+            }
+            Arrays.sort(keys);
+
+            final int[] sorted_ids = new int[ids.length];
+            final int[] sorted_data = new int[ids.length];
+            final int[] sorted_original_data = new int[ids.length];
+            final int[] sorted_codes = new int[ids.length];
+            final double[] sorted_confidences = new double[ids.length];
+            final int[] sorted_details = new int[ids.length];
+            final int[] sorted_token_offsets = new int[ids.length + 1];
+            final int[] sorted_tokens = new int[tokens.length];
+            final BitSet sorted_null_token_lists = new BitSet();
+
+            int sorted_token_count = 0;
+
+            for (int i = 0; i < row_count; i++) {
+
+                final int row = (int) keys[i];
+
+                sorted_ids[i] = ids[row];
+                sorted_data[i] = data[row];
+                sorted_original_data[i] = original_data[row];
+                sorted_codes[i] = codes[row];
+                sorted_confidences[i] = confidences[row];
+                sorted_details[i] = details[row];
+                sorted_null_token_lists.set(i, null_token_lists.get(row));
+
+                final int row_token_count = token_offsets[row + 1] - token_offsets[row];
+                System.arraycopy(tokens, token_offsets[row], sorted_tokens, sorted_token_count, row_token_count);
+                sorted_token_count += row_token_count;
+                sorted_token_offsets[i + 1] = sorted_token_count;
+            }
+
+            ids = sorted_ids;
+            data = sorted_data;
+            original_data = sorted_original_data;
+            codes = sorted_codes;
+            confidences = sorted_confidences;
+            details = sorted_details;
+            token_offsets = sorted_token_offsets;
+            tokens = sorted_tokens;
+            null_token_lists = sorted_null_token_lists;
+
+            sorted = true;
+        }
+    }
+
+    private IdSet getIdSet() {
+
+        if (id_set == null) {
+
+            id_set = new IdSet(row_count * 2);
+            for (int row = 0; row < row_count; row++) {
+                id_set.add(ids[row]);
+            }
+        }
+        return id_set;
+    }
+
+    private synchronized void writeObject(final ObjectOutputStream out) throws IOException {
+
+        ensureSorted();
+
+        // Don't write out unused capacity.
+        ids = Arrays.copyOf(ids, Math.max(row_count, 1));
+        data = Arrays.copyOf(data, ids.length);
+        original_data = Arrays.copyOf(original_data, ids.length);
+        codes = Arrays.copyOf(codes, ids.length);
+        confidences = Arrays.copyOf(confidences, ids.length);
+        details = Arrays.copyOf(details, ids.length);
+        token_offsets = Arrays.copyOf(token_offsets, ids.length + 1);
+        tokens = Arrays.copyOf(tokens, Math.max(token_count, 1));
+
+        out.defaultWriteObject();
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+
+        // Buckets that shared columns when written also share them when read.
+        columns_shared = true;
+    }
+
+    /**
+     * Read-only view of the rows as records, in id order.
+     */
+    private class RecordsView extends AbstractList<Record> implements RandomAccess {
+
+        @Override
+        public Record get(final int index) {
+
+            synchronized (ColumnarBucket.this) {
+
+                if (index < 0 || index >= row_count) {
+                    throw new IndexOutOfBoundsException("index: " + index + ", size: " + row_count);
+                }
+
+                ensureSorted();
+                return makeRecord(index);
+            }
+        }
+
+        @Override
+        public int size() {
+
+            return ColumnarBucket.this.size();
+        }
+    }
+
+    /**
+     * Open addressing hash set of ids.
+     */
+    private static class IdSet {
+
+        private static final int EMPTY = 0;
+
+        private int[] slots;
+        private int count = 0;
+        private boolean contains_empty_marker = false;
+
+        IdSet(final int expected_size) {
+
+            slots = new int[tableSize(expected_size)];
+        }
+
+        boolean contains(final int id) {
+
+            if (id == EMPTY) {
+                return contains_empty_marker;
+            }
+
+            for (int slot = slotFor(id, slots.length); slots[slot] != EMPTY; slot = (slot + 1) & (slots.length - 1)) {
+                if (slots[slot] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(final int id) {
+
+            if (id == EMPTY) {
+                contains_empty_marker = true;
+            }
+            else if (!contains(id)) {
+
+                if ((count + 1) * 2 > slots.length) {
+                    resize();
+                }
+                insert(slots, id);
+                count++;
+            }
+        }
+
+        private void resize() {
+
+            final int[] new_slots = new int[slots.length * 2];
+            for (final int id : slots) {
+                if (id != EMPTY) {
+                    insert(new_slots, id);
+                }
+            }
+            slots = new_slots;
+        }
+
+        private static void insert(final int[] slots, final int id) {
+
+            int slot = slotFor(id, slots.length);
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = id;
+        }
+
+        private static int slotFor(final int id, final int table_size) {
+
+            // Spread the bits, since ids are often consecutive.
+            final int hash = id * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & (table_size - 1);
+        }
+
+        private static int tableSize(final int expected_size) {
+
+            int size = INITIAL_CAPACITY;
+            while (size < expected_size * 2) {
+                size <<= 1;
+            }
+            return size;
+        }
+    }
+}
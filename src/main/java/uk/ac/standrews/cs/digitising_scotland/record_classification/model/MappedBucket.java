@@ -0,0 +1,890 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Bucket whose records are held off-heap in memory-mapped files, so that the number of records is limited by disk space rather than heap size.
+ *
+ * Records are stored in a directory as a file of fixed-width rows, one per record, holding the record's id, classification kind and confidence,
+ * and the offsets of its strings within a second file containing the length-prefixed UTF-8 encoded strings. A record is materialised only when
+ * read, with its token list derived from its data. If a directory already contains a store, its records are available when the bucket is opened.
+ *
+ * Records are kept in order of addition. Where they are added in id order, as when loading a file with increasing ids, no further heap is used
+ * beyond a bit per id for duplicate detection. Otherwise a sorted order is computed when the bucket is next read, and also held in a mapped file.
+ * Similarly, records are found by data through an index of the rows sorted by the hash of their data, computed on first lookup and held in a
+ * mapped file. Both are derived from the rows, so are held in temporary files deleted when the store is closed. These are created in the default
+ * temporary directory rather than the store's directory, so that any left by a process that did not close its store don't accumulate there.
+ *
+ * A copy of this bucket shares the store, seeing the rows present when it was made. Since rows are only ever appended, either bucket may then
+ * add records without affecting the other, except that once one of them has added records the other can't extend the store in place. When
+ * that one next adds records, its rows are first copied to a new store in a sibling directory. The files are closed when all buckets sharing
+ * them have been closed.
+ */
+public class MappedBucket extends Bucket implements Closeable {
+
+    private static final long serialVersionUID = -4113528466720537402L;
+
+    public static final String ROWS_FILE_NAME = "records.rows";
+    public static final String STRINGS_FILE_NAME = "records.strings";
+    public static final String ORDER_FILE_NAME = "records.order";
+    public static final String DATA_INDEX_FILE_NAME = "records.data_index";
+
+    private static final int ID_OFFSET = 0;
+    private static final int KIND_OFFSET = 4;
+    private static final int CONFIDENCE_OFFSET = 8;
+    private static final int DATA_OFFSET = 16;
+    private static final int ORIGINAL_DATA_OFFSET = 24;
+    private static final int CODE_OFFSET = 32;
+    private static final int DETAIL_OFFSET = 40;
+    private static final int ROW_SIZE = 48;
+
+    private static final int CLASSIFIED = 0;
+    private static final int UNCLASSIFIED = 1;
+    private static final int NO_CLASSIFICATION = 2;
+    private static final long NULL_STRING = -1;
+
+    private static final long ROWS_SEGMENT_SIZE = ROW_SIZE * (1L << 22);
+    private static final long STRINGS_SEGMENT_SIZE = 1L << 30;
+    private static final long ORDER_SEGMENT_SIZE = 1L << 30;
+    private static final long DATA_INDEX_SEGMENT_SIZE = 1L << 30;
+
+    private String directory;
+
+    // The number of rows of the store that belong to this bucket, which may be fewer than the store holds if it is shared.
+    private int row_count;
+
+    // Shared by all buckets sharing a store, including copies subsequently moved to a store of their own.
+    private transient Object lock;
+
+    private transient Storage storage;
+    private transient boolean closed;
+    private transient int max_id;
+    private transient boolean sorted;
+    private transient boolean ids_shared;
+    private transient BitSet non_negative_ids;
+    private transient Set<Integer> negative_ids;
+    private transient List<Record> records_view;
+
+    /**
+     * Opens a bucket backed by the store in the given directory, creating the directory and an empty store if necessary.
+     *
+     * @param directory the directory
+     * @throws IOException if the store cannot be opened
+     */
+    public MappedBucket(final Path directory) throws IOException {
+
+        this(directory, false);
+    }
+
+    public MappedBucket(final Path directory, final boolean auto_allocate_ids) throws IOException {
+
+        super(auto_allocate_ids);
+
+        this.directory = directory.toAbsolutePath().toString();
+        lock = new Object();
+        storage = new Storage(getDirectory());
+        row_count = storage.row_count;
+
+        readIds();
+    }
+
+    private MappedBucket(final MappedBucket original, final boolean auto_allocate_ids) {
+
+        super(auto_allocate_ids);
+
+        directory = original.directory;
+        row_count = original.row_count;
+        lock = original.lock;
+        storage = original.storage;
+        max_id = original.max_id;
+        sorted = original.sorted;
+        non_negative_ids = original.non_negative_ids;
+        negative_ids = original.negative_ids;
+
+        storage.references++;
+        original.ids_shared = true;
+        ids_shared = true;
+
+        allocateIdsFrom(row_count > 0 ? Math.max(original.getNextId(), max_id + 1) : original.getNextId());
+    }
+
+    public Path getDirectory() {
+
+        synchronized (lock) {
+            return Paths.get(directory);
+        }
+    }
+
+    @Override
+    protected Collection<Record> getRecords() {
+
+        synchronized (lock) {
+
+            ensureReadable();
+
+            if (records_view == null) {
+                records_view = new RecordsView();
+            }
+            return records_view;
+        }
+    }
+
+    @Override
+    protected void store(final Collection<Record> records) {
+
+        synchronized (lock) {
+            try {
+                if (records.isEmpty()) {
+                    return;
+                }
+
+                if (row_count < storage.row_count) {
+                    moveToNewStorage();
+                }
+
+                if (ids_shared) {
+                    non_negative_ids = (BitSet) non_negative_ids.clone();
+                    negative_ids = new HashSet<>(negative_ids);
+                    ids_shared = false;
+                }
+
+                for (final Record record : records) {
+
+                    final int id = record.getId();
+
+                    if (!markIdAsSeen(id)) {
+                        continue;
+                    }
+
+                    if (row_count > 0 && id < max_id) {
+                        sorted = false;
+                    }
+                    max_id = row_count == 0 ? id : Math.max(max_id, id);
+
+                    storage.appendRow(record);
+                    row_count++;
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public MappedBucket copy() {
+
+        return copy(isAutoAllocatingIds());
+    }
+
+    /**
+     * Constructs a new mapped bucket containing the records of this bucket. This takes constant time: the two buckets share the
+     * store until either is next modified, as described above. The new bucket must also be closed.
+     *
+     * @param auto_allocate_ids whether the new bucket allocates ids to records added to it
+     * @return a new mapped bucket containing the records of this bucket
+     */
+    @Override
+    public MappedBucket copy(final boolean auto_allocate_ids) {
+
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("bucket is closed");
+            }
+            return new MappedBucket(this, auto_allocate_ids);
+        }
+    }
+
+    @Override
+    public int size() {
+
+        synchronized (lock) {
+            return row_count;
+        }
+    }
+
+    @Override
+    public boolean contains(final Record record) {
+
+        synchronized (lock) {
+            ensureReadable();
+            return indexOf(record.getId()) >= 0;
+        }
+    }
+
+    @Override
+    public Optional<Record> findRecordById(final int id) {
+
+        synchronized (lock) {
+            ensureReadable();
+
+            final int index = indexOf(id);
+            return index >= 0 ? Optional.of(storage.readRecord(rowAt(index))) : Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean containsData(final String data) {
+
+        synchronized (lock) {
+            ensureDataIndexed();
+
+            final int hash = Objects.hashCode(data);
+            for (int index = firstDataIndexWithHash(hash); index < row_count && dataHashAt(index) == hash; index++) {
+                if (Objects.equals(data, storage.readData(dataRowAt(index)))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public List<Record> findRecordsByData(final String data) {
+
+        synchronized (lock) {
+            ensureDataIndexed();
+
+            final List<Record> records = new ArrayList<>();
+            final int hash = Objects.hashCode(data);
+
+            for (int index = firstDataIndexWithHash(hash); index < row_count && dataHashAt(index) == hash; index++) {
+
+                final int row = dataRowAt(index);
+                if (Objects.equals(data, storage.readData(row))) {
+                    records.add(storage.readRecord(row));
+                }
+            }
+
+            // Rows with the same hash are indexed in row order, which is only id order if the records were added in id order.
+            if (!sorted) {
+                Collections.sort(records);
+            }
+            return Collections.unmodifiableList(records);
+        }
+    }
+
+    /**
+     * Writes any records buffered in memory to the files of the store.
+     *
+     * @throws IOException if the records cannot be written
+     */
+    public void flush() throws IOException {
+
+        synchronized (lock) {
+            storage.flush();
+        }
+    }
+
+    /**
+     * Checks whether the records of this bucket are all the records in the store in its {@link #getDirectory() directory}.
+     * This is not so if another bucket sharing the store has since added records to it.
+     *
+     * @return whether the store holds only the records of this bucket
+     */
+    public boolean isWholeStore() {
+
+        synchronized (lock) {
+            return row_count == storage.row_count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        synchronized (lock) {
+            if (!closed) {
+
+                closed = true;
+                records_view = null;
+                storage.release();
+            }
+        }
+    }
+
+    private void readIds() {
+
+        max_id = 0;
+        sorted = true;
+        non_negative_ids = new BitSet();
+        negative_ids = new HashSet<>();
+
+        for (int row = 0; row < row_count; row++) {
+
+            final int id = storage.readId(row);
+            markIdAsSeen(id);
+
+            if (row > 0 && id < max_id) {
+                sorted = false;
+            }
+            max_id = row == 0 ? id : Math.max(max_id, id);
+        }
+
+        if (row_count > 0) {
+            allocateIdsFrom(max_id + 1);
+        }
+    }
+
+    private boolean markIdAsSeen(final int id) {
+
+        if (id >= 0) {
+
+            if (non_negative_ids.get(id)) {
+                return false;
+            }
+            non_negative_ids.set(id);
+            return true;
+        }
+        return negative_ids.add(id);
+    }
+
+    /**
+     * Copies this bucket's rows to a new store, since a bucket sharing the current store has appended rows after them.
+     */
+    private void moveToNewStorage() throws IOException {
+
+        final Path current_directory = getDirectory();
+        final Path new_directory = Files.createTempDirectory(current_directory.toAbsolutePath().getParent(), current_directory.getFileName() + "-");
+        final Storage new_storage = new Storage(new_directory);
+
+        for (int row = 0; row < row_count; row++) {
+            new_storage.appendRow(storage.readRecord(row));
+        }
+
+        storage.release();
+        storage = new_storage;
+        directory = new_directory.toString();
+    }
+
+    private void ensureReadable() {
+
+        if (closed) {
+            throw new IllegalStateException("bucket is closed");
+        }
+
+        try {
+            storage.map();
+
+            if (!sorted && storage.order_row_count != row_count) {
+                storage.computeOrder(row_count);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ensureDataIndexed() {
+
+        ensureReadable();
+
+        if (storage.data_index_row_count != row_count) {
+            try {
+                storage.computeDataIndex(row_count);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private int firstDataIndexWithHash(final int hash) {
+
+        final long key = (long) hash << 32;
+
+        int low = 0;
+        int high = row_count;
+
+        while (low < high) {
+
+            final int middle = (low + high) >>> 1;
+
+            if (storage.data_index.getLong((long) middle * Long.BYTES) < key) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int dataHashAt(final int index) {
+
+        return (int) (storage.data_index.getLong((long) index * Long.BYTES) >> 32);
+    }
+
+    private int dataRowAt(final int index) {
+
+        return (int) storage.data_index.getLong((long) index * Long.BYTES);
+    }
+
+    private int rowAt(final int index) {
+
+        return sorted ? index : storage.order.getInt((long) index * Integer.BYTES);
+    }
+
+    private int indexOf(final int id) {
+
+        int low = 0;
+        int high = row_count - 1;
+
+        while (low <= high) {
+
+            final int middle = (low + high) >>> 1;
+            final int middle_id = storage.readId(rowAt(middle));
+
+            if (middle_id < id) {
+                low = middle + 1;
+            }
+            else if (middle_id > id) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+
+        lock = new Object();
+        storage = new Storage(getDirectory());
+
+        if (row_count > storage.row_count) {
+            storage.release();
+            throw new IOException("record store is missing rows: " + directory);
+        }
+
+        readIds();
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+
+        synchronized (lock) {
+            out.defaultWriteObject();
+        }
+    }
+
+    /**
+     * Read-only view of the records, in id order.
+     */
+    private class RecordsView extends AbstractList<Record> implements RandomAccess {
+
+        @Override
+        public Record get(final int index) {
+
+            synchronized (lock) {
+
+                if (index < 0 || index >= row_count) {
+                    throw new IndexOutOfBoundsException("index: " + index + ", size: " + row_count);
+                }
+
+                ensureReadable();
+                return storage.readRecord(rowAt(index));
+            }
+        }
+
+        @Override
+        public int size() {
+
+            return MappedBucket.this.size();
+        }
+    }
+
+    /**
+     * The files of a store, shared by the buckets using them. Guarded by the lock of those buckets.
+     */
+    private static class Storage {
+
+        private final MappedFile rows;
+        private final MappedFile strings;
+        private final MappedFile order;
+        private final MappedFile data_index;
+
+        private int row_count;
+
+        // The number of rows sorted by the order file, or -1 if it doesn't hold a valid order.
+        private int order_row_count = -1;
+
+        // The number of rows in the data index, or -1 if it doesn't hold a valid index.
+        private int data_index_row_count = -1;
+
+        private int references = 1;
+
+        Storage(final Path directory) throws IOException {
+
+            Files.createDirectories(directory);
+
+            rows = new MappedFile(directory.resolve(ROWS_FILE_NAME), ROWS_SEGMENT_SIZE);
+            strings = new MappedFile(directory.resolve(STRINGS_FILE_NAME), STRINGS_SEGMENT_SIZE);
+            order = new MappedFile(Files.createTempFile(ORDER_FILE_NAME, null), ORDER_SEGMENT_SIZE, true);
+            data_index = new MappedFile(Files.createTempFile(DATA_INDEX_FILE_NAME, null), DATA_INDEX_SEGMENT_SIZE, true);
+
+            if (rows.length() % ROW_SIZE != 0) {
+                throw new IOException("corrupt record store: " + directory);
+            }
+
+            row_count = (int) (rows.length() / ROW_SIZE);
+            rows.map();
+        }
+
+        void appendRow(final Record record) throws IOException {
+
+            final Classification classification = record.getClassification();
+            final ByteBuffer row = ByteBuffer.allocate(ROW_SIZE);
+
+            row.putInt(ID_OFFSET, record.getId());
+            row.putLong(DATA_OFFSET, appendString(record.getData()));
+            row.putLong(ORIGINAL_DATA_OFFSET, appendString(record.getOriginalData()));
+
+            if (classification == null) {
+                row.putInt(KIND_OFFSET, NO_CLASSIFICATION);
+                row.putLong(CODE_OFFSET, NULL_STRING);
+                row.putLong(DETAIL_OFFSET, NULL_STRING);
+            }
+            else if (classification.isUnclassified()) {
+                row.putInt(KIND_OFFSET, UNCLASSIFIED);
+                row.putLong(CODE_OFFSET, NULL_STRING);
+                row.putLong(DETAIL_OFFSET, NULL_STRING);
+            }
+            else {
+                row.putInt(KIND_OFFSET, CLASSIFIED);
+                row.putDouble(CONFIDENCE_OFFSET, classification.getConfidence());
+                row.putLong(CODE_OFFSET, appendString(classification.getCode()));
+                row.putLong(DETAIL_OFFSET, appendString(classification.getDetail()));
+            }
+
+            rows.append(row.array());
+            row_count++;
+        }
+
+        private long appendString(final String string) throws IOException {
+
+            if (string == null) {
+                return NULL_STRING;
+            }
+
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            final long position = strings.append(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+            strings.append(bytes);
+
+            return position;
+        }
+
+        void map() throws IOException {
+
+            rows.map();
+            strings.map();
+        }
+
+        void flush() throws IOException {
+
+            rows.flush();
+            strings.flush();
+        }
+
+        /**
+         * Sorts the first given number of rows by id, replacing any order previously computed for a different number of rows.
+         */
+        void computeOrder(final int sorted_row_count) throws IOException {
+
+            // Sort row numbers by id, packing each id with its row number so that a primitive sort can be used.
+            final long[] keys = new long[sorted_row_count];
+            for (int row = 0; row < sorted_row_count; row++) {
+                keys[row] = ((long) readId(row) << 32) | row;
+            }
+            Arrays.sort(keys);
+
+            order.truncate();
+            final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+            for (final long key : keys) {
+                buffer.clear();
+                order.append(buffer.putInt(0, (int) key).array());
+            }
+            order.map();
+
+            order_row_count = sorted_row_count;
+        }
+
+        /**
+         * Indexes the first given number of rows by the hash of their data, replacing any index previously computed for a different number of rows.
+         */
+        void computeDataIndex(final int indexed_row_count) throws IOException {
+
+            // Pack the hash of each row's data with its row number, so that rows with the same hash are adjacent and in row order.
+            final long[] keys = new long[indexed_row_count];
+            for (int row = 0; row < indexed_row_count; row++) {
+                keys[row] = ((long) Objects.hashCode(readData(row)) << 32) | row;
+            }
+            Arrays.sort(keys);
+
+            data_index.truncate();
+            final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            for (final long key : keys) {
+                buffer.clear();
+                data_index.append(buffer.putLong(0, key).array());
+            }
+            data_index.map();
+
+            data_index_row_count = indexed_row_count;
+        }
+
+        int readId(final int row) {
+
+            return rows.getInt((long) row * ROW_SIZE + ID_OFFSET);
+        }
+
+        String readData(final int row) {
+
+            return readString(rows.getLong((long) row * ROW_SIZE + DATA_OFFSET));
+        }
+
+        Record readRecord(final int row) {
+
+            final long position = (long) row * ROW_SIZE;
+
+            final int id = rows.getInt(position + ID_OFFSET);
+            final String data = readString(rows.getLong(position + DATA_OFFSET));
+            final String original_data = readString(rows.getLong(position + ORIGINAL_DATA_OFFSET));
+
+            return new Record(id, data, original_data, readClassification(position, data));
+        }
+
+        private Classification readClassification(final long position, final String data) {
+
+            switch (rows.getInt(position + KIND_OFFSET)) {
+
+                case NO_CLASSIFICATION:
+                    return null;
+
+                case UNCLASSIFIED:
+                    return Classification.UNCLASSIFIED;
+
+                default:
+                    final String code = readString(rows.getLong(position + CODE_OFFSET));
+                    final double confidence = rows.getDouble(position + CONFIDENCE_OFFSET);
+                    final String detail = readString(rows.getLong(position + DETAIL_OFFSET));
+
+                    return new Classification(code, TokenList.of(data), confidence, detail);
+            }
+        }
+
+        private String readString(final long position) {
+
+            if (position == NULL_STRING) {
+                return null;
+            }
+
+            final byte[] length = new byte[Integer.BYTES];
+            strings.read(position, length);
+
+            final byte[] bytes = new byte[ByteBuffer.wrap(length).getInt()];
+            strings.read(position + Integer.BYTES, bytes);
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Releases a bucket's use of this store, closing the files once no bucket is using them.
+         */
+        void release() throws IOException {
+
+            if (--references == 0) {
+                rows.close();
+                strings.close();
+                order.close();
+                data_index.close();
+            }
+        }
+    }
+
+    /**
+     * Append-only file, read through a series of memory-mapped segments. Appends are buffered, and become readable when the file is next mapped.
+     */
+    private static class MappedFile implements Closeable {
+
+        private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+        private final long segment_size;
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+        private final ByteBuffer write_buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+        private long length;
+        private long mapped_length = 0;
+
+        MappedFile(final Path path, final long segment_size) throws IOException {
+
+            this(path, segment_size, false);
+        }
+
+        MappedFile(final Path path, final long segment_size, final boolean temporary) throws IOException {
+
+            this.segment_size = segment_size;
+
+            channel = temporary ?
+                    FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE) :
+                    FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            length = channel.size();
+        }
+
+        long length() {
+
+            return length;
+        }
+
+        /**
+         * Appends the given bytes.
+         *
+         * @return the position at which the bytes were appended
+         */
+        long append(final byte[] bytes) throws IOException {
+
+            final long position = length;
+
+            if (bytes.length > write_buffer.remaining()) {
+                flush();
+            }
+
+            if (bytes.length > write_buffer.remaining()) {
+                writeFully(ByteBuffer.wrap(bytes));
+            }
+            else {
+                write_buffer.put(bytes);
+            }
+
+            length += bytes.length;
+            return position;
+        }
+
+        void truncate() throws IOException {
+
+            write_buffer.clear();
+            segments.clear();
+            channel.truncate(0);
+
+            length = 0;
+            mapped_length = 0;
+        }
+
+        /**
+         * Maps any part of the file not yet mapped.
+         */
+        void map() throws IOException {
+
+            if (mapped_length < length) {
+
+                flush();
+
+                // Remap the last, partially mapped segment, then map any further segments.
+                int segment = (int) (mapped_length / segment_size);
+                while (segments.size() > segment) {
+                    segments.remove(segments.size() - 1);
+                }
+
+                for (long start = segment * segment_size; start < length; start += segment_size) {
+                    segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segment_size, length - start)));
+                }
+
+                mapped_length = length;
+            }
+        }
+
+        int getInt(final long position) {
+
+            return segment(position).getInt(offset(position));
+        }
+
+        long getLong(final long position) {
+
+            return segment(position).getLong(offset(position));
+        }
+
+        double getDouble(final long position) {
+
+            return segment(position).getDouble(offset(position));
+        }
+
+        void read(final long position, final byte[] destination) {
+
+            int copied = 0;
+
+            while (copied < destination.length) {
+
+                final long current = position + copied;
+                final ByteBuffer segment = segment(current).duplicate();
+                final int offset = offset(current);
+                final int count = Math.min(destination.length - copied, segment.limit() - offset);
+
+                segment.position(offset);
+                segment.get(destination, copied, count);
+                copied += count;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            flush();
+            segments.clear();
+            channel.close();
+        }
+
+        private MappedByteBuffer segment(final long position) {
+
+            return segments.get((int) (position / segment_size));
+        }
+
+        private int offset(final long position) {
+
+            return (int) (position % segment_size);
+        }
+
+        void flush() throws IOException {
+
+            write_buffer.flip();
+            writeFully(write_buffer);
+            write_buffer.clear();
+        }
+
+        private void writeFully(final ByteBuffer buffer) throws IOException {
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, channel.size());
+            }
+        }
+    }
+}
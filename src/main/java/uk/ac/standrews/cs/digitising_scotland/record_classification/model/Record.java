@@ -74,14 +74,22 @@ public class Record implements Comparable<Record>, Serializable {
     public Record(final int id, final String data, final String original_data, final Classification classification) {
 
         this.id = id;
-        this.data = data;
-        this.original_data = original_data;
+        this.data = StringInterner.intern(data);
+        this.original_data = StringInterner.intern(original_data);
         this.classification = classification;
 
         // Previously used Objects.hash(id, data, classification) but that gave clashes.
         hash_code = id;
     }
 
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+
+        data = StringInterner.intern(data);
+        original_data = StringInterner.intern(original_data);
+    }
+
     public int getId() {
 
         return id;
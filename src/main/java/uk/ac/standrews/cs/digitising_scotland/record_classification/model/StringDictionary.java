@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary that encodes strings as dense integer ids, such that each distinct string is stored once.
+ * Ids are allocated in order of first encoding, starting from zero.
+ */
+class StringDictionary implements Serializable {
+
+    private static final long serialVersionUID = -3527415069185637724L;
+
+    private final List<String> strings;
+    private transient Map<String, Integer> ids;
+
+    StringDictionary() {
+
+        strings = new ArrayList<>();
+    }
+
+    private StringDictionary(final List<String> strings) {
+
+        this.strings = new ArrayList<>(strings);
+    }
+
+    /**
+     * Constructs a new dictionary containing the strings of this dictionary, with the same ids.
+     *
+     * @return the new dictionary
+     */
+    synchronized StringDictionary copy() {
+
+        return new StringDictionary(strings);
+    }
+
+    /**
+     * Gets the id of the given string, adding the string to the dictionary if not already present.
+     *
+     * @param string the string
+     * @return the id of the string
+     */
+    synchronized int encode(final String string) {
+
+        final Integer existing_id = getIds().get(string);
+        if (existing_id != null) {
+            return existing_id;
+        }
+
+        final int id = strings.size();
+        strings.add(string);
+        ids.put(string, id);
+        return id;
+    }
+
+    /**
+     * Gets the string with the given id.
+     *
+     * @param id the id
+     * @return the string with the given id
+     */
+    synchronized String decode(final int id) {
+
+        return strings.get(id);
+    }
+
+    synchronized int size() {
+
+        return strings.size();
+    }
+
+    private Map<String, Integer> getIds() {
+
+        // The reverse mapping isn't serialized, so rebuild it after deserialization.
+        if (ids == null || ids.size() != strings.size()) {
+
+            ids = new HashMap<>();
+            for (int id = 0; id < strings.size(); id++) {
+                ids.put(strings.get(id), id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Process-wide pool of canonical string instances.
+ * Data strings, codes and tokens are heavily repeated across records, classifications and classifier models,
+ * so holding a single instance of each distinct string substantially reduces heap usage. It also makes
+ * {@link String#equals(Object)} between canonical instances an identity comparison.
+ *
+ * Strings are weakly referenced, so any that are no longer in use elsewhere can be garbage collected.
+ */
+public final class StringInterner {
+
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+    private StringInterner() {
+    }
+
+    /**
+     * Returns the canonical instance of the given string.
+     *
+     * @param string the string, may be {@code null}
+     * @return the canonical instance equal to the given string, or {@code null} if the string is {@code null}
+     */
+    public static String intern(final String string) {
+
+        return string == null ? null : INTERNER.intern(string);
+    }
+
+    /**
+     * Replaces the keys of the given map with their canonical instances, in place.
+     *
+     * @param map the map
+     * @param <V> the type of values in the map
+     */
+    public static <V> void internKeys(final Map<String, V> map) {
+
+        for (final Map.Entry<String, V> entry : new ArrayList<>(map.entrySet())) {
+
+            final String key = entry.getKey();
+            final String canonical_key = intern(key);
+
+            if (key != canonical_key) {
+                map.remove(key);
+                map.put(canonical_key, entry.getValue());
+            }
+        }
+    }
+}
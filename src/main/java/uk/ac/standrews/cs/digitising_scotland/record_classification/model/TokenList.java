@@ -16,15 +16,19 @@
  */
 package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.standard.StandardTokenizer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 
-import java.io.IOException;
 import java.io.Serializable;
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
  * @author Fraser Dunlop
@@ -35,6 +39,17 @@ public class TokenList extends ArrayList<String> implements Serializable {
     private static final long serialVersionUID = 4771078200991926082L;
     private static final String SPACE = " ";
 
+    // Bounds the memory used by shared token lists; the least recently used are discarded first.
+    private static final long MAXIMUM_SHARED_TOKEN_LISTS = 500_000;
+
+    private static final Cache<String, TokenList> SHARED_TOKEN_LISTS = CacheBuilder.newBuilder().maximumSize(MAXIMUM_SHARED_TOKEN_LISTS).recordStats().build();
+
+    private static final AtomicLong TOKENIZATION_COUNT = new AtomicLong();
+    private static final AtomicLong SHARED_TOKEN_LIST_REQUEST_COUNT = new AtomicLong();
+
+    // Not serialized, so that deserialized token lists are ordinary modifiable lists.
+    private transient boolean shared = false;
+
     public static final TokenList UNMODIFIABLE_TOKEN_SET = new TokenList() {
 
         @Override
@@ -53,7 +68,7 @@ public class TokenList extends ArrayList<String> implements Serializable {
         }
     };
 
-    private TokenList() {
+    TokenList() {
     }
 
     /**
@@ -63,26 +78,216 @@ public class TokenList extends ArrayList<String> implements Serializable {
      */
     public TokenList(final String string) {
 
-        this(string, Function.identity());
+        this(string, TokenizerPipeline.forCurrentThread());
     }
 
+    /**
+     * Instantiates a new token set, using a new tokenizer pipeline with the given filters.
+     * Where the same filters are used repeatedly, {@link #TokenList(String, TokenizerPipeline)} with a reused pipeline is more efficient.
+     *
+     * @param string the string
+     * @param filter the function that wraps the tokenizer's token stream in any required filters
+     */
     public TokenList(final String string, Function<TokenStream, TokenStream> filter) {
 
+        this(string, new TokenizerPipeline(filter));
+    }
+
+    /**
+     * Instantiates a new token set, using the given tokenizer pipeline.
+     *
+     * @param string the string
+     * @param pipeline the tokenizer pipeline
+     */
+    public TokenList(final String string, final TokenizerPipeline pipeline) {
+
         super();
 
+        TOKENIZATION_COUNT.incrementAndGet();
+        pipeline.tokenize(string, this::add);
+    }
+
+    /**
+     * Returns an unmodifiable token list for the given string, tokenizing the string only if an equal string has not been recently tokenized.
+     * This avoids the cost of repeatedly tokenizing the same data, and the memory cost of multiple identical token lists.
+     *
+     * @param string the string
+     * @return the shared token list for the string
+     */
+    public static TokenList of(final String string) {
+
+        SHARED_TOKEN_LIST_REQUEST_COUNT.incrementAndGet();
+
         try {
-            final TokenStream token_stream = getTokenizer(string);
-            TokenStream filtered_stream = filter.apply(token_stream);
+            return SHARED_TOKEN_LISTS.get(string, () -> {
+
+                final TokenList token_list = new TokenList(string);
+                token_list.markShared();
+                return token_list;
+            });
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns a new token list containing the given tokens, which are not tokenized again.
+     *
+     * @param tokens the tokens
+     * @return the token list
+     */
+    public static TokenList fromTokens(final Collection<String> tokens) {
+
+        final TokenList token_list = new TokenList();
+        token_list.addAll(tokens);
+        return token_list;
+    }
+
+    /**
+     * Returns the number of times that a string has been tokenized, since the start of the process.
+     *
+     * @return the number of tokenizations
+     */
+    public static long getTokenizationCount() {
+
+        return TOKENIZATION_COUNT.get();
+    }
+
+    /**
+     * Returns the number of shared token lists requested via {@link #of(String)}, since the start of the process.
+     *
+     * @return the number of requests
+     */
+    public static long getSharedTokenListRequestCount() {
+
+        return SHARED_TOKEN_LIST_REQUEST_COUNT.get();
+    }
+
+    /**
+     * Returns the number of shared token lists requested via {@link #of(String)} that were found already tokenized,
+     * since the start of the process. Each is a tokenization saved by sharing token lists.
+     *
+     * @return the number of requests that did not tokenize
+     */
+    public static long getSharedTokenListHitCount() {
+
+        return SHARED_TOKEN_LISTS.stats().hitCount();
+    }
+
+    @Override
+    public boolean add(final String token) {
 
-            final CharTermAttribute charTermAttribute = filtered_stream.addAttribute(CharTermAttribute.class);
+        checkModifiable();
+        return super.add(token);
+    }
+
+    @Override
+    public void add(final int index, final String token) {
+
+        checkModifiable();
+        super.add(index, token);
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends String> tokens) {
+
+        checkModifiable();
+        return super.addAll(tokens);
+    }
+
+    @Override
+    public boolean addAll(final int index, final Collection<? extends String> tokens) {
+
+        checkModifiable();
+        return super.addAll(index, tokens);
+    }
+
+    @Override
+    public String set(final int index, final String token) {
+
+        checkModifiable();
+        return super.set(index, token);
+    }
+
+    @Override
+    public String remove(final int index) {
+
+        checkModifiable();
+        return super.remove(index);
+    }
+
+    @Override
+    public boolean remove(final Object token) {
+
+        checkModifiable();
+        return super.remove(token);
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> tokens) {
+
+        checkModifiable();
+        return super.removeAll(tokens);
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> tokens) {
+
+        checkModifiable();
+        return super.retainAll(tokens);
+    }
+
+    @Override
+    public boolean removeIf(final Predicate<? super String> filter) {
 
-            filtered_stream.reset();
+        checkModifiable();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(final UnaryOperator<String> operator) {
+
+        checkModifiable();
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(final Comparator<? super String> comparator) {
+
+        checkModifiable();
+        super.sort(comparator);
+    }
+
+    @Override
+    public void clear() {
+
+        checkModifiable();
+        super.clear();
+    }
+
+    /**
+     * Makes this token list unmodifiable, so that it may be shared.
+     */
+    void markShared() {
 
-            while (filtered_stream.incrementToken()) {
-                add(charTermAttribute.toString());
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        shared = true;
+    }
+
+    /**
+     * Checks whether this token list is unmodifiable because it may be shared.
+     *
+     * @return {@code true} if this token list is shared
+     */
+    boolean isShared() {
+
+        return shared;
+    }
+
+    private void checkModifiable() {
+
+        if (shared) {
+            throw new UnsupportedOperationException("shared token list cannot be modified");
         }
     }
 
@@ -95,12 +300,4 @@ public class TokenList extends ArrayList<String> implements Serializable {
         }
         return builder.toString();
     }
-
-    private StandardTokenizer getTokenizer(final String data) throws IOException {
-
-        StandardTokenizer tokenizer = new StandardTokenizer();
-        tokenizer.setReader(new StringReader(data));
-
-        return tokenizer;
-    }
 }
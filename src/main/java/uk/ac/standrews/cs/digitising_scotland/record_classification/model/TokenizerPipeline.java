@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reusable tokenizer pipeline, comprising a {@link StandardTokenizer} and optional token filters.
+ * The tokenizer and filters are reset for each new input rather than reallocated, and each distinct token is converted to a
+ * string only once, so tokenizing a string allocates little beyond any new tokens.
+ *
+ * A pipeline is not thread-safe; use {@link #forCurrentThread()} or {@link #perThread(Function)} to obtain one per thread.
+ */
+public final class TokenizerPipeline {
+
+    // Limits the size of the per-pipeline token cache; it is cleared when this is reached.
+    private static final int MAXIMUM_CACHED_TOKENS = 100_000;
+
+    private static final ThreadLocal<TokenizerPipeline> UNFILTERED = perThread(Function.identity());
+
+    private final ReusableStringReader reader = new ReusableStringReader();
+    private final StandardTokenizer tokenizer = new StandardTokenizer();
+    private final TokenStream stream;
+    private final CharTermAttribute term;
+    private final CharArrayMap<String> tokens = new CharArrayMap<>(1024, false);
+
+    private boolean in_use = false;
+
+    /**
+     * Instantiates a new pipeline.
+     *
+     * @param filter the function that wraps the tokenizer's token stream in any required filters
+     */
+    public TokenizerPipeline(final Function<TokenStream, TokenStream> filter) {
+
+        stream = filter.apply(tokenizer);
+        term = stream.addAttribute(CharTermAttribute.class);
+    }
+
+    /**
+     * Returns the unfiltered pipeline for the current thread.
+     *
+     * @return the pipeline
+     */
+    public static TokenizerPipeline forCurrentThread() {
+
+        return UNFILTERED.get();
+    }
+
+    /**
+     * Returns a source of pipelines with the given filters, holding one pipeline per thread.
+     *
+     * @param filter the function that wraps the tokenizer's token stream in any required filters
+     * @return the per-thread pipelines
+     */
+    public static ThreadLocal<TokenizerPipeline> perThread(final Function<TokenStream, TokenStream> filter) {
+
+        return ThreadLocal.withInitial(() -> new TokenizerPipeline(filter));
+    }
+
+    /**
+     * Tokenizes the given string, passing the canonical instance of each token to the given consumer in turn.
+     *
+     * @param string the string to tokenize
+     * @param consumer the consumer of the tokens, which must not itself use this pipeline
+     */
+    public void tokenize(final String string, final Consumer<String> consumer) {
+
+        if (in_use) {
+            throw new IllegalStateException("tokenizer pipeline is already in use");
+        }
+
+        in_use = true;
+        reader.setValue(string);
+        tokenizer.setReader(reader);
+
+        try {
+            stream.reset();
+
+            while (stream.incrementToken()) {
+                consumer.accept(getToken(term.buffer(), term.length()));
+            }
+
+            stream.end();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            closeStream();
+            in_use = false;
+        }
+    }
+
+    private String getToken(final char[] buffer, final int length) {
+
+        String token = tokens.get(buffer, 0, length);
+
+        if (token == null) {
+
+            if (tokens.size() >= MAXIMUM_CACHED_TOKENS) {
+                tokens.clear();
+            }
+
+            token = StringInterner.intern(new String(buffer, 0, length));
+            tokens.put(token, token);
+        }
+
+        return token;
+    }
+
+    private void closeStream() {
+
+        try {
+            stream.close();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reader over a string that can be reset to a new string without reallocation.
+     */
+    private static final class ReusableStringReader extends Reader {
+
+        private String value;
+        private int position;
+
+        void setValue(final String value) {
+
+            this.value = value;
+            position = 0;
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length) {
+
+            if (position >= value.length()) {
+                return -1;
+            }
+
+            final int count = Math.min(length, value.length() - position);
+            value.getChars(position, position + count, buffer, offset);
+            position += count;
+
+            return count;
+        }
+
+        @Override
+        public void close() {
+
+            value = null;
+        }
+    }
+}
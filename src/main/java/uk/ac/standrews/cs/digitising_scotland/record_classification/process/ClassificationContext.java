@@ -20,8 +20,9 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.analysis.Met
 import uk.ac.standrews.cs.digitising_scotland.record_classification.analysis.ConfusionMatrix;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.Classifier;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
 
-import java.io.Serializable;
+import java.io.*;
 import java.time.Duration;
 import java.util.*;
 
@@ -32,9 +33,23 @@ import java.util.*;
  * @author Masih Hajiarab Derkani
  * @author Graham Kirby
  */
-public class ClassificationContext implements Serializable {
+public class ClassificationContext implements Serializable, BinarySerializable, Mappable {
 
     private static final long serialVersionUID = -6389479358148790573L;
+    private static final int BINARY_VERSION = 2;
+
+    // Up to this version, each bucket was written with its length so that it could be buffered whole when read.
+    private static final int LENGTH_PREFIXED_BUCKETS_VERSION = 1;
+
+    static final String CONTEXT_SECTION = "context";
+    static final String CLASSIFIER_SECTION = "classifier";
+    static final String TRAINING_RECORDS_SECTION = "training_records";
+    static final String EVALUATION_RECORDS_SECTION = "evaluation_records";
+    static final String UNSEEN_RECORDS_SECTION = "unseen_records";
+    static final String CLASSIFIED_EVALUATION_RECORDS_SECTION = "classified_evaluation_records";
+    static final String CLASSIFIED_UNSEEN_RECORDS_SECTION = "classified_unseen_records";
+    static final String CONFUSION_MATRIX_SECTION = "confusion_matrix";
+    static final String CLASSIFICATION_METRICS_SECTION = "classification_metrics";
 
     private Random random;
     private Classifier classifier;
@@ -49,6 +64,16 @@ public class ClassificationContext implements Serializable {
     private Duration training_time;
     private Duration evaluation_classification_time;
 
+    // The union of the training and evaluation records, kept until either of them changes.
+    private transient Bucket gold_standard_records;
+    private transient Bucket gold_standard_training_records;
+    private transient Bucket gold_standard_evaluation_records;
+    private transient long gold_standard_training_records_version;
+    private transient long gold_standard_evaluation_records_version;
+
+    // The binary version of the sectioned file from which this context was read.
+    private transient int sections_version = BINARY_VERSION;
+
     public ClassificationContext() {
 
         this(null, new Random());
@@ -103,8 +128,7 @@ public class ClassificationContext implements Serializable {
      */
     public void setUnseenRecords(final Bucket unseen_records) {
 
-        resetUnseenRecords();
-        this.unseen_records.add(unseen_records);
+        this.unseen_records = unseen_records.copy(false);
     }
 
     /**
@@ -151,8 +175,8 @@ public class ClassificationContext implements Serializable {
 
     public void setEvaluationRecords(Bucket evaluation_records) {
 
-        resetEvaluationRecords();
-        this.evaluation_records.add(evaluation_records);
+        // Do allow multiple data sets with potentially clashing ids to be subsequently added to evaluation records.
+        this.evaluation_records = evaluation_records.copy(true);
     }
 
     public Optional<Bucket> getClassifiedEvaluationRecordsOptional() {
@@ -178,8 +202,7 @@ public class ClassificationContext implements Serializable {
 
     public void setClassifiedEvaluationRecords(final Bucket classified_evaluation_records) {
 
-        resetClassifiedEvaluationRecords();
-        this.classified_evaluation_records.add(classified_evaluation_records);
+        this.classified_evaluation_records = classified_evaluation_records.copy(false);
     }
 
     public Optional<Bucket> getUnseenRecordsOptional() {
@@ -220,8 +243,7 @@ public class ClassificationContext implements Serializable {
      */
     public void setClassifiedUnseenRecords(final Bucket classified_unseen_records) {
 
-        resetClassifiedUnseenRecords();
-        this.classified_unseen_records.add(classified_unseen_records);
+        this.classified_unseen_records = classified_unseen_records.copy(false);
     }
 
     protected Optional<Bucket> getGoldStandardRecordsOptional() {
@@ -238,7 +260,7 @@ public class ClassificationContext implements Serializable {
         final boolean evaluation_records_is_present = evaluation_optional.isPresent();
 
         if (training_records_is_present && evaluation_records_is_present) {
-            return training_optional.get().union(evaluation_optional.get());
+            return getGoldStandardRecords(training_optional.get(), evaluation_optional.get());
         }
         else if (training_records_is_present) {
             return training_optional.get();
@@ -251,6 +273,25 @@ public class ClassificationContext implements Serializable {
         }
     }
 
+    private synchronized Bucket getGoldStandardRecords(final Bucket training_records, final Bucket evaluation_records) {
+
+        final boolean training_records_unchanged = gold_standard_training_records == training_records && gold_standard_training_records_version == training_records.getVersion();
+        final boolean evaluation_records_unchanged = gold_standard_evaluation_records == evaluation_records && gold_standard_evaluation_records_version == evaluation_records.getVersion();
+
+        if (gold_standard_records == null || !training_records_unchanged || !evaluation_records_unchanged) {
+
+            gold_standard_training_records = training_records;
+            gold_standard_training_records_version = training_records.getVersion();
+            gold_standard_evaluation_records = evaluation_records;
+            gold_standard_evaluation_records_version = evaluation_records.getVersion();
+
+            gold_standard_records = training_records.union(evaluation_records);
+        }
+
+        // The cached union shares its records with the returned copy, which the caller is free to modify.
+        return gold_standard_records.copy();
+    }
+
     public Optional<Bucket> getTrainingRecordsOptional() {
 
         return Optional.ofNullable(getTrainingRecords());
@@ -281,17 +322,16 @@ public class ClassificationContext implements Serializable {
 
     public void setTrainingRecords(Bucket training_records) {
 
-        resetTrainingRecords();
-        this.training_records.add(training_records);
+        // Do allow multiple data sets with potentially clashing ids to be subsequently added to training records.
+        this.training_records = training_records.copy(true);
     }
 
     public void setGoldStandardRecords(Bucket gold_standard, double training_ratio) {
 
-        final Bucket training_records = gold_standard.randomSubset(getRandom(), training_ratio);
-        final Bucket evaluation_records = gold_standard.difference(training_records);
+        final List<Bucket> training_and_evaluation_records = gold_standard.randomSplit(getRandom(), training_ratio, false);
 
-        setTrainingRecords(training_records);
-        setEvaluationRecords(evaluation_records);
+        setTrainingRecords(training_and_evaluation_records.get(0));
+        setEvaluationRecords(training_and_evaluation_records.get(1));
     }
 
     /**
@@ -311,11 +351,10 @@ public class ClassificationContext implements Serializable {
 
     public void addGoldStandardRecords(Bucket gold_standard, double training_ratio) {
 
-        final Bucket training_records = gold_standard.randomSubset(getRandom(), training_ratio);
-        final Bucket evaluation_records = gold_standard.difference(training_records);
+        final List<Bucket> training_and_evaluation_records = gold_standard.randomSplit(getRandom(), training_ratio, false);
 
-        addTrainingRecords(training_records);
-        addEvaluationRecords(evaluation_records);
+        addTrainingRecords(training_and_evaluation_records.get(0));
+        addEvaluationRecords(training_and_evaluation_records.get(1));
     }
 
     /**
@@ -465,4 +504,171 @@ public class ClassificationContext implements Serializable {
 
         this.evaluation_classification_time = evaluation_classification_time;
     }
+
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        BinaryCodec.writeVersion(out, BINARY_VERSION);
+        BinaryCodec.writeObject(out, random);
+        BinaryCodec.writeObject(out, classifier);
+
+        writeBucket(out, training_records);
+        writeBucket(out, evaluation_records);
+        writeBucket(out, unseen_records);
+        writeBucket(out, classified_evaluation_records);
+        writeBucket(out, classified_unseen_records);
+
+        BinaryCodec.writeObject(out, confusion_matrix);
+        BinaryCodec.writeObject(out, classification_metrics);
+
+        writeDuration(out, training_time);
+        writeDuration(out, evaluation_classification_time);
+    }
+
+    @Override
+    public void readBinary(final DataInputStream in) throws IOException {
+
+        final int version = BinaryCodec.readVersion(in, ClassificationContext.class, BINARY_VERSION);
+        random = BinaryCodec.readObject(in, Random.class);
+        classifier = BinaryCodec.readObject(in, Classifier.class);
+
+        training_records = readBucket(in, version);
+        evaluation_records = readBucket(in, version);
+        unseen_records = readBucket(in, version);
+        classified_evaluation_records = readBucket(in, version);
+        classified_unseen_records = readBucket(in, version);
+
+        confusion_matrix = BinaryCodec.readObject(in, ConfusionMatrix.class);
+        classification_metrics = BinaryCodec.readObject(in, Metrics.class);
+
+        training_time = readDuration(in);
+        evaluation_classification_time = readDuration(in);
+    }
+
+    /**
+     * Writes the random number generator and timings of this context to a small uncompressed section, and each of its
+     * other non-null parts to a separately compressed section, so that each part can be read independently.
+     *
+     * @param out the file to which to write
+     * @throws IOException if the state cannot be written
+     * @see LazyClassificationContext
+     */
+    @Override
+    public void writeSections(final SectionedFile.Writer out) throws IOException {
+
+        out.addSection(CONTEXT_SECTION, section -> {
+
+            BinaryCodec.writeVersion(section, BINARY_VERSION);
+            BinaryCodec.writeObject(section, random);
+            writeDuration(section, training_time);
+            writeDuration(section, evaluation_classification_time);
+        });
+
+        writeSection(out, CLASSIFIER_SECTION, classifier);
+        writeSection(out, TRAINING_RECORDS_SECTION, training_records);
+        writeSection(out, EVALUATION_RECORDS_SECTION, evaluation_records);
+        writeSection(out, UNSEEN_RECORDS_SECTION, unseen_records);
+        writeSection(out, CLASSIFIED_EVALUATION_RECORDS_SECTION, classified_evaluation_records);
+        writeSection(out, CLASSIFIED_UNSEEN_RECORDS_SECTION, classified_unseen_records);
+        writeSection(out, CONFUSION_MATRIX_SECTION, confusion_matrix);
+        writeSection(out, CLASSIFICATION_METRICS_SECTION, classification_metrics);
+    }
+
+    @Override
+    public void readSections(final SectionedFile in) throws IOException {
+
+        readContextSection(in);
+
+        classifier = readSection(in, CLASSIFIER_SECTION, Classifier.class);
+        training_records = readSection(in, TRAINING_RECORDS_SECTION, Bucket.class);
+        evaluation_records = readSection(in, EVALUATION_RECORDS_SECTION, Bucket.class);
+        unseen_records = readSection(in, UNSEEN_RECORDS_SECTION, Bucket.class);
+        classified_evaluation_records = readSection(in, CLASSIFIED_EVALUATION_RECORDS_SECTION, Bucket.class);
+        classified_unseen_records = readSection(in, CLASSIFIED_UNSEEN_RECORDS_SECTION, Bucket.class);
+        confusion_matrix = readSection(in, CONFUSION_MATRIX_SECTION, ConfusionMatrix.class);
+        classification_metrics = readSection(in, CLASSIFICATION_METRICS_SECTION, Metrics.class);
+    }
+
+    void readContextSection(final SectionedFile in) throws IOException {
+
+        try (final DataInputStream section = new DataInputStream(in.openSection(CONTEXT_SECTION))) {
+
+            sections_version = BinaryCodec.readVersion(section, ClassificationContext.class, BINARY_VERSION);
+            random = BinaryCodec.readObject(section, Random.class);
+            training_time = readDuration(section);
+            evaluation_classification_time = readDuration(section);
+        }
+    }
+
+    private static void writeSection(final SectionedFile.Writer out, final String name, final Object value) throws IOException {
+
+        if (value != null) {
+            out.addSection(name, section -> {
+
+                try (final DataOutputStream compressed = new DataOutputStream(Serialization.compress(section))) {
+                    if (value instanceof Bucket) {
+                        writeBucket(compressed, (Bucket) value);
+                    }
+                    else {
+                        BinaryCodec.writeObject(compressed, value);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads a section written by {@link #writeSections(SectionedFile.Writer)}, in the version read from the context section.
+     *
+     * @param in the file from which to read
+     * @param name the name of the section
+     * @param type the type of the value in the section
+     * @return the value in the section, or {@code null} if the file has no such section
+     * @throws IOException if the section cannot be read
+     */
+    <Value> Value readSection(final SectionedFile in, final String name, final Class<Value> type) throws IOException {
+
+        if (!in.hasSection(name)) {
+            return null;
+        }
+
+        try (final DataInputStream section = new DataInputStream(new BufferedInputStream(Serialization.decompress(in.openSection(name))))) {
+            return type == Bucket.class ? type.cast(readBucket(section, sections_version)) : BinaryCodec.readObject(section, type);
+        }
+    }
+
+    private static void writeBucket(final DataOutputStream out, final Bucket bucket) throws IOException {
+
+        out.writeBoolean(bucket != null);
+        if (bucket != null) {
+
+            // The bucket encoding is self-delimiting, so it is streamed without being buffered whole.
+            BinaryBucketCodec.write(bucket, out, true);
+            out.writeBoolean(bucket.isAutoAllocatingIds());
+        }
+    }
+
+    private static Bucket readBucket(final DataInputStream in, final int version) throws IOException {
+
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        final Bucket bucket = version <= LENGTH_PREFIXED_BUCKETS_VERSION ? BinaryBucketCodec.read(new ByteArrayInputStream(BinaryCodec.readBytes(in))) : BinaryBucketCodec.readExactly(in);
+        return in.readBoolean() ? bucket.copy(true) : bucket;
+    }
+
+    private static void writeDuration(final DataOutputStream out, final Duration duration) throws IOException {
+
+        out.writeBoolean(duration != null);
+        if (duration != null) {
+            out.writeLong(duration.getSeconds());
+            out.writeInt(duration.getNano());
+        }
+    }
+
+    private static Duration readDuration(final DataInputStream in) throws IOException {
+
+        return in.readBoolean() ? Duration.ofSeconds(in.readLong(), in.readInt()) : null;
+    }
 }
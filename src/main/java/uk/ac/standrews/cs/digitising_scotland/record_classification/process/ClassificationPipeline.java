@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process;
+
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.Classifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cleaning.Cleaner;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Record;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * Classifies a stream of records in bounded memory.
+ *
+ * Records are read from a source in batches on one thread, classified on a pool of worker threads, and passed to a sink
+ * on the calling thread in the order in which they were read. Only a bounded number of batches is in flight at any
+ * time, so the number of records held in memory does not depend on the number of records in the stream. If the
+ * classifier does not {@link Classifier#supportsConcurrentClassification() support concurrent classification}, a single
+ * worker is used; reading, classification and writing still proceed concurrently.
+ *
+ * If a cleaner is given, each batch is cleaned by the worker that classifies it, so that the records are classified as
+ * they would be if they were loaded and cleaned before being classified.
+ */
+public class ClassificationPipeline {
+
+    /** The default number of records in each batch passed between the stages of the pipeline. */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(ClassificationPipeline.class.getName());
+    private static final Future<List<Record>> END_OF_RECORDS = CompletableFuture.completedFuture(null);
+
+    private final Classifier classifier;
+    private final int worker_count;
+    private final int batch_size;
+    private final Cleaner cleaner;
+
+    /**
+     * Receives classified records from the pipeline.
+     */
+    @FunctionalInterface
+    public interface RecordSink {
+
+        /**
+         * Accepts a classified record.
+         *
+         * @param record the classified record
+         * @throws IOException if the record cannot be accepted
+         */
+        void accept(Record record) throws IOException;
+    }
+
+    /**
+     * Instantiates a new pipeline with the default batch size.
+     *
+     * @param classifier the classifier with which to classify records
+     * @param thread_count the maximum number of threads to use for classification
+     */
+    public ClassificationPipeline(final Classifier classifier, final int thread_count) {
+
+        this(classifier, thread_count, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Instantiates a new pipeline.
+     *
+     * @param classifier the classifier with which to classify records
+     * @param thread_count the maximum number of threads to use for classification
+     * @param batch_size the number of records in each batch passed between the stages of the pipeline
+     */
+    public ClassificationPipeline(final Classifier classifier, final int thread_count, final int batch_size) {
+
+        this(classifier, thread_count, batch_size, null);
+    }
+
+    /**
+     * Instantiates a new pipeline that cleans each batch of records before classifying it.
+     *
+     * @param classifier the classifier with which to classify records
+     * @param thread_count the maximum number of threads to use for classification
+     * @param batch_size the number of records in each batch passed between the stages of the pipeline
+     * @param cleaner the cleaner with which to clean each batch, or {@code null} if records are not to be cleaned
+     */
+    public ClassificationPipeline(final Classifier classifier, final int thread_count, final int batch_size, final Cleaner cleaner) {
+
+        if (thread_count < 1) {
+            throw new IllegalArgumentException("the thread count must be at least 1");
+        }
+        if (batch_size < 1) {
+            throw new IllegalArgumentException("the batch size must be at least 1");
+        }
+
+        this.classifier = classifier;
+        this.batch_size = batch_size;
+        this.cleaner = cleaner;
+        worker_count = classifier.supportsConcurrentClassification() ? thread_count : 1;
+    }
+
+    /**
+     * Classifies the given records, passing the classified records to the given sink in the order of the source.
+     *
+     * @param unclassified_records the records to be classified
+     * @param sink the sink to which to pass the classified records
+     * @return the number of records classified
+     * @throws IOException if the sink fails, or if the source fails with an {@link UncheckedIOException}
+     */
+    public long classify(final Iterator<Record> unclassified_records, final RecordSink sink) throws IOException {
+
+        // Allows workers to be busy with one batch each while the sink is consuming another.
+        final BlockingQueue<Future<List<Record>>> pending_batches = new ArrayBlockingQueue<>(worker_count * 2);
+
+        final ExecutorService workers = Executors.newFixedThreadPool(worker_count, ClassificationPipeline::newDaemonThread);
+        final ExecutorService reader = Executors.newSingleThreadExecutor(ClassificationPipeline::newDaemonThread);
+
+        try {
+            reader.execute(() -> readBatches(unclassified_records, workers, pending_batches));
+
+            long count = 0;
+            Future<List<Record>> batch;
+
+            while ((batch = pending_batches.take()) != END_OF_RECORDS) {
+
+                for (Record record : batch.get()) {
+                    sink.accept(record);
+                    count++;
+                }
+            }
+
+            return count;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while classifying records");
+        }
+        catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+        finally {
+            reader.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private void readBatches(final Iterator<Record> unclassified_records, final ExecutorService workers, final BlockingQueue<Future<List<Record>>> pending_batches) {
+
+        try {
+            try {
+                while (unclassified_records.hasNext()) {
+
+                    final List<Record> batch = nextBatch(unclassified_records);
+                    pending_batches.put(workers.submit(() -> classify(batch)));
+                }
+            }
+            catch (RuntimeException e) {
+
+                final CompletableFuture<List<Record>> failure = new CompletableFuture<>();
+                failure.completeExceptionally(e);
+                pending_batches.put(failure);
+            }
+            pending_batches.put(END_OF_RECORDS);
+        }
+        catch (InterruptedException e) {
+            // The consumer has given up.
+            LOGGER.fine("stopped reading records");
+        }
+    }
+
+    private List<Record> nextBatch(final Iterator<Record> unclassified_records) {
+
+        final List<Record> batch = new ArrayList<>(batch_size);
+
+        while (batch.size() < batch_size && unclassified_records.hasNext()) {
+            batch.add(unclassified_records.next());
+        }
+        return batch;
+    }
+
+    private List<Record> classify(final List<Record> unclassified_batch) {
+
+        final List<Record> classified_batch = new ArrayList<>(unclassified_batch.size());
+
+        for (Record record : cleaner != null ? clean(unclassified_batch) : unclassified_batch) {
+
+            final String data = record.getData();
+            classified_batch.add(new Record(record.getId(), data, record.getOriginalData(), classifier.classify(data)));
+        }
+        return classified_batch;
+    }
+
+    private List<Record> clean(final List<Record> batch) {
+
+        final Bucket cleaned_bucket = cleaner.apply(new Bucket.Builder(batch.size()).add(batch).build());
+
+        // Buckets are ordered by id, so the cleaned records are put back in the order of the source.
+        final List<Record> cleaned_batch = new ArrayList<>(batch.size());
+        for (Record record : batch) {
+            cleaned_batch.add(cleaned_bucket.findRecordById(record.getId()).orElseThrow(() -> new IllegalStateException("record " + record.getId() + " removed by cleaning")));
+        }
+        return cleaned_batch;
+    }
+
+    private static IOException rethrow(final Throwable cause) {
+
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof UncheckedIOException) {
+            return ((UncheckedIOException) cause).getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private static Thread newDaemonThread(final Runnable runnable) {
+
+        final Thread thread = new Thread(runnable, ClassificationPipeline.class.getSimpleName());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
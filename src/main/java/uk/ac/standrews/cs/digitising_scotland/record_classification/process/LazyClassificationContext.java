@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process;
+
+import uk.ac.standrews.cs.digitising_scotland.record_classification.analysis.ConfusionMatrix;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.analysis.Metrics;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.Classifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * A classification context read from a {@link SerializationFormat#MAPPED mapped} file, whose classifier, records,
+ * confusion matrix and metrics are each read from their section of the file when first accessed. A caller that only
+ * needs the classifier therefore does not pay for reading the records.
+ *
+ * A part that is set before it is accessed is never read from the file.
+ */
+public class LazyClassificationContext extends ClassificationContext {
+
+    private static final long serialVersionUID = 3318526917426011493L;
+    private static final Logger LOGGER = Logger.getLogger(LazyClassificationContext.class.getName());
+
+    private transient SectionedFile sections;
+
+    // The names of the sections that have not yet been read.
+    private transient Set<String> unread_sections = Collections.emptySet();
+
+    @Override
+    public void readSections(final SectionedFile in) throws IOException {
+
+        readContextSection(in);
+
+        sections = in;
+        unread_sections = new HashSet<>(in.getSectionNames());
+        unread_sections.remove(CONTEXT_SECTION);
+    }
+
+    @Override
+    public Classifier getClassifier() {
+
+        loadLazily(CLASSIFIER_SECTION, Classifier.class, this::setClassifier, isClassifierSet());
+        return super.getClassifier();
+    }
+
+    @Override
+    public Bucket getTrainingRecords() {
+
+        loadLazily(TRAINING_RECORDS_SECTION, Bucket.class, this::setTrainingRecords, isTrainingRecordsSet());
+        return super.getTrainingRecords();
+    }
+
+    @Override
+    public Bucket getEvaluationRecords() {
+
+        loadLazily(EVALUATION_RECORDS_SECTION, Bucket.class, this::setEvaluationRecords, isEvaluationRecordsSet());
+        return super.getEvaluationRecords();
+    }
+
+    @Override
+    public Bucket getUnseenRecords() {
+
+        loadLazily(UNSEEN_RECORDS_SECTION, Bucket.class, this::setUnseenRecords, isUnseenRecordsSet());
+        return super.getUnseenRecords();
+    }
+
+    @Override
+    public Bucket getClassifiedEvaluationRecords() {
+
+        loadLazily(CLASSIFIED_EVALUATION_RECORDS_SECTION, Bucket.class, this::setClassifiedEvaluationRecords, isClassifiedEvaluationRecordsSet());
+        return super.getClassifiedEvaluationRecords();
+    }
+
+    @Override
+    public Bucket getClassifiedUnseenRecords() {
+
+        loadLazily(CLASSIFIED_UNSEEN_RECORDS_SECTION, Bucket.class, this::setClassifiedUnseenRecords, isClassifiedUnseenRecordsSet());
+        return super.getClassifiedUnseenRecords();
+    }
+
+    @Override
+    public ConfusionMatrix getConfusionMatrix() {
+
+        loadLazily(CONFUSION_MATRIX_SECTION, ConfusionMatrix.class, this::setConfusionMatrix, isConfusionMatrixSet());
+        return super.getConfusionMatrix();
+    }
+
+    @Override
+    public Metrics getClassificationMetrics() {
+
+        loadLazily(CLASSIFICATION_METRICS_SECTION, Metrics.class, this::setClassificationMetrics, isClassificationMetricsSet());
+        return super.getClassificationMetrics();
+    }
+
+    @Override
+    public void writeBinary(final DataOutputStream out) throws IOException {
+
+        loadAll();
+        super.writeBinary(out);
+    }
+
+    @Override
+    public void writeSections(final SectionedFile.Writer out) throws IOException {
+
+        loadAll();
+        super.writeSections(out);
+    }
+
+    // Called before this context is serialized, which writes the fields of the superclass directly.
+    private Object writeReplace() {
+
+        loadAll();
+        return this;
+    }
+
+    private void loadAll() {
+
+        getClassifier();
+        getTrainingRecords();
+        getEvaluationRecords();
+        getUnseenRecords();
+        getClassifiedEvaluationRecords();
+        getClassifiedUnseenRecords();
+        getConfusionMatrix();
+        getClassificationMetrics();
+    }
+
+    private synchronized <Value> void loadLazily(final String section, final Class<Value> type, final Consumer<Value> setter, final boolean already_set) {
+
+        // Deserialized contexts have no unread sections.
+        if (already_set || unread_sections == null || !unread_sections.contains(section)) {
+            return;
+        }
+
+        LOGGER.info(() -> String.format("loading %s...", section.replace('_', ' ')));
+        try {
+            setter.accept(readSection(sections, section, type));
+            unread_sections.remove(section);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,531 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.StringInterner;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenList;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Reads and writes values in a compact binary format, in which each {@link BinarySerializable} value is written by its
+ * own hand-written codec.
+ *
+ * The format consists of a header followed by the value. Each value, including those nested within others, is written
+ * as a tag followed by its content: the name of its class followed by its state for binary serializable values, or
+ * the length of its Java serialized form followed by that form for any other serializable value. This allows values
+ * such as random number generators and metrics, which are small and have no codec of their own, to be nested within
+ * values that do.
+ *
+ * Strings are written as their length in bytes followed by their UTF-8 encoding, so unlike
+ * {@link DataOutputStream#writeUTF(String)} there is no limit on their length.
+ *
+ * Models such as those of logistic regression classifiers are written a number at a time, so values are written and
+ * read through buffers that, unlike {@link BufferedOutputStream} and {@link BufferedInputStream}, are not synchronized.
+ */
+public final class BinaryCodec {
+
+    private static final int MAGIC_NUMBER = 0x434C4243;
+    private static final int VERSION = 1;
+
+    private static final byte NULL_TAG = 0;
+    private static final byte BINARY_TAG = 1;
+    private static final byte SERIALIZED_TAG = 2;
+
+    private static final int NULL_STRING = -1;
+    private static final int NULL_TOKEN_LIST = -1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private BinaryCodec() { throw new UnsupportedOperationException(); }
+
+    /**
+     * Writes the given value.
+     *
+     * @param value the value to write
+     * @param out the stream to which to write the value; not closed
+     * @throws IOException if the value cannot be written
+     */
+    public static void write(final Object value, final OutputStream out) throws IOException {
+
+        final DataOutputStream output = new DataOutputStream(new UnsynchronizedBufferedOutputStream(out));
+
+        output.writeInt(MAGIC_NUMBER);
+        output.writeInt(VERSION);
+        writeObject(output, value);
+
+        output.flush();
+    }
+
+    /**
+     * Reads a value written by {@link #write(Object, OutputStream)}.
+     *
+     * @param in the stream from which to read the value; not closed
+     * @param type the expected type of the value
+     * @param <Value> the expected type of the value
+     * @return the value
+     * @throws IOException if the value cannot be read, is not in the expected format or is not of the expected type
+     */
+    public static <Value> Value read(final InputStream in, final Class<Value> type) throws IOException {
+
+        final DataInputStream input = new DataInputStream(new UnsynchronizedBufferedInputStream(in));
+
+        if (input.readInt() != MAGIC_NUMBER) {
+            throw new IOException("not a binary serialized value");
+        }
+
+        final int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported binary serialization version: " + version);
+        }
+
+        return readObject(input, type);
+    }
+
+    /**
+     * Writes a value nested within another.
+     *
+     * @param out the stream to which to write
+     * @param value the value to write, which must be {@code null}, binary serializable or serializable
+     * @throws IOException if the value cannot be written
+     */
+    public static void writeObject(final DataOutputStream out, final Object value) throws IOException {
+
+        if (value == null) {
+            out.writeByte(NULL_TAG);
+        }
+        else if (value instanceof BinarySerializable) {
+            out.writeByte(BINARY_TAG);
+            writeString(out, value.getClass().getName());
+            ((BinarySerializable) value).writeBinary(out);
+        }
+        else if (value instanceof Serializable) {
+            out.writeByte(SERIALIZED_TAG);
+            writeBytes(out, SerializationUtils.serialize((Serializable) value));
+        }
+        else {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads a value written by {@link #writeObject(DataOutputStream, Object)}.
+     *
+     * @param in the stream from which to read
+     * @param type the expected type of the value
+     * @param <Value> the expected type of the value
+     * @return the value, or {@code null} if a {@code null} value was written
+     * @throws IOException if the value cannot be read or is not of the expected type
+     */
+    public static <Value> Value readObject(final DataInputStream in, final Class<Value> type) throws IOException {
+
+        final byte tag = in.readByte();
+        final Object value;
+
+        switch (tag) {
+
+            case NULL_TAG:
+                return null;
+
+            case BINARY_TAG:
+                value = newBinarySerializable(readString(in));
+                ((BinarySerializable) value).readBinary(in);
+                break;
+
+            case SERIALIZED_TAG:
+                try {
+                    value = SerializationUtils.deserialize(readBytes(in));
+                }
+                catch (SerializationException e) {
+                    throw new IOException("cannot deserialize nested value", e);
+                }
+                break;
+
+            default:
+                throw new IOException("unknown value tag: " + tag);
+        }
+
+        if (!type.isInstance(value)) {
+            throw new IOException("expected value of type " + type.getName() + " but found " + value.getClass().getName());
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * Writes the version of the layout of the state of a binary serializable value.
+     *
+     * @param out the stream to which to write
+     * @param version the version
+     * @throws IOException if the version cannot be written
+     */
+    public static void writeVersion(final DataOutputStream out, final int version) throws IOException {
+
+        out.writeShort(version);
+    }
+
+    /**
+     * Reads the version of the layout of the state of a binary serializable value, and checks that it can be read.
+     *
+     * @param in the stream from which to read
+     * @param type the type of the value
+     * @param latest_version the latest version of the layout that the type can read
+     * @return the version
+     * @throws IOException if the version cannot be read or is later than the latest version
+     */
+    public static int readVersion(final DataInputStream in, final Class<?> type, final int latest_version) throws IOException {
+
+        final int version = in.readShort();
+        if (version < 1 || version > latest_version) {
+            throw new IOException("unsupported binary version of " + type.getSimpleName() + ": " + version);
+        }
+        return version;
+    }
+
+    public static void writeString(final DataOutputStream out, final String string) throws IOException {
+
+        if (string == null) {
+            out.writeInt(NULL_STRING);
+        }
+        else {
+            writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public static String readString(final DataInputStream in) throws IOException {
+
+        final int length = in.readInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a token list, which may be {@code null}, as its number of tokens followed by each token.
+     *
+     * @param out the stream to which to write
+     * @param token_list the token list
+     * @throws IOException if the token list cannot be written
+     */
+    public static void writeTokenList(final DataOutputStream out, final TokenList token_list) throws IOException {
+
+        if (token_list == null) {
+            out.writeInt(NULL_TOKEN_LIST);
+        }
+        else {
+            out.writeInt(token_list.size());
+            for (String token : token_list) {
+                writeString(out, token);
+            }
+        }
+    }
+
+    /**
+     * Reads a token list written by {@link #writeTokenList(DataOutputStream, TokenList)}.
+     *
+     * @param in the stream from which to read
+     * @return the token list, or {@code null} if a {@code null} token list was written
+     * @throws IOException if the token list cannot be read
+     */
+    public static TokenList readTokenList(final DataInputStream in) throws IOException {
+
+        final int size = in.readInt();
+        if (size == NULL_TOKEN_LIST) {
+            return null;
+        }
+        if (size < 0) {
+            throw new IOException("invalid token list size " + size);
+        }
+
+        final String[] tokens = new String[size];
+        for (int i = 0; i < size; i++) {
+            tokens[i] = StringInterner.intern(readString(in));
+        }
+        return TokenList.fromTokens(Arrays.asList(tokens));
+    }
+
+    public static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static byte[] readBytes(final DataInputStream in) throws IOException {
+
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    public static void writeDoubles(final DataOutputStream out, final double[] values) throws IOException {
+
+        final ByteBuffer bytes = ByteBuffer.allocate(values.length * Double.BYTES);
+        bytes.asDoubleBuffer().put(values);
+
+        out.writeInt(values.length);
+        out.write(bytes.array());
+    }
+
+    public static double[] readDoubles(final DataInputStream in) throws IOException {
+
+        final byte[] bytes = new byte[in.readInt() * Double.BYTES];
+        in.readFully(bytes);
+
+        final double[] values = new double[bytes.length / Double.BYTES];
+        ByteBuffer.wrap(bytes).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Writes a map from strings to doubles, such as the per-class confidences of a classifier.
+     *
+     * @param out the stream to which to write
+     * @param map the map
+     * @throws IOException if the map cannot be written
+     */
+    public static void writeStringToDoubleMap(final DataOutputStream out, final Map<String, Double> map) throws IOException {
+
+        out.writeInt(map.size());
+        for (Map.Entry<String, Double> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeDouble(entry.getValue());
+        }
+    }
+
+    public static HashMap<String, Double> readStringToDoubleMap(final DataInputStream in) throws IOException {
+
+        final int size = in.readInt();
+        final HashMap<String, Double> map = new HashMap<>(capacityFor(size));
+
+        for (int i = 0; i < size; i++) {
+            final String key = readString(in);
+            map.put(key, in.readDouble());
+        }
+        return map;
+    }
+
+    /**
+     * Writes the classifications of known data, such as the training data of a classifier.
+     *
+     * Since there are typically few distinct combinations of code, confidence and detail among the classifications,
+     * these are written once, followed by each known data and the index of the combination by which it is classified.
+     * The token lists of the classifications are not written; each classification read is given the tokens of the
+     * data it classifies.
+     *
+     * @param out the stream to which to write
+     * @param classifications a map from each known data to its classification
+     * @throws IOException if the classifications cannot be written
+     */
+    public static void writeClassifications(final DataOutputStream out, final Map<String, Classification> classifications) throws IOException {
+
+        final Map<List<Object>, Integer> distinct_classifications = new LinkedHashMap<>();
+        final int[] classification_indices = new int[classifications.size()];
+
+        int i = 0;
+        for (Classification classification : classifications.values()) {
+
+            final List<Object> key = Arrays.asList(classification.getCode(), classification.getConfidence(), classification.getDetail());
+            classification_indices[i++] = distinct_classifications.computeIfAbsent(key, k -> distinct_classifications.size());
+        }
+
+        out.writeInt(distinct_classifications.size());
+        for (List<Object> classification : distinct_classifications.keySet()) {
+            writeString(out, (String) classification.get(0));
+            out.writeDouble((Double) classification.get(1));
+            writeString(out, (String) classification.get(2));
+        }
+
+        out.writeInt(classifications.size());
+        i = 0;
+        for (String data : classifications.keySet()) {
+            writeString(out, data);
+            out.writeInt(classification_indices[i++]);
+        }
+    }
+
+    /**
+     * Reads classifications written by {@link #writeClassifications(DataOutputStream, Map)}.
+     *
+     * @param in the stream from which to read
+     * @return a map from each known data to its classification
+     * @throws IOException if the classifications cannot be read
+     */
+    public static HashMap<String, Classification> readClassifications(final DataInputStream in) throws IOException {
+
+        final int distinct_count = in.readInt();
+        final String[] codes = new String[distinct_count];
+        final double[] confidences = new double[distinct_count];
+        final String[] details = new String[distinct_count];
+
+        for (int i = 0; i < distinct_count; i++) {
+            codes[i] = StringInterner.intern(readString(in));
+            confidences[i] = in.readDouble();
+            details[i] = readString(in);
+        }
+
+        final int size = in.readInt();
+        final HashMap<String, Classification> classifications = new HashMap<>(capacityFor(size));
+
+        for (int i = 0; i < size; i++) {
+
+            // Keys are interned so that they are shared with the data of records, as when the classifications are trained.
+            final String data = StringInterner.intern(readString(in));
+            final int index = in.readInt();
+
+            classifications.put(data, new Classification(codes[index], TokenList.of(data), confidences[index], details[index]));
+        }
+        return classifications;
+    }
+
+    private static int capacityFor(final int size) {
+
+        return (int) (size / 0.75f) + 1;
+    }
+
+    private static BinarySerializable newBinarySerializable(final String type_name) throws IOException {
+
+        try {
+            final Constructor<? extends BinarySerializable> constructor = Class.forName(type_name).asSubclass(BinarySerializable.class).getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        }
+        catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IOException("cannot instantiate binary serializable type " + type_name, e);
+        }
+    }
+
+    private static final class UnsynchronizedBufferedOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int count;
+
+        private UnsynchronizedBufferedOutputStream(final OutputStream out) {
+
+            this.out = out;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+
+            if (length > buffer.length - count) {
+                flushBuffer();
+            }
+
+            if (length > buffer.length) {
+                out.write(bytes, offset, length);
+            }
+            else {
+                System.arraycopy(bytes, offset, buffer, count, length);
+                count += length;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+            flushBuffer();
+            out.flush();
+        }
+
+        private void flushBuffer() throws IOException {
+
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+    }
+
+    private static final class UnsynchronizedBufferedInputStream extends InputStream {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int count;
+
+        private UnsynchronizedBufferedInputStream(final InputStream in) {
+
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            if (position == count && !fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+
+            if (length == 0) {
+                return 0;
+            }
+
+            if (position == count) {
+
+                // Large reads bypass the buffer.
+                if (length >= buffer.length) {
+                    return in.read(bytes, offset, length);
+                }
+                if (!fill()) {
+                    return -1;
+                }
+            }
+
+            final int read = Math.min(length, count - position);
+            System.arraycopy(buffer, position, bytes, offset, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+
+            return count - position + in.available();
+        }
+
+        private boolean fill() throws IOException {
+
+            final int read = in.read(buffer, 0, buffer.length);
+            position = 0;
+            count = Math.max(read, 0);
+            return read > 0;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * An object whose state can be written to and read from a compact binary stream by a hand-written codec, rather than
+ * by Java serialization or JSON. Implementations must have a constructor with no parameters, through which they are
+ * instantiated before their state is read.
+ *
+ * Implementations should start their state with a version number written by {@link BinaryCodec#writeVersion}, so
+ * that the layout of the state can change without invalidating files written by earlier versions.
+ *
+ * @see SerializationFormat#BINARY
+ */
+public interface BinarySerializable {
+
+    /**
+     * Writes the state of this object.
+     *
+     * @param out the stream to which to write
+     * @throws IOException if the state cannot be written
+     */
+    void writeBinary(DataOutputStream out) throws IOException;
+
+    /**
+     * Reads the state of this object, as written by {@link #writeBinary(DataOutputStream)}.
+     *
+     * @param in the stream from which to read
+     * @throws IOException if the state cannot be read
+     */
+    void readBinary(DataInputStream in) throws IOException;
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The layout of the gzip files written by {@link ParallelGZIPOutputStream} and read by {@link ParallelGZIPInputStream}.
+ *
+ * A file consists of one or more gzip members, each of which compresses a block of the uncompressed data independently
+ * of the others. Since a sequence of gzip members is itself a valid gzip file, such files can be read by any gzip
+ * reader. The header of each member carries an extra field giving the lengths of its compressed and uncompressed
+ * data, which indexes the blocks: a reader can find the start of each block without inflating the blocks before it,
+ * and so can inflate blocks in parallel.
+ */
+final class BlockGZIPFormat {
+
+    /** The length of the header of each member, including the extra field. */
+    static final int HEADER_SIZE = 24;
+
+    /** The length of the trailer of each member, giving the CRC-32 and length of its uncompressed data. */
+    static final int TRAILER_SIZE = 8;
+
+    private static final byte ID1 = 0x1f;
+    private static final byte ID2 = (byte) 0x8b;
+    private static final byte DEFLATE = 8;
+    private static final byte FLAG_EXTRA = 4;
+    private static final byte UNKNOWN_OPERATING_SYSTEM = (byte) 255;
+
+    private static final short EXTRA_LENGTH = 12;
+    private static final byte SUBFIELD_ID1 = 'R';
+    private static final byte SUBFIELD_ID2 = 'C';
+    private static final short SUBFIELD_LENGTH = 8;
+
+    private BlockGZIPFormat() { throw new UnsupportedOperationException(); }
+
+    /**
+     * Compresses the given block as a gzip member.
+     *
+     * @param block the uncompressed data
+     * @param length the length of the uncompressed data
+     * @param level the compression level
+     * @return the member
+     */
+    static byte[] compress(final byte[] block, final int length, final int level) {
+
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(block, 0, length);
+            deflater.finish();
+
+            // Large enough for all but incompressible data, for which the buffer is grown.
+            byte[] member = new byte[HEADER_SIZE + length + (length >> 12) + 64 + TRAILER_SIZE];
+            int position = HEADER_SIZE;
+
+            while (!deflater.finished()) {
+                if (position == member.length - TRAILER_SIZE) {
+                    member = Arrays.copyOf(member, member.length * 2);
+                }
+                position += deflater.deflate(member, position, member.length - TRAILER_SIZE - position);
+            }
+
+            final int compressed_length = position - HEADER_SIZE;
+            final CRC32 crc = new CRC32();
+            crc.update(block, 0, length);
+
+            final ByteBuffer buffer = ByteBuffer.wrap(member).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(ID1).put(ID2).put(DEFLATE).put(FLAG_EXTRA).putInt(0).put((byte) 0).put(UNKNOWN_OPERATING_SYSTEM);
+            buffer.putShort(EXTRA_LENGTH).put(SUBFIELD_ID1).put(SUBFIELD_ID2).putShort(SUBFIELD_LENGTH);
+            buffer.putInt(compressed_length).putInt(length);
+            buffer.position(position);
+            buffer.putInt((int) crc.getValue()).putInt(length);
+
+            return Arrays.copyOf(member, position + TRAILER_SIZE);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Checks whether the given bytes are the header of a member written by {@link #compress(byte[], int, int)}.
+     *
+     * @param header the bytes
+     * @param length the number of bytes, which may be fewer than a header
+     * @return whether the bytes are such a header
+     */
+    static boolean isIndexedHeader(final byte[] header, final int length) {
+
+        if (length < HEADER_SIZE) {
+            return false;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        return buffer.get(0) == ID1 && buffer.get(1) == ID2 && buffer.get(2) == DEFLATE && (buffer.get(3) & FLAG_EXTRA) != 0 &&
+                buffer.getShort(10) == EXTRA_LENGTH && buffer.get(12) == SUBFIELD_ID1 && buffer.get(13) == SUBFIELD_ID2 && buffer.getShort(14) == SUBFIELD_LENGTH;
+    }
+
+    static int getCompressedLength(final byte[] header) {
+
+        return ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).getInt(16);
+    }
+
+    static int getUncompressedLength(final byte[] header) {
+
+        return ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).getInt(20);
+    }
+
+    /**
+     * Inflates the data of a member and checks it against the member's trailer.
+     *
+     * @param data the compressed data of the member followed by its trailer
+     * @param uncompressed_length the length of the uncompressed data, as given in the member's header
+     * @return the uncompressed data
+     * @throws IOException if the data cannot be inflated or does not match the trailer
+     */
+    static byte[] decompress(final byte[] data, final int uncompressed_length) throws IOException {
+
+        final byte[] block = new byte[uncompressed_length];
+        final int compressed_length = data.length - TRAILER_SIZE;
+
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, 0, compressed_length);
+
+            int position = 0;
+            while (!inflater.finished()) {
+
+                final int inflated = inflater.inflate(block, position, block.length - position);
+                position += inflated;
+
+                if (inflated == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary() || position == block.length)) {
+                    throw new IOException("corrupt gzip block");
+                }
+            }
+
+            final ByteBuffer trailer = ByteBuffer.wrap(data, compressed_length, TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            final CRC32 crc = new CRC32();
+            crc.update(block, 0, position);
+
+            if (position != uncompressed_length || trailer.getInt() != (int) crc.getValue() || trailer.getInt() != uncompressed_length) {
+                throw new IOException("corrupt gzip block");
+            }
+            return block;
+        }
+        catch (DataFormatException e) {
+            throw new IOException("corrupt gzip block", e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    static ExecutorService newExecutor(final int thread_count, final String name) {
+
+        return Executors.newFixedThreadPool(thread_count, runnable -> {
+
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for the given block to be compressed or decompressed.
+     *
+     * @param block the block
+     * @return the compressed or decompressed block
+     * @throws IOException if compression or decompression failed, or the current thread is interrupted while waiting
+     */
+    static byte[] await(final Future<byte[]> block) throws IOException {
+
+        try {
+            return block.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while awaiting gzip block");
+        }
+        catch (ExecutionException e) {
+
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException(cause);
+        }
+    }
+}
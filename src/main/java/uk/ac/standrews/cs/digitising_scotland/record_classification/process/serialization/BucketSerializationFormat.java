@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+/**
+ * Formats in which buckets of records may be persisted. In the {@link #MAPPED} format records are held in an off-heap record store,
+ * and are read from it as needed rather than loaded into memory.
+ *
+ * @see uk.ac.standrews.cs.digitising_scotland.record_classification.model.BinaryBucketCodec
+ * @see uk.ac.standrews.cs.digitising_scotland.record_classification.model.MappedBucket
+ */
+public enum BucketSerializationFormat {
+
+    CSV, BINARY, MAPPED
+}
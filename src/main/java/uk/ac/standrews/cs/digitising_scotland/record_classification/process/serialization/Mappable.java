@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import java.io.IOException;
+
+/**
+ * An object whose state can be persisted in the sections of a {@link SectionedFile}, so that large parts of its state
+ * can be memory-mapped and read on demand rather than deserialized up front. Implementations must have a constructor
+ * with no parameters, through which they are instantiated before their state is read.
+ *
+ * @see SerializationFormat#MAPPED
+ */
+public interface Mappable {
+
+    /**
+     * Writes the state of this object as sections of the given file.
+     *
+     * @param out the file to which to write
+     * @throws IOException if the state cannot be written
+     */
+    void writeSections(SectionedFile.Writer out) throws IOException;
+
+    /**
+     * Reads the state of this object from the sections of the given file.
+     *
+     * @param in the file from which to read
+     * @throws IOException if the state cannot be read
+     */
+    void readSections(SectionedFile in) throws IOException;
+}
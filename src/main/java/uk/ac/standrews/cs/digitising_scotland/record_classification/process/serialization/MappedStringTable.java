@@ -0,0 +1,231 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * An immutable table of distinct strings, each with an associated integer value, that is read on demand from a buffer
+ * such as a memory-mapped {@link SectionedFile} section.
+ *
+ * The table consists of the number of strings, the offset of each string, the value of each string and the UTF-8
+ * encoding of the strings. Strings are sorted by their encoding, so that a string can be found by binary search
+ * without decoding the strings it is compared with.
+ *
+ * Strings are decoded each time they are requested rather than cached, so that the heap used by a table does not grow
+ * with the number of strings in it. A table only reads its buffer at absolute positions, so it may be used by any number
+ * of threads at once.
+ */
+public final class MappedStringTable {
+
+    /** The index returned when a string is not in the table. */
+    public static final int NOT_FOUND = -1;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int values_start;
+    private final int strings_start;
+
+    /**
+     * Creates a table over the given buffer, starting at its current position.
+     *
+     * @param buffer the buffer containing a table written by {@link #write(DataOutput, Map)}
+     */
+    public MappedStringTable(final ByteBuffer buffer) {
+
+        this.buffer = buffer.slice();
+
+        size = this.buffer.getInt(0);
+        values_start = Integer.BYTES * (size + 2);
+        strings_start = values_start + Integer.BYTES * size;
+    }
+
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Finds the index of the given string.
+     *
+     * @param string the string to find
+     * @return the index of the string, or {@link #NOT_FOUND} if the string is not in the table
+     */
+    public int indexOf(final String string) {
+
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+
+            final int middle = (low + high) >>> 1;
+            final int comparison = compareTo(middle, bytes);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            }
+            else if (comparison > 0) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Gets the string at the given index.
+     *
+     * @param index the index of the string
+     * @return the string
+     */
+    public String getString(final int index) {
+
+        final int start = getOffset(index);
+        final byte[] bytes = new byte[getOffset(index + 1) - start];
+
+        // Each call reads through its own view, since a relative read would move the position shared by other threads.
+        final ByteBuffer view = buffer.duplicate();
+        view.position(strings_start + start);
+        view.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the value of the string at the given index.
+     *
+     * @param index the index of the string
+     * @return the value of the string
+     */
+    public int getValue(final int index) {
+
+        return buffer.getInt(values_start + index * Integer.BYTES);
+    }
+
+    /**
+     * Writes a table containing the given strings and values.
+     *
+     * @param out the output to which to write the table
+     * @param values the strings and their values
+     * @throws IOException if the table cannot be written
+     */
+    public static void write(final DataOutput out, final Map<String, Integer> values) throws IOException {
+
+        final int size = values.size();
+        final byte[][] strings = new byte[size][];
+        final int[] string_values = new int[size];
+        final Integer[] order = new Integer[size];
+
+        int index = 0;
+        for (final Map.Entry<String, Integer> entry : values.entrySet()) {
+            strings[index] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            string_values[index] = entry.getValue();
+            order[index] = index;
+            index++;
+        }
+
+        Arrays.sort(order, (one, other) -> compare(strings[one], strings[other]));
+
+        out.writeInt(size);
+
+        int offset = 0;
+        for (final int i : order) {
+            out.writeInt(offset);
+            offset += strings[i].length;
+        }
+        out.writeInt(offset);
+
+        for (final int i : order) {
+            out.writeInt(string_values[i]);
+        }
+        for (final int i : order) {
+            out.write(strings[i]);
+        }
+    }
+
+    /**
+     * Sorts the given strings into the order in which a table written by {@link #write(DataOutput, Map)} holds them,
+     * so that the index of each string in such a table is known when the table is written.
+     *
+     * @param strings the strings
+     * @return the strings, in the order of a table
+     */
+    public static String[] sort(final Collection<String> strings) {
+
+        final String[] unsorted_strings = strings.toArray(new String[strings.size()]);
+        final byte[][] encodings = new byte[unsorted_strings.length][];
+        final Integer[] order = new Integer[unsorted_strings.length];
+
+        for (int index = 0; index < unsorted_strings.length; index++) {
+            encodings[index] = unsorted_strings[index].getBytes(StandardCharsets.UTF_8);
+            order[index] = index;
+        }
+
+        Arrays.sort(order, (one, other) -> compare(encodings[one], encodings[other]));
+
+        final String[] sorted_strings = new String[order.length];
+        for (int index = 0; index < order.length; index++) {
+            sorted_strings[index] = unsorted_strings[order[index]];
+        }
+        return sorted_strings;
+    }
+
+    private int getOffset(final int index) {
+
+        return buffer.getInt(Integer.BYTES * (index + 1));
+    }
+
+    private int compareTo(final int index, final byte[] bytes) {
+
+        final int start = strings_start + getOffset(index);
+        final int length = getOffset(index + 1) - getOffset(index);
+        final int common_length = Math.min(length, bytes.length);
+
+        for (int i = 0; i < common_length; i++) {
+
+            final int difference = (buffer.get(start + i) & 0xFF) - (bytes[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - bytes.length;
+    }
+
+    private static int compare(final byte[] one, final byte[] other) {
+
+        final int common_length = Math.min(one.length, other.length);
+
+        for (int i = 0; i < common_length; i++) {
+
+            final int difference = (one[i] & 0xFF) - (other[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return one.length - other.length;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses data in the gzip format using multiple threads. Files written by {@link ParallelGZIPOutputStream} are
+ * indexed by the lengths in the header of each member, so the compressed members are read ahead and inflated
+ * concurrently, and their data returned in order. Any other gzip file is decompressed by a single thread, as by
+ * {@link GZIPInputStream}.
+ *
+ * This class is not thread-safe.
+ *
+ * @see BlockGZIPFormat
+ */
+public class ParallelGZIPInputStream extends InputStream {
+
+    private static final int PENDING_BLOCKS_PER_THREAD = 2;
+    private static final byte[] EMPTY_BLOCK = new byte[0];
+
+    private final PushbackInputStream in;
+    private final InputStream unindexed_in;
+    private final ExecutorService decompressors;
+    private final int max_pending_blocks;
+    private final Queue<Future<byte[]>> pending_blocks;
+    private final byte[] header = new byte[BlockGZIPFormat.HEADER_SIZE];
+
+    private byte[] block = EMPTY_BLOCK;
+    private int block_position;
+    private boolean end_of_members;
+    private boolean closed;
+
+    /**
+     * Instantiates a new stream.
+     *
+     * @param in the stream from which to read the compressed data
+     * @param thread_count the number of threads with which to decompress blocks; if one, blocks are decompressed by the reading thread
+     * @throws IOException if the compressed data cannot be read or are not in the gzip format
+     */
+    public ParallelGZIPInputStream(final InputStream in, final int thread_count) throws IOException {
+
+        if (thread_count < 1) {
+            throw new IllegalArgumentException("thread count must be at least one");
+        }
+
+        this.in = new PushbackInputStream(in, BlockGZIPFormat.HEADER_SIZE);
+
+        final int header_length = readFully(this.in, header, header.length);
+        this.in.unread(header, 0, header_length);
+
+        if (BlockGZIPFormat.isIndexedHeader(header, header_length)) {
+
+            unindexed_in = null;
+            decompressors = thread_count > 1 ? BlockGZIPFormat.newExecutor(thread_count, getClass().getSimpleName()) : null;
+            max_pending_blocks = thread_count * PENDING_BLOCKS_PER_THREAD;
+            pending_blocks = new ArrayDeque<>(max_pending_blocks);
+        }
+        else {
+            unindexed_in = new GZIPInputStream(this.in);
+            decompressors = null;
+            max_pending_blocks = 0;
+            pending_blocks = null;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        requireOpen();
+
+        if (unindexed_in != null) {
+            return unindexed_in.read();
+        }
+        return nextBlockIfNecessary() ? block[block_position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+
+        requireOpen();
+
+        if (unindexed_in != null) {
+            return unindexed_in.read(bytes, offset, length);
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextBlockIfNecessary()) {
+            return -1;
+        }
+
+        final int read = Math.min(length, block.length - block_position);
+        System.arraycopy(block, block_position, bytes, offset, read);
+        block_position += read;
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+
+        requireOpen();
+        return unindexed_in != null ? unindexed_in.available() : block.length - block_position;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (decompressors != null) {
+            decompressors.shutdownNow();
+        }
+        if (unindexed_in != null) {
+            unindexed_in.close();
+        }
+        in.close();
+    }
+
+    private boolean nextBlockIfNecessary() throws IOException {
+
+        while (block_position == block.length) {
+
+            submitMembers();
+            if (pending_blocks.isEmpty()) {
+                return false;
+            }
+
+            block = BlockGZIPFormat.await(pending_blocks.remove());
+            block_position = 0;
+        }
+        return true;
+    }
+
+    private void submitMembers() throws IOException {
+
+        while (!end_of_members && pending_blocks.size() < max_pending_blocks) {
+
+            final int header_length = readFully(in, header, header.length);
+            if (header_length == 0) {
+                end_of_members = true;
+                return;
+            }
+            if (!BlockGZIPFormat.isIndexedHeader(header, header_length)) {
+                throw new IOException("gzip member is not indexed");
+            }
+
+            final int uncompressed_length = BlockGZIPFormat.getUncompressedLength(header);
+            final byte[] data = new byte[BlockGZIPFormat.getCompressedLength(header) + BlockGZIPFormat.TRAILER_SIZE];
+            if (readFully(in, data, data.length) < data.length) {
+                throw new EOFException("truncated gzip member");
+            }
+
+            if (decompressors == null) {
+                pending_blocks.add(CompletableFuture.completedFuture(BlockGZIPFormat.decompress(data, uncompressed_length)));
+            }
+            else {
+                pending_blocks.add(decompressors.submit(() -> BlockGZIPFormat.decompress(data, uncompressed_length)));
+            }
+        }
+    }
+
+    private void requireOpen() throws IOException {
+
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+    }
+
+    private static int readFully(final InputStream in, final byte[] bytes, final int length) throws IOException {
+
+        int total = 0;
+        while (total < length) {
+
+            final int read = in.read(bytes, total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses data in the gzip format using multiple threads. The data are split into blocks, which are compressed
+ * independently and concurrently, and written in order as consecutive gzip members. The result can be read by any
+ * gzip reader, and in parallel by {@link ParallelGZIPInputStream}.
+ *
+ * Compressing blocks independently costs a little compression ratio, since matches cannot span blocks.
+ * This class is not thread-safe.
+ *
+ * @see BlockGZIPFormat
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+    /** The default number of bytes of uncompressed data in each block. */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    private static final int PENDING_BLOCKS_PER_THREAD = 2;
+
+    private final OutputStream out;
+    private final int block_size;
+    private final int level;
+    private final ExecutorService compressors;
+    private final int max_pending_blocks;
+    private final Queue<Future<byte[]>> pending_blocks;
+
+    private byte[] block;
+    private int block_length;
+    private boolean any_block_written;
+    private boolean closed;
+
+    /**
+     * Instantiates a new stream that compresses blocks of the default size with the given number of threads.
+     *
+     * @param out the stream to which to write the compressed data
+     * @param thread_count the number of threads with which to compress blocks
+     */
+    public ParallelGZIPOutputStream(final OutputStream out, final int thread_count) {
+
+        this(out, thread_count, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Instantiates a new stream.
+     *
+     * @param out the stream to which to write the compressed data
+     * @param thread_count the number of threads with which to compress blocks; if one, blocks are compressed by the writing thread
+     * @param block_size the number of bytes of uncompressed data in each block
+     * @param level the compression level, as for {@link Deflater#setLevel(int)}
+     */
+    public ParallelGZIPOutputStream(final OutputStream out, final int thread_count, final int block_size, final int level) {
+
+        if (thread_count < 1) {
+            throw new IllegalArgumentException("thread count must be at least one");
+        }
+        if (block_size < 1) {
+            throw new IllegalArgumentException("block size must be at least one");
+        }
+
+        this.out = out;
+        this.block_size = block_size;
+        this.level = level;
+
+        compressors = thread_count > 1 ? BlockGZIPFormat.newExecutor(thread_count, getClass().getSimpleName()) : null;
+        max_pending_blocks = thread_count * PENDING_BLOCKS_PER_THREAD;
+        pending_blocks = new ArrayDeque<>(max_pending_blocks + 1);
+
+        block = new byte[block_size];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+
+        requireOpen();
+
+        block[block_length++] = (byte) b;
+        if (block_length == block_size) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(final byte[] bytes, int offset, int length) throws IOException {
+
+        requireOpen();
+
+        while (length > 0) {
+
+            final int copied = Math.min(length, block_size - block_length);
+            System.arraycopy(bytes, offset, block, block_length, copied);
+            block_length += copied;
+            offset += copied;
+            length -= copied;
+
+            if (block_length == block_size) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks compressed so far and flushes the underlying stream. Data in the current, partly filled,
+     * block are not written until the block is filled or this stream is closed, so that blocks are not made smaller.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+
+        requireOpen();
+
+        writePendingBlocks(0);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            // An empty stream is written as a single empty member, so that the output is still a valid gzip file.
+            if (block_length > 0 || !any_block_written) {
+                submitBlock();
+            }
+            writePendingBlocks(0);
+        }
+        finally {
+            if (compressors != null) {
+                compressors.shutdownNow();
+            }
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+
+        final byte[] full_block = block;
+        final int length = block_length;
+
+        block = new byte[block_size];
+        block_length = 0;
+        any_block_written = true;
+
+        if (compressors == null) {
+            pending_blocks.add(CompletableFuture.completedFuture(BlockGZIPFormat.compress(full_block, length, level)));
+        }
+        else {
+            pending_blocks.add(compressors.submit(() -> BlockGZIPFormat.compress(full_block, length, level)));
+        }
+
+        writePendingBlocks(max_pending_blocks);
+    }
+
+    private void writePendingBlocks(final int max_remaining) throws IOException {
+
+        while (pending_blocks.size() > max_remaining) {
+            out.write(BlockGZIPFormat.await(pending_blocks.remove()));
+        }
+    }
+
+    private void requireOpen() throws IOException {
+
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A file made up of named sections, each of which is memory-mapped when the file is opened, so that the content of a
+ * section is only read from disk when it is accessed.
+ *
+ * The file starts with a header, followed by the sections, each aligned to eight bytes. A table of contents, giving
+ * the name, offset and length of each section, follows the sections, and the file ends with a trailer giving the offset
+ * of the table of contents. This allows sections to be written one after the other without knowing their lengths in
+ * advance.
+ *
+ * A single mapping cannot exceed {@link Integer#MAX_VALUE} bytes, so larger sections are mapped in segments. These can
+ * be {@link #openSection(String) streamed}, but only sections that fit in one mapping can be
+ * {@link #getSection(String) accessed as a buffer}; sections that are to be accessed that way are added with
+ * {@link Writer#addMappedSection(String, SectionWriter)}, which checks their size when they are written.
+ */
+public final class SectionedFile {
+
+    private static final int MAGIC_NUMBER = 0x434C5346;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int ALIGNMENT = Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int NULL_STRING = -1;
+
+    /** The maximum length of a section that can be accessed as a single buffer. */
+    public static final long MAX_MAPPED_SECTION_SIZE = Integer.MAX_VALUE;
+
+    private final Map<String, ByteBuffer[]> sections;
+
+    private SectionedFile(final Map<String, ByteBuffer[]> sections) {
+
+        this.sections = sections;
+    }
+
+    /**
+     * Opens the given file and maps its sections into memory.
+     *
+     * @param source the file to open
+     * @return the opened file
+     * @throws IOException if the file cannot be read or is not a sectioned file
+     */
+    public static SectionedFile map(final Path source) throws IOException {
+
+        return map(source, MAX_MAPPED_SECTION_SIZE);
+    }
+
+    /**
+     * Opens the given file and maps its sections into memory, mapping sections longer than the given size in segments of that size.
+     *
+     * @param source the file to open
+     * @param segment_size the maximum length of a single mapping
+     * @return the opened file
+     * @throws IOException if the file cannot be read or is not a sectioned file
+     */
+    static SectionedFile map(final Path source, final long segment_size) throws IOException {
+
+        try (final FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+
+            final long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("not a sectioned file: " + source);
+            }
+
+            final ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            final ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            final long contents_offset = trailer.getLong();
+
+            if (header.getInt() != MAGIC_NUMBER || trailer.getInt() != MAGIC_NUMBER || contents_offset < HEADER_SIZE || contents_offset > size - TRAILER_SIZE) {
+                throw new IOException("not a sectioned file: " + source);
+            }
+
+            final int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported sectioned file version: " + version);
+            }
+
+            final ByteBuffer contents = read(channel, contents_offset, (int) (size - TRAILER_SIZE - contents_offset));
+            final int section_count = contents.getInt();
+            final Map<String, ByteBuffer[]> sections = new LinkedHashMap<>();
+
+            for (int i = 0; i < section_count; i++) {
+
+                final String name = readString(contents);
+                final long offset = contents.getLong();
+                final long length = contents.getLong();
+
+                if (offset < HEADER_SIZE || length < 0 || offset > contents_offset - length) {
+                    throw new IOException("section " + name + " lies outside the sections of " + source);
+                }
+
+                sections.put(name, map(channel, offset, length, segment_size));
+            }
+
+            return new SectionedFile(sections);
+        }
+    }
+
+    /**
+     * Gets the names of the sections in this file, in the order in which they were written.
+     *
+     * @return the names of the sections
+     */
+    public Set<String> getSectionNames() {
+
+        return Collections.unmodifiableSet(sections.keySet());
+    }
+
+    public boolean hasSection(final String name) {
+
+        return sections.containsKey(name);
+    }
+
+    /**
+     * Gets the content of the named section, as a buffer positioned at the start of the section.
+     *
+     * @param name the name of the section
+     * @return the content of the section
+     * @throws IOException if the file has no section with the given name, or the section is too long to be mapped as a single buffer
+     */
+    public ByteBuffer getSection(final String name) throws IOException {
+
+        final ByteBuffer[] segments = getSegments(name);
+        if (segments.length > 1) {
+            throw new IOException("section " + name + " is too long to be accessed as a single buffer; it can only be streamed");
+        }
+
+        // Each caller gets its own position within the section.
+        return segments[0].duplicate();
+    }
+
+    /**
+     * Opens a stream from which to read the content of the named section, which may be of any length.
+     *
+     * @param name the name of the section
+     * @return a stream over the content of the section
+     * @throws IOException if the file has no section with the given name
+     */
+    public InputStream openSection(final String name) throws IOException {
+
+        return new ByteBufferInputStream(getSegments(name));
+    }
+
+    private ByteBuffer[] getSegments(final String name) throws IOException {
+
+        final ByteBuffer[] segments = sections.get(name);
+        if (segments == null) {
+            throw new IOException("missing section: " + name);
+        }
+        return segments;
+    }
+
+    /**
+     * Writes a string, or {@code null}, as its length in bytes followed by its UTF-8 encoding.
+     *
+     * @param out the output to which to write
+     * @param string the string to write
+     * @throws IOException if the string cannot be written
+     */
+    public static void writeString(final DataOutput out, final String string) throws IOException {
+
+        if (string == null) {
+            out.writeInt(NULL_STRING);
+        }
+        else {
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in the buffer from which to read
+     * @return the string, or {@code null}
+     */
+    public static String readString(final ByteBuffer in) {
+
+        final int length = in.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer[] map(final FileChannel channel, final long offset, final long length, final long segment_size) throws IOException {
+
+        if (length <= segment_size) {
+            return new ByteBuffer[]{channel.map(FileChannel.MapMode.READ_ONLY, offset, length)};
+        }
+
+        final ByteBuffer[] segments = new ByteBuffer[(int) ((length + segment_size - 1) / segment_size)];
+        for (int i = 0; i < segments.length; i++) {
+
+            final long segment_offset = i * segment_size;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + segment_offset, Math.min(segment_size, length - segment_offset));
+        }
+        return segments;
+    }
+
+    private static ByteBuffer read(final FileChannel channel, final long position, final int length) throws IOException {
+
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes the content of a section.
+     */
+    @FunctionalInterface
+    public interface SectionWriter {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes a sectioned file, one section at a time.
+     */
+    public static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final Map<String, long[]> sections = new LinkedHashMap<>();
+
+        public Writer(final Path destination) throws IOException {
+
+            channel = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC_NUMBER).putInt(VERSION).flip();
+            write(header);
+        }
+
+        /**
+         * Adds a section of any length to the file, which can be {@link SectionedFile#openSection(String) streamed} when read.
+         *
+         * @param name the name of the section, which must be unique within the file
+         * @param writer writes the content of the section
+         * @throws IOException if the section cannot be written
+         */
+        public void addSection(final String name, final SectionWriter writer) throws IOException {
+
+            writeSection(name, writer);
+        }
+
+        /**
+         * Adds a section that is to be {@link SectionedFile#getSection(String) accessed as a single buffer} when the file is
+         * read, so that a section too long to be mapped that way is reported when it is written rather than when it is read.
+         *
+         * @param name the name of the section, which must be unique within the file
+         * @param writer writes the content of the section
+         * @throws IOException if the section cannot be written, or is longer than {@link SectionedFile#MAX_MAPPED_SECTION_SIZE}
+         */
+        public void addMappedSection(final String name, final SectionWriter writer) throws IOException {
+
+            final long length = writeSection(name, writer);
+            if (length > MAX_MAPPED_SECTION_SIZE) {
+                throw new IOException(String.format("section %s is %d bytes long, but at most %d bytes can be mapped as a single buffer", name, length, MAX_MAPPED_SECTION_SIZE));
+            }
+        }
+
+        private long writeSection(final String name, final SectionWriter writer) throws IOException {
+
+            if (sections.containsKey(name)) {
+                throw new IllegalArgumentException("duplicate section: " + name);
+            }
+
+            final long padding = (ALIGNMENT - channel.position() % ALIGNMENT) % ALIGNMENT;
+            write(ByteBuffer.allocate((int) padding));
+
+            final long offset = channel.position();
+
+            // The section writer may close the stream it is given, but that must not close the file.
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CloseShieldOutputStream(Channels.newOutputStream(channel)), BUFFER_SIZE));
+            writer.write(out);
+            out.flush();
+
+            final long length = channel.position() - offset;
+            sections.put(name, new long[]{offset, length});
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            try {
+                final long contents_offset = channel.position();
+                final ByteArrayOutputStream contents_bytes = new ByteArrayOutputStream();
+                final DataOutputStream contents = new DataOutputStream(contents_bytes);
+
+                contents.writeInt(sections.size());
+                for (final Map.Entry<String, long[]> section : sections.entrySet()) {
+                    writeString(contents, section.getKey());
+                    contents.writeLong(section.getValue()[0]);
+                    contents.writeLong(section.getValue()[1]);
+                }
+                contents.writeLong(contents_offset);
+                contents.writeInt(MAGIC_NUMBER);
+
+                write(ByteBuffer.wrap(contents_bytes.toByteArray()));
+            }
+            finally {
+                channel.close();
+            }
+        }
+
+        private void write(final ByteBuffer buffer) throws IOException {
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads the segments of a section one after the other.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer[] segments;
+        private int segment_index;
+        private ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer[] segments) {
+
+            this.segments = segments;
+            buffer = segments[0].duplicate();
+        }
+
+        @Override
+        public int read() {
+
+            return nextSegmentIfExhausted() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextSegmentIfExhausted()) {
+                return -1;
+            }
+
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+
+            return buffer.remaining();
+        }
+
+        private boolean nextSegmentIfExhausted() {
+
+            while (!buffer.hasRemaining() && segment_index < segments.length - 1) {
+                buffer = segments[++segment_index].duplicate();
+            }
+            return buffer.hasRemaining();
+        }
+    }
+}
@@ -20,17 +20,19 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.SerializationUtils;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.process.ClassificationContext;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.LazyClassificationContext;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json.ProcessObjectMapper;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.nio.file.StandardCopyOption;
 
 public class Serialization {
 
@@ -39,9 +41,68 @@ public class Serialization {
     private static final String JSON_SUFFIX = "json";
     private static final String JSON_COMPRESSED_SUFFIX = "json.gz";
     private static final String SERIALIZED_SUFFIX = "serialized";
+    private static final String BINARY_SUFFIX = "bin";
+    private static final String MAPPED_SUFFIX = "mapped";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final String MAPPED_TYPE_SECTION = "type";
+    private static final String MAPPED_SERIALIZED_SECTION = "serialized";
 
     private static final ObjectMapper JSON_MAPPER = new ProcessObjectMapper();
 
+    /** The default number of threads with which to compress and decompress data in compressed formats. */
+    public static final int DEFAULT_COMPRESSION_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static volatile int compression_thread_count = DEFAULT_COMPRESSION_THREAD_COUNT;
+
+    /**
+     * Gets the number of threads with which to compress and decompress data in compressed formats.
+     *
+     * @return the number of threads
+     */
+    public static int getCompressionThreadCount() {
+
+        return compression_thread_count;
+    }
+
+    /**
+     * Sets the number of threads with which to compress and decompress data in compressed formats.
+     *
+     * @param thread_count the number of threads, at least one
+     */
+    public static void setCompressionThreadCount(final int thread_count) {
+
+        if (thread_count < 1) {
+            throw new IllegalArgumentException("compression thread count must be at least one");
+        }
+        compression_thread_count = thread_count;
+    }
+
+    /**
+     * Wraps the given stream so that data written to it are compressed, by the {@link #getCompressionThreadCount()
+     * configured number} of threads.
+     *
+     * @param out the stream to which to write the compressed data
+     * @return the stream to which to write the data to be compressed
+     */
+    public static OutputStream compress(final OutputStream out) {
+
+        return new ParallelGZIPOutputStream(out, compression_thread_count);
+    }
+
+    /**
+     * Wraps the given stream so that data read from it are decompressed, by the {@link #getCompressionThreadCount()
+     * configured number} of threads if they were written by {@link #compress(OutputStream)}.
+     *
+     * @param in the stream from which to read compressed data
+     * @return the stream from which to read the decompressed data
+     * @throws IOException if the compressed data cannot be read
+     */
+    public static InputStream decompress(final InputStream in) throws IOException {
+
+        return new ParallelGZIPInputStream(in, compression_thread_count);
+    }
+
     public static Path getSerializedContextPath(Path process_directory, String name, SerializationFormat serialization_format) {
 
         return getProcessWorkingDirectory(process_directory, name).resolve(SERIALIZED_CONTEXT_NAME + "." + getSerializedContextSuffix(serialization_format));
@@ -62,11 +123,25 @@ public class Serialization {
 
             persistContextToSerializedFile(context, serialized_context_path);
         }
+        else if (serialization_format == SerializationFormat.BINARY || serialization_format == SerializationFormat.MAPPED) {
+
+            persist(serialized_context_path, context, serialization_format);
+        }
         else {
             persistContextToJSONFile(context, serialized_context_path, serialization_format);
         }
     }
 
+    /**
+     * Loads a context persisted in the given format. A context persisted in the {@link SerializationFormat#MAPPED mapped}
+     * format is returned as a {@link LazyClassificationContext}, each part of which is read when first accessed.
+     *
+     * @param process_directory the directory containing the working directory of the process
+     * @param process_name the name of the process
+     * @param serialization_format the format in which the context is persisted
+     * @return the context
+     * @throws IOException if the context cannot be read
+     */
     public static ClassificationContext loadContext(Path process_directory, String process_name, SerializationFormat serialization_format) throws IOException {
 
         Path serialized_context_path = getSerializedContextPath(process_directory, process_name, serialization_format);
@@ -75,6 +150,16 @@ public class Serialization {
 
             return loadContextFromSerializedFile(serialized_context_path);
         }
+        else if (serialization_format == SerializationFormat.BINARY) {
+
+            return load(serialized_context_path, ClassificationContext.class, serialization_format);
+        }
+        else if (serialization_format == SerializationFormat.MAPPED) {
+
+            final LazyClassificationContext context = new LazyClassificationContext();
+            context.readSections(SectionedFile.map(serialized_context_path));
+            return context;
+        }
         else {
             return loadContextFromJSONFile(serialized_context_path, serialization_format);
         }
@@ -90,7 +175,7 @@ public class Serialization {
 
         OutputStream output_stream = Files.newOutputStream(serialized_context_path);
         if (serialization_format == SerializationFormat.JSON_COMPRESSED) {
-            output_stream = new GZIPOutputStream(output_stream);
+            output_stream = compress(output_stream);
         }
 
         JSON_MAPPER.writeValue(output_stream, context);
@@ -111,7 +196,7 @@ public class Serialization {
 
         InputStream input_stream = Files.newInputStream(serialized_context_path);
         if (serialization_format == SerializationFormat.JSON_COMPRESSED) {
-            input_stream = new GZIPInputStream(input_stream);
+            input_stream = decompress(input_stream);
         }
 
         return JSON_MAPPER.readValue(input_stream, new TypeReference<ClassificationContext>() {});
@@ -124,6 +209,10 @@ public class Serialization {
                 return SERIALIZED_SUFFIX;
             case JSON:
                 return JSON_SUFFIX;
+            case BINARY:
+                return BINARY_SUFFIX;
+            case MAPPED:
+                return MAPPED_SUFFIX;
             default:
                 return JSON_COMPRESSED_SUFFIX;
         }
@@ -131,6 +220,16 @@ public class Serialization {
 
     public static void persist(Path destination, Object value, SerializationFormat format) throws IOException {
 
+        persistAtomically(destination, temporary -> persistDirectly(temporary, value, format));
+    }
+
+    private static void persistDirectly(Path destination, Object value, SerializationFormat format) throws IOException {
+
+        if (format == SerializationFormat.MAPPED) {
+            persistMapped(destination, value);
+            return;
+        }
+
         try (final OutputStream out = Files.newOutputStream(destination)) {
 
             switch (format) {
@@ -141,7 +240,10 @@ public class Serialization {
                     JSON_MAPPER.writeValue(out, value);
                     break;
                 case JSON_COMPRESSED:
-                    JSON_MAPPER.writeValue(new GZIPOutputStream(out), value);
+                    JSON_MAPPER.writeValue(compress(out), value);
+                    break;
+                case BINARY:
+                    BinaryCodec.write(value, out);
                     break;
                 default:
                     throw new RuntimeException("unknown serialization format " + format);
@@ -152,6 +254,10 @@ public class Serialization {
 
     public static <Value> Value load(Path source, Class<Value> type, SerializationFormat format) throws IOException {
 
+        if (format == SerializationFormat.MAPPED) {
+            return loadMapped(source, type);
+        }
+
         try (final InputStream in = Files.newInputStream(source)) {
 
             switch (format) {
@@ -161,10 +267,87 @@ public class Serialization {
                 case JSON:
                     return JSON_MAPPER.readValue(in, type);
                 case JSON_COMPRESSED:
-                    return JSON_MAPPER.readValue(new GZIPInputStream(in), type);
+                    return JSON_MAPPER.readValue(decompress(in), type);
+                case BINARY:
+                    return BinaryCodec.read(in, type);
                 default:
                     throw new RuntimeException("unknown serialization format " + format);
             }
         }
     }
+
+    private static void persistMapped(Path destination, Object value) throws IOException {
+
+        try (final SectionedFile.Writer out = new SectionedFile.Writer(destination)) {
+
+            out.addMappedSection(MAPPED_TYPE_SECTION, section -> SectionedFile.writeString(section, value.getClass().getName()));
+
+            if (value instanceof Mappable) {
+                ((Mappable) value).writeSections(out);
+            }
+            else {
+                // Values that are not mappable are stored whole, so that any value can be persisted in this format.
+                out.addSection(MAPPED_SERIALIZED_SECTION, section -> SerializationUtils.serialize((Serializable) value, section));
+            }
+        }
+    }
+
+    private static <Value> Value loadMapped(Path source, Class<Value> type) throws IOException {
+
+        final SectionedFile in = SectionedFile.map(source);
+
+        if (in.hasSection(MAPPED_SERIALIZED_SECTION)) {
+            try (final InputStream section = in.openSection(MAPPED_SERIALIZED_SECTION)) {
+                return type.cast(SerializationUtils.deserialize(section));
+            }
+        }
+
+        final String type_name = SectionedFile.readString(in.getSection(MAPPED_TYPE_SECTION));
+        try {
+            final Constructor<? extends Mappable> constructor = Class.forName(type_name).asSubclass(Mappable.class).getDeclaredConstructor();
+            constructor.setAccessible(true);
+
+            final Mappable value = constructor.newInstance();
+            value.readSections(in);
+            return type.cast(value);
+        }
+        catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IOException("cannot instantiate mapped type " + type_name, e);
+        }
+    }
+
+    /**
+     * Writes a file by way of a temporary file alongside the destination, which is then renamed to the destination.
+     * A failure part way through writing therefore leaves any existing file at the destination intact.
+     *
+     * @param destination the file to write
+     * @param writer writes the content of the file to the path it is given
+     * @throws IOException if the file cannot be written
+     */
+    public static void persistAtomically(Path destination, PathWriter writer) throws IOException {
+
+        final Path temporary = destination.resolveSibling(destination.getFileName() + TEMPORARY_SUFFIX);
+
+        try {
+            writer.write(temporary);
+            try {
+                Files.move(temporary, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes content to a given file.
+     */
+    @FunctionalInterface
+    public interface PathWriter {
+
+        void write(Path destination) throws IOException;
+    }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json.BucketSerializer.*;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json.JsonTokens.*;
+
+/**
+ * Reads a bucket written by {@link BucketSerializer}, one record at a time, so that no tree of the records is built
+ * before the bucket. A bucket written in the earlier layout, without a version, is read by the bean deserializer of
+ * buckets.
+ */
+class BucketDeserializer extends VersionedDeserializer<Bucket> {
+
+    /**
+     * Instantiates a deserializer that reads buckets in the earlier layout with the given deserializer.
+     *
+     * @param legacy_deserializer the bean deserializer of buckets in the earlier layout
+     */
+    BucketDeserializer(final JsonDeserializer<?> legacy_deserializer) {
+
+        super(Bucket.class, VERSION_FIELD, VERSION, legacy_deserializer);
+    }
+
+    @Override
+    protected Bucket readFields(final JsonParser in, final DeserializationContext context) throws IOException {
+
+        boolean auto_allocate_ids = false;
+        final Bucket.Builder builder = new Bucket.Builder();
+
+        while (in.nextToken() == JsonToken.FIELD_NAME) {
+
+            final String field_name = in.getCurrentName();
+            switch (field_name) {
+                case AUTO_ALLOCATE_IDS:
+                    expectNext(in, JsonToken.VALUE_TRUE, JsonToken.VALUE_FALSE);
+                    auto_allocate_ids = in.getBooleanValue();
+                    break;
+                case RECORDS:
+                    expectNext(in, JsonToken.START_ARRAY);
+                    while (in.nextToken() != JsonToken.END_ARRAY) {
+                        builder.add(readRecord(in));
+                    }
+                    break;
+                default:
+                    skipField(in);
+                    break;
+            }
+        }
+        expectCurrent(in, JsonToken.END_OBJECT);
+
+        final Bucket bucket = builder.build();
+        return auto_allocate_ids ? bucket.copy(true) : bucket;
+    }
+
+    private static Record readRecord(final JsonParser in) throws IOException {
+
+        expectCurrent(in, JsonToken.START_OBJECT);
+
+        int id = 0;
+        String data = null;
+        String original_data = null;
+        boolean original_data_read = false;
+        Classification classification = null;
+
+        while (in.nextToken() == JsonToken.FIELD_NAME) {
+
+            final String field_name = in.getCurrentName();
+            switch (field_name) {
+                case ID:
+                    expectNext(in, JsonToken.VALUE_NUMBER_INT);
+                    id = in.getIntValue();
+                    break;
+                case DATA:
+                    expectNext(in, JsonToken.VALUE_STRING);
+                    data = in.getText();
+                    break;
+                case ORIGINAL_DATA:
+                    expectNext(in, JsonToken.VALUE_STRING, JsonToken.VALUE_NULL);
+                    original_data = in.getCurrentToken() == JsonToken.VALUE_NULL ? null : in.getText();
+                    original_data_read = true;
+                    break;
+                case CLASSIFICATION:
+                    if (data == null) {
+                        throw new JsonParseException(in, "classification of record " + id + " precedes its data");
+                    }
+                    classification = readClassification(in, data);
+                    break;
+                default:
+                    skipField(in);
+                    break;
+            }
+        }
+        expectCurrent(in, JsonToken.END_OBJECT);
+
+        if (data == null) {
+            throw new JsonParseException(in, "record " + id + " has no data");
+        }
+
+        return new Record(id, data, original_data_read ? original_data : data, classification);
+    }
+
+    private static Classification readClassification(final JsonParser in, final String data) throws IOException {
+
+        expectNext(in, JsonToken.VALUE_NULL, JsonToken.VALUE_STRING, JsonToken.START_OBJECT);
+
+        switch (in.getCurrentToken()) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                if (!Classification.UNCLASSIFIED_CODE.equals(in.getText())) {
+                    throw new JsonParseException(in, "unexpected classification " + in.getText());
+                }
+                return Classification.UNCLASSIFIED;
+            default:
+                String code = null;
+                double confidence = 0;
+                String detail = null;
+                TokenList token_list = null;
+                boolean token_list_read = false;
+
+                while (in.nextToken() == JsonToken.FIELD_NAME) {
+
+                    final String field_name = in.getCurrentName();
+                    switch (field_name) {
+                        case CODE:
+                            expectNext(in, JsonToken.VALUE_STRING);
+                            code = StringInterner.intern(in.getText());
+                            break;
+                        case CONFIDENCE:
+                            expectNext(in, JsonToken.VALUE_NUMBER_FLOAT, JsonToken.VALUE_NUMBER_INT);
+                            confidence = in.getDoubleValue();
+                            break;
+                        case DETAIL:
+                            expectNext(in, JsonToken.VALUE_STRING, JsonToken.VALUE_NULL);
+                            detail = in.getCurrentToken() == JsonToken.VALUE_NULL ? null : StringInterner.intern(in.getText());
+                            break;
+                        case TOKEN_LIST:
+                            token_list = readTokenList(in);
+                            token_list_read = true;
+                            break;
+                        default:
+                            skipField(in);
+                            break;
+                    }
+                }
+                expectCurrent(in, JsonToken.END_OBJECT);
+
+                // The tokens are only written where they are not those of the data of the record.
+                return token_list_read ? new Classification(code, token_list, confidence, detail) : Classification.withTokensOf(code, data, confidence, detail);
+        }
+    }
+
+    private static TokenList readTokenList(final JsonParser in) throws IOException {
+
+        expectNext(in, JsonToken.VALUE_NULL, JsonToken.START_ARRAY);
+        if (in.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        final List<String> tokens = new ArrayList<>();
+        while (in.nextToken() != JsonToken.END_ARRAY) {
+            expectCurrent(in, JsonToken.VALUE_STRING);
+            tokens.add(in.getText());
+        }
+        return TokenList.fromTokens(tokens);
+    }
+
+    private static void skipField(final JsonParser in) throws IOException {
+
+        // Unknown fields are ignored, as by the bean deserializers of the mapper.
+        in.nextToken();
+        in.skipChildren();
+    }
+}
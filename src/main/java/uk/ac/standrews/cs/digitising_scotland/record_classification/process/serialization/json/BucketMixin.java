@@ -0,0 +1,31 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Record;
+
+import java.util.List;
+
+public abstract class BucketMixin {
+
+    // This is used when reading buckets written as beans by earlier versions, which included the list of records
+    // returned by this getter. The list is a read-only view, so cannot be filled in place of a setter.
+
+    @JsonIgnore
+    public abstract List<Record> getRecordsList();
+}
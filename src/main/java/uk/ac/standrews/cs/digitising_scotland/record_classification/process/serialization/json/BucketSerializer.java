@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+
+import java.io.IOException;
+
+/**
+ * Writes a bucket as a JSON object containing an array of its records, one record at a time, so that the records are
+ * not buffered as a tree before being written. The tokens of a classification are only written where they are not
+ * those of the data of its record; otherwise they are recovered from the data when read.
+ *
+ * @see BucketDeserializer
+ */
+class BucketSerializer extends JsonSerializer<Bucket> {
+
+    static final int VERSION = 1;
+
+    static final String VERSION_FIELD = "version";
+    static final String AUTO_ALLOCATE_IDS = "auto_allocate_ids";
+    static final String RECORDS = "records";
+
+    static final String ID = "id";
+    static final String DATA = "data";
+    static final String ORIGINAL_DATA = "original_data";
+    static final String CLASSIFICATION = "classification";
+
+    static final String CODE = "code";
+    static final String CONFIDENCE = "confidence";
+    static final String DETAIL = "detail";
+    static final String TOKEN_LIST = "token_list";
+
+    @Override
+    public void serialize(final Bucket bucket, final JsonGenerator out, final SerializerProvider serializers) throws IOException {
+
+        out.writeStartObject();
+        out.writeNumberField(VERSION_FIELD, VERSION);
+        out.writeBooleanField(AUTO_ALLOCATE_IDS, bucket.isAutoAllocatingIds());
+
+        out.writeArrayFieldStart(RECORDS);
+        for (Record record : bucket) {
+            writeRecord(record, out);
+        }
+        out.writeEndArray();
+
+        out.writeEndObject();
+    }
+
+    private static void writeRecord(final Record record, final JsonGenerator out) throws IOException {
+
+        out.writeStartObject();
+        out.writeNumberField(ID, record.getId());
+        out.writeStringField(DATA, record.getData());
+
+        // The original data is usually the same as the data, so is only written where it differs.
+        if (!record.getData().equals(record.getOriginalData())) {
+            out.writeStringField(ORIGINAL_DATA, record.getOriginalData());
+        }
+
+        writeClassification(record.getClassification(), record.getData(), out);
+        out.writeEndObject();
+    }
+
+    private static void writeClassification(final Classification classification, final String data, final JsonGenerator out) throws IOException {
+
+        if (classification == null) {
+            out.writeNullField(CLASSIFICATION);
+        }
+        else if (classification == Classification.UNCLASSIFIED) {
+
+            // Other classifications with the unclassified code are written in full, keeping their confidence and detail.
+            out.writeStringField(CLASSIFICATION, Classification.UNCLASSIFIED_CODE);
+        }
+        else {
+            out.writeObjectFieldStart(CLASSIFICATION);
+            out.writeStringField(CODE, classification.getCode());
+            out.writeNumberField(CONFIDENCE, classification.getConfidence());
+            out.writeStringField(DETAIL, classification.getDetail());
+
+            final TokenList token_list = classification.getTokenList();
+            if (!TokenList.of(data).equals(token_list)) {
+                writeTokenList(token_list, out);
+            }
+            out.writeEndObject();
+        }
+    }
+
+    private static void writeTokenList(final TokenList token_list, final JsonGenerator out) throws IOException {
+
+        if (token_list == null) {
+            out.writeNullField(TOKEN_LIST);
+        }
+        else {
+            out.writeArrayFieldStart(TOKEN_LIST);
+            for (String token : token_list) {
+                out.writeString(token);
+            }
+            out.writeEndArray();
+        }
+    }
+}
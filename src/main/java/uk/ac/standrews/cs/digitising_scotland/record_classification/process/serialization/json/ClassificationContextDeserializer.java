@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import org.apache.commons.lang3.SerializationUtils;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.analysis.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.Classifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.ClassificationContext;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json.ClassificationContextSerializer.*;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json.JsonTokens.*;
+
+/**
+ * Reads a classification context written by {@link ClassificationContextSerializer}. Its buckets are read by
+ * {@link BucketDeserializer} one record at a time. A context written in the earlier layout, without a version, is
+ * read by the bean deserializer of contexts.
+ */
+class ClassificationContextDeserializer extends VersionedDeserializer<ClassificationContext> {
+
+    /**
+     * Instantiates a deserializer that reads contexts in the earlier layout with the given deserializer.
+     *
+     * @param legacy_deserializer the bean deserializer of contexts in the earlier layout
+     */
+    ClassificationContextDeserializer(final JsonDeserializer<?> legacy_deserializer) {
+
+        super(ClassificationContext.class, VERSION_FIELD, VERSION, legacy_deserializer);
+    }
+
+    @Override
+    protected ClassificationContext readFields(final JsonParser in, final DeserializationContext deserialization_context) throws IOException {
+
+        Random random = null;
+        Classifier classifier = null;
+        Bucket training_records = null;
+        Bucket evaluation_records = null;
+        Bucket unseen_records = null;
+        Bucket classified_evaluation_records = null;
+        Bucket classified_unseen_records = null;
+        ConfusionMatrix confusion_matrix = null;
+        Metrics classification_metrics = null;
+        Duration training_time = null;
+        Duration evaluation_classification_time = null;
+
+        while (in.nextToken() == JsonToken.FIELD_NAME) {
+
+            final String field_name = in.getCurrentName();
+            in.nextToken();
+
+            switch (field_name) {
+                case RANDOM:
+                    expectCurrent(in, JsonToken.VALUE_STRING);
+                    random = (Random) SerializationUtils.deserialize(in.getBinaryValue());
+                    break;
+                case CLASSIFIER:
+                    classifier = in.readValueAs(Classifier.class);
+                    break;
+                case TRAINING_RECORDS:
+                    training_records = in.readValueAs(Bucket.class);
+                    break;
+                case EVALUATION_RECORDS:
+                    evaluation_records = in.readValueAs(Bucket.class);
+                    break;
+                case UNSEEN_RECORDS:
+                    unseen_records = in.readValueAs(Bucket.class);
+                    break;
+                case CLASSIFIED_EVALUATION_RECORDS:
+                    classified_evaluation_records = in.readValueAs(Bucket.class);
+                    break;
+                case CLASSIFIED_UNSEEN_RECORDS:
+                    classified_unseen_records = in.readValueAs(Bucket.class);
+                    break;
+                case CONFUSION_MATRIX:
+                    confusion_matrix = in.readValueAs(ConfusionMatrix.class);
+                    break;
+                case CLASSIFICATION_METRICS:
+                    classification_metrics = in.readValueAs(Metrics.class);
+                    break;
+                case TRAINING_TIME:
+                    training_time = readDuration(in);
+                    break;
+                case EVALUATION_CLASSIFICATION_TIME:
+                    evaluation_classification_time = readDuration(in);
+                    break;
+                default:
+                    // Unknown fields are ignored, as by the bean deserializers of the mapper.
+                    in.skipChildren();
+                    break;
+            }
+        }
+        expectCurrent(in, JsonToken.END_OBJECT);
+
+        final ClassificationContext context = new ClassificationContext(classifier, random != null ? random : new Random());
+
+        setIfPresent(training_records, context::setTrainingRecords);
+        setIfPresent(evaluation_records, context::setEvaluationRecords);
+        setIfPresent(unseen_records, context::setUnseenRecords);
+        setIfPresent(classified_evaluation_records, context::setClassifiedEvaluationRecords);
+        setIfPresent(classified_unseen_records, context::setClassifiedUnseenRecords);
+
+        context.setConfusionMatrix(confusion_matrix);
+        context.setClassificationMetrics(classification_metrics);
+        context.setTrainingTime(training_time);
+        context.setEvaluationClassificationTime(evaluation_classification_time);
+
+        return context;
+    }
+
+    private static Duration readDuration(final JsonParser in) throws IOException {
+
+        expectCurrent(in, JsonToken.VALUE_STRING, JsonToken.VALUE_NULL);
+        return in.getCurrentToken() == JsonToken.VALUE_NULL ? null : Duration.parse(in.getText());
+    }
+
+    private static <Value> void setIfPresent(final Value value, final Consumer<Value> setter) {
+
+        if (value != null) {
+            setter.accept(value);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import org.apache.commons.lang3.SerializationUtils;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.analysis.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.Classifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.ClassificationContext;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Writes a classification context field by field. Its buckets are written by {@link BucketSerializer} one record at a
+ * time, so the memory needed to write a context does not grow with the number of records it contains.
+ *
+ * @see ClassificationContextDeserializer
+ */
+class ClassificationContextSerializer extends JsonSerializer<ClassificationContext> {
+
+    static final int VERSION = 1;
+
+    static final String VERSION_FIELD = "version";
+    static final String RANDOM = "random";
+    static final String CLASSIFIER = "classifier";
+    static final String TRAINING_RECORDS = "training_records";
+    static final String EVALUATION_RECORDS = "evaluation_records";
+    static final String UNSEEN_RECORDS = "unseen_records";
+    static final String CLASSIFIED_EVALUATION_RECORDS = "classified_evaluation_records";
+    static final String CLASSIFIED_UNSEEN_RECORDS = "classified_unseen_records";
+    static final String CONFUSION_MATRIX = "confusion_matrix";
+    static final String CLASSIFICATION_METRICS = "classification_metrics";
+    static final String TRAINING_TIME = "training_time";
+    static final String EVALUATION_CLASSIFICATION_TIME = "evaluation_classification_time";
+
+    @Override
+    public void serialize(final ClassificationContext context, final JsonGenerator out, final SerializerProvider serializers) throws IOException {
+
+        out.writeStartObject();
+
+        out.writeNumberField(VERSION_FIELD, VERSION);
+
+        // The state of the random number generator is not accessible to Jackson, so is written in Java serialized form.
+        out.writeBinaryField(RANDOM, SerializationUtils.serialize(context.getRandom()));
+
+        writeTypedField(out, serializers, CLASSIFIER, context.getClassifier(), Classifier.class);
+
+        writeBucketField(out, serializers, TRAINING_RECORDS, context.getTrainingRecordsOptional());
+        writeBucketField(out, serializers, EVALUATION_RECORDS, context.getEvaluationRecordsOptional());
+        writeBucketField(out, serializers, UNSEEN_RECORDS, context.getUnseenRecordsOptional());
+        writeBucketField(out, serializers, CLASSIFIED_EVALUATION_RECORDS, context.getClassifiedEvaluationRecordsOptional());
+        writeBucketField(out, serializers, CLASSIFIED_UNSEEN_RECORDS, context.getClassifiedUnseenRecordsOptional());
+
+        writeTypedField(out, serializers, CONFUSION_MATRIX, context.getConfusionMatrix(), ConfusionMatrix.class);
+        writeTypedField(out, serializers, CLASSIFICATION_METRICS, context.getClassificationMetrics(), Metrics.class);
+
+        writeDurationField(out, TRAINING_TIME, context.getTrainingTime());
+        writeDurationField(out, EVALUATION_CLASSIFICATION_TIME, context.getEvaluationClassificationTime());
+
+        out.writeEndObject();
+    }
+
+    private static void writeBucketField(final JsonGenerator out, final SerializerProvider serializers, final String name, final Optional<Bucket> bucket) throws IOException {
+
+        writeTypedField(out, serializers, name, bucket.orElse(null), Bucket.class);
+    }
+
+    private static void writeTypedField(final JsonGenerator out, final SerializerProvider serializers, final String name, final Object value, final Class<?> type) throws IOException {
+
+        out.writeFieldName(name);
+        if (value == null) {
+            out.writeNull();
+        }
+        else {
+            final JsonSerializer<Object> serializer = serializers.findValueSerializer(value.getClass());
+            final TypeSerializer type_serializer = serializers.findTypeSerializer(serializers.constructType(type));
+
+            // Includes the type of the value where it is declared as an abstract type, so that it can be instantiated when read.
+            if (type_serializer != null) {
+                serializer.serializeWithType(value, out, serializers, type_serializer);
+            }
+            else {
+                serializer.serialize(value, out, serializers);
+            }
+        }
+    }
+
+    private static void writeDurationField(final JsonGenerator out, final String name, final Duration duration) throws IOException {
+
+        if (duration == null) {
+            out.writeNullField(name);
+        }
+        else {
+            out.writeStringField(name, duration.toString());
+        }
+    }
+}
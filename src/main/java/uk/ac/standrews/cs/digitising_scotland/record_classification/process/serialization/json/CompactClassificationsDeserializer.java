@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.CompactClassifications;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.StringInterner;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.TokenList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json.CompactClassificationsSerializer.*;
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json.JsonTokens.*;
+
+/**
+ * Reads compact classifications written by {@link CompactClassificationsSerializer}, one known data at a time. Known
+ * classifications written by earlier versions, as a map from each known data to its classification, are also read.
+ */
+class CompactClassificationsDeserializer extends JsonDeserializer<CompactClassifications> {
+
+    @Override
+    public CompactClassifications deserialize(final JsonParser in, final DeserializationContext context) throws IOException {
+
+        expectCurrent(in, JsonToken.START_OBJECT);
+
+        final CompactClassifications classifications = new CompactClassifications();
+
+        // Maps the indices in the array of classifications to their ids, which differ if the array contains duplicates.
+        int[] classification_ids = new int[0];
+        int classification_count = 0;
+
+        while (in.nextToken() == JsonToken.FIELD_NAME) {
+
+            final String field_name = in.getCurrentName();
+            switch (field_name) {
+                case CLASSIFICATIONS:
+                    expectNext(in, JsonToken.START_ARRAY);
+                    while (in.nextToken() != JsonToken.END_ARRAY) {
+
+                        if (classification_count == classification_ids.length) {
+                            classification_ids = Arrays.copyOf(classification_ids, Math.max(classification_count * 2, 16));
+                        }
+                        classification_ids[classification_count++] = readClassification(in, classifications);
+                    }
+                    break;
+                case KNOWN_DATA:
+                    expectNext(in, JsonToken.START_OBJECT);
+                    while (in.nextToken() == JsonToken.FIELD_NAME) {
+
+                        final String data = in.getCurrentName();
+                        expectNext(in, JsonToken.VALUE_NUMBER_INT);
+
+                        final int index = in.getIntValue();
+                        if (index < 0 || index >= classification_count) {
+                            throw new JsonParseException(in, "invalid classification index " + index);
+                        }
+                        classifications.put(data, classification_ids[index]);
+                    }
+                    expectCurrent(in, JsonToken.END_OBJECT);
+                    break;
+                default:
+                    // Earlier versions wrote the known classifications as a map from each known data to its classification.
+                    expectNext(in, JsonToken.START_OBJECT);
+                    classifications.put(field_name, in.readValueAs(Classification.class));
+                    break;
+            }
+        }
+        expectCurrent(in, JsonToken.END_OBJECT);
+
+        return classifications;
+    }
+
+    private static int readClassification(final JsonParser in, final CompactClassifications classifications) throws IOException {
+
+        expectCurrent(in, JsonToken.START_OBJECT);
+
+        String code = null;
+        double confidence = 0.0;
+        String detail = null;
+        List<String> tokens = null;
+
+        while (in.nextToken() == JsonToken.FIELD_NAME) {
+
+            final String field_name = in.getCurrentName();
+            switch (field_name) {
+                case BucketSerializer.CODE:
+                    expectNext(in, JsonToken.VALUE_STRING);
+                    code = in.getText();
+                    break;
+                case BucketSerializer.CONFIDENCE:
+                    expectNext(in, JsonToken.VALUE_NUMBER_FLOAT, JsonToken.VALUE_NUMBER_INT);
+                    confidence = in.getDoubleValue();
+                    break;
+                case BucketSerializer.DETAIL:
+                    expectNext(in, JsonToken.VALUE_STRING, JsonToken.VALUE_NULL);
+                    detail = in.getValueAsString();
+                    break;
+                case TOKEN_LIST:
+                    expectNext(in, JsonToken.START_ARRAY);
+                    tokens = new ArrayList<>();
+                    while (in.nextToken() != JsonToken.END_ARRAY) {
+                        expectCurrent(in, JsonToken.VALUE_STRING);
+                        tokens.add(StringInterner.intern(in.getText()));
+                    }
+                    break;
+                default:
+                    throw new JsonParseException(in, "unknown classification field " + field_name);
+            }
+        }
+        expectCurrent(in, JsonToken.END_OBJECT);
+
+        if (code == null) {
+            throw new JsonParseException(in, "classification has no code");
+        }
+        if (tokens != null) {
+            return classifications.holdClassification(new Classification(StringInterner.intern(code), TokenList.fromTokens(tokens), confidence, detail));
+        }
+        return classifications.getClassificationId(code, confidence, detail);
+    }
+}
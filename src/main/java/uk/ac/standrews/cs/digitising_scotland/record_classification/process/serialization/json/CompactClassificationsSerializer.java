@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.CompactClassifications;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Classification;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes compact classifications as a JSON object containing an array of the distinct classifications, followed by an
+ * object mapping each known data to the index of its classification in the array. Only held classifications are written
+ * with a token list.
+ *
+ * @see CompactClassificationsDeserializer
+ */
+class CompactClassificationsSerializer extends JsonSerializer<CompactClassifications> {
+
+    static final String CLASSIFICATIONS = "classifications";
+    static final String KNOWN_DATA = "known_data";
+    static final String TOKEN_LIST = "token_list";
+
+    @Override
+    public void serialize(final CompactClassifications classifications, final JsonGenerator out, final SerializerProvider serializers) throws IOException {
+
+        out.writeStartObject();
+
+        out.writeArrayFieldStart(CLASSIFICATIONS);
+        for (int id = 0; id < classifications.getClassificationCount(); id++) {
+
+            final Classification classification = classifications.getClassification(id);
+
+            out.writeStartObject();
+            out.writeStringField(BucketSerializer.CODE, classification.getCode());
+            out.writeNumberField(BucketSerializer.CONFIDENCE, classification.getConfidence());
+            out.writeStringField(BucketSerializer.DETAIL, classification.getDetail());
+
+            if (classification.getTokenList() != null) {
+                out.writeArrayFieldStart(TOKEN_LIST);
+                for (String token : classification.getTokenList()) {
+                    out.writeString(token);
+                }
+                out.writeEndArray();
+            }
+            out.writeEndObject();
+        }
+        out.writeEndArray();
+
+        out.writeObjectFieldStart(KNOWN_DATA);
+        try {
+            classifications.forEach((data, id) -> {
+                try {
+                    out.writeNumberField(data, id);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.writeEndObject();
+
+        out.writeEndObject();
+    }
+}
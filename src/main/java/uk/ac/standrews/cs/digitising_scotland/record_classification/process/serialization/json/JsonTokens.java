@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import com.fasterxml.jackson.core.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Checks the tokens read by streaming deserializers.
+ */
+final class JsonTokens {
+
+    private JsonTokens() { throw new UnsupportedOperationException(); }
+
+    static void expectCurrent(final JsonParser in, final JsonToken... expected) throws JsonParseException {
+
+        expectToken(in, in.getCurrentToken(), expected);
+    }
+
+    static void expectNext(final JsonParser in, final JsonToken... expected) throws IOException {
+
+        expectToken(in, in.nextToken(), expected);
+    }
+
+    private static void expectToken(final JsonParser in, final JsonToken actual, final JsonToken... expected) throws JsonParseException {
+
+        if (!Arrays.asList(expected).contains(actual)) {
+            throw new JsonParseException(in, String.format("expected %s, found %s", Arrays.toString(expected), actual));
+        }
+    }
+}
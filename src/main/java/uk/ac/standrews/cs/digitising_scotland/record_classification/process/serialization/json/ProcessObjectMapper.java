@@ -22,8 +22,14 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.la4j.matrix.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.CompactClassifications;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.exact_match.ExactMatchClassifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.string_similarity.StringSimilarityClassifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.ClassificationContext;
 import weka.classifiers.bayes.NaiveBayesMultinomialText;
 import weka.core.*;
 
@@ -32,11 +38,15 @@ import java.time.Duration;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Random;
 
 public class ProcessObjectMapper extends ObjectMapper {
 
     private static final long serialVersionUID = 6315686309716673307L;
 
+    // The multiplier with which java.util.Random scrambles its seed.
+    private static final long RANDOM_MULTIPLIER = 0x5DEECE66DL;
+
     public ProcessObjectMapper() {
 
         // Needed for classes with private fields without setters e.g. Bucket.
@@ -69,6 +79,28 @@ public class ProcessObjectMapper extends ObjectMapper {
 
     private void configureSerializers(SimpleModule module) {
 
+        // Buckets and contexts are streamed, to avoid building a tree of all their records.
+        module.addSerializer(Bucket.class, new BucketSerializer());
+        module.addSerializer(CompactClassifications.class, new CompactClassificationsSerializer());
+        module.addDeserializer(CompactClassifications.class, new CompactClassificationsDeserializer());
+        module.addSerializer(ClassificationContext.class, new ClassificationContextSerializer());
+
+        // Buckets and contexts written before they were streamed are still read, by the bean deserializers that the
+        // streaming deserializers wrap.
+        module.setDeserializerModifier(new BeanDeserializerModifier() {
+            @Override
+            public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription description, JsonDeserializer<?> deserializer) {
+
+                if (description.getBeanClass() == Bucket.class) {
+                    return new BucketDeserializer(deserializer);
+                }
+                if (description.getBeanClass() == ClassificationContext.class) {
+                    return new ClassificationContextDeserializer(deserializer);
+                }
+                return deserializer;
+            }
+        });
+
         module.addSerializer(Duration.class, new JsonSerializer<Duration>() {
             @Override
             public void serialize(Duration duration, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
@@ -88,6 +120,25 @@ public class ProcessObjectMapper extends ObjectMapper {
             }
         });
 
+        module.addDeserializer(Random.class, new JsonDeserializer<Random>() {
+            @Override
+            public Random deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+
+                // Reads the fields of a generator written as a bean by earlier versions, without reflective access to
+                // the generator. The seed is scrambled when set, so it is unscrambled first; a cached Gaussian is lost.
+                long seed = 0;
+                while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+
+                    final String field_name = jsonParser.getCurrentName();
+                    jsonParser.nextToken();
+                    if (field_name.equals("seed")) {
+                        seed = jsonParser.getLongValue();
+                    }
+                    jsonParser.skipChildren();
+                }
+                return new Random(seed ^ RANDOM_MULTIPLIER);
+            }
+        });
 
         module.addSerializer(Instances.class, new JsonSerializer<Instances>() {
             @Override
@@ -177,6 +228,7 @@ public class ProcessObjectMapper extends ObjectMapper {
 
     private void configureMixins(SimpleModule module) {
 
+        module.setMixInAnnotation(Bucket.class, BucketMixin.class);
         module.setMixInAnnotation(DenseMatrix.class, DenseMatrixMixin.class);
         module.setMixInAnnotation(NaiveBayesMultinomialText.class, JsonIdentityInfoMixin.class);
         module.setMixInAnnotation(Capabilities.class, JsonIdentityInfoMixin.class);
@@ -184,5 +236,7 @@ public class ProcessObjectMapper extends ObjectMapper {
         module.setMixInAnnotation(Instance.class, InstanceMixin.class);
         module.setMixInAnnotation(Attribute.class, AttributeMixin.class);
         module.setMixInAnnotation(NominalAttributeInfo.class, NominalAttributeInfoMixin.class);
+        module.setMixInAnnotation(ExactMatchClassifier.class, KnownClassificationsMixin.class);
+        module.setMixInAnnotation(StringSimilarityClassifier.class, KnownClassificationsMixin.class);
     }
 }
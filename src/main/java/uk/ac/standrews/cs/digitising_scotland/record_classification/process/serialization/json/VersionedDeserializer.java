@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+
+import static uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json.JsonTokens.*;
+
+/**
+ * Reads objects written with a version as their first field. Objects without a version were written in the bean layout
+ * of earlier versions of this module, and are read by the bean deserializer of their type.
+ *
+ * @param <Value> the type of the objects read
+ */
+abstract class VersionedDeserializer<Value> extends JsonDeserializer<Value> {
+
+    private final Class<Value> type;
+    private final String version_field;
+    private final int version;
+    private final JsonDeserializer<?> legacy_deserializer;
+
+    private boolean legacy_deserializer_resolved;
+
+    /**
+     * Instantiates a deserializer of objects of the given type.
+     *
+     * @param type the type of the objects read
+     * @param version_field the name of the version field
+     * @param version the version that is read
+     * @param legacy_deserializer the bean deserializer of objects without a version
+     */
+    VersionedDeserializer(final Class<Value> type, final String version_field, final int version, final JsonDeserializer<?> legacy_deserializer) {
+
+        this.type = type;
+        this.version_field = version_field;
+        this.version = version;
+        this.legacy_deserializer = legacy_deserializer;
+    }
+
+    @Override
+    public final Value deserialize(final JsonParser in, final DeserializationContext context) throws IOException {
+
+        expectCurrent(in, JsonToken.START_OBJECT);
+        expectNext(in, JsonToken.FIELD_NAME, JsonToken.END_OBJECT);
+
+        if (!version_field.equals(in.getCurrentName())) {
+            return readLegacy(in, context);
+        }
+
+        expectNext(in, JsonToken.VALUE_NUMBER_INT);
+        if (in.getIntValue() != version) {
+            throw new JsonParseException(in, "unsupported " + type.getSimpleName() + " version " + in.getIntValue());
+        }
+
+        return readFields(in, context);
+    }
+
+    @Override
+    public Class<?> handledType() {
+
+        return type;
+    }
+
+    /**
+     * Reads the fields that follow the version, up to and including the end of the object.
+     *
+     * @param in the parser, positioned on the version
+     * @param context the deserialization context
+     * @return the object read
+     * @throws IOException if the object cannot be read
+     */
+    protected abstract Value readFields(JsonParser in, DeserializationContext context) throws IOException;
+
+    private Value readLegacy(final JsonParser in, final DeserializationContext context) throws IOException {
+
+        // The first field name has already been read, so the object is buffered for the bean deserializer to read from its start.
+        final TokenBuffer buffer = new TokenBuffer(in, context);
+        buffer.writeStartObject();
+
+        while (in.getCurrentToken() == JsonToken.FIELD_NAME) {
+
+            // Copies the field name and its value.
+            buffer.copyCurrentStructure(in);
+            in.nextToken();
+        }
+        expectCurrent(in, JsonToken.END_OBJECT);
+        buffer.writeEndObject();
+
+        final JsonParser buffered = buffer.asParser(in);
+        buffered.nextToken();
+
+        return type.cast(getLegacyDeserializer(context).deserialize(buffered, context));
+    }
+
+    private synchronized JsonDeserializer<?> getLegacyDeserializer(final DeserializationContext context) throws JsonMappingException {
+
+        // Resolved only when first needed, so that reading the current layout does not depend on the bean layout.
+        if (!legacy_deserializer_resolved && legacy_deserializer instanceof ResolvableDeserializer) {
+            ((ResolvableDeserializer) legacy_deserializer).resolve(context);
+        }
+        legacy_deserializer_resolved = true;
+
+        return legacy_deserializer;
+    }
+}
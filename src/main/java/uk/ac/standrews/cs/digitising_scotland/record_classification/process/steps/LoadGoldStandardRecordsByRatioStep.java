@@ -21,8 +21,8 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket
 import uk.ac.standrews.cs.digitising_scotland.record_classification.process.ClassificationContext;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.process.Step;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -73,9 +73,9 @@ public class LoadGoldStandardRecordsByRatioStep implements Step {
 
         final Bucket gold_standard_records;
 
-        try (final InputStream stream = Files.newInputStream(path)) {
+        try (final BufferedReader reader = Files.newBufferedReader(path, charset)) {
 
-            gold_standard_records = new Bucket(stream, delimiter.charAt(0));
+            gold_standard_records = new Bucket(reader, delimiter.charAt(0));
 
         } catch (IOException e) {
             throw new RuntimeException(e);
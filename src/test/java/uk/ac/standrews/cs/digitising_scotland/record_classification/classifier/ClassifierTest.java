@@ -90,6 +90,58 @@ public abstract class ClassifierTest {
         assertEquals(classified, actual);
     }
 
+    @Test
+    public void testMappedSerialization() throws Exception {
+
+        final Classifier classifier = newClassifier();
+        trainOnTrainingRecords(classifier);
+
+        final Bucket classified = classifyTestRecords(classifier);
+
+        final Path file = temporary.newFile().toPath();
+
+        Serialization.persist(file, classifier, SerializationFormat.MAPPED);
+        final Classifier mapped_classifier = Serialization.load(file, Classifier.class, SerializationFormat.MAPPED);
+
+        assertSameClassifications(classified, classifyTestRecords(mapped_classifier));
+
+        // A mapped classifier can in turn be persisted in other formats.
+        Serialization.persist(file, mapped_classifier, SerializationFormat.JAVA_SERIALIZATION);
+        final Classifier deserialised_classifier = Serialization.load(file, Classifier.class, SerializationFormat.JAVA_SERIALIZATION);
+
+        assertSameClassifications(classified, classifyTestRecords(deserialised_classifier));
+    }
+
+    @Test
+    public void testBinarySerialization() throws Exception {
+
+        final Classifier classifier = newClassifier();
+        trainOnTrainingRecords(classifier);
+
+        final Bucket classified = classifyTestRecords(classifier);
+
+        final Path file = temporary.newFile().toPath();
+
+        Serialization.persist(file, classifier, SerializationFormat.BINARY);
+        final Classifier deserialised_classifier = Serialization.load(file, Classifier.class, SerializationFormat.BINARY);
+
+        assertSameClassifications(classified, classifyTestRecords(deserialised_classifier));
+    }
+
+    protected static void assertSameClassifications(final Bucket expected, final Bucket actual) {
+
+        assertEquals(expected, actual);
+
+        for (Record record : expected) {
+
+            final Classification expected_classification = record.getClassification();
+            final Classification actual_classification = actual.findRecordById(record.getId()).get().getClassification();
+
+            assertEquals(expected_classification.getCode(), actual_classification.getCode());
+            assertEquals(expected_classification.getConfidence(), actual_classification.getConfidence(), 0.0);
+        }
+    }
+
     protected abstract Classifier newClassifier();
 
     protected static Bucket classifyTestRecords(final Classifier classifier) {return classifier.classify(new Bucket(TEST_RECORDS));}
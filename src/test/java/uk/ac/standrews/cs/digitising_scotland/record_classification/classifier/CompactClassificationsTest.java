@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.SectionedFile;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json.ProcessObjectMapper;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CompactClassificationsTest {
+
+    private static final double DELTA = 0.001;
+    private static final int LARGE_SIZE = 10000;
+
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    @Test
+    public void unknownDataHaveNoClassification() {
+
+        final CompactClassifications classifications = new CompactClassifications();
+        classifications.put("known", new Classification("code", TokenList.of("known"), 1.0, "detail"));
+
+        assertNull(classifications.get("unknown"));
+        assertEquals(1, classifications.size());
+    }
+
+    @Test
+    public void classificationsHaveTokensOfTheirData() {
+
+        final CompactClassifications classifications = new CompactClassifications();
+        classifications.put("red fish", new Classification("code", new TokenList("red fish"), 0.5, "detail"));
+        classifications.put("Blue, Fish", new Classification("code", new TokenList("Blue, Fish"), 0.5, "detail"));
+
+        final Classification classification = classifications.get("red fish");
+
+        assertEquals("code", classification.getCode());
+        assertEquals(0.5, classification.getConfidence(), DELTA);
+        assertEquals("detail", classification.getDetail());
+        assertEquals(TokenList.of("red fish"), classification.getTokenList());
+        assertEquals(TokenList.of("Blue, Fish"), classifications.get("Blue, Fish").getTokenList());
+        assertEquals(1, classifications.getClassificationCount());
+    }
+
+    @Test
+    public void classificationsWithOtherTokensAreHeld() {
+
+        final CompactClassifications classifications = new CompactClassifications();
+        final Classification classification = new Classification("code", new TokenList("fish"), 0.5, "detail");
+
+        classifications.put("red fish", classification);
+        classifications.put("blue fish", classification);
+        classifications.put("green fish", new Classification("code", null, 0.5, "detail"));
+
+        assertSame(classification, classifications.get("red fish"));
+        assertSame(classification, classifications.get("blue fish"));
+        assertEquals(2, classifications.getClassificationCount());
+    }
+
+    @Test
+    public void identicalClassificationsAreShared() {
+
+        final CompactClassifications classifications = new CompactClassifications();
+        for (int i = 0; i < LARGE_SIZE; i++) {
+            classifications.put("data " + i, new Classification("code" + i % 3, null, 1.0, null));
+        }
+
+        assertEquals(LARGE_SIZE, classifications.size());
+        assertEquals(3, classifications.getClassificationCount());
+
+        for (int i = 0; i < LARGE_SIZE; i++) {
+            assertEquals("code" + i % 3, classifications.get("data " + i).getCode());
+        }
+    }
+
+    @Test
+    public void classificationsReturnedAreNotShared() {
+
+        final CompactClassifications classifications = new CompactClassifications();
+        classifications.put("data", new Classification("code", null, 1.0, null));
+
+        classifications.get("data").setConfidence(0.1);
+
+        assertEquals(1.0, classifications.get("data").getConfidence(), DELTA);
+    }
+
+    @Test
+    public void putReplacesExistingClassification() {
+
+        final CompactClassifications classifications = new CompactClassifications();
+        classifications.put("data", new Classification("code1", null, 1.0, null));
+        classifications.put("data", new Classification("code2", null, 1.0, null));
+
+        assertEquals(1, classifications.size());
+        assertEquals("code2", classifications.get("data").getCode());
+    }
+
+    @Test
+    public void equalityDependsOnContentOnly() {
+
+        final CompactClassifications classifications1 = new CompactClassifications();
+        final CompactClassifications classifications2 = new CompactClassifications(LARGE_SIZE);
+
+        classifications1.put("a", new Classification("code1", null, 1.0, null));
+        classifications1.put("b", new Classification("code2", null, 1.0, null));
+        classifications2.put("b", new Classification("code2", null, 1.0, null));
+        classifications2.put("a", new Classification("code1", null, 1.0, null));
+
+        assertEquals(classifications1, classifications2);
+        assertEquals(classifications1.hashCode(), classifications2.hashCode());
+
+        classifications2.put("a", new Classification("code1", null, 0.5, null));
+
+        assertNotEquals(classifications1, classifications2);
+    }
+
+    @Test
+    public void binaryFormatRoundTrips() throws IOException {
+
+        final CompactClassifications classifications = newLargeClassifications();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        classifications.writeBinary(new DataOutputStream(bytes));
+
+        final CompactClassifications read_classifications = new CompactClassifications();
+        read_classifications.readBinary(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(classifications, read_classifications);
+        assertSameClassifications(classifications.toMap(), read_classifications.toMap());
+    }
+
+    @Test
+    public void heldClassificationsKeepTheirTokensWhenPersisted() throws IOException, ClassNotFoundException {
+
+        final CompactClassifications classifications = newLargeClassifications();
+        classifications.put("red fish", new Classification("code", new TokenList("fish"), 0.5, "detail"));
+
+        final ByteArrayOutputStream binary_bytes = new ByteArrayOutputStream();
+        classifications.writeBinary(new DataOutputStream(binary_bytes));
+        final CompactClassifications binary_classifications = new CompactClassifications();
+        binary_classifications.readBinary(new DataInputStream(new ByteArrayInputStream(binary_bytes.toByteArray())));
+
+        final ByteArrayOutputStream object_bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(object_bytes)) {
+            out.writeObject(classifications);
+        }
+        final CompactClassifications deserialized_classifications;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(object_bytes.toByteArray()))) {
+            deserialized_classifications = (CompactClassifications) in.readObject();
+        }
+
+        final ObjectMapper mapper = new ProcessObjectMapper();
+        final CompactClassifications json_classifications = mapper.readValue(mapper.writeValueAsString(classifications), CompactClassifications.class);
+
+        for (CompactClassifications read_classifications : Arrays.asList(binary_classifications, deserialized_classifications, json_classifications)) {
+
+            assertEquals(classifications, read_classifications);
+            assertEquals(new TokenList("fish"), read_classifications.get("red fish").getTokenList());
+            assertSameClassifications(classifications.toMap(), read_classifications.toMap());
+        }
+    }
+
+    @Test
+    public void heldClassificationsKeepTheirTokensWhenMapped() throws IOException {
+
+        final CompactClassifications classifications = newLargeClassifications();
+        classifications.put("red fish", new Classification("code", new TokenList("fish"), 0.5, "detail"));
+
+        final Path file = temporary.newFile().toPath();
+        try (SectionedFile.Writer out = new SectionedFile.Writer(file)) {
+            MappedClassifications.write(out, "known", classifications);
+        }
+        final MappedClassifications mapped_classifications = MappedClassifications.read(SectionedFile.map(file), "known");
+
+        assertEquals(new TokenList("fish"), mapped_classifications.get("red fish").getTokenList());
+        assertEquals(TokenList.of("data 1"), mapped_classifications.get("data 1").getTokenList());
+        assertEquals(classifications, mapped_classifications.toCompactClassifications());
+        assertSameClassifications(classifications.toMap(), mapped_classifications.toMap());
+    }
+
+    @Test
+    public void classificationsCanBeSerialized() throws IOException, ClassNotFoundException {
+
+        final CompactClassifications classifications = newLargeClassifications();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(classifications);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(classifications, in.readObject());
+        }
+    }
+
+    private static CompactClassifications newLargeClassifications() {
+
+        final CompactClassifications classifications = new CompactClassifications();
+        for (int i = 0; i < LARGE_SIZE; i++) {
+            classifications.put("data " + i, new Classification("code" + i % 7, null, i % 2, i % 5 == 0 ? null : "detail"));
+        }
+        return classifications;
+    }
+
+    private static void assertSameClassifications(final Map<String, Classification> expected, final Map<String, Classification> actual) {
+
+        assertEquals(expected.keySet(), actual.keySet());
+
+        for (String data : expected.keySet()) {
+
+            assertEquals(expected.get(data).getCode(), actual.get(data).getCode());
+            assertEquals(expected.get(data).getConfidence(), actual.get(data).getConfidence(), DELTA);
+            assertEquals(expected.get(data).getDetail(), actual.get(data).getDetail());
+            assertEquals(expected.get(data).getTokenList(), actual.get(data).getTokenList());
+        }
+    }
+}
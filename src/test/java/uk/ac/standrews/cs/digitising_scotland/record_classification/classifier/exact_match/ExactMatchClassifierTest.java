@@ -18,7 +18,11 @@ package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.
 
 import org.junit.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
 
+import java.nio.file.*;
+import java.util.*;
 import java.util.function.*;
 
 import static org.junit.Assert.*;
@@ -47,6 +51,65 @@ public class ExactMatchClassifierTest extends ClassifierTest {
         assertEquals(0.0, classifier.classify("never seen before string").getConfidence(), DELTA);
     }
 
+    @Test
+    public void mappedClassifierCanBePersistedAsJSON() throws Exception {
+
+        final ExactMatchClassifier classifier = newClassifier();
+        trainOnTrainingRecords(classifier);
+
+        final Path mapped_file = temporary.newFile().toPath();
+        final Path json_file = temporary.newFile().toPath();
+
+        Serialization.persist(mapped_file, classifier, SerializationFormat.MAPPED);
+        final Classifier mapped_classifier = Serialization.load(mapped_file, Classifier.class, SerializationFormat.MAPPED);
+
+        Serialization.persist(json_file, mapped_classifier, SerializationFormat.JSON);
+        final Classifier json_classifier = Serialization.load(json_file, ExactMatchClassifier.class, SerializationFormat.JSON);
+
+        assertSameClassifications(classifyTestRecords(classifier), classifyTestRecords(json_classifier));
+        assertEquals("class1", json_classifier.classify("trail").getCode());
+    }
+
+    @Test
+    public void updateRetainsExistingClassifications() {
+
+        final ExactMatchClassifier classifier = newClassifier();
+        classifier.trainModel(training_bucket);
+
+        classifier.update(new Bucket(new Record(7, "house", new Classification("class5", new TokenList("house"), 1.0, null))));
+
+        assertEquals("class1", classifier.classify("trail").getCode());
+        assertEquals("class5", classifier.classify("house").getCode());
+    }
+
+    @Test
+    public void updateMatchesTrainingOnAllRecords() {
+
+        final ExactMatchClassifier trained_classifier = newClassifier();
+        trained_classifier.trainModel(training_bucket);
+
+        final ExactMatchClassifier updated_classifier = newClassifier();
+        updated_classifier.update(new Bucket(TRAINING_RECORDS[0], TRAINING_RECORDS[1]));
+        updated_classifier.update(training_bucket);
+
+        assertEquals(trained_classifier, updated_classifier);
+        assertTrue(updated_classifier.supportsIncrementalTraining());
+    }
+
+    @Test
+    public void updateLeavesConfidencesUnchanged() {
+
+        final ExactMatchClassifier classifier = newClassifier();
+        trainOnTrainingRecords(classifier);
+        final double trail_confidence = classifier.classify("trail").getConfidence();
+
+        classifier.update(new Bucket(new Record(7, "house", new Classification("class5", new TokenList("house"), 1.0, null))));
+
+        assertEquals(trail_confidence, classifier.classify("trail").getConfidence(), 0.0);
+        assertEquals(1.0, classifier.classify("house").getConfidence(), 0.0);
+        assertEquals(0.0, classifier.classify("never seen before string").getConfidence(), 0.0);
+    }
+
     @Override
     protected ExactMatchClassifier newClassifier() {
 
@@ -23,7 +23,9 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.l
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cleaning.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.dataset.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
 
+import java.nio.file.*;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -46,6 +48,26 @@ public class OLRClassifierTest extends ClassifierTest {
         classifier.trainModel(training_bucket); //expected exception
     }
 
+    @Test
+    public void mappedClassifierKeepsTokensAndCoefficientsInTheirOwnSections() throws Exception {
+
+        final OLRClassifier classifier = newClassifier();
+        trainOnTrainingRecords(classifier);
+
+        final Path file = temporary.newFile().toPath();
+        Serialization.persist(file, classifier, SerializationFormat.MAPPED);
+
+        final Set<String> sections = SectionedFile.map(file).getSectionNames();
+        assertTrue(sections.contains("olr_tokens"));
+        for (int fold = 0; fold < OLRClassifier.DEFAULT_FOLDS; fold++) {
+            assertTrue(sections.contains("olr_coefficients." + fold));
+        }
+
+        final OLRClassifier mapped_classifier = Serialization.load(file, OLRClassifier.class, SerializationFormat.MAPPED);
+        assertTrue(mapped_classifier.isTrained());
+        assertEquals(classifier.countFeatures(), mapped_classifier.countFeatures());
+    }
+
     @Test
     public void mahoutOLRClassifierOutperformsLegacyOLRClassifier() throws Exception {
 
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.string_similarity;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.SectionedFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class BigramIndexTest {
+
+    private static final long SEED = 2342343L;
+    private static final int KNOWN_DATA_COUNT = 2000;
+    private static final int QUERY_COUNT = 500;
+
+    // A small alphabet gives many shared bigrams and many equally similar known data.
+    private static final String ALPHABET = "abcde";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final SimilarityMetric metric;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> generateData() {
+
+        return Arrays.asList(new Object[]{StringSimilaritySupplier.JACCARD}, new Object[]{StringSimilaritySupplier.DICE});
+    }
+
+    public BigramIndexTest(final StringSimilaritySupplier supplier) {
+
+        metric = supplier.get();
+    }
+
+    @Test
+    public void onlySetSimilaritiesAreIndexed() {
+
+        assertNotNull(BigramIndex.SetSimilarity.of(metric));
+        assertNull(BigramIndex.SetSimilarity.of(StringSimilaritySupplier.LEVENSHTEIN.get()));
+        assertNull(BigramIndex.SetSimilarity.of(StringSimilaritySupplier.JARO_WINKLER.get()));
+    }
+
+    @Test
+    public void mostSimilarIsFoundAsByExhaustiveComparison() {
+
+        final Random random = new Random(SEED);
+        final String[] known_data = newData(random, KNOWN_DATA_COUNT);
+        final BigramIndex index = newIndex(known_data);
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+
+            final String data = newData(random);
+            assertEquals(data, findMostSimilarExhaustively(known_data, data), index.findMostSimilar(data));
+        }
+    }
+
+    @Test
+    public void dataWithoutBigramsAreMostSimilarToFirstKnownDataWithoutBigrams() {
+
+        final String[] known_data = {"abc", "a", "b c", "cde"};
+        final BigramIndex index = newIndex(known_data);
+
+        assertEquals(1, index.findMostSimilar("e"));
+        assertEquals(1, index.findMostSimilar(""));
+        assertEquals(findMostSimilarExhaustively(known_data, "e"), index.findMostSimilar("e"));
+    }
+
+    @Test
+    public void dataSharingNoBigramsAreMostSimilarToFirstKnownData() {
+
+        final String[] known_data = {"abc", "bcd", "cde"};
+        final BigramIndex index = newIndex(known_data);
+
+        assertEquals(0, index.findMostSimilar("xyz"));
+        assertEquals(findMostSimilarExhaustively(known_data, "xyz"), index.findMostSimilar("xyz"));
+    }
+
+    @Test
+    public void emptyIndexFindsNothing() {
+
+        assertEquals(-1, newIndex(new String[0]).findMostSimilar("abc"));
+    }
+
+    @Test
+    public void readIndexFindsAsBuiltIndex() throws IOException {
+
+        final Random random = new Random(SEED);
+        final String[] known_data = newData(random, KNOWN_DATA_COUNT);
+        final Path file = temp.newFile().toPath();
+
+        try (final SectionedFile.Writer out = new SectionedFile.Writer(file)) {
+            BigramIndex.write(out, "index", known_data.length, index -> known_data[index]);
+        }
+
+        final SectionedFile in = SectionedFile.map(file);
+        assertTrue(BigramIndex.isWritten(in, "index"));
+
+        final BigramIndex index = newIndex(known_data);
+        final BigramIndex read_index = BigramIndex.read(in, "index", metric, BigramIndex.SetSimilarity.of(metric), known_data.length, i -> known_data[i], known_data);
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+
+            final String data = newData(random);
+            assertEquals(data, index.findMostSimilar(data), read_index.findMostSimilar(data));
+        }
+    }
+
+    @Test
+    public void mappedClassifierClassifiesAsTrainedClassifier() throws IOException {
+
+        final Random random = new Random(SEED);
+        final StringSimilarityClassifier classifier = newTrainedClassifier(random);
+        final Path file = temp.newFile().toPath();
+
+        try (final SectionedFile.Writer out = new SectionedFile.Writer(file)) {
+            classifier.writeSections(out);
+        }
+
+        final StringSimilarityClassifier mapped_classifier = new StringSimilarityClassifier();
+        mapped_classifier.readSections(SectionedFile.map(file));
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+
+            final String data = newData(random);
+            final String code = classifier.classify(data).getCode();
+
+            // Equally similar known data may be found in a different order, so only the similarity must be the same.
+            assertEquals(data, metric.getSimilarity(code, data), metric.getSimilarity(mapped_classifier.classify(data).getCode(), data), 0.0f);
+        }
+    }
+
+    @Test
+    public void classifierClassifiesAsByExhaustiveComparison() {
+
+        final Random random = new Random(SEED);
+        final StringSimilarityClassifier classifier = newTrainedClassifier(random);
+
+        final String[] known_data = classifier.readState().keySet().toArray(new String[0]);
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+
+            final String data = newData(random);
+            assertEquals(known_data[findMostSimilarExhaustively(known_data, data)], classifier.classify(data).getCode());
+        }
+    }
+
+    private StringSimilarityClassifier newTrainedClassifier(final Random random) {
+
+        final Bucket training_records = new Bucket();
+        for (String data : newData(random, KNOWN_DATA_COUNT)) {
+            training_records.add(new Record(training_records.size() + 1, data, new Classification(data, TokenList.of(data), 1.0, null)));
+        }
+
+        final StringSimilarityClassifier classifier = new StringSimilarityClassifier(metric);
+        classifier.trainModel(training_records);
+        return classifier;
+    }
+
+    private BigramIndex newIndex(final String[] known_data) {
+
+        return new BigramIndex(metric, BigramIndex.SetSimilarity.of(metric), known_data.length, index -> known_data[index], known_data);
+    }
+
+    private int findMostSimilarExhaustively(final String[] known_data, final String data) {
+
+        float highest_similarity_found = -1;
+        int most_similar_index = -1;
+
+        for (int index = 0; index < known_data.length; index++) {
+
+            final float similarity = metric.getSimilarity(known_data[index], data);
+            if (similarity > highest_similarity_found) {
+                most_similar_index = index;
+                highest_similarity_found = similarity;
+            }
+        }
+        return most_similar_index;
+    }
+
+    private static String[] newData(final Random random, final int count) {
+
+        final Set<String> data = new LinkedHashSet<>();
+        while (data.size() < count) {
+            data.add(newData(random));
+        }
+        return data.toArray(new String[count]);
+    }
+
+    private static String newData(final Random random) {
+
+        final StringBuilder builder = new StringBuilder();
+        final int word_count = 1 + random.nextInt(3);
+
+        for (int i = 0; i < word_count; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            final int word_length = 1 + random.nextInt(6);
+            for (int j = 0; j < word_length; j++) {
+                builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+        }
+        return builder.toString();
+    }
+}
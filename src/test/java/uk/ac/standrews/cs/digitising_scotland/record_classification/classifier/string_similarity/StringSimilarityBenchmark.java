@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.string_similarity;
+
+import java.util.*;
+
+/**
+ * Reports the time taken to find the most similar of many known strings by Jaccard and Dice similarity, with the bigram
+ * index and by exhaustive comparison, and checks that both find the same known strings. The strings are phrases of
+ * randomly generated words, with many of the words shared between strings, as in coded descriptions.
+ * Usage: {@code StringSimilarityBenchmark [number of known strings] [number of indexed queries] [number of exhaustive queries]}
+ */
+public class StringSimilarityBenchmark {
+
+    private static final int DEFAULT_KNOWN_STRINGS = 1000000;
+    private static final int DEFAULT_INDEXED_QUERIES = 1000;
+    private static final int DEFAULT_EXHAUSTIVE_QUERIES = 10;
+
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+    private static final long SEED = 34234234234L;
+
+    public static void main(final String[] args) {
+
+        final int known_string_count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_KNOWN_STRINGS;
+        final int indexed_query_count = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_INDEXED_QUERIES;
+        final int exhaustive_query_count = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_EXHAUSTIVE_QUERIES;
+
+        final Random random = new Random(SEED);
+        final String[] vocabulary = newVocabulary(random);
+        final String[] known_strings = newPhrases(random, vocabulary, known_string_count);
+        final String[] queries = newPhrases(random, vocabulary, indexed_query_count);
+
+        System.out.println("known strings: " + known_strings.length);
+        System.out.println();
+        System.out.println(String.format("%-8s %10s %16s %20s %10s", "metric", "build ms", "indexed us/query", "exhaustive us/query", "agree"));
+
+        for (StringSimilaritySupplier supplier : new StringSimilaritySupplier[]{StringSimilaritySupplier.JACCARD, StringSimilaritySupplier.DICE}) {
+
+            final SimilarityMetric metric = supplier.get();
+
+            final long build_start = System.nanoTime();
+            final BigramIndex index = new BigramIndex(metric, BigramIndex.SetSimilarity.of(metric), known_strings.length, i -> known_strings[i], known_strings);
+            final long build_time = System.nanoTime() - build_start;
+
+            final int[] indexed_results = new int[queries.length];
+            final long indexed_start = System.nanoTime();
+            for (int i = 0; i < queries.length; i++) {
+                indexed_results[i] = index.findMostSimilar(queries[i]);
+            }
+            final long indexed_time = System.nanoTime() - indexed_start;
+
+            final int exhaustive_count = Math.min(exhaustive_query_count, queries.length);
+            int agreed = 0;
+            final long exhaustive_start = System.nanoTime();
+            for (int i = 0; i < exhaustive_count; i++) {
+                if (findMostSimilarExhaustively(metric, known_strings, queries[i]) == indexed_results[i]) {
+                    agreed++;
+                }
+            }
+            final long exhaustive_time = System.nanoTime() - exhaustive_start;
+
+            System.out.println(String.format("%-8s %10d %16d %20d %6d/%-3d", supplier, build_time / 1000000, indexed_time / 1000 / Math.max(1, queries.length),
+                            exhaustive_time / 1000 / Math.max(1, exhaustive_count), agreed, exhaustive_count));
+        }
+    }
+
+    private static int findMostSimilarExhaustively(final SimilarityMetric metric, final String[] known_strings, final String data) {
+
+        float highest_similarity_found = -1;
+        int most_similar_index = -1;
+
+        for (int index = 0; index < known_strings.length; index++) {
+
+            final float similarity = metric.getSimilarity(known_strings[index], data);
+            if (similarity > highest_similarity_found) {
+                most_similar_index = index;
+                highest_similarity_found = similarity;
+            }
+        }
+        return most_similar_index;
+    }
+
+    private static String[] newVocabulary(final Random random) {
+
+        final String[] vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < vocabulary.length; i++) {
+
+            final StringBuilder word = new StringBuilder();
+            final int length = 3 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+            vocabulary[i] = word.toString();
+        }
+        return vocabulary;
+    }
+
+    private static String[] newPhrases(final Random random, final String[] vocabulary, final int count) {
+
+        final String[] phrases = new String[count];
+        for (int i = 0; i < count; i++) {
+
+            final StringBuilder phrase = new StringBuilder();
+            final int word_count = 1 + random.nextInt(4);
+            for (int j = 0; j < word_count; j++) {
+                if (j > 0) {
+                    phrase.append(' ');
+                }
+
+                // Skews the choice of words towards the start of the vocabulary, so that some words are common.
+                final double skewed = random.nextDouble();
+                phrase.append(vocabulary[(int) (skewed * skewed * skewed * vocabulary.length)]);
+            }
+            phrases[i] = phrase.toString();
+        }
+        return phrases;
+    }
+}
@@ -26,6 +26,7 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
 
 import java.nio.file.*;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -68,6 +69,7 @@ public class ConfigurationTest {
 
         expected.setClassifierSupplier(ClassifierSupplier.EXACT_MATCH);
         expected.setClassifierSerializationFormat(SerializationFormat.JAVA_SERIALIZATION);
+        expected.setBucketSerializationFormat(BucketSerializationFormat.BINARY);
         expected.setDefaultCharsetSupplier(CharsetSupplier.UTF_16);
         expected.setVerbosity(LogLevelSupplier.INFO);
         expected.setSeed(42L);
@@ -85,6 +87,7 @@ public class ConfigurationTest {
         assertEquals(expected.getEvaluationRecords(), actual.getEvaluationRecords());
         assertEquals(expected.getClassifierSupplier(), actual.getClassifierSupplier());
         assertEquals(expected.getClassifierSerializationFormat(), actual.getClassifierSerializationFormat());
+        assertEquals(expected.getBucketSerializationFormat(), actual.getBucketSerializationFormat());
         assertEquals(expected.getDefaultCharsetSupplier(), actual.getDefaultCharsetSupplier());
         assertEquals(expected.getLogLevel(), actual.getLogLevel());
         assertEquals(expected.getInternalLogLevel(), actual.getInternalLogLevel());
@@ -100,6 +103,43 @@ public class ConfigurationTest {
         assertEquals(expected.getUnseenRecordsOptional(), actual.getUnseenRecordsOptional());
     }
 
+    @Test
+    public void testOnlyModifiedArtifactsArePersisted() throws Exception {
+
+        if (!Files.isDirectory(home)) {
+            Files.createDirectory(home);
+        }
+
+        expected.setUnseenRecords(TestDataSets.CASE_5_EVALUATION.get(0).getBucket());
+        expected.setGoldStandardRecords(TestDataSets.CASE_5_TRAINING.get(0).getBucket(), 0.8);
+        expected.persist();
+
+        final Path unseen_records_file = expected.getRecordsPath(Configuration.UNSEEN_RECORDS_NAME);
+        final Path training_records_file = expected.getRecordsPath(Configuration.TRAINING_RECORDS_NAME);
+        final List<String> marker = Collections.singletonList("not rewritten");
+        Files.write(unseen_records_file, marker);
+        Files.write(training_records_file, marker);
+
+        final Configuration unchanged = Configuration.load();
+        unchanged.getTrainingRecords();
+        unchanged.persist();
+
+        assertEquals(marker, Files.readAllLines(unseen_records_file));
+        assertEquals(marker, Files.readAllLines(training_records_file));
+
+        final Configuration changed = Configuration.load();
+        changed.addUnseenRecords(Collections.singletonList(new Record(1, "abc")));
+        changed.persist();
+
+        assertNotEquals(marker, Files.readAllLines(unseen_records_file));
+        assertEquals(marker, Files.readAllLines(training_records_file));
+        assertEquals(1, Configuration.load().getUnseenRecords().size());
+
+        try (DirectoryStream<Path> temporary_files = Files.newDirectoryStream(home, "*.tmp")) {
+            assertFalse(temporary_files.iterator().hasNext());
+        }
+    }
+
     @Test
     public void testDefaultValuesAreSetInNewInstance() throws Exception {
 
@@ -110,6 +150,7 @@ public class ConfigurationTest {
         assertEquals(new_instance.getDefaultDelimiter(), Configuration.DEFAULT_DELIMITER);
         assertEquals(new_instance.getDefaultTrainingRatio(), Configuration.DEFAULT_TRAINING_RATIO, Validators.DELTA);
         assertEquals(new_instance.getDefaultInternalTrainingRatio(), Configuration.DEFAULT_INTERNAL_TRAINING_RATIO, Validators.DELTA);
+        assertEquals(new_instance.getBucketSerializationFormat(), Configuration.DEFAULT_BUCKET_SERIALIZATION_FORMAT);
         assertEquals(new_instance.getLogLevel(), Configuration.DEFAULT_LOG_LEVEL_SUPPLIER);
         assertEquals(new_instance.getInternalLogLevel(), Configuration.DEFAULT_LOG_LEVEL_SUPPLIER);
     }
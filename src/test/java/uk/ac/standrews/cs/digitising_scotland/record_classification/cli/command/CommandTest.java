@@ -26,6 +26,7 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.supplier.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.dataset.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
 
 import java.io.*;
 import java.nio.file.*;
@@ -91,6 +92,13 @@ public abstract class CommandTest {
         builder.run(launcher);
     }
 
+    protected void setBucketSerializationFormat(final BucketSerializationFormat format) throws Exception {
+
+        final SetCommand.Builder builder = new SetCommand.Builder();
+        builder.setBucketSerializationFormat(format);
+        builder.run(launcher);
+    }
+
     protected void setClassifier(ClassifierSupplier classifier_supplier) throws Exception {
 
         final SetCommand.Builder builder = new SetCommand.Builder();
@@ -21,12 +21,14 @@ import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.*
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cleaning.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.dataset.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
 
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -66,6 +68,29 @@ public class EvaluateCommandTest extends CommandTest {
         assertEvaluationOutputIsCorrect(output);
     }
 
+    @Test
+    public void testEvaluationWithRecordStores() throws Exception {
+
+        initForcefully();
+        setSeed();
+        setBucketSerializationFormat(BucketSerializationFormat.MAPPED);
+        setClassifier(ClassifierSupplier.EXACT_MATCH);
+        loadGoldStandards(TestDataSets.CASE_1_TRAINING, 0.8);
+        clean(CleanerSupplier.COMBINED);
+        evaluate();
+
+        assertEvaluationResultsIsSet();
+        assertTrue(configuration.getClassifiedEvaluationRecords() instanceof MappedBucket);
+        assertEquals(configuration.getEvaluationRecords().makeUniqueDataRecords().size(), configuration.getClassifiedEvaluationRecords().size());
+
+        final Configuration loaded = Configuration.load(working_directory);
+        assertTrue(loaded.getTrainingRecords() instanceof MappedBucket);
+        assertTrue(loaded.getEvaluationRecords() instanceof MappedBucket);
+        assertTrue(loaded.getClassifiedEvaluationRecords() instanceof MappedBucket);
+        assertEquals(configuration.getClassifiedEvaluationRecords(), loaded.getClassifiedEvaluationRecords());
+        assertEquals(configuration.getTrainingRecords(), loaded.getTrainingRecords());
+    }
+
     private void assertEvaluationResultsIsSet() {
 
         assertNotNull(configuration.getConfusionMatrix());
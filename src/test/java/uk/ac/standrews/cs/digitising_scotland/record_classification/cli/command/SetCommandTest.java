@@ -79,6 +79,13 @@ public class SetCommandTest extends CommandTest {
         testSet(SetCommand.OPTION_SERIALIZATION_FORMAT_LONG, SerializationFormat.values(), () -> configuration.getClassifierSerializationFormat());
     }
 
+    @Test
+    public void testSetBucketSerializationFormat() throws Exception {
+
+        testSet(SetCommand.OPTION_BUCKET_SERIALIZATION_FORMAT_SHORT, BucketSerializationFormat.values(), () -> configuration.getBucketSerializationFormat());
+        testSet(SetCommand.OPTION_BUCKET_SERIALIZATION_FORMAT_LONG, BucketSerializationFormat.values(), () -> configuration.getBucketSerializationFormat());
+    }
+
     @Test
     public void testTrainingRatio() throws Exception {
 
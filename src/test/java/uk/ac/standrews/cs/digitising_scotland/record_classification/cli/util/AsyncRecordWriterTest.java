@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util;
+
+import org.apache.commons.csv.*;
+import org.junit.*;
+import org.junit.rules.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AsyncRecordWriterTest {
+
+    private static final String[] DATA = {"plain", "with, delimiter", "with \"quotes\"", "spans\nlines", "café", "😀 outside the basic plane"};
+    private static final int NUMBER_OF_RECORDS = 5000;
+
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    @Test
+    public void outputMatchesSynchronousOutput() throws IOException {
+
+        for (Charset charset : Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.UTF_16)) {
+
+            final Bucket records = newClassifiedRecords();
+            final Path expected = temporary.newFile().toPath();
+            final Path actual = temporary.newFile().toPath();
+
+            try (final BufferedWriter out = Files.newBufferedWriter(expected, charset);
+                 final CSVPrinter printer = Configuration.RECORD_CSV_FORMAT.print(out)) {
+                for (Record record : records) {
+                    Configuration.printRecord(record, printer);
+                }
+            }
+
+            // A small buffer exercises buffer overflow and surrogate pairs split across encoding steps.
+            try (final AsyncRecordWriter writer = new AsyncRecordWriter(actual, Configuration.RECORD_CSV_FORMAT, charset, 1)) {
+                for (Record record : records) {
+                    writer.write(record);
+                }
+            }
+
+            assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(actual));
+        }
+    }
+
+    @Test
+    public void writtenRecordsCanBeLoaded() throws IOException {
+
+        final Bucket records = newClassifiedRecords();
+        final Path destination = temporary.newFile().toPath();
+
+        Configuration.persistBucketAsCSV(records, destination, Configuration.RECORD_CSV_FORMAT, Configuration.RESOURCE_CHARSET);
+
+        final Bucket loaded = Configuration.loadBucket(destination);
+        assertEquals(records, loaded);
+    }
+
+    @Test(expected = IOException.class)
+    public void writingAfterCloseFails() throws IOException {
+
+        final AsyncRecordWriter writer = new AsyncRecordWriter(temporary.newFile().toPath());
+        writer.close();
+
+        writer.write(new Record(1, "data"));
+    }
+
+    private static Bucket newClassifiedRecords() {
+
+        final Bucket records = new Bucket();
+
+        for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+
+            final String data = DATA[i % DATA.length];
+            records.add(new Record(i, data, data, new Classification("code" + i % 7, TokenList.of(data), i / (double) NUMBER_OF_RECORDS, i % 2 == 0 ? null : "detail " + data)));
+        }
+        return records;
+    }
+}
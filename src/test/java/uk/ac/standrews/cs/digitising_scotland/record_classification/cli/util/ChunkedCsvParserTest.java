@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util;
+
+import org.apache.commons.csv.*;
+import org.junit.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.supplier.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ChunkedCsvParserTest {
+
+    private static final String CONTENT = "id,label,class\n" +
+                    "1,plain,a\n" +
+                    "2,\"quoted, with delimiter\",b\n" +
+                    "3,\"spans\nlines\",c\n" +
+                    "4,\"escaped \"\"quote\"\"\nand line\",d\n" +
+                    "\n" +
+                    "5,unquoted \"quote,e\r\n" +
+                    "6,café,f\n" +
+                    "7,last,g";
+
+    private Path source;
+
+    @Before
+    public void setUp() throws IOException {
+
+        source = Files.createTempFile(getClass().getSimpleName(), ".csv");
+        Files.write(source, CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+
+        Files.deleteIfExists(source);
+    }
+
+    @Test
+    public void chunkedParsingMatchesSequentialParsing() throws IOException {
+
+        final CSVFormat format = CsvFormatSupplier.RFC4180.get();
+
+        for (int chunk_size = 1; chunk_size <= CONTENT.length() + 1; chunk_size++) {
+            assertEquals(parseSequentially(format), new ChunkedCsvParser(format, StandardCharsets.UTF_8, chunk_size).parse(source, ChunkedCsvParserTest::values));
+        }
+    }
+
+    @Test
+    public void headerIsSkippedOnlyOnce() throws IOException {
+
+        final CSVFormat format = CsvFormatSupplier.RFC4180.get().withHeader();
+
+        final List<List<String>> records = new ChunkedCsvParser(format, StandardCharsets.UTF_8, 1).parse(source, ChunkedCsvParserTest::values);
+
+        assertEquals(parseSequentially(format), records);
+        assertEquals(Arrays.asList("1", "plain", "a"), records.get(0));
+    }
+
+    @Test
+    public void chunksStartAtRecordBoundaries() throws IOException {
+
+        final List<long[]> chunks = new ChunkedCsvParser(CsvFormatSupplier.RFC4180.get(), StandardCharsets.UTF_8, 1).findChunks(source);
+
+        final byte[] bytes = Files.readAllBytes(source);
+        long expected_start = 0;
+
+        for (final long[] chunk : chunks) {
+            assertEquals(expected_start, chunk[0]);
+            assertTrue(chunk[0] == 0 || bytes[(int) chunk[0] - 1] == '\n');
+            expected_start = chunk[1];
+        }
+        assertEquals(bytes.length, expected_start);
+
+        // One chunk per line, including the empty line, except for lines within quoted values.
+        assertEquals(9, chunks.size());
+    }
+
+    @Test
+    public void formatsWithEscapeCharacterAreParsedSequentially() throws IOException {
+
+        final CSVFormat format = CsvFormatSupplier.MYSQL.get();
+        final ChunkedCsvParser parser = new ChunkedCsvParser(format, StandardCharsets.UTF_8, 1);
+
+        assertFalse(parser.isChunkable());
+        assertEquals(parseSequentially(format), parser.parse(source, ChunkedCsvParserTest::values));
+    }
+
+    @Test
+    public void byteFFIsNotTreatedAsQuoteWhenNoQuoteIsSet() throws IOException {
+
+        final CSVFormat format = CsvFormatSupplier.RFC4180.get().withQuote(null);
+        Files.write(source, "1,\u00ffa,a\n2,b\u00ff,b\n3,c,c\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        final ChunkedCsvParser parser = new ChunkedCsvParser(format, StandardCharsets.ISO_8859_1, 1);
+
+        assertEquals(3, parser.findChunks(source).size());
+        assertEquals(Arrays.asList(Arrays.asList("1", "\u00ffa", "a"), Arrays.asList("2", "b\u00ff", "b"), Arrays.asList("3", "c", "c")), parser.parse(source, ChunkedCsvParserTest::values));
+    }
+
+    private List<List<String>> parseSequentially(final CSVFormat format) throws IOException {
+
+        final List<List<String>> records = new ArrayList<>();
+
+        try (final BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            for (final CSVRecord record : format.parse(reader)) {
+                records.add(values(record));
+            }
+        }
+        return records;
+    }
+
+    private static List<String> values(final CSVRecord record) {
+
+        final List<String> values = new ArrayList<>();
+        record.forEach(values::add);
+        return values;
+    }
+}
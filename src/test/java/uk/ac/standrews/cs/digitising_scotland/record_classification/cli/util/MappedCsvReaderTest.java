@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.cli.util;
+
+import org.apache.commons.csv.*;
+import org.junit.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cli.supplier.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MappedCsvReaderTest {
+
+    private static final String CONTENT = "id,label,class,ignored\n" +
+                    "1,plain,a,x\n" +
+                    "2,\"quoted, with delimiter\",b,\"ignored, quoted\"\n" +
+                    "3,\"spans\nlines\",c,x\n" +
+                    "4,\"escaped \"\"quote\"\"\",\"d\" ,x\n" +
+                    "\n" +
+                    "5,unquoted \"quote,e,x\r\n" +
+                    "6,café,f\n" +
+                    "7,,g,x,extra\n" +
+                    "8,last,\"\",x";
+
+    private static final String TAB_SEPARATED_CONTENT = "1\t padded \t a\n2\t \"quoted\" \tb\n";
+
+    private static final Set<Integer> SELECTED_COLUMNS = new HashSet<>(Arrays.asList(0, 1, 2));
+
+    private Path source;
+
+    @After
+    public void tearDown() throws IOException {
+
+        if (source != null) {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Test
+    public void readsSelectedColumnsAsParsed() throws IOException {
+
+        write(CONTENT);
+        final CSVFormat format = CsvFormatSupplier.RFC4180.get();
+
+        for (int chunk_size = 1; chunk_size <= CONTENT.length() + 1; chunk_size *= 2) {
+            assertEquals(parseSelectedColumns(format), new MappedCsvReader(format, StandardCharsets.UTF_8, chunk_size).read(source, SELECTED_COLUMNS, ArrayList::new));
+        }
+    }
+
+    @Test
+    public void valuesOfOtherColumnsAreNotRead() throws IOException {
+
+        write(CONTENT);
+
+        final List<List<String>> records = new MappedCsvReader(CsvFormatSupplier.RFC4180.get().withHeader(), StandardCharsets.UTF_8).read(source, Collections.singleton(1), ArrayList::new);
+
+        assertEquals(8, records.size());
+        assertEquals(Arrays.asList(null, "plain", null, null), records.get(0));
+        assertEquals(5, records.get(6).size());
+    }
+
+    @Test
+    public void surroundingSpacesAreIgnoredIfSpecifiedByFormat() throws IOException {
+
+        write(TAB_SEPARATED_CONTENT);
+        final CSVFormat format = CsvFormatSupplier.TDF.get();
+
+        assertEquals(parseSelectedColumns(format), new MappedCsvReader(format, StandardCharsets.UTF_8).read(source, SELECTED_COLUMNS, ArrayList::new));
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedQuoteIsRejected() throws IOException {
+
+        write("1,\"unterminated\n2,b\n");
+        new MappedCsvReader(CsvFormatSupplier.RFC4180.get(), StandardCharsets.UTF_8).read(source, SELECTED_COLUMNS, ArrayList::new);
+    }
+
+    @Test
+    public void byteFFIsNotTreatedAsQuoteWhenNoQuoteIsSet() throws IOException {
+
+        source = Files.createTempFile(getClass().getSimpleName(), ".csv");
+        Files.write(source, "1,\u00ff,a\n2,b\u00ff,b\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        final List<List<String>> records = new MappedCsvReader(CsvFormatSupplier.RFC4180.get().withQuote(null), StandardCharsets.ISO_8859_1, 1).read(source, SELECTED_COLUMNS, ArrayList::new);
+
+        assertEquals(Arrays.asList(Arrays.asList("1", "\u00ff", "a"), Arrays.asList("2", "b\u00ff", "b")), records);
+    }
+
+    @Test
+    public void unsupportedFormatsAreParsed() throws IOException {
+
+        write(CONTENT);
+        final CSVFormat format = CsvFormatSupplier.MYSQL.get().withDelimiter(',');
+        final MappedCsvReader reader = new MappedCsvReader(format, StandardCharsets.UTF_8);
+
+        assertFalse(reader.isMappable());
+        assertEquals(parseSelectedColumns(format), reader.read(source, SELECTED_COLUMNS, ArrayList::new));
+    }
+
+    private void write(final String content) throws IOException {
+
+        source = Files.createTempFile(getClass().getSimpleName(), ".csv");
+        Files.write(source, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<List<String>> parseSelectedColumns(final CSVFormat format) throws IOException {
+
+        final List<List<String>> records = new ArrayList<>();
+
+        try (final BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            for (final CSVRecord record : format.parse(reader)) {
+
+                final List<String> values = new ArrayList<>();
+                for (int column = 0; column < record.size(); column++) {
+                    values.add(SELECTED_COLUMNS.contains(column) ? record.get(column) : null);
+                }
+                records.add(values);
+            }
+        }
+        return records;
+    }
+}
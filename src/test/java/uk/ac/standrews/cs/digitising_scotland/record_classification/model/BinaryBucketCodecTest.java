@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class BinaryBucketCodecTest {
+
+    private static final Record[] RECORDS = {
+
+            new Record(3, "bcd", new Classification("class4", new TokenList("xyz"), 0.5, "detail")),
+            new Record(1, "abc def", new Classification("class1", new TokenList("abc def"), 1.0, null)),
+            new Record(4, "efg", "EFG"),
+            new Record(2, "def", new Classification("class2", new TokenList("def"), 1.0, null)),
+            new Record(5, "ÄÖü ß", new Classification("class1", new TokenList("ÄÖü ß"), 0.25, null))
+    };
+
+    @Test
+    public void roundTripWithTokens() throws IOException {
+
+        final Bucket bucket = new Bucket(RECORDS);
+        final Bucket read = roundTrip(bucket, true);
+
+        assertEquals(bucket, read);
+        for (final Record expected : RECORDS) {
+            assertSameContent(expected, read.findRecordById(expected.getId()).get());
+        }
+    }
+
+    @Test
+    public void roundTripWithoutTokensRetokenizesData() throws IOException {
+
+        final Bucket read = roundTrip(new Bucket(RECORDS), false);
+
+        assertEquals(new TokenList("bcd"), read.findRecordById(3).get().getClassification().getTokenList());
+        assertEquals("detail", read.findRecordById(3).get().getClassification().getDetail());
+        assertEquals(0.25, read.findRecordById(5).get().getClassification().getConfidence(), 0.0);
+    }
+
+    @Test
+    public void unclassifiedRecordsUseSharedInstance() throws IOException {
+
+        final Record record = roundTrip(new Bucket(RECORDS), true).findRecordById(4).get();
+
+        assertSame(Classification.UNCLASSIFIED, record.getClassification());
+        assertEquals("EFG", record.getOriginalData());
+    }
+
+    @Test
+    public void emptyBucketRoundTrip() throws IOException {
+
+        assertTrue(roundTrip(new Bucket(), true).isEmpty());
+    }
+
+    @Test
+    public void bucketsReadExactlyFromSharedStream() throws IOException {
+
+        final Bucket first = new Bucket(RECORDS);
+        final Bucket second = new Bucket(RECORDS[0], RECORDS[2]);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        BinaryBucketCodec.write(first, out, true);
+        out.writeInt(42);
+        BinaryBucketCodec.write(second, out, false);
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(first, BinaryBucketCodec.readExactly(in));
+        assertEquals(42, in.readInt());
+        assertEquals(second, BinaryBucketCodec.readExactly(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void unrecognisedFormatIsRejected() throws IOException {
+
+        BinaryBucketCodec.read(new ByteArrayInputStream(new byte[]{'i', 'd', ',', 'x', '\n', '1', ',', 'a'}));
+    }
+
+    private static Bucket roundTrip(final Bucket bucket, final boolean include_tokens) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryBucketCodec.write(bucket, bytes, include_tokens);
+
+        return BinaryBucketCodec.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static void assertSameContent(final Record expected, final Record actual) {
+
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getData(), actual.getData());
+        assertEquals(expected.getOriginalData(), actual.getOriginalData());
+        assertEquals(expected.getClassification().getCode(), actual.getClassification().getCode());
+        assertEquals(expected.getClassification().getTokenList(), actual.getClassification().getTokenList());
+        assertEquals(expected.getClassification().getConfidence(), actual.getClassification().getConfidence(), 0.0);
+        assertEquals(expected.getClassification().getDetail(), actual.getClassification().getDetail());
+    }
+}
@@ -18,6 +18,18 @@ package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
 
 import org.junit.Test;
 import uk.ac.standrews.cs.digitising_scotland.record_classification.exceptions.DuplicateRecordIdException;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.exceptions.InputFileFormatException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
 
 public class BucketTest {
 
@@ -35,4 +47,244 @@ public class BucketTest {
 
         new Bucket(RECORDS_WITH_DUPLICATE_IDS);
     }
+
+    @Test
+    public void indexesMaintainedAfterAdd() {
+
+        final Bucket bucket = new Bucket(new Record(2, "abc"), new Record(4, "def"));
+
+        assertTrue(bucket.containsData("abc"));
+        assertFalse(bucket.containsData("ghi"));
+        assertEquals(4, bucket.findRecordById(4).get().getId());
+
+        bucket.add(new Record(1, "ghi"), new Record(3, "abc"));
+
+        assertTrue(bucket.containsData("ghi"));
+        assertTrue(bucket.findRecordById(1).isPresent());
+        assertFalse(bucket.findRecordById(5).isPresent());
+        assertEquals(Arrays.asList(2, 3), ids(bucket.findRecordsByData("abc").toArray(new Record[0])));
+        assertEquals(Collections.emptyList(), bucket.findRecordsByData("xyz"));
+    }
+
+    @Test
+    public void indexesConsistentAfterDuplicateRecordIds() {
+
+        final Bucket bucket = new Bucket(new Record(1, "abc"));
+        assertTrue(bucket.containsData("abc"));
+
+        try {
+            bucket.add(new Record(1, "def"), new Record(2, "ghi"));
+            fail();
+        }
+        catch (DuplicateRecordIdException e) {
+
+            assertFalse(bucket.containsData("def"));
+            assertEquals("abc", bucket.findRecordById(1).get().getData());
+        }
+    }
+
+    @Test(expected = DuplicateRecordIdException.class)
+    public void builderDetectsDuplicateRecordIds() {
+
+        new Bucket.Builder().add(Arrays.asList(RECORDS_WITH_DUPLICATE_IDS)).build();
+    }
+
+    @Test
+    public void builderOrdersRecordsById() {
+
+        final Bucket.Builder builder = new Bucket.Builder(2);
+        builder.add(new Record(3, "abc")).add(new Record(1, "def")).add(new Record(2, "ghi"));
+
+        final Bucket bucket = builder.build();
+
+        assertEquals(3, builder.size());
+        assertEquals(Arrays.asList(1, 2, 3), ids(bucket.getRecordsList().toArray(new Record[0])));
+        assertEquals(new Bucket(new Record(1, "def"), new Record(2, "ghi"), new Record(3, "abc")), bucket);
+
+        bucket.add(new Record(0, "jkl"));
+        assertEquals(0, bucket.getFirstRecord().getId());
+    }
+
+    @Test
+    public void snapshotSharedUntilRecordsAdded() {
+
+        final Bucket bucket = new Bucket(new Record(3, "abc"), new Record(1, "def"), new Record(2, "ghi"));
+        final List<Record> snapshot = bucket.asList();
+
+        assertSame(snapshot, bucket.asList());
+        assertEquals(Arrays.asList(2, 3), ids(bucket.subList(1, 3).toArray(new Record[0])));
+
+        bucket.add(new Record(0, "jkl"));
+
+        assertEquals(3, snapshot.size());
+        assertEquals(Arrays.asList(0, 1, 2, 3), ids(bucket.asList().toArray(new Record[0])));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsUnmodifiable() {
+
+        new Bucket(new Record(1, "abc")).asList().add(new Record(2, "def"));
+    }
+
+    @Test
+    public void splitPartitionsRecords() {
+
+        final Bucket bucket = new Bucket();
+        for (int id = 1; id <= 10; id++) {
+            bucket.add(new Record(id, "data" + id));
+        }
+
+        final List<Bucket> splits = bucket.split(3, new Random(42));
+
+        assertEquals(3, splits.size());
+        assertEquals(4, splits.get(0).size());
+        assertEquals(3, splits.get(2).size());
+
+        final Bucket combined = new Bucket();
+        splits.forEach(combined::add);
+        assertEquals(bucket, combined);
+    }
+
+    @Test
+    public void copySharesRecordsUntilEitherIsModified() {
+
+        final Bucket bucket = new Bucket(new Record(1, "abc"), new Record(2, "def"));
+        final List<Record> snapshot = bucket.asList();
+        final Bucket copy = bucket.copy();
+
+        assertEquals(bucket, copy);
+        assertSame(snapshot, copy.asList());
+
+        copy.add(new Record(3, "ghi"));
+        bucket.add(new Record(4, "jkl"));
+
+        assertEquals(Arrays.asList(1, 2, 3), ids(copy.asList().toArray(new Record[0])));
+        assertEquals(Arrays.asList(1, 2, 4), ids(bucket.asList().toArray(new Record[0])));
+    }
+
+    @Test
+    public void copyAllocatesIdsAfterExistingRecords() {
+
+        final Bucket copy = new Bucket(new Record(5, "abc"), new Record(2, "def")).copy(true);
+
+        copy.add(new Record(2, "ghi"));
+
+        assertEquals(Arrays.asList(2, 5, 6), ids(copy.asList().toArray(new Record[0])));
+        assertEquals("ghi", copy.findRecordById(6).get().getData());
+    }
+
+    @Test
+    public void versionChangesWhenRecordsAdded() {
+
+        final Bucket bucket = new Bucket(new Record(1, "abc"));
+        final long version = bucket.getVersion();
+
+        bucket.add(new Record(2, "def"));
+
+        assertNotEquals(version, bucket.getVersion());
+    }
+
+    @Test
+    public void unionAllocatesIdsInOrder() {
+
+        final Bucket union = new Bucket(new Record(7, "abc"), new Record(3, "def")).union(new Bucket(new Record(1, "ghi")));
+
+        assertEquals(Arrays.asList("def", "abc", "ghi"), union.stream().map(Record::getData).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1, 2, 3), ids(union.asList().toArray(new Record[0])));
+
+        union.add(new Record(1, "jkl"));
+        assertTrue(union.findRecordById(4).isPresent());
+    }
+
+    @Test
+    public void randomSplitPartitionsRecords() {
+
+        final Bucket bucket = makeClassifiedBucket(100_000, 7);
+
+        final List<Bucket> split = bucket.randomSplit(new Random(42), 0.8, false);
+
+        assertEquals(80_000, split.get(0).size());
+        assertEquals(20_000, split.get(1).size());
+        assertEquals(bucket, combine(split));
+    }
+
+    @Test
+    public void randomSplitIsReproducible() {
+
+        final Bucket bucket = makeClassifiedBucket(100_000, 7);
+
+        assertEquals(bucket.randomSplit(new Random(42), 0.5, false), bucket.randomSplit(new Random(42), 0.5, false));
+        assertEquals(bucket.randomSplit(new Random(42), 0.5, true), bucket.randomSplit(new Random(42), 0.5, true));
+        assertNotEquals(bucket.randomSplit(new Random(42), 0.5, false), bucket.randomSplit(new Random(43), 0.5, false));
+    }
+
+    @Test
+    public void stratifiedRandomSplitPreservesCodeProportions() {
+
+        final Bucket bucket = makeClassifiedBucket(1_000, 4);
+
+        final List<Bucket> split = bucket.randomSplit(new Random(42), 0.75, true);
+
+        assertEquals(combine(split), bucket);
+        for (int code = 0; code < 4; code++) {
+            assertEquals(250 * 3 / 4, countCode(split.get(0), "code" + code), 1);
+        }
+    }
+
+    @Test
+    public void randomSplitWithExtremeProportions() {
+
+        final Bucket bucket = makeClassifiedBucket(100, 3);
+
+        assertEquals(bucket, bucket.randomSplit(new Random(42), 1.0, true).get(0));
+        assertTrue(bucket.randomSplit(new Random(42), 1.0, false).get(1).isEmpty());
+        assertEquals(bucket, bucket.randomSplit(new Random(42), 0.0, false).get(1));
+    }
+
+    @Test
+    public void readsRecordsFromCSV() throws IOException {
+
+        final Bucket bucket = new Bucket(new StringReader("id,data,code\nID,DATA,CODE\n2,\"b, c\",x\n1,a,\n"), ',');
+
+        assertEquals(Arrays.asList(1, 2), ids(bucket.asList().toArray(new Record[0])));
+        assertEquals("b, c", bucket.findRecordById(2).get().getData());
+        assertEquals("x", bucket.findRecordById(2).get().getClassification().getCode());
+        assertTrue(bucket.findRecordById(1).get().getClassification().isUnclassified());
+    }
+
+    @Test(expected = InputFileFormatException.class)
+    public void invalidCSVRecordIsRejected() throws IOException {
+
+        new Bucket(new StringReader("id,data\n1,a\nX,b\n"), ',');
+    }
+
+    private static Bucket makeClassifiedBucket(final int size, final int number_of_codes) {
+
+        final Bucket.Builder builder = new Bucket.Builder(size);
+        for (int id = 0; id < size; id++) {
+            builder.add(new Record(id, "data" + id, new Classification("code" + id % number_of_codes, new TokenList(), 1.0, null)));
+        }
+        return builder.build();
+    }
+
+    private static Bucket combine(final List<Bucket> buckets) {
+
+        final Bucket combined = new Bucket();
+        buckets.forEach(combined::add);
+        return combined;
+    }
+
+    private static int countCode(final Bucket bucket, final String code) {
+
+        return (int) bucket.stream().filter(record -> record.getClassification().getCode().equals(code)).count();
+    }
+
+    private static List<Integer> ids(final Record... records) {
+
+        final List<Integer> ids = new ArrayList<>();
+        for (final Record record : records) {
+            ids.add(record.getId());
+        }
+        return ids;
+    }
 }
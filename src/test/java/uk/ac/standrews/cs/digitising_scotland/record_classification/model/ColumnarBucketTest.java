@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import org.junit.Test;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.exceptions.DuplicateRecordIdException;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ColumnarBucketTest {
+
+    private static final Record[] RECORDS = {
+
+            new Record(3, "bcd", new Classification("class4", new TokenList("bcd"), 0.5, "detail")),
+            new Record(1, "abc def", new Classification("class1", new TokenList("abc def"), 1.0, null)),
+            new Record(4, "efg", "EFG"),
+            new Record(2, "def", new Classification("class2", new TokenList("def"), 1.0, null))
+    };
+
+    @Test(expected = DuplicateRecordIdException.class)
+    public void duplicateRecordIdsDetected() {
+
+        new ColumnarBucket(new Record(1, "abc"), new Record(2, "def"), new Record(3, "ghi"), new Record(2, "jkl"));
+    }
+
+    @Test
+    public void recordsIteratedInIdOrder() {
+
+        final List<Integer> ids = new ArrayList<>();
+        for (final Record record : new ColumnarBucket(RECORDS)) {
+            ids.add(record.getId());
+        }
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), ids);
+    }
+
+    @Test
+    public void recordContentsPreserved() {
+
+        final ColumnarBucket bucket = new ColumnarBucket(RECORDS);
+
+        for (final Record expected : RECORDS) {
+            assertSameContent(expected, bucket.findRecordById(expected.getId()).get());
+        }
+    }
+
+    @Test
+    public void unclassifiedRecordsUseSharedInstance() {
+
+        final Record record = new ColumnarBucket(RECORDS).findRecordById(4).get();
+
+        assertTrue(record.getClassification().isUnclassified());
+    }
+
+    @Test
+    public void equalToBucketWithSameRecords() {
+
+        final Bucket bucket = new Bucket(RECORDS);
+        final ColumnarBucket columnar_bucket = new ColumnarBucket(RECORDS);
+
+        assertEquals(bucket, columnar_bucket);
+        assertEquals(columnar_bucket, bucket);
+        assertEquals(bucket.hashCode(), columnar_bucket.hashCode());
+    }
+
+    @Test
+    public void supportsBucketOperations() {
+
+        final ColumnarBucket bucket = new ColumnarBucket(RECORDS);
+        final Bucket other = new Bucket(RECORDS[0], RECORDS[1]);
+
+        assertEquals(4, bucket.size());
+        assertEquals(1, bucket.getFirstRecord().getId());
+        assertTrue(bucket.contains(RECORDS[2]));
+        assertFalse(bucket.contains(new Record(5, "xyz")));
+        assertTrue(bucket.containsData("efg"));
+        assertEquals(2, bucket.difference(other).size());
+        assertEquals(4, bucket.stream().count());
+        assertEquals(4, bucket.parallelStream().count());
+    }
+
+    @Test
+    public void nullTokenListsPreserved() {
+
+        final ColumnarBucket bucket = new ColumnarBucket(new Record(2, "abc", new Classification("class1", null, 1.0, null)), new Record(1, "def", new Classification("class2", new TokenList(""), 1.0, null)));
+
+        assertNull(bucket.findRecordById(2).get().getClassification().getTokenList());
+        assertEquals(new TokenList(""), bucket.findRecordById(1).get().getClassification().getTokenList());
+    }
+
+    @Test
+    public void derivedBucketsAreColumnar() {
+
+        final ColumnarBucket bucket = new ColumnarBucket(RECORDS);
+        final Bucket other = new Bucket(RECORDS[0], RECORDS[1]);
+
+        final List<Bucket> derived = new ArrayList<>(bucket.randomSplit(new Random(42), 0.5, false));
+        derived.addAll(bucket.split(2, new Random(42)));
+        derived.add(bucket.union(other));
+        derived.add(bucket.difference(other));
+        derived.add(bucket.randomSubset(new Random(42), 0.5));
+        derived.add(bucket.stripRecordClassifications());
+        derived.add(bucket.makeUniqueDataRecords());
+
+        for (final Bucket derived_bucket : derived) {
+            assertTrue(derived_bucket instanceof ColumnarBucket);
+        }
+
+        final Bucket union = bucket.union(other);
+        union.add(new Record(1, "xyz"));
+
+        assertEquals(7, union.size());
+        assertEquals("xyz", union.findRecordById(7).get().getData());
+    }
+
+    @Test
+    public void autoAllocatedIdsAreSequential() {
+
+        final ColumnarBucket bucket = new ColumnarBucket(true);
+        bucket.add(RECORDS);
+        bucket.add(RECORDS);
+
+        assertEquals(8, bucket.size());
+        assertTrue(bucket.findRecordById(8).isPresent());
+    }
+
+    @Test
+    public void copySharesColumnsUntilEitherIsModified() {
+
+        final ColumnarBucket bucket = new ColumnarBucket(RECORDS);
+        final ColumnarBucket copy = bucket.copy();
+
+        assertEquals(bucket, copy);
+
+        copy.add(new Record(5, "xyz", new Classification("class5", new TokenList("xyz"), 1.0, null)));
+        bucket.add(new Record(6, "uvw"));
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), ids(copy));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 6), ids(bucket));
+        assertEquals("xyz", copy.findRecordById(5).get().getData());
+        assertEquals("uvw", bucket.findRecordById(6).get().getData());
+    }
+
+    @Test
+    public void copyAllocatesIdsAfterExistingRecords() {
+
+        final ColumnarBucket copy = new ColumnarBucket(RECORDS).copy(true);
+
+        copy.add(new Record(2, "xyz"));
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), ids(copy));
+        assertEquals("xyz", copy.findRecordById(5).get().getData());
+    }
+
+    @Test
+    public void serializationRoundTrip() throws IOException, ClassNotFoundException {
+
+        final ColumnarBucket bucket = new ColumnarBucket(RECORDS);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(bucket);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+
+            final ColumnarBucket deserialized = (ColumnarBucket) in.readObject();
+            assertEquals(bucket, deserialized);
+
+            deserialized.add(new Record(0, "xyz"));
+            assertEquals(0, deserialized.getFirstRecord().getId());
+            assertSameContent(RECORDS[0], deserialized.findRecordById(3).get());
+        }
+    }
+
+    private static List<Integer> ids(final Bucket bucket) {
+
+        final List<Integer> ids = new ArrayList<>();
+        for (final Record record : bucket) {
+            ids.add(record.getId());
+        }
+        return ids;
+    }
+
+    private static void assertSameContent(final Record expected, final Record actual) {
+
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getData(), actual.getData());
+        assertEquals(expected.getOriginalData(), actual.getOriginalData());
+        assertEquals(expected.getClassification().getCode(), actual.getClassification().getCode());
+        assertEquals(expected.getClassification().getTokenList(), actual.getClassification().getTokenList());
+        assertEquals(expected.getClassification().getConfidence(), actual.getClassification().getConfidence(), 0.0);
+        assertEquals(expected.getClassification().getDetail(), actual.getClassification().getDetail());
+    }
+}
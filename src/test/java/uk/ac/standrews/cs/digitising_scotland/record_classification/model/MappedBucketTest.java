@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.exceptions.DuplicateRecordIdException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class MappedBucketTest {
+
+    private static final Record[] RECORDS = {
+
+            new Record(3, "bcd", new Classification("class4", new TokenList("bcd"), 0.5, "detail")),
+            new Record(1, "abc déf", new Classification("class1", new TokenList("abc déf"), 1.0, null)),
+            new Record(4, "efg", "EFG"),
+            new Record(-2, "def", new Classification("class2", new TokenList("def"), 1.0, null))
+    };
+
+    private Path directory;
+    private MappedBucket bucket;
+
+    @Before
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory(getClass().getSimpleName());
+        bucket = new MappedBucket(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+
+        bucket.close();
+        delete(directory);
+    }
+
+    @Test
+    public void recordsIteratedInIdOrder() {
+
+        bucket.add(RECORDS);
+        assertEquals(Arrays.asList(-2, 1, 3, 4), ids(bucket));
+
+        bucket.add(new Record(2, "xyz"));
+        assertEquals(Arrays.asList(-2, 1, 2, 3, 4), ids(bucket));
+    }
+
+    @Test
+    public void recordContentsPreserved() {
+
+        bucket.add(RECORDS);
+
+        for (final Record expected : RECORDS) {
+            assertSameContent(expected, bucket.findRecordById(expected.getId()).get());
+        }
+        assertFalse(bucket.findRecordById(2).isPresent());
+        assertTrue(bucket.findRecordById(4).get().getClassification().isUnclassified());
+    }
+
+    @Test(expected = DuplicateRecordIdException.class)
+    public void duplicateRecordIdsDetected() {
+
+        bucket.add(RECORDS);
+        bucket.add(new Record(3, "xyz"));
+    }
+
+    @Test
+    public void equalToBucketWithSameRecords() {
+
+        bucket.add(RECORDS);
+
+        assertEquals(new Bucket(RECORDS), bucket);
+        assertEquals(new Bucket(RECORDS).hashCode(), bucket.hashCode());
+        assertEquals(2, bucket.difference(new Bucket(RECORDS[0], RECORDS[1])).size());
+    }
+
+    @Test
+    public void recordsPersistedAcrossReopening() throws IOException {
+
+        bucket.add(RECORDS);
+        bucket.close();
+
+        bucket = new MappedBucket(directory);
+
+        assertEquals(new Bucket(RECORDS), bucket);
+        assertSameContent(RECORDS[0], bucket.findRecordById(3).get());
+    }
+
+    @Test
+    public void autoAllocatedIdsContinueAfterReopening() throws IOException {
+
+        bucket.close();
+        bucket = new MappedBucket(directory, true);
+        bucket.add(RECORDS);
+        bucket.close();
+
+        bucket = new MappedBucket(directory, true);
+        bucket.add(RECORDS);
+
+        assertEquals(8, bucket.size());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), ids(bucket));
+    }
+
+    @Test
+    public void recordsFoundByData() {
+
+        bucket.add(RECORDS);
+        bucket.add(new Record(2, "bcd"), new Record(0, "bcd"));
+
+        assertEquals(Arrays.asList(0, 2, 3), ids(new Bucket(bucket.findRecordsByData("bcd"))));
+        assertSameContent(RECORDS[1], bucket.findRecordsByData("abc déf").get(0));
+        assertTrue(bucket.findRecordsByData("xyz").isEmpty());
+
+        assertTrue(bucket.containsData("def"));
+        assertFalse(bucket.containsData("xyz"));
+
+        bucket.add(new Record(5, "xyz"));
+        assertTrue(bucket.containsData("xyz"));
+    }
+
+    @Test
+    public void storeDirectoryHoldsOnlyRecords() throws IOException {
+
+        bucket.add(RECORDS);
+        ids(bucket);
+        bucket.containsData("def");
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(new HashSet<>(Arrays.asList(MappedBucket.ROWS_FILE_NAME, MappedBucket.STRINGS_FILE_NAME)), files.map(file -> file.getFileName().toString()).collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    public void copySharesStoreUntilEitherIsModified() throws IOException {
+
+        bucket.add(RECORDS);
+
+        final Path copy_directory;
+        try (MappedBucket copy = bucket.copy()) {
+
+            assertEquals(directory.toAbsolutePath(), copy.getDirectory());
+            assertEquals(bucket, copy);
+
+            bucket.add(new Record(5, "xyz"));
+            copy.add(new Record(6, "uvw"));
+
+            assertEquals(Arrays.asList(-2, 1, 3, 4, 5), ids(bucket));
+            assertEquals(Arrays.asList(-2, 1, 3, 4, 6), ids(copy));
+            assertEquals("uvw", copy.findRecordById(6).get().getData());
+            assertSameContent(RECORDS[0], copy.findRecordById(3).get());
+
+            // The copy had to move its records, since the original had already extended the shared store.
+            copy_directory = copy.getDirectory();
+            assertNotEquals(directory.toAbsolutePath(), copy_directory);
+        }
+        delete(copy_directory);
+
+        // Closing the copy leaves the original open.
+        assertEquals("xyz", bucket.findRecordById(5).get().getData());
+    }
+
+    @Test
+    public void copyExtendsSharedStoreInPlace() throws IOException {
+
+        bucket.add(RECORDS);
+
+        try (MappedBucket copy = bucket.copy(true)) {
+
+            copy.add(new Record(3, "xyz"));
+
+            assertEquals(directory.toAbsolutePath(), copy.getDirectory());
+            assertEquals(Arrays.asList(-2, 1, 3, 4, 5), ids(copy));
+            assertEquals(Arrays.asList(-2, 1, 3, 4), ids(bucket));
+        }
+    }
+
+    private static void delete(final Path directory) throws IOException {
+
+        Files.walk(directory).sorted((path1, path2) -> path2.compareTo(path1)).forEach(path -> path.toFile().delete());
+    }
+
+    private static List<Integer> ids(final Bucket bucket) {
+
+        final List<Integer> ids = new ArrayList<>();
+        for (final Record record : bucket) {
+            ids.add(record.getId());
+        }
+        return ids;
+    }
+
+    private static void assertSameContent(final Record expected, final Record actual) {
+
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getData(), actual.getData());
+        assertEquals(expected.getOriginalData(), actual.getOriginalData());
+        assertEquals(expected.getClassification().getCode(), actual.getClassification().getCode());
+        assertEquals(expected.getClassification().getTokenList(), actual.getClassification().getTokenList());
+        assertEquals(expected.getClassification().getConfidence(), actual.getClassification().getConfidence(), 0.0);
+        assertEquals(expected.getClassification().getDetail(), actual.getClassification().getDetail());
+    }
+}
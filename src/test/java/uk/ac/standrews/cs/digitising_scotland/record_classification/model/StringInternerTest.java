@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class StringInternerTest {
+
+    @Test
+    public void equalStringsShareInstance() {
+
+        assertSame(StringInterner.intern(new String("abc")), StringInterner.intern(new String("abc")));
+        assertNull(StringInterner.intern(null));
+    }
+
+    @Test
+    public void recordsShareDataInstances() {
+
+        final Record record1 = new Record(1, new String("abc def"), new Classification(new String("code"), new TokenList("abc def"), 1.0, null));
+        final Record record2 = new Record(2, new String("abc def"), new Classification(new String("code"), new TokenList("abc def"), 1.0, null));
+
+        assertSame(record1.getData(), record2.getData());
+        assertSame(record1.getOriginalData(), record2.getOriginalData());
+        assertSame(record1.getClassification().getCode(), record2.getClassification().getCode());
+        assertSame(record1.getClassification().getTokenList().get(1), record2.getClassification().getTokenList().get(1));
+    }
+
+    @Test
+    public void deserializedRecordsShareDataInstances() throws IOException, ClassNotFoundException {
+
+        final Record record = new Record(1, "abc def", new Classification("code", new TokenList("abc def"), 1.0, null));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(record);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+
+            final Record deserialized = (Record) in.readObject();
+
+            assertSame(record.getData(), deserialized.getData());
+            assertSame(record.getClassification().getCode(), deserialized.getClassification().getCode());
+        }
+    }
+
+    @Test
+    public void mapKeysReplacedInPlace() {
+
+        final Map<String, Integer> map = new HashMap<>();
+        map.put(new String("abc"), 1);
+        map.put(StringInterner.intern("def"), 2);
+
+        StringInterner.internKeys(map);
+
+        assertEquals(2, map.size());
+        for (final String key : map.keySet()) {
+            assertSame(StringInterner.intern(key), key);
+        }
+        assertEquals(Integer.valueOf(1), map.get("abc"));
+    }
+}
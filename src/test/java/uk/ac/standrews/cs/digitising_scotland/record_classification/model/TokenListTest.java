@@ -19,6 +19,8 @@ package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 public class TokenListTest {
 
@@ -34,6 +36,36 @@ public class TokenListTest {
         checkTokenisation("string-283", "string", "283");
     }
 
+    @Test
+    public void sharedTokenListsTokenizedOnce() {
+
+        final TokenList token_list = TokenList.of("the quick brown fox jumps over");
+        final long tokenizations = TokenList.getTokenizationCount();
+
+        assertSame(token_list, TokenList.of(new String("the quick brown fox jumps over")));
+        assertEquals(tokenizations, TokenList.getTokenizationCount());
+        assertEquals(new TokenList("the quick brown fox jumps over"), token_list);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void sharedTokenListsCannotBeModified() {
+
+        TokenList.of("the lazy dog").add("cat");
+    }
+
+    @Test
+    public void clonedClassificationsKeepTokenListsWithoutTokenizing() {
+
+        final Classification shared = new Classification("code", TokenList.of("the quick brown fox"), 1.0, null);
+        final Classification unshared = new Classification("code", new TokenList("the quick brown fox"), 1.0, null);
+        final long tokenizations = TokenList.getTokenizationCount();
+
+        assertSame(shared.getTokenList(), shared.makeClone(0.5).getTokenList());
+        assertEquals(unshared.getTokenList(), unshared.makeClone(0.5).getTokenList());
+        assertNotSame(unshared.getTokenList(), unshared.makeClone(0.5).getTokenList());
+        assertEquals(tokenizations, TokenList.getTokenizationCount());
+    }
+
     private void checkTokenisation(String s, String... expected_tokens) {
 
         TokenList token_list = new TokenList(s);
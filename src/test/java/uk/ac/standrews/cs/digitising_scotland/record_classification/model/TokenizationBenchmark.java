@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.string_similarity.StringSimilarityClassifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.string_similarity.StringSimilaritySupplier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.experiments.AbstractClassificationProcessTest;
+import uk.ac.standrews.cs.utilities.FileManipulation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Reports how many tokenizer instantiations are saved by shared token lists during a single load, train and classify run.
+ * Usage: {@code TokenizationBenchmark [gold standard file] [number of training records] [number of records to classify]}
+ */
+public class TokenizationBenchmark {
+
+    private static final String DEFAULT_DATA_FILE_NAME = "coded_data_65K.csv";
+    private static final int DEFAULT_TRAINING_RECORDS = 2000;
+    private static final int DEFAULT_RECORDS_TO_CLASSIFY = 500;
+    private static final long SEED = 34234234234L;
+
+    public static void main(final String[] args) throws IOException {
+
+        final Path data_file = args.length > 0 ? Paths.get(args[0]) : FileManipulation.getResourcePath(AbstractClassificationProcessTest.class, DEFAULT_DATA_FILE_NAME);
+        final int training_records = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TRAINING_RECORDS;
+        final int records_to_classify = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RECORDS_TO_CLASSIFY;
+
+        final long start_requests = TokenList.getSharedTokenListRequestCount();
+        final long start_hits = TokenList.getSharedTokenListHitCount();
+        final long start_tokenizations = TokenList.getTokenizationCount();
+        final long start_time = System.currentTimeMillis();
+
+        final Bucket gold_standard = load(data_file);
+        final Random random = new Random(SEED);
+
+        final Bucket training = gold_standard.randomSubset(random, (double) training_records / gold_standard.size());
+        final Bucket evaluation = gold_standard.difference(training);
+        final Bucket unseen = evaluation.randomSubset(random, Math.min(1.0, (double) records_to_classify / evaluation.size())).stripRecordClassifications();
+
+        final StringSimilarityClassifier classifier = new StringSimilarityClassifier(StringSimilaritySupplier.JACCARD.get());
+        classifier.trainModel(training);
+        classifier.classify(unseen);
+
+        final long requests = TokenList.getSharedTokenListRequestCount() - start_requests;
+        final long hits = TokenList.getSharedTokenListHitCount() - start_hits;
+        final long tokenizations = TokenList.getTokenizationCount() - start_tokenizations;
+
+        // Token lists that are not shared are always tokenized, so only the hits on shared token lists are saved.
+        System.out.println("records loaded                    : " + gold_standard.size());
+        System.out.println("records trained on                : " + training.size());
+        System.out.println("records classified                : " + unseen.size());
+        System.out.println("shared token lists requested      : " + requests);
+        System.out.println("tokenizer instantiations          : " + tokenizations);
+        System.out.println("  of which for shared token lists : " + (requests - hits));
+        System.out.println("  of which for other token lists  : " + (tokenizations - (requests - hits)));
+        System.out.println("tokenizer instantiations saved    : " + hits);
+        System.out.println("elapsed time                      : " + (System.currentTimeMillis() - start_time) + "ms");
+    }
+
+    private static Bucket load(final Path data_file) throws IOException {
+
+        try (InputStream stream = Files.newInputStream(data_file)) {
+            return new Bucket(stream, ',');
+        }
+    }
+}
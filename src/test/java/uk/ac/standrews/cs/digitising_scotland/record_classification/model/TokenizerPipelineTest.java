@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.model;
+
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TokenizerPipelineTest {
+
+    @Test
+    public void pipelineReusedAcrossInputs() {
+
+        final TokenizerPipeline pipeline = TokenizerPipeline.forCurrentThread();
+
+        assertEquals(Arrays.asList("the", "quick", "brown", "fox"), tokenize(pipeline, "the quick. brown-fox"));
+        assertEquals(Arrays.asList("jumps", "over"), tokenize(pipeline, "  jumps!  over "));
+        assertEquals(Arrays.asList(), tokenize(pipeline, ""));
+        assertEquals(Arrays.asList("the", "lazy", "dog"), tokenize(pipeline, "the lazy dog"));
+    }
+
+    @Test
+    public void filtersApplied() {
+
+        final TokenizerPipeline pipeline = new TokenizerPipeline(LowerCaseFilter::new);
+
+        assertEquals(Arrays.asList("the", "quick", "fox"), tokenize(pipeline, "The QUICK Fox"));
+        assertEquals(Arrays.asList("lazy", "dog"), tokenize(pipeline, "Lazy DOG"));
+    }
+
+    @Test
+    public void tokensAreCanonical() {
+
+        final TokenizerPipeline pipeline = TokenizerPipeline.forCurrentThread();
+
+        assertSame(StringInterner.intern("quick"), tokenize(pipeline, "the quick fox").get(1));
+    }
+
+    @Test
+    public void tokenListsUsePipeline() {
+
+        assertEquals(Arrays.asList("the", "quick", "fox"), new TokenList("The QUICK Fox", new TokenizerPipeline(LowerCaseFilter::new)));
+        assertEquals(Arrays.asList("The", "QUICK", "Fox"), new TokenList("The QUICK Fox"));
+    }
+
+    private static List<String> tokenize(final TokenizerPipeline pipeline, final String string) {
+
+        final List<String> tokens = new ArrayList<>();
+        pipeline.tokenize(string, tokens::add);
+        return tokens;
+    }
+}
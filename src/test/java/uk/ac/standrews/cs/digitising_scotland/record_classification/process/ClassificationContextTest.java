@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process;
+
+import org.junit.*;
+import org.junit.rules.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ClassificationContextTest {
+
+    private static final Record[] RECORDS = {
+
+            new Record(1, "trail", new Classification("class1", TokenList.of("trail"), 1.0, null)),
+            new Record(2, "mouse", new Classification("class2", TokenList.of("mouse"), 1.0, null))
+    };
+
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    private ClassificationContext context;
+
+    @Before
+    public void setUp() {
+
+        context = new ClassificationContext(null, new Random(42));
+    }
+
+    @Test
+    public void columnarBucketsStayColumnar() {
+
+        final ColumnarBucket records = new ColumnarBucket(RECORDS);
+
+        context.setTrainingRecords(records);
+        context.setEvaluationRecords(records);
+        context.setUnseenRecords(records);
+        context.setClassifiedEvaluationRecords(records);
+        context.setClassifiedUnseenRecords(records);
+
+        for (final Bucket bucket : buckets()) {
+            assertTrue(bucket instanceof ColumnarBucket);
+            assertEquals(records, bucket);
+        }
+
+        // Records subsequently added to the context are not added to the original bucket.
+        context.getTrainingRecords().add(new Record(1, "house"));
+
+        assertEquals(3, context.getTrainingRecords().size());
+        assertEquals(2, records.size());
+    }
+
+    @Test
+    public void goldStandardSplitOfColumnarBucketIsColumnar() {
+
+        final ColumnarBucket gold_standard = new ColumnarBucket(RECORDS);
+
+        context.setGoldStandardRecords(gold_standard, 0.5);
+
+        final Bucket training_records = context.getTrainingRecords();
+        final Bucket evaluation_records = context.getEvaluationRecords();
+
+        assertTrue(training_records instanceof ColumnarBucket);
+        assertTrue(evaluation_records instanceof ColumnarBucket);
+        assertEquals(1, training_records.size());
+        assertEquals(1, evaluation_records.size());
+        assertEquals(evaluation_records, gold_standard.difference(training_records));
+    }
+
+    @Test
+    public void mappedBucketsStayMapped() throws IOException {
+
+        try (MappedBucket records = new MappedBucket(temporary.newFolder().toPath())) {
+
+            records.add(RECORDS);
+
+            context.setTrainingRecords(records);
+            context.setUnseenRecords(records);
+
+            assertTrue(context.getTrainingRecords() instanceof MappedBucket);
+            assertTrue(context.getUnseenRecords() instanceof MappedBucket);
+            assertEquals(records, context.getTrainingRecords());
+
+            ((MappedBucket) context.getTrainingRecords()).close();
+            ((MappedBucket) context.getUnseenRecords()).close();
+        }
+    }
+
+    private List<Bucket> buckets() {
+
+        return Arrays.asList(context.getTrainingRecords(), context.getEvaluationRecords(), context.getUnseenRecords(), context.getClassifiedEvaluationRecords(), context.getClassifiedUnseenRecords());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process;
+
+import org.junit.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.exact_match.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.cleaning.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ClassificationPipelineTest {
+
+    private static final int NUMBER_OF_RECORDS = 10000;
+    private static final int BATCH_SIZE = 7;
+    private static final int THREAD_COUNT = 4;
+
+    private ExactMatchClassifier classifier;
+
+    @Before
+    public void setUp() {
+
+        classifier = new ExactMatchClassifier();
+        classifier.trainModel(new Bucket(
+                new Record(1, "trail", new Classification("class1", TokenList.of("trail"), 1.0, null)),
+                new Record(2, "through", new Classification("class2", TokenList.of("through"), 1.0, null))));
+    }
+
+    @Test
+    public void recordsAreClassifiedInSourceOrder() throws IOException {
+
+        final List<Record> unclassified_records = newUnclassifiedRecords();
+        final List<Record> classified_records = new ArrayList<>();
+
+        final long count = new ClassificationPipeline(classifier, THREAD_COUNT, BATCH_SIZE).classify(unclassified_records.iterator(), classified_records::add);
+
+        assertEquals(NUMBER_OF_RECORDS, count);
+        assertEquals(NUMBER_OF_RECORDS, classified_records.size());
+
+        for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+
+            final Record classified = classified_records.get(i);
+
+            assertEquals(unclassified_records.get(i).getId(), classified.getId());
+            assertEquals(unclassified_records.get(i).getData(), classified.getData());
+            assertEquals(classifier.classify(classified.getData()).getCode(), classified.getClassification().getCode());
+        }
+    }
+
+    @Test
+    public void recordsAreCleanedBeforeClassificationInSourceOrder() throws IOException {
+
+        // Ids descend so that the order of the source differs from the order of a cleaned bucket.
+        final List<Record> unclassified_records = new ArrayList<>();
+        for (Record record : newUnclassifiedRecords()) {
+            unclassified_records.add(new Record(NUMBER_OF_RECORDS - record.getId(), record.getData().toUpperCase()));
+        }
+
+        final List<Record> classified_records = new ArrayList<>();
+        final TextCleaner cleaner = String::toLowerCase;
+
+        new ClassificationPipeline(classifier, THREAD_COUNT, BATCH_SIZE, cleaner).classify(unclassified_records.iterator(), classified_records::add);
+
+        assertEquals(NUMBER_OF_RECORDS, classified_records.size());
+
+        for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+
+            final Record unclassified = unclassified_records.get(i);
+            final Record classified = classified_records.get(i);
+
+            assertEquals(unclassified.getId(), classified.getId());
+            assertEquals(unclassified.getData(), classified.getOriginalData());
+            assertEquals(unclassified.getData().toLowerCase(), classified.getData());
+            assertEquals(classifier.classify(classified.getData()).getCode(), classified.getClassification().getCode());
+        }
+    }
+
+    @Test
+    public void emptySourceProducesNoRecords() throws IOException {
+
+        final long count = new ClassificationPipeline(classifier, THREAD_COUNT).classify(Collections.emptyIterator(), record -> fail());
+
+        assertEquals(0, count);
+    }
+
+    @Test(expected = IOException.class)
+    public void sinkFailureIsPropagated() throws IOException {
+
+        new ClassificationPipeline(classifier, THREAD_COUNT, BATCH_SIZE).classify(newUnclassifiedRecords().iterator(), record -> {
+            throw new IOException("sink failed");
+        });
+    }
+
+    @Test(expected = IOException.class)
+    public void sourceFailureIsPropagated() throws IOException {
+
+        final Iterator<Record> records = newUnclassifiedRecords().iterator();
+        final Iterator<Record> failing_records = new Iterator<Record>() {
+
+            private int count;
+
+            @Override
+            public boolean hasNext() {
+
+                return records.hasNext();
+            }
+
+            @Override
+            public Record next() {
+
+                if (++count > NUMBER_OF_RECORDS / 2) {
+                    throw new UncheckedIOException(new IOException("source failed"));
+                }
+                return records.next();
+            }
+        };
+
+        new ClassificationPipeline(classifier, THREAD_COUNT, BATCH_SIZE).classify(failing_records, record -> {});
+    }
+
+    private static List<Record> newUnclassifiedRecords() {
+
+        final String[] data = {"trail", "through", "unknown"};
+        final List<Record> records = new ArrayList<>();
+
+        for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+            records.add(new Record(i, data[i % data.length]));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process;
+
+import org.junit.*;
+import org.junit.rules.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.exact_match.ExactMatchClassifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class LazyClassificationContextTest {
+
+    private static final String PROCESS_NAME = "process";
+
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    private Bucket training_records;
+    private Bucket unseen_records;
+    private Path process_directory;
+
+    @Before
+    public void setUp() throws IOException {
+
+        training_records = new Bucket(new Record(1, "trail", new Classification("class1", TokenList.of("trail"), 1.0, null)), new Record(2, "mouse", new Classification("class2", TokenList.of("mouse"), 1.0, null)));
+        unseen_records = new Bucket(new Record(1, "house"), new Record(2, "trail"));
+
+        final ExactMatchClassifier classifier = new ExactMatchClassifier();
+        classifier.trainModel(training_records);
+
+        final ClassificationContext context = new ClassificationContext(classifier, new Random(42));
+        context.setTrainingRecords(training_records);
+        context.setUnseenRecords(unseen_records);
+        context.setTrainingTime(Duration.ofMillis(1234));
+
+        process_directory = temporary.newFolder().toPath();
+        Files.createDirectories(Serialization.getProcessWorkingDirectory(process_directory, PROCESS_NAME));
+        Serialization.persistContext(context, process_directory, PROCESS_NAME, SerializationFormat.MAPPED);
+    }
+
+    @Test
+    public void mappedContextIsLoadedLazily() throws IOException {
+
+        final ClassificationContext read = load();
+
+        assertTrue(read instanceof LazyClassificationContext);
+        assertEquals(Duration.ofMillis(1234), read.getTrainingTime());
+        assertEquals(new Random(42).nextLong(), read.getRandom().nextLong());
+        assertEquals("class2", read.getClassifier().classify("mouse").getCode());
+        assertEquals(training_records, read.getTrainingRecords());
+        assertEquals(unseen_records, read.getUnseenRecords());
+        assertTrue(read.getEvaluationRecords().isEmpty());
+        assertNull(read.getConfusionMatrix());
+    }
+
+    @Test
+    public void unaccessedSectionsAreNotRead() throws IOException {
+
+        corruptSection(ClassificationContext.TRAINING_RECORDS_SECTION);
+        final ClassificationContext read = load();
+
+        assertEquals("class1", read.getClassifier().classify("trail").getCode());
+
+        try {
+            read.getTrainingRecords();
+            fail();
+        }
+        catch (UncheckedIOException e) {
+            // expected, since the section is only read now.
+        }
+    }
+
+    @Test
+    public void partSetBeforeAccessIsNotRead() throws IOException {
+
+        corruptSection(ClassificationContext.TRAINING_RECORDS_SECTION);
+        final ClassificationContext read = load();
+
+        final Bucket replacement = new Bucket(new Record(5, "fox"));
+        read.setTrainingRecords(replacement);
+
+        assertEquals(replacement, read.getTrainingRecords());
+    }
+
+    @Test
+    public void lazyContextCanBePersistedInOtherFormats() throws IOException {
+
+        final ClassificationContext read = load();
+
+        Serialization.persistContext(read, process_directory, PROCESS_NAME, SerializationFormat.BINARY);
+        final ClassificationContext binary = Serialization.loadContext(process_directory, PROCESS_NAME, SerializationFormat.BINARY);
+
+        assertEquals(training_records, binary.getTrainingRecords());
+        assertEquals(unseen_records, binary.getUnseenRecords());
+        assertEquals("class2", binary.getClassifier().classify("mouse").getCode());
+    }
+
+    private ClassificationContext load() throws IOException {
+
+        return Serialization.loadContext(process_directory, PROCESS_NAME, SerializationFormat.MAPPED);
+    }
+
+    private void corruptSection(final String name) throws IOException {
+
+        final Path path = Serialization.getSerializedContextPath(process_directory, PROCESS_NAME, SerializationFormat.MAPPED);
+        final byte[] bytes = Files.readAllBytes(path);
+        final byte[] section = toArray(SectionedFile.map(path).getSection(name));
+
+        // Sections are compressed, so their content is distinct enough to be found in the file.
+        final int offset = indexOf(bytes, section);
+        assertTrue(offset > 0);
+
+        // Overwrites the compressed content after the gzip header.
+        Arrays.fill(bytes, offset + 30, offset + section.length - 8, (byte) 0xff);
+        Files.write(path, bytes);
+    }
+
+    private static byte[] toArray(final ByteBuffer buffer) {
+
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static int indexOf(final byte[] bytes, final byte[] target) {
+
+        outer:
+        for (int i = 0; i <= bytes.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
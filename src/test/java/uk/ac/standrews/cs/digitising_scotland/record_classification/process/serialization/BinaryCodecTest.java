@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import org.junit.*;
+import org.junit.rules.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.exact_match.ExactMatchClassifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.ClassificationContext;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BinaryCodecTest {
+
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    @Test
+    public void nestedValuesRoundTrip() throws IOException {
+
+        final Pair pair = new Pair(new Pair(null, "ÄÖü"), new Random(42));
+
+        final Pair read = roundTrip(pair, Pair.class);
+
+        assertTrue(read.first instanceof Pair);
+        assertNull(((Pair) read.first).first);
+        assertEquals("ÄÖü", ((Pair) read.first).second);
+        assertEquals(new Random(42).nextLong(), ((Random) read.second).nextLong());
+    }
+
+    @Test
+    public void nullRoundTrips() throws IOException {
+
+        assertNull(roundTrip(null, Object.class));
+    }
+
+    @Test
+    public void classificationsRoundTrip() throws IOException {
+
+        final Map<String, Classification> classifications = new HashMap<>();
+        classifications.put("quick brown fox", new Classification("class1", TokenList.of("quick brown fox"), 1.0, null));
+        classifications.put("lazy dog", new Classification("class2", TokenList.of("lazy dog"), 0.5, "detail"));
+        classifications.put("lazy dogs", new Classification("class2", TokenList.of("lazy dogs"), 0.5, "detail"));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        BinaryCodec.writeClassifications(out, classifications);
+        out.flush();
+
+        final Map<String, Classification> read = BinaryCodec.readClassifications(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(classifications.keySet(), read.keySet());
+        for (Map.Entry<String, Classification> entry : classifications.entrySet()) {
+
+            final Classification expected = entry.getValue();
+            final Classification actual = read.get(entry.getKey());
+
+            assertEquals(expected.getCode(), actual.getCode());
+            assertEquals(expected.getConfidence(), actual.getConfidence(), 0.0);
+            assertEquals(expected.getDetail(), actual.getDetail());
+            assertEquals(expected.getTokenList(), actual.getTokenList());
+        }
+    }
+
+    @Test
+    public void contextRoundTrips() throws IOException {
+
+        final Bucket training_records = new Bucket(new Record(1, "trail", new Classification("class1", TokenList.of("trail"), 1.0, null)), new Record(2, "mouse", new Classification("class2", TokenList.of("mouse"), 1.0, null)));
+        final ExactMatchClassifier classifier = new ExactMatchClassifier();
+        classifier.trainModel(training_records);
+
+        final ClassificationContext context = new ClassificationContext(classifier, new Random(42));
+        context.setTrainingRecords(training_records);
+        context.setTrainingTime(Duration.ofMillis(1234));
+
+        final Path process_directory = temporary.newFolder().toPath();
+        Files.createDirectories(Serialization.getProcessWorkingDirectory(process_directory, "process"));
+
+        Serialization.persistContext(context, process_directory, "process", SerializationFormat.BINARY);
+        final ClassificationContext read = Serialization.loadContext(process_directory, "process", SerializationFormat.BINARY);
+
+        assertEquals(training_records, read.getTrainingRecords());
+        assertEquals(Duration.ofMillis(1234), read.getTrainingTime());
+        assertTrue(read.getEvaluationRecords().isEmpty());
+        assertEquals("class2", read.getClassifier().classify("mouse").getCode());
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedVersionIsRejected() throws IOException {
+
+        roundTrip(new FutureVersion(), FutureVersion.class);
+    }
+
+    @Test(expected = IOException.class)
+    public void unexpectedTypeIsRejected() throws IOException {
+
+        roundTrip(new Pair(null, null), String.class);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherContentIsRejected() throws IOException {
+
+        BinaryCodec.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}), Object.class);
+    }
+
+    private static <Value> Value roundTrip(final Object value, final Class<Value> type) throws IOException {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.write(value, out);
+        return BinaryCodec.read(new ByteArrayInputStream(out.toByteArray()), type);
+    }
+
+    private static class Pair implements BinarySerializable {
+
+        private static final int VERSION = 1;
+
+        private Object first;
+        private Object second;
+
+        private Pair() {
+        }
+
+        private Pair(final Object first, final Object second) {
+
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void writeBinary(final DataOutputStream out) throws IOException {
+
+            BinaryCodec.writeVersion(out, VERSION);
+            BinaryCodec.writeObject(out, first);
+            BinaryCodec.writeObject(out, second);
+        }
+
+        @Override
+        public void readBinary(final DataInputStream in) throws IOException {
+
+            BinaryCodec.readVersion(in, Pair.class, VERSION);
+            first = BinaryCodec.readObject(in, Object.class);
+            second = BinaryCodec.readObject(in, Object.class);
+        }
+    }
+
+    private static class FutureVersion implements BinarySerializable {
+
+        @Override
+        public void writeBinary(final DataOutputStream out) throws IOException {
+
+            BinaryCodec.writeVersion(out, 2);
+        }
+
+        @Override
+        public void readBinary(final DataInputStream in) throws IOException {
+
+            BinaryCodec.readVersion(in, FutureVersion.class, 1);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import org.junit.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.stream.*;
+
+import static org.junit.Assert.*;
+
+public class MappedStringTableTest {
+
+    private static final String[] STRINGS = {"house", "", "horse", "hous", "ÄÖü", "zebra", "Zebra", "a longer string with spaces"};
+
+    private MappedStringTable table;
+
+    @Before
+    public void setUp() throws IOException {
+
+        final Map<String, Integer> values = new HashMap<>();
+        for (int i = 0; i < STRINGS.length; i++) {
+            values.put(STRINGS[i], i * 10);
+        }
+
+        table = new MappedStringTable(write(values));
+    }
+
+    @Test
+    public void allStringsAreFound() {
+
+        assertEquals(STRINGS.length, table.size());
+
+        for (int i = 0; i < STRINGS.length; i++) {
+
+            final int index = table.indexOf(STRINGS[i]);
+
+            assertEquals(STRINGS[i], table.getString(index));
+            assertEquals(i * 10, table.getValue(index));
+        }
+    }
+
+    @Test
+    public void unknownStringsAreNotFound() {
+
+        for (String string : new String[]{"houses", "h", "ÄÖ", "zebras", " "}) {
+            assertEquals(MappedStringTable.NOT_FOUND, table.indexOf(string));
+        }
+    }
+
+    @Test
+    public void stringsAreReadConcurrently() {
+
+        final boolean all_found = IntStream.range(0, 10_000).parallel().allMatch(i -> {
+
+            final String string = STRINGS[i % STRINGS.length];
+            return table.getString(table.indexOf(string)).equals(string);
+        });
+        assertTrue(all_found);
+    }
+
+    @Test
+    public void emptyTableFindsNothing() throws IOException {
+
+        final MappedStringTable empty = new MappedStringTable(write(Collections.emptyMap()));
+
+        assertEquals(0, empty.size());
+        assertEquals(MappedStringTable.NOT_FOUND, empty.indexOf("house"));
+    }
+
+    private static ByteBuffer write(final Map<String, Integer> values) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MappedStringTable.write(new DataOutputStream(bytes), values);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
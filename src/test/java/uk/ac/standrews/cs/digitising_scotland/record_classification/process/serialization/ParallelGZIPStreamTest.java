@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelGZIPStreamTest {
+
+    private static final int BLOCK_SIZE = 1000;
+
+    private final byte[] data = newData(10 * BLOCK_SIZE + 123);
+
+    @Test
+    public void roundTripsAcrossBlocksWithOneThread() throws IOException {
+
+        assertArrayEquals(data, decompress(compress(data, 1), 1));
+    }
+
+    @Test
+    public void roundTripsAcrossBlocksWithManyThreads() throws IOException {
+
+        assertArrayEquals(data, decompress(compress(data, 4), 4));
+    }
+
+    @Test
+    public void roundTripsEmptyStream() throws IOException {
+
+        final byte[] compressed = compress(new byte[0], 4);
+
+        assertArrayEquals(new byte[0], decompress(compressed, 4));
+        assertArrayEquals(new byte[0], readFully(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void compressedDataIsReadableAsStandardGZIP() throws IOException {
+
+        assertArrayEquals(data, readFully(new GZIPInputStream(new ByteArrayInputStream(compress(data, 4)))));
+    }
+
+    @Test
+    public void readsStandardGZIP() throws IOException {
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(data);
+        }
+
+        assertArrayEquals(data, decompress(compressed.toByteArray(), 4));
+    }
+
+    @Test
+    public void flushPreservesContent() throws IOException {
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGZIPOutputStream(compressed, 2, BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION)) {
+            for (int offset = 0; offset < data.length; offset += 700) {
+                out.write(data, offset, Math.min(700, data.length - offset));
+                out.flush();
+            }
+        }
+
+        assertArrayEquals(data, decompress(compressed.toByteArray(), 2));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptBlockIsDetected() throws IOException {
+
+        final byte[] compressed = compress(data, 4);
+        compressed[compressed.length / 2] ^= 0xff;
+
+        decompress(compressed, 4);
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedStreamIsDetected() throws IOException {
+
+        final byte[] compressed = compress(data, 4);
+
+        decompress(Arrays.copyOf(compressed, compressed.length - 5), 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoThreads() {
+
+        new ParallelGZIPOutputStream(new ByteArrayOutputStream(), 0);
+    }
+
+    private static byte[] compress(final byte[] data, final int thread_count) throws IOException {
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGZIPOutputStream(compressed, thread_count, BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION)) {
+            out.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decompress(final byte[] compressed, final int thread_count) throws IOException {
+
+        try (InputStream in = new ParallelGZIPInputStream(new ByteArrayInputStream(compressed), thread_count)) {
+            return readFully(in);
+        }
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[333];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] newData(final int length) {
+
+        final Random random = new Random(42);
+        final String[] words = {"farm", "labourer", "servant", "domestic", "weaver", "cotton", "mill", "ploughman"};
+        final StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return text.substring(0, length).getBytes();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SectionedFileTest {
+
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    @Test
+    public void sectionsRoundTrip() throws IOException {
+
+        final Path file = temporary.newFile().toPath();
+
+        try (SectionedFile.Writer out = new SectionedFile.Writer(file)) {
+            out.addSection("first", section -> section.writeByte(7));
+            out.addSection("second", section -> {
+                section.writeLong(42L);
+                SectionedFile.writeString(section, "ÄÖü");
+                SectionedFile.writeString(section, null);
+            });
+            out.addSection("empty", section -> {});
+        }
+
+        final SectionedFile in = SectionedFile.map(file);
+        assertEquals(Arrays.asList("first", "second", "empty"), new ArrayList<>(in.getSectionNames()));
+
+        assertEquals(1, in.getSection("first").remaining());
+        assertEquals(7, in.getSection("first").get());
+
+        final ByteBuffer second = in.getSection("second");
+        assertEquals(42L, second.getLong());
+        assertEquals("ÄÖü", SectionedFile.readString(second));
+        assertNull(SectionedFile.readString(second));
+        assertFalse(second.hasRemaining());
+
+        assertEquals(0, in.getSection("empty").remaining());
+        assertFalse(in.hasSection("third"));
+    }
+
+    @Test
+    public void eachSectionReaderHasItsOwnPosition() throws IOException {
+
+        final Path file = temporary.newFile().toPath();
+
+        try (SectionedFile.Writer out = new SectionedFile.Writer(file)) {
+            out.addSection("section", section -> section.writeInt(1));
+        }
+
+        final SectionedFile in = SectionedFile.map(file);
+        in.getSection("section").getInt();
+
+        assertEquals(1, in.getSection("section").getInt());
+    }
+
+    @Test
+    public void sectionsLongerThanOneMappingAreStreamedAcrossSegments() throws IOException {
+
+        final Path file = temporary.newFile().toPath();
+
+        try (SectionedFile.Writer out = new SectionedFile.Writer(file)) {
+            out.addSection("section", section -> {
+                for (int i = 0; i < 10; i++) {
+                    section.writeByte(i);
+                }
+            });
+            out.addSection("short", section -> section.writeInt(1));
+        }
+
+        final SectionedFile in = SectionedFile.map(file, 4);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (final InputStream section = in.openSection("section")) {
+
+            assertEquals(0, section.read());
+
+            final byte[] buffer = new byte[3];
+            int count;
+            while ((count = section.read(buffer, 0, buffer.length)) >= 0) {
+                bytes.write(buffer, 0, count);
+            }
+        }
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, bytes.toByteArray());
+        assertEquals(1, in.getSection("short").getInt());
+    }
+
+    @Test(expected = IOException.class)
+    public void sectionLongerThanOneMappingCannotBeAccessedAsBuffer() throws IOException {
+
+        final Path file = temporary.newFile().toPath();
+
+        try (SectionedFile.Writer out = new SectionedFile.Writer(file)) {
+            out.addSection("section", section -> section.writeLong(1L));
+        }
+
+        SectionedFile.map(file, 4).getSection("section");
+    }
+
+    @Test(expected = IOException.class)
+    public void missingSectionIsReported() throws IOException {
+
+        final Path file = temporary.newFile().toPath();
+        new SectionedFile.Writer(file).close();
+
+        SectionedFile.map(file).getSection("section");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateSectionIsRejected() throws IOException {
+
+        try (SectionedFile.Writer out = new SectionedFile.Writer(temporary.newFile().toPath())) {
+            out.addSection("section", section -> {});
+            out.addSection("section", section -> {});
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unrecognisedFileIsRejected() throws IOException {
+
+        final Path file = temporary.newFile().toPath();
+        Files.write(file, "not a sectioned file at all".getBytes());
+
+        SectionedFile.map(file);
+    }
+}
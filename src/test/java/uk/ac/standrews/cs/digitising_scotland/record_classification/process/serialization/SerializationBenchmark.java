@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization;
+
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.Classifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.ClassifierSupplier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.logistic_regression.legacy.LegacyOLRClassifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.experiments.AbstractClassificationProcessTest;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.Bucket;
+import uk.ac.standrews.cs.utilities.FileManipulation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reports the time taken to save and load each built-in classifier, and the size of the saved file, in each serialization format.
+ * Each time is the fastest of several repetitions.
+ * Usage: {@code SerializationBenchmark [gold standard file] [number of training records] [number of repetitions]}
+ */
+public class SerializationBenchmark {
+
+    private static final String DEFAULT_DATA_FILE_NAME = "coded_data_65K.csv";
+    private static final int DEFAULT_TRAINING_RECORDS = 5000;
+    private static final int DEFAULT_REPETITIONS = 3;
+    private static final long SEED = 34234234234L;
+
+    public static void main(final String[] args) throws IOException {
+
+        final Path data_file = args.length > 0 ? Paths.get(args[0]) : FileManipulation.getResourcePath(AbstractClassificationProcessTest.class, DEFAULT_DATA_FILE_NAME);
+        final int training_records = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TRAINING_RECORDS;
+        final int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_REPETITIONS;
+
+        Logger.getLogger("").setLevel(Level.OFF);
+
+        // Records with the same data are kept once, since internal evaluation requires consistently coded training records.
+        final Bucket gold_standard = load(data_file).makeUniqueDataRecords();
+        final Bucket training = gold_standard.randomSubset(new Random(SEED), Math.min(1.0, (double) training_records / gold_standard.size()));
+
+        final Map<String, Supplier<Classifier>> classifiers = new LinkedHashMap<>();
+        for (ClassifierSupplier supplier : ClassifierSupplier.values()) {
+            classifiers.put(supplier.name(), supplier);
+        }
+        classifiers.put("LEGACY_OLR", LegacyOLRClassifier::new);
+
+        final Path file = Files.createTempFile("serialization_benchmark_", ".tmp");
+        try {
+            System.out.println("records trained on: " + training.size());
+            System.out.println();
+            System.out.println(String.format("%-37s %-18s %10s %10s %12s", "classifier", "format", "save ms", "load ms", "size bytes"));
+
+            for (Map.Entry<String, Supplier<Classifier>> entry : classifiers.entrySet()) {
+
+                final Classifier classifier = entry.getValue().get();
+                try {
+                    classifier.trainAndEvaluate(training, 1.0, new Random(SEED));
+                }
+                catch (RuntimeException e) {
+                    System.out.println(String.format("%-37s cannot be trained: %s", entry.getKey(), e));
+                    continue;
+                }
+
+                for (SerializationFormat format : SerializationFormat.values()) {
+                    System.out.println(String.format("%-37s %-18s %s", entry.getKey(), format, measure(classifier, format, file, repetitions)));
+                }
+            }
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String measure(final Classifier classifier, final SerializationFormat format, final Path file, final int repetitions) {
+
+        long save_time = Long.MAX_VALUE;
+        long load_time = Long.MAX_VALUE;
+
+        try {
+            for (int i = 0; i < repetitions; i++) {
+
+                final long save_start = System.nanoTime();
+                Serialization.persist(file, classifier, format);
+                save_time = Math.min(save_time, System.nanoTime() - save_start);
+
+                final long load_start = System.nanoTime();
+                Serialization.load(file, classifier.getClass(), format);
+                load_time = Math.min(load_time, System.nanoTime() - load_start);
+            }
+            return String.format("%10d %10d %12d", save_time / 1000000, load_time / 1000000, Files.size(file));
+        }
+        catch (Exception e) {
+            return "failed: " + e;
+        }
+    }
+
+    private static Bucket load(final Path data_file) throws IOException {
+
+        try (InputStream stream = Files.newInputStream(data_file)) {
+            return new Bucket(stream, ',');
+        }
+    }
+}
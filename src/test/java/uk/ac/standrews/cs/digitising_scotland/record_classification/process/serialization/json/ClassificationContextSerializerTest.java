@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012-2017 Systems Research Group, University of St Andrews:
+ * <https://github.com/stacs-srg>
+ *
+ * This file is part of the module record-classification.
+ *
+ * record-classification is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * record-classification is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with record-classification. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.json;
+
+import org.junit.*;
+import org.junit.rules.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.Classifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.classifier.exact_match.ExactMatchClassifier;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.model.*;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.ClassificationContext;
+import uk.ac.standrews.cs.digitising_scotland.record_classification.process.serialization.*;
+import uk.ac.standrews.cs.utilities.FileManipulation;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ClassificationContextSerializerTest {
+
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    @Test
+    public void contextRoundTripsAsJSON() throws IOException {
+
+        assertContextRoundTrips(SerializationFormat.JSON);
+    }
+
+    @Test
+    public void contextRoundTripsAsCompressedJSON() throws IOException {
+
+        assertContextRoundTrips(SerializationFormat.JSON_COMPRESSED);
+    }
+
+    @Test
+    public void recordFieldsRoundTrip() throws IOException {
+
+        final Bucket unseen_records = new Bucket(
+                        new Record(1, "trail", "Trail", new Classification("class1", TokenList.of("trail"), 0.5, "detail")),
+                        new Record(2, "mouse"),
+                        new Record(3, "house", null, null));
+
+        final ClassificationContext context = new ClassificationContext(null, new Random(42));
+        context.setUnseenRecords(unseen_records);
+
+        final ClassificationContext read = roundTrip(context, SerializationFormat.JSON);
+        final List<Record> records = read.getUnseenRecords().asList();
+
+        assertEquals(3, records.size());
+
+        assertEquals("Trail", records.get(0).getOriginalData());
+        assertEquals("class1", records.get(0).getClassification().getCode());
+        assertEquals(0.5, records.get(0).getClassification().getConfidence(), 0.0);
+        assertEquals("detail", records.get(0).getClassification().getDetail());
+        assertEquals(TokenList.of("trail"), records.get(0).getClassification().getTokenList());
+
+        assertEquals("mouse", records.get(1).getOriginalData());
+        assertSame(Classification.UNCLASSIFIED, records.get(1).getClassification());
+
+        assertNull(records.get(2).getOriginalData());
+        assertNull(records.get(2).getClassification());
+
+        assertNull(read.getClassifier());
+        assertEquals(new Random(42).nextLong(), read.getRandom().nextLong());
+    }
+
+    @Test
+    public void tokenListsRoundTrip() throws IOException {
+
+        final Bucket unseen_records = new Bucket(
+                        new Record(1, "trail", new Classification("class1", TokenList.of("trail mouse"), 0.5, null)),
+                        new Record(2, "mouse", new Classification("class2", null, 0.5, null)),
+                        new Record(3, "house", new Classification(Classification.UNCLASSIFIED_CODE, TokenList.of("house"), 0.25, "detail")));
+
+        final ClassificationContext context = new ClassificationContext(null, new Random());
+        context.setUnseenRecords(unseen_records);
+
+        final List<Record> records = roundTrip(context, SerializationFormat.JSON).getUnseenRecords().asList();
+
+        assertEquals(TokenList.of("trail mouse"), records.get(0).getClassification().getTokenList());
+        assertNull(records.get(1).getClassification().getTokenList());
+
+        final Classification unclassified = records.get(2).getClassification();
+        assertEquals(Classification.UNCLASSIFIED_CODE, unclassified.getCode());
+        assertEquals(0.25, unclassified.getConfidence(), 0.0);
+        assertEquals("detail", unclassified.getDetail());
+        assertEquals(TokenList.of("house"), unclassified.getTokenList());
+    }
+
+    @Test
+    public void unknownFieldsAreIgnored() throws IOException {
+
+        final String json = "{\"version\":1,\"unknown\":{\"a\":[1]},\"unseen_records\":{\"version\":1,\"unknown\":[]," +
+                        "\"records\":[{\"id\":1,\"data\":\"trail\",\"unknown\":2,\"classification\":{\"code\":\"class1\",\"unknown\":{}}}]}}";
+
+        final ClassificationContext context = new ProcessObjectMapper().readValue(json, ClassificationContext.class);
+        final Record record = context.getUnseenRecords().getFirstRecord();
+
+        assertEquals("trail", record.getData());
+        assertEquals("class1", record.getClassification().getCode());
+        assertEquals(TokenList.of("trail"), record.getClassification().getTokenList());
+    }
+
+    @Test
+    public void contextWrittenBeforeStreamingIsRead() throws IOException {
+
+        final Path legacy_context = FileManipulation.getResourcePath(ClassificationContextSerializerTest.class, "legacy_context.json");
+        final ClassificationContext context = Serialization.load(legacy_context, ClassificationContext.class, SerializationFormat.JSON);
+
+        final Bucket training_records = context.getTrainingRecords();
+        assertEquals(3, training_records.size());
+
+        final Record record = training_records.findRecordById(2).get();
+        assertEquals("coal miner", record.getData());
+        assertEquals("Coal Miner", record.getOriginalData());
+        assertEquals("miner", record.getClassification().getCode());
+        assertEquals(TokenList.of("coal miner"), record.getClassification().getTokenList());
+
+        assertEquals(2, context.getEvaluationRecords().size());
+        assertEquals(2, context.getClassifiedEvaluationRecords().size());
+
+        final Classifier classifier = context.getClassifier();
+        assertEquals("miner", classifier.classify("coal miner").getCode());
+        assertEquals(new Random(42).nextLong(), context.getRandom().nextLong());
+
+        // Ids continue to be allocated after those of the records read.
+        training_records.add(new Record(0, "weaver"));
+        assertTrue(training_records.findRecordById(4).isPresent());
+    }
+
+    @Test
+    public void idsAreAllocatedAfterReadRecords() throws IOException {
+
+        final ClassificationContext context = new ClassificationContext(null, new Random());
+        context.setTrainingRecords(new Bucket(new Record(7, "trail"), new Record(9, "mouse")));
+
+        final Bucket training_records = roundTrip(context, SerializationFormat.JSON).getTrainingRecords();
+        training_records.add(new Record(0, "house"));
+
+        assertTrue(training_records.findRecordById(10).isPresent());
+    }
+
+    private void assertContextRoundTrips(final SerializationFormat format) throws IOException {
+
+        final Bucket training_records = new Bucket(new Record(1, "trail", new Classification("class1", TokenList.of("trail"), 1.0, null)), new Record(2, "mouse", new Classification("class2", TokenList.of("mouse"), 1.0, null)));
+        final ExactMatchClassifier classifier = new ExactMatchClassifier();
+        classifier.trainModel(training_records);
+
+        final ClassificationContext context = new ClassificationContext(classifier, new Random(42));
+        context.setTrainingRecords(training_records);
+        context.setTrainingTime(Duration.ofMillis(1234));
+
+        final ClassificationContext read = roundTrip(context, format);
+
+        assertEquals(training_records, read.getTrainingRecords());
+        assertEquals(Duration.ofMillis(1234), read.getTrainingTime());
+        assertNull(read.getEvaluationClassificationTime());
+        assertTrue(read.getEvaluationRecords().isEmpty());
+        assertEquals("class2", read.getClassifier().classify("mouse").getCode());
+    }
+
+    private ClassificationContext roundTrip(final ClassificationContext context, final SerializationFormat format) throws IOException {
+
+        final Path process_directory = temporary.newFolder().toPath();
+        Files.createDirectories(Serialization.getProcessWorkingDirectory(process_directory, "process"));
+
+        Serialization.persistContext(context, process_directory, "process", format);
+        return Serialization.loadContext(process_directory, "process", format);
+    }
+}